@@ -52,8 +52,14 @@ public enum AppProperty
     BACKUP_CONFIG_COUNT                             ( "backup.config.count" ),
     BACKUP_LOCALDB_COUNT                            ( "backup.localdb.count" ),
     CACHE_ENABLE                                    ( "cache.enable" ),
+    CACHE_LOCALDB_ENABLE                            ( "cache.localDB.enable" ),
+    CACHE_LOCALDB_MAX_ITEMS                         ( "cache.localDB.maxItems" ),
+    CACHE_LOCALDB_MIN_LIFETIME_SECONDS              ( "cache.localDB.minLifetimeSeconds" ),
+    CACHE_MEMORY_DIRECT_VALUES                      ( "cache.memory.directValues" ),
     CACHE_MEMORY_MAX_ITEMS                          ( "cache.memory.maxItems" ),
     CACHE_PWRULECHECK_LIFETIME_MS                   ( "cache.pwRuleCheckLifetimeMS" ),
+    CACHE_REFRESH_AHEAD_ENABLE                      ( "cache.refreshAhead.enable" ),
+    CACHE_REFRESH_AHEAD_PERCENT                     ( "cache.refreshAhead.percent" ),
     CACHE_FORM_UNIQUE_VALUE_LIFETIME_MS             ( "cache.uniqueFormValueLifetimeMS" ),
     CLIENT_ACTIVITY_MAX_EPS_RATE                    ( "client.ajax.activityMaxEpsRate" ),
     CLIENT_AJAX_PW_WAIT_CHECK_SECONDS               ( "client.ajax.changePasswordWaitCheckSeconds" ),
@@ -97,6 +103,7 @@ public enum AppProperty
     DOWNLOAD_FILENAME_SESSIONS_CSV                  ( "download.filename.sessions.csv" ),
     DOWNLOAD_FILENAME_USER_REPORT_SUMMARY_CSV       ( "download.filename.reportSummary.csv" ),
     DOWNLOAD_FILENAME_USER_REPORT_RECORDS_CSV       ( "download.filename.reportRecords.csv" ),
+    DOWNLOAD_FILENAME_USER_REPORT_RECORDS_NDJSON    ( "download.filename.reportRecords.ndjson" ),
     DOWNLOAD_FILENAME_AUDIT_RECORDS_CSV             ( "download.filename.auditRecords.csv" ),
     DOWNLOAD_FILENAME_LDAP_PERMISSION_CSV           ( "download.filename.ldapPermission.csv" ),
     DOWNLOAD_FILENAME_USER_DEBUG_JSON               ( "download.filename.userDebug.json" ),
@@ -174,8 +181,9 @@ public enum AppProperty
     LOCALDB_INIT_STRING                             ( "localdb.initParameters" ),
     LOCALDB_LOCATION                                ( "localdb.location" ),
     LOCALDB_LOGWRITER_BUFFER_SIZE                   ( "localdb.logWriter.bufferSize" ),
-    LOCALDB_LOGWRITER_MAX_BUFFER_WAIT_MS            ( "localdb.logWriter.maxBufferWaitMs" ),
     LOCALDB_LOGWRITER_MAX_TRIM_SIZE                 ( "localdb.logWriter.maxTrimSize" ),
+    LOCALDB_LOGWRITER_SEGMENT_EVENTS                ( "localdb.logWriter.segmentEvents" ),
+    LOCALDB_LOGWRITER_SEGMENT_SECONDS               ( "localdb.logWriter.segmentSeconds" ),
     MACRO_RANDOM_CHAR_MAX_LENGTH                    ( "macro.randomChar.maxLength" ),
     MACRO_LDAP_ATTR_CHAR_MAX_LENGTH                 ( "macro.ldapAttr.maxLength" ),
 
@@ -213,7 +221,11 @@ public enum AppProperty
     LDAP_CHAI_SETTINGS                              ( "ldap.chaiSettings" ),
     LDAP_PROXY_CONNECTION_PER_PROFILE               ( "ldap.proxy.connectionsPerProfile" ),
     LDAP_PROXY_MAX_CONNECTIONS                      ( "ldap.proxy.maxConnections" ),
+    LDAP_PROXY_MIN_CONNECTIONS_PER_PROFILE          ( "ldap.proxy.minConnectionsPerProfile" ),
+    LDAP_PROXY_IDLE_EVICTION_SECONDS                ( "ldap.proxy.idleEvictionSeconds" ),
     LDAP_PROXY_USE_THREAD_LOCAL                     ( "ldap.proxy.useThreadLocal" ),
+    LDAP_BIND_POOL_ENABLE                           ( "ldap.bindPool.enable" ),
+    LDAP_BIND_POOL_MAX_IDLE_PER_PROFILE             ( "ldap.bindPool.maxIdlePerProfile" ),
     LDAP_EXTENSIONS_NMAS_ENABLE                     ( "ldap.extensions.nmas.enable" ),
     LDAP_CONNECTION_TIMEOUT                         ( "ldap.connection.timeoutMS" ),
     LDAP_PROFILE_RETRY_DELAY                        ( "ldap.profile.retryDelayMS" ),
@@ -222,6 +234,8 @@ public enum AppProperty
     LDAP_PASSWORD_REPLICA_CHECK_CYCLE_DELAY_MS      ( "ldap.password.replicaCheck.cycleDelayMS" ),
     LDAP_PASSWORD_CHANGE_SELF_ENABLE                ( "ldap.password.change.self.enable" ),
     LDAP_PASSWORD_CHANGE_HELPDESK_ENABLE            ( "ldap.password.change.helpdesk.enable" ),
+    LDAP_PERMISSION_LOCAL_EVAL_ENABLE               ( "ldap.permission.localEvaluation.enable" ),
+    LDAP_PERMISSION_LOCAL_EVAL_CACHE_SECONDS        ( "ldap.permission.localEvaluation.cacheSeconds" ),
     LDAP_GUID_PATTERN                               ( "ldap.guid.pattern" ),
     LDAP_BROWSER_MAX_ENTRIES                        ( "ldap.browser.maxEntries" ),
     LDAP_SEARCH_PAGING_ENABLE                       ( "ldap.search.paging.enable" ),
@@ -294,6 +308,8 @@ public enum AppProperty
     QUEUE_EMAIL_RETRY_TIMEOUT_MS                    ( "queue.email.retryTimeoutMs" ),
     QUEUE_EMAIL_MAX_COUNT                           ( "queue.email.maxCount" ),
     QUEUE_EMAIL_MAX_THREADS                         ( "queue.email.maxThreads" ),
+    QUEUE_EMAIL_WORKER_THREADS                      ( "queue.email.workerThreads" ),
+    QUEUE_EMAIL_MAX_LANE_THREADS                    ( "queue.email.maxLaneThreads" ),
     QUEUE_SMS_RETRY_TIMEOUT_MS                      ( "queue.sms.retryTimeoutMs" ),
     QUEUE_SMS_MAX_COUNT                             ( "queue.sms.maxCount" ),
     QUEUE_SYSLOG_RETRY_TIMEOUT_MS                   ( "queue.syslog.retryTimeoutMs" ),
@@ -302,6 +318,14 @@ public enum AppProperty
     RECAPTCHA_CLIENT_JS_URL                         ( "recaptcha.clientJsUrl" ),
     RECAPTCHA_CLIENT_IFRAME_URL                     ( "recaptcha.clientIframeUrl" ),
     RECAPTCHA_VALIDATE_URL                          ( "recaptcha.validateUrl" ),
+    REPORTING_EXPORT_MAX_PENDING_PARTITIONS         ( "reporting.export.maxPendingPartitions" ),
+    REPORTING_EXPORT_PARTITION_SIZE                 ( "reporting.export.partitionSize" ),
+    REPORTING_EXPORT_THREADS                        ( "reporting.export.threads" ),
+    REPORTING_INCREMENTAL_ENABLE                    ( "reporting.incremental.enable" ),
+    REPORTING_INCREMENTAL_FULL_REFRESH_SECONDS      ( "reporting.incremental.fullRefreshIntervalSeconds" ),
+    REPORTING_INCREMENTAL_OVERLAP_SECONDS           ( "reporting.incremental.overlapSeconds" ),
+    REPORTING_INCREMENTAL_TIMESTAMP_ATTRIBUTE       ( "reporting.incremental.timestampAttribute" ),
+    REPORTING_LDAP_HARVEST_ENABLE                   ( "reporting.ldap.harvest.enable" ),
     REPORTING_LDAP_SEARCH_TIMEOUT                   ( "reporting.ldap.searchTimeoutMs" ),
     REPORTING_LDAP_SEARCH_THREADS                   ( "reporting.ldap.searchThreads" ),
     REPORTING_MAX_REPORT_AGE_SECONDS                ( "reporting.maxReportAgeSeconds" ),
@@ -324,6 +348,7 @@ public enum AppProperty
     SECURITY_SHAREDHISTORY_HASH_NAME                ( "security.sharedHistory.hashName" ),
     SECURITY_SHAREDHISTORY_CASE_INSENSITIVE         ( "security.sharedHistory.caseInsensitive" ),
     SECURITY_SHAREDHISTORY_SALT_LENGTH              ( "security.sharedHistory.saltLength" ),
+    SECURITY_SHAREDHISTORY_SEGMENT_SECONDS          ( "security.sharedHistory.segmentDurationSeconds" ),
     SECURITY_CERTIFICATES_VALIDATE_TIMESTAMPS       ( "security.certs.validateTimestamps" ),
     SECURITY_CONFIG_MIN_SECURITY_KEY_LENGTH         ( "security.config.minSecurityKeyLength" ),
     SECURITY_DEFAULT_EPHEMERAL_BLOCK_ALG            ( "security.defaultEphemeralBlockAlg" ),
@@ -331,6 +356,9 @@ public enum AppProperty
     SEEDLIST_BUILTIN_PATH                           ( "seedlist.builtin.path" ),
     SMTP_SUBJECT_ENCODING_CHARSET                   ( "smtp.subjectEncodingCharset" ),
     SMTP_RETRYABLE_SEND_RESPONSE_STATUSES           ( "smtp.retryableSendResponseStatus" ),
+    SMTP_POOL_MAX_CONNECTIONS_PER_SERVER            ( "smtp.pool.maxConnectionsPerServer" ),
+    SMTP_POOL_MAX_MESSAGES_PER_CONNECTION           ( "smtp.pool.maxMessagesPerConnection" ),
+    SMTP_POOL_MAX_IDLE_SECONDS                      ( "smtp.pool.maxIdleSeconds" ),
     TOKEN_CLEANER_INTERVAL_SECONDS                  ( "token.cleaner.intervalSeconds" ),
     TOKEN_MASK_EMAIL_REGEX                          ( "token.mask.email.regex" ),
     TOKEN_MASK_EMAIL_REPLACE                        ( "token.mask.email.replace" ),
@@ -351,6 +379,7 @@ public enum AppProperty
 
     /** Regular expression to be used for matching URLs to be shortened by the URL Shortening Service Class. */
     URL_SHORTNER_URL_REGEX                          ( "urlshortener.url.regex" ),
+    WORDLIST_BLOOM_FILTER_BITS_PER_WORD             ( "wordlist.bloomFilter.bitsPerWord" ),
     WORDLIST_BUILTIN_PATH                           ( "wordlist.builtin.path" ),
     WORDLIST_CHAR_LENGTH_MAX                        ( "wordlist.maxCharLength" ),
     WORDLIST_CHAR_LENGTH_MIN                        ( "wordlist.minCharLength" ),
@@ -358,7 +387,10 @@ public enum AppProperty
     WORDLIST_IMPORT_DURATION_GOAL_MS                ( "wordlist.import.durationGoalMS" ),
     WORDLIST_IMPORT_MIN_TRANSACTIONS                ( "wordlist.import.minTransactions" ),
     WORDLIST_IMPORT_MAX_TRANSACTIONS                ( "wordlist.import.maxTransactions" ),
+    WORDLIST_IMPORT_WORKER_THREADS                  ( "wordlist.import.workerThreads" ),
     WORDLIST_INSPECTOR_FREQUENCY_SECONDS            ( "wordlist.inspector.frequencySeconds" ),
+    WORDLIST_MATCHER_MAX_WORDS                      ( "wordlist.matcher.maxWords" ),
+    WORDLIST_STORAGE_ENGINE                         ( "wordlist.storageEngine" ),
     WS_REST_CLIENT_PWRULE_HALTONERROR               ( "ws.restClient.pwRule.haltOnError" ),
     WS_REST_SERVER_SIGNING_FORM_TIMEOUT_SECONDS     ( "ws.restServer.signing.form.timeoutSeconds" ),
     WS_REST_SERVER_STATISTICS_DEFAULT_HISTORY       ( "ws.restServer.statistics.defaultHistoryDays" ),
@@ -29,6 +29,7 @@ import password.pwm.config.option.ADPolicyComplexity;
 import password.pwm.config.value.data.UserPermission;
 import password.pwm.health.HealthMessage;
 import password.pwm.health.HealthRecord;
+import password.pwm.util.java.AhoCorasickMatcher;
 import password.pwm.util.java.JsonUtil;
 import password.pwm.util.java.StringUtil;
 import password.pwm.util.logging.PwmLogger;
@@ -60,6 +61,7 @@ public class PwmPasswordPolicy implements Profile, Serializable
     private final Map<String, String> policyMap = new HashMap<>();
 
     private final transient ChaiPasswordPolicy chaiPasswordPolicy;
+    private transient volatile AhoCorasickMatcher disallowedValueMatcher;
 
     private String profileID;
     private List<UserPermission> userPermissions;
@@ -147,6 +149,29 @@ public class PwmPasswordPolicy implements Profile, Serializable
         return new PasswordRuleReaderHelper( this );
     }
 
+    /**
+     * Disallowed values that do not contain macros, lower cased and compiled into a single matcher.  The policy map
+     * does not change once the policy is constructed, so the matcher is built on first use and then reused.
+     */
+    public AhoCorasickMatcher getDisallowedValueMatcher( )
+    {
+        AhoCorasickMatcher matcher = disallowedValueMatcher;
+        if ( matcher == null )
+        {
+            final AhoCorasickMatcher.Builder builder = AhoCorasickMatcher.builder();
+            for ( final String value : getRuleHelper().getDisallowedValues() )
+            {
+                if ( value != null && !value.contains( "@" ) && !value.trim().isEmpty() )
+                {
+                    builder.add( value.toLowerCase() );
+                }
+            }
+            matcher = builder.build();
+            disallowedValueMatcher = matcher;
+        }
+        return matcher;
+    }
+
     public String getValue( final PwmPasswordRule rule )
     {
         return policyMap.get( rule.getKey() );
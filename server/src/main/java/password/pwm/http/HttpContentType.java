@@ -35,6 +35,7 @@ public enum HttpContentType
     gzip( "application/gzip" ),
     xml( "text/xml", PwmConstants.DEFAULT_CHARSET ),
     csv( "text/csv", PwmConstants.DEFAULT_CHARSET ),
+    ndjson( "application/x-ndjson", PwmConstants.DEFAULT_CHARSET ),
     javascript( "text/javascript", PwmConstants.DEFAULT_CHARSET ),
     plain( "text/plain", PwmConstants.DEFAULT_CHARSET ),
     html( "text/html", PwmConstants.DEFAULT_CHARSET ),
@@ -92,6 +92,7 @@ public enum PwmRequestAttribute
     NewUser_VisibleProfiles,
 
     CookieBeanStorage,
+    CookieBeanSnapshots,
     CookieNonce,
 
     ShortcutItems,
@@ -38,6 +38,7 @@ import password.pwm.error.PwmException;
 import password.pwm.error.PwmOperationalException;
 import password.pwm.error.PwmUnrecoverableException;
 import password.pwm.http.HttpContentType;
+import password.pwm.http.HttpHeader;
 import password.pwm.http.HttpMethod;
 import password.pwm.http.JspUrl;
 import password.pwm.http.ProcessStatus;
@@ -58,6 +59,8 @@ import password.pwm.svc.intruder.RecordType;
 import password.pwm.svc.pwnotify.PwNotifyService;
 import password.pwm.svc.pwnotify.PwNotifyStoredJobState;
 import password.pwm.svc.report.ReportCsvUtility;
+import password.pwm.svc.report.ReportExporter;
+import password.pwm.svc.report.ReportFilter;
 import password.pwm.svc.report.ReportService;
 import password.pwm.svc.report.UserCacheRecord;
 import password.pwm.svc.stats.StatisticsManager;
@@ -86,6 +89,7 @@ import java.io.Writer;
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadInfo;
 import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -228,17 +232,38 @@ public class AdminServlet extends ControlledPwmServlet
             throws PwmUnrecoverableException, IOException, ChaiUnavailableException, ServletException
     {
         final PwmApplication pwmApplication = pwmRequest.getPwmApplication();
+        final ReportExporter.Format format = JavaHelper.readEnumFromString(
+                ReportExporter.Format.class,
+                ReportExporter.Format.CSV,
+                pwmRequest.readParameterAsString( "format" ).toUpperCase() );
 
-        pwmRequest.getPwmResponse().markAsDownload(
-                HttpContentType.csv,
-                pwmApplication.getConfig().readAppProperty( AppProperty.DOWNLOAD_FILENAME_USER_REPORT_RECORDS_CSV )
-        );
+        if ( format == ReportExporter.Format.NDJSON )
+        {
+            pwmRequest.getPwmResponse().markAsDownload(
+                    HttpContentType.ndjson,
+                    pwmApplication.getConfig().readAppProperty( AppProperty.DOWNLOAD_FILENAME_USER_REPORT_RECORDS_NDJSON )
+            );
+        }
+        else
+        {
+            pwmRequest.getPwmResponse().markAsDownload(
+                    HttpContentType.csv,
+                    pwmApplication.getConfig().readAppProperty( AppProperty.DOWNLOAD_FILENAME_USER_REPORT_RECORDS_CSV )
+            );
+        }
+
+        final String acceptEncoding = pwmRequest.readHeaderValueAsString( HttpHeader.AcceptEncoding );
+        final boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains( "gzip" );
+        if ( gzip )
+        {
+            pwmRequest.getPwmResponse().setHeader( HttpHeader.ContentEncoding, "gzip" );
+        }
 
         final OutputStream outputStream = pwmRequest.getPwmResponse().getOutputStream();
         try
         {
-            final ReportCsvUtility reportCsvUtility = new ReportCsvUtility( pwmApplication );
-            reportCsvUtility.outputToCsv( outputStream, true, pwmRequest.getLocale() );
+            final ReportExporter reportExporter = new ReportExporter( pwmApplication, pwmApplication.getConfig() );
+            reportExporter.export( outputStream, format, gzip, true, pwmRequest.getLocale(), readReportFilter( pwmRequest ) );
         }
         catch ( Exception e )
         {
@@ -414,8 +439,11 @@ public class AdminServlet extends ControlledPwmServlet
 
         final ReportService reportService = pwmRequest.getPwmApplication().getReportService();
         final ArrayList<UserCacheRecord> reportData = new ArrayList<>();
+        final ReportFilter reportFilter = readReportFilter( pwmRequest );
 
-        try ( ClosableIterator<UserCacheRecord> cacheBeanIterator = reportService.iterator() )
+        try ( ClosableIterator<UserCacheRecord> cacheBeanIterator = reportFilter == null
+                ? reportService.iterator()
+                : reportService.iterator( reportFilter, maximum ) )
         {
             while ( cacheBeanIterator.hasNext() && reportData.size() < maximum )
             {
@@ -429,12 +457,25 @@ public class AdminServlet extends ControlledPwmServlet
 
         final HashMap<String, Object> returnData = new HashMap<>();
         returnData.put( "users", reportData );
+        if ( reportFilter != null )
+        {
+            returnData.put( "matches", reportService.countRecords( reportFilter ) );
+        }
 
         final RestResultBean restResultBean = RestResultBean.withData( returnData );
         pwmRequest.outputJsonResult( restResultBean );
         return ProcessStatus.Halt;
     }
 
+    private static ReportFilter readReportFilter( final PwmRequest pwmRequest )
+            throws PwmUnrecoverableException
+    {
+        final String filterJson = pwmRequest.readParameterAsString( "filter" );
+        return StringUtil.isEmpty( filterJson )
+                ? null
+                : JsonUtil.deserialize( filterJson, ReportFilter.class );
+    }
+
     @ActionHandler( action = "downloadUserDebug" )
     private ProcessStatus processDownloadUserDebug( final PwmRequest pwmRequest )
 
@@ -784,6 +825,9 @@ public class AdminServlet extends ControlledPwmServlet
             final String text = inputMap.getOrDefault( "text", "" );
             final PwmLogLevel logLevel = JavaHelper.readEnumFromString( PwmLogLevel.class, PwmLogLevel.TRACE, inputMap.get( "level" ) );
             final LocalDBLogger.EventType logType = JavaHelper.readEnumFromString( LocalDBLogger.EventType.class, LocalDBLogger.EventType.Both, inputMap.get( "type" ) );
+            final String topic = inputMap.getOrDefault( "topic", "" );
+            final Instant startTime = readLogSearchTime( inputMap, "startTime" );
+            final Instant endTime = readLogSearchTime( inputMap, "endTime" );
             logDisplayType = JavaHelper.readEnumFromString( LogDisplayType.class, LogDisplayType.grid, inputMap.get( "displayType" ) );
 
             searchParameters = LocalDBSearchQuery.builder()
@@ -793,6 +837,9 @@ public class AdminServlet extends ControlledPwmServlet
                     .text( text )
                     .maxQueryTime( maxTimeSeconds )
                     .eventType( logType )
+                    .topic( topic )
+                    .startTime( startTime )
+                    .endTime( endTime )
                     .build();
         }
 
@@ -820,11 +867,31 @@ public class AdminServlet extends ControlledPwmServlet
         returnData.put( "display", logDisplayType );
         returnData.put( "size", searchResults.getReturnedEvents() );
         returnData.put( "duration", searchResults.getSearchTime() );
+        returnData.put( "skippedSegments", searchResults.getSkippedSegments() );
         pwmRequest.outputJsonResult( RestResultBean.withData( returnData ) );
 
         return ProcessStatus.Halt;
     }
 
+    private static Instant readLogSearchTime( final Map<String, String> inputMap, final String key )
+            throws PwmUnrecoverableException
+    {
+        final String value = inputMap.get( key );
+        if ( StringUtil.isEmpty( value ) )
+        {
+            return null;
+        }
+
+        try
+        {
+            return JavaHelper.parseIsoToInstant( value );
+        }
+        catch ( DateTimeParseException e )
+        {
+            throw new PwmUnrecoverableException( new ErrorInformation( PwmError.ERROR_MISSING_PARAMETER, "invalid " + key + " value: " + e.getMessage() ) );
+        }
+    }
+
     public enum LogDownloadType
     {
         plain,
@@ -171,10 +171,10 @@ class PeopleSearchDataReader
             }
         }
 
-        final OrgChartDataBean orgChartData = new OrgChartDataBean();
+        final OrgChartDataBean.OrgChartDataBeanBuilder orgChartData = OrgChartDataBean.builder();
 
         // make self reference
-        orgChartData.setSelf( makeOrgChartReferenceForIdentity( userIdentity ) );
+        orgChartData.self( makeOrgChartReferenceForIdentity( userIdentity ) );
 
         {
             // make parent reference
@@ -182,7 +182,7 @@ class PeopleSearchDataReader
             if ( parentIdentities != null && !parentIdentities.isEmpty() )
             {
                 final UserIdentity parentIdentity = parentIdentities.iterator().next();
-                orgChartData.setParent( makeOrgChartReferenceForIdentity( parentIdentity ) );
+                orgChartData.parent( makeOrgChartReferenceForIdentity( parentIdentity ) );
             }
         }
 
@@ -209,7 +209,7 @@ class PeopleSearchDataReader
                     childCount++;
                 }
             }
-            orgChartData.setChildren( Collections.unmodifiableList( new ArrayList<>( sortedChildren.values() ) ) );
+            orgChartData.children( Collections.unmodifiableList( new ArrayList<>( sortedChildren.values() ) ) );
         }
 
         if ( !StringUtil.isEmpty( peopleSearchConfiguration.getOrgChartAssistantAttr( userIdentity ) ) )
@@ -221,19 +221,20 @@ class PeopleSearchDataReader
                 final OrgChartReferenceBean assistantReference = makeOrgChartReferenceForIdentity( assistantIdentity );
                 if ( assistantReference != null )
                 {
-                    orgChartData.setAssistant( assistantReference );
+                    orgChartData.assistant( assistantReference );
                 }
             }
         }
 
+        final OrgChartDataBean orgChartDataBean = orgChartData.build();
         final TimeDuration totalTime = TimeDuration.fromCurrent( startTime );
-        storeDataInCache( pwmRequest.getPwmApplication(), cacheKey, orgChartData );
+        storeDataInCache( pwmRequest.getPwmApplication(), cacheKey, orgChartDataBean );
         {
             final int finalChildCount = childCount;
             LOGGER.trace( pwmRequest, () -> "completed makeOrgChartData of " + userIdentity.toDisplayString()
                     + " in " + totalTime.asCompactString() + " with " + finalChildCount + " children" );
         }
-        return orgChartData;
+        return orgChartDataBean;
     }
 
     UserDetailBean makeUserDetailRequest(
@@ -262,24 +263,16 @@ class PeopleSearchDataReader
         final UserSearchResults detailResults = doDetailLookup( userIdentity );
         final Map<String, String> searchResults = detailResults.getResults().get( userIdentity );
 
-        final UserDetailBean userDetailBean = new UserDetailBean();
-        userDetailBean.setUserKey( userIdentity.toObfuscatedKey( pwmRequest.getPwmApplication() ) );
         final List<FormConfiguration> detailFormConfig = pwmRequest.getConfig().readSettingAsForm( PwmSetting.PEOPLE_SEARCH_DETAIL_FORM );
         final Map<String, AttributeDetailBean> attributeBeans = convertResultMapToBeans( pwmRequest, userIdentity, detailFormConfig, searchResults );
 
-        userDetailBean.setDetail( attributeBeans );
-        final String photoURL = figurePhotoURL( pwmRequest, userIdentity );
-        if ( photoURL != null )
-        {
-            userDetailBean.setPhotoURL( photoURL );
-        }
-        final List<String> displayName = figureDisplaynames( pwmRequest, userIdentity );
-        if ( displayName != null )
-        {
-            userDetailBean.setDisplayNames( displayName );
-        }
-
-        userDetailBean.setLinks( makeUserDetailLinks( userIdentity ) );
+        final UserDetailBean userDetailBean = UserDetailBean.builder()
+                .userKey( userIdentity.toObfuscatedKey( pwmRequest.getPwmApplication() ) )
+                .detail( attributeBeans )
+                .photoURL( figurePhotoURL( pwmRequest, userIdentity ) )
+                .displayNames( figureDisplaynames( pwmRequest, userIdentity ) )
+                .links( makeUserDetailLinks( userIdentity ) )
+                .build();
 
         LOGGER.trace( pwmRequest, () -> "finished building userDetail result in " + TimeDuration.fromCurrent( startTime ).asCompactString() );
         storeDataInCache( pwmRequest.getPwmApplication(), cacheKey, userDetailBean );
@@ -310,12 +303,9 @@ class PeopleSearchDataReader
             final String key = entry.getKey();
             final String value = entry.getValue();
             final String parsedValue = macroMachine.expandMacros( value );
-            final LinkReferenceBean linkReference = new LinkReferenceBean();
-            linkReference.setName( key );
-            linkReference.setLink( parsedValue );
-            returnList.add( linkReference );
+            returnList.add( new LinkReferenceBean( key, parsedValue ) );
         }
-        return returnList;
+        return Collections.unmodifiableList( returnList );
     }
 
     private List<String> readUserMultiAttributeValues(
@@ -384,14 +374,11 @@ class PeopleSearchDataReader
     )
             throws PwmUnrecoverableException
     {
-        final OrgChartReferenceBean orgChartReferenceBean = new OrgChartReferenceBean();
-        orgChartReferenceBean.setUserKey( userIdentity.toObfuscatedKey( pwmRequest.getPwmApplication() ) );
-        orgChartReferenceBean.setPhotoURL( figurePhotoURL( pwmRequest, userIdentity ) );
-
-        final List<String> displayLabels = figureDisplaynames( pwmRequest, userIdentity );
-        orgChartReferenceBean.setDisplayNames( displayLabels );
-
-        return orgChartReferenceBean;
+        return OrgChartReferenceBean.builder()
+                .userKey( userIdentity.toObfuscatedKey( pwmRequest.getPwmApplication() ) )
+                .photoURL( figurePhotoURL( pwmRequest, userIdentity ) )
+                .displayNames( figureDisplaynames( pwmRequest, userIdentity ) )
+                .build();
     }
 
     private List<UserIdentity> readUserDNAttributeValues(
@@ -555,7 +542,7 @@ class PeopleSearchDataReader
                 displayLabels.add( displayLabel );
             }
         }
-        return displayLabels;
+        return Collections.unmodifiableList( displayLabels );
     }
 
     private Map<String, AttributeDetailBean> convertResultMapToBeans(
@@ -572,15 +559,15 @@ class PeopleSearchDataReader
         {
             if ( formConfiguration.isRequired() || searchResults.containsKey( formConfiguration.getName() ) )
             {
-                final AttributeDetailBean bean = new AttributeDetailBean();
-                bean.setName( formConfiguration.getName() );
-                bean.setLabel( formConfiguration.getLabel( pwmRequest.getLocale() ) );
-                bean.setType( formConfiguration.getType() );
+                final AttributeDetailBean.AttributeDetailBeanBuilder bean = AttributeDetailBean.builder();
+                bean.name( formConfiguration.getName() );
+                bean.label( formConfiguration.getLabel( pwmRequest.getLocale() ) );
+                bean.type( formConfiguration.getType() );
                 if ( searchAttributes.contains( formConfiguration.getName() ) )
                 {
                     if ( formConfiguration.getType() != FormConfiguration.Type.userDN )
                     {
-                        bean.setSearchable( true );
+                        bean.searchable( true );
                     }
                 }
                 if ( formConfiguration.getType() == FormConfiguration.Type.userDN )
@@ -592,36 +579,34 @@ class PeopleSearchDataReader
                         for ( final UserIdentity loopIdentity : identityValues )
                         {
                             final String displayValue = figureDisplaynameValue( pwmRequest, loopIdentity );
-                            final UserReferenceBean userReference = new UserReferenceBean();
-                            userReference.setUserKey( loopIdentity.toObfuscatedKey( pwmRequest.getPwmApplication() ) );
-                            userReference.setDisplayName( displayValue );
-                            userReferences.put( displayValue, userReference );
+                            final String userKey = loopIdentity.toObfuscatedKey( pwmRequest.getPwmApplication() );
+                            userReferences.put( displayValue, new UserReferenceBean( userKey, displayValue ) );
                         }
-                        bean.setUserReferences( userReferences.values() );
+                        bean.userReferences( Collections.unmodifiableList( new ArrayList<>( userReferences.values() ) ) );
                     }
                 }
                 else
                 {
                     if ( formConfiguration.isMultivalue() )
                     {
-                        bean.setValues( readUserMultiAttributeValues( pwmRequest, userIdentity, formConfiguration.getName() ) );
+                        bean.values( readUserMultiAttributeValues( pwmRequest, userIdentity, formConfiguration.getName() ) );
                     }
                     else
                     {
                         if ( searchResults.containsKey( formConfiguration.getName() ) )
                         {
-                            bean.setValues( Collections.singletonList( searchResults.get( formConfiguration.getName() ) ) );
+                            bean.values( Collections.singletonList( searchResults.get( formConfiguration.getName() ) ) );
                         }
                         else
                         {
-                            bean.setValues( Collections.<String>emptyList() );
+                            bean.values( Collections.<String>emptyList() );
                         }
                     }
                 }
-                returnObj.put( formConfiguration.getName(), bean );
+                returnObj.put( formConfiguration.getName(), bean.build() );
             }
         }
-        return returnObj;
+        return Collections.unmodifiableMap( returnObj );
     }
 
 
@@ -914,9 +899,15 @@ class PeopleSearchDataReader
                         }
         );
 
+        final List<Map<String, Object>> immutableResults = new ArrayList<>( resultOutput.size() );
+        for ( final Map<String, Object> map : resultOutput )
+        {
+            immutableResults.add( Collections.unmodifiableMap( map ) );
+        }
+
         return SearchResultBean.builder()
                 .sizeExceeded( sizeExceeded )
-                .searchResults( resultOutput )
+                .searchResults( Collections.unmodifiableList( immutableResults ) )
                 .aboutResultMessage( aboutMessage )
                 .build();
     }
@@ -1067,7 +1058,7 @@ class PeopleSearchDataReader
             // export display card
             if ( orgChartExportState.getIncludeData().contains( OrgChartExportState.IncludeData.displayCard ) )
             {
-                outputRowValues.addAll( orgChartDataBean.getSelf().displayNames );
+                outputRowValues.addAll( orgChartDataBean.getSelf().getDisplayNames() );
             }
 
 
@@ -22,14 +22,16 @@
 
 package password.pwm.http.servlet.peoplesearch.bean;
 
-import lombok.Data;
+import lombok.Builder;
+import lombok.Value;
 import password.pwm.config.value.data.FormConfiguration;
 
 import java.io.Serializable;
 import java.util.Collection;
 import java.util.List;
 
-@Data
+@Value
+@Builder
 public class AttributeDetailBean implements Serializable
 {
     private String name;
@@ -22,11 +22,11 @@
 
 package password.pwm.http.servlet.peoplesearch.bean;
 
-import lombok.Data;
+import lombok.Value;
 
 import java.io.Serializable;
 
-@Data
+@Value
 public class LinkReferenceBean implements Serializable
 {
     private String name;
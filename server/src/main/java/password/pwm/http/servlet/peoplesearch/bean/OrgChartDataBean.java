@@ -22,17 +22,22 @@
 
 package password.pwm.http.servlet.peoplesearch.bean;
 
-import lombok.Data;
+import lombok.Builder;
+import lombok.Value;
+import password.pwm.svc.cache.ImmutableCacheValue;
 
 import java.io.Serializable;
 import java.util.Collections;
 import java.util.List;
 
-@Data
-public class OrgChartDataBean implements Serializable
+@Value
+@Builder
+public class OrgChartDataBean implements Serializable, ImmutableCacheValue
 {
     private OrgChartReferenceBean parent;
     private OrgChartReferenceBean self;
     private OrgChartReferenceBean assistant;
+
+    @Builder.Default
     private List<OrgChartReferenceBean> children = Collections.emptyList();
 }
@@ -22,16 +22,21 @@
 
 package password.pwm.http.servlet.peoplesearch.bean;
 
-import lombok.Data;
+import lombok.Builder;
+import lombok.Value;
 
 import java.io.Serializable;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
-@Data
+@Value
+@Builder
 public class OrgChartReferenceBean implements Serializable
 {
-    public String userKey;
-    public List<String> displayNames = new ArrayList<>();
-    public String photoURL;
+    private String userKey;
+
+    @Builder.Default
+    private List<String> displayNames = Collections.emptyList();
+
+    private String photoURL;
 }
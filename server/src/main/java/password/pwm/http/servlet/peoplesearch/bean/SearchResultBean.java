@@ -26,6 +26,7 @@ import lombok.Data;
 
 import lombok.Builder;
 import lombok.Value;
+import password.pwm.svc.cache.ImmutableCacheValue;
 
 import java.io.Serializable;
 import java.util.List;
@@ -34,7 +35,7 @@ import java.util.Map;
 @Value
 @Builder( toBuilder = true )
 @Data
-public class SearchResultBean implements Serializable
+public class SearchResultBean implements Serializable, ImmutableCacheValue
 {
     private List<Map<String, Object>> searchResults;
     private boolean sizeExceeded;
@@ -22,14 +22,17 @@
 
 package password.pwm.http.servlet.peoplesearch.bean;
 
-import lombok.Data;
+import lombok.Builder;
+import lombok.Value;
+import password.pwm.svc.cache.ImmutableCacheValue;
 
 import java.io.Serializable;
 import java.util.List;
 import java.util.Map;
 
-@Data
-public class UserDetailBean implements Serializable
+@Value
+@Builder
+public class UserDetailBean implements Serializable, ImmutableCacheValue
 {
     private List<String> displayNames;
     private String userKey;
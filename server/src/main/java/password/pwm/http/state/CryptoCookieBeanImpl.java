@@ -30,6 +30,7 @@ import password.pwm.http.PwmRequest;
 import password.pwm.http.PwmRequestAttribute;
 import password.pwm.http.bean.PwmSessionBean;
 import password.pwm.util.PasswordData;
+import password.pwm.util.java.JsonUtil;
 import password.pwm.util.java.StringUtil;
 import password.pwm.util.java.TimeDuration;
 import password.pwm.util.logging.PwmLogger;
@@ -39,6 +40,7 @@ import password.pwm.util.secure.SecureService;
 import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 class CryptoCookieBeanImpl implements SessionBeanProvider
 {
@@ -47,6 +49,11 @@ class CryptoCookieBeanImpl implements SessionBeanProvider
 
     private static final PwmHttpResponseWrapper.CookiePath COOKIE_PATH = PwmHttpResponseWrapper.CookiePath.PwmServlet;
 
+    // snapshot recorded for a bean whose cookie has already been removed from the response
+    private static final String REMOVED_SNAPSHOT = "";
+
+    private final Map<Class<? extends PwmSessionBean>, String> cookieNames = new ConcurrentHashMap<>();
+
     @Override
     public <E extends PwmSessionBean> E getSessionBean( final PwmRequest pwmRequest, final Class<E> theClass ) throws PwmUnrecoverableException
     {
@@ -68,6 +75,7 @@ class CryptoCookieBeanImpl implements SessionBeanProvider
             if ( validateCookie( pwmRequest, cookieName, cookieBean ) )
             {
                 sessionBeans.put( theClass, cookieBean );
+                getRequestSnapshotMap( pwmRequest ).put( theClass, snapshotOf( pwmRequest, JsonUtil.serialize( cookieBean ) ) );
                 return cookieBean;
             }
         }
@@ -138,21 +146,32 @@ class CryptoCookieBeanImpl implements SessionBeanProvider
                 final Map<Class<? extends PwmSessionBean>, PwmSessionBean> beansInRequest = getRequestBeanMap( pwmRequest );
                 if ( beansInRequest != null )
                 {
+                    final Map<Class<? extends PwmSessionBean>, String> snapshots = getRequestSnapshotMap( pwmRequest );
                     for ( final Map.Entry<Class<? extends PwmSessionBean>, PwmSessionBean> entry : beansInRequest.entrySet() )
                     {
                         final Class<? extends PwmSessionBean> theClass = entry.getKey();
-                        final String cookieName = nameForClass( pwmRequest, theClass );
                         final PwmSessionBean bean = entry.getValue();
-                        if ( bean == null )
+                        final String jsonValue = bean == null ? null : JsonUtil.serialize( bean );
+                        final String snapshot = jsonValue == null ? REMOVED_SNAPSHOT : snapshotOf( pwmRequest, jsonValue );
+
+                        // beans unchanged since they were read or last written do not need a new cookie
+                        if ( snapshot.equals( snapshots.get( theClass ) ) )
+                        {
+                            continue;
+                        }
+
+                        final String cookieName = nameForClass( pwmRequest, theClass );
+                        if ( jsonValue == null )
                         {
                             pwmRequest.getPwmResponse().removeCookie( cookieName, COOKIE_PATH );
                         }
                         else
                         {
                             final PwmSecurityKey key = keyForSession( pwmRequest );
-                            final String encrytedValue = pwmRequest.getPwmApplication().getSecureService().encryptObjectToString( entry.getValue(), key );
+                            final String encrytedValue = pwmRequest.getPwmApplication().getSecureService().encryptToString( jsonValue, key );
                             pwmRequest.getPwmResponse().writeCookie( cookieName, encrytedValue, -1, COOKIE_PATH );
                         }
+                        snapshots.put( theClass, snapshot );
                     }
                 }
             }
@@ -182,11 +201,38 @@ class CryptoCookieBeanImpl implements SessionBeanProvider
         return ( Map<Class<? extends PwmSessionBean>, PwmSessionBean> ) sessionBeans;
     }
 
-    private static String nameForClass( final PwmRequest pwmRequest, final Class<? extends PwmSessionBean> theClass )
+    private static Map<Class<? extends PwmSessionBean>, String> getRequestSnapshotMap( final PwmRequest pwmRequest )
+    {
+        Serializable snapshots = pwmRequest.getAttribute( PwmRequestAttribute.CookieBeanSnapshots );
+        if ( snapshots == null )
+        {
+            snapshots = new HashMap<>();
+            pwmRequest.setAttribute( PwmRequestAttribute.CookieBeanSnapshots, snapshots );
+        }
+        return ( Map<Class<? extends PwmSessionBean>, String> ) snapshots;
+    }
+
+    /**
+     * Snapshot of a bean's serialized content along with the session guid its cookie key is derived from, so a bean
+     * is re-encrypted when either its content or the session key changes.
+     */
+    private static String snapshotOf( final PwmRequest pwmRequest, final String jsonValue )
+    {
+        final String sessionGuid = pwmRequest.getPwmSession().getLoginInfoBean().getGuid();
+        return sessionGuid + '\n' + jsonValue;
+    }
+
+    private String nameForClass( final PwmRequest pwmRequest, final Class<? extends PwmSessionBean> theClass )
             throws PwmUnrecoverableException
     {
-        final SecureService secureService = pwmRequest.getPwmApplication().getSecureService();
-        return "b-" + StringUtil.truncate( secureService.hash( theClass.getName() ), 8 );
+        String cookieName = cookieNames.get( theClass );
+        if ( cookieName == null )
+        {
+            final SecureService secureService = pwmRequest.getPwmApplication().getSecureService();
+            cookieName = "b-" + StringUtil.truncate( secureService.hash( theClass.getName() ), 8 );
+            cookieNames.put( theClass, cookieName );
+        }
+        return cookieName;
     }
 
     @Override
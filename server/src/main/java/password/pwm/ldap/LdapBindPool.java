@@ -0,0 +1,313 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package password.pwm.ldap;
+
+import com.novell.ldap.LDAPConnection;
+import com.novell.ldap.LDAPException;
+import com.novell.ldapchai.ChaiConstant;
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.provider.ChaiConfiguration;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.ChaiProviderFactory;
+import com.novell.ldapchai.provider.ChaiProviderImplementor;
+import com.novell.ldapchai.provider.ChaiSetting;
+import password.pwm.bean.SessionLabel;
+import password.pwm.config.Configuration;
+import password.pwm.config.PwmSetting;
+import password.pwm.config.profile.LdapProfile;
+import password.pwm.error.PwmUnrecoverableException;
+import password.pwm.util.PasswordData;
+import password.pwm.util.logging.PwmLogger;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool of pre-established ldap connections used only to verify user credentials.  A credential check borrows an idle
+ * connection, issues a simple bind as the user, and returns the connection to the pool, so a login costs a single bind
+ * round trip instead of a new TCP/TLS connection.
+ *
+ * <p>Connections are never used for any operation other than a bind, so a returned connection is left in whatever
+ * state the last bind produced and the next bind simply replaces it.  There is no anonymous re-bind, which directories
+ * that refuse anonymous binds would reject.  Connections that report a connection level error or exceed the configured
+ * ldap idle timeout are discarded.</p>
+ */
+public class LdapBindPool
+{
+    private static final PwmLogger LOGGER = PwmLogger.forClass( LdapBindPool.class );
+
+    private final Map<LdapProfile, Deque<PooledConnection>> idleConnections = new ConcurrentHashMap<>();
+    private final ChaiProviderFactory chaiProviderFactory;
+    private final Configuration config;
+    private final int maxIdlePerProfile;
+    private final Duration maxIdleAge;
+
+    private final LongAdder verifications = new LongAdder();
+    private final LongAdder bindFailures = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+    private final LongAdder unavailable = new LongAdder();
+
+    private volatile boolean closed;
+
+    LdapBindPool( final ChaiProviderFactory chaiProviderFactory, final Configuration config, final int maxIdlePerProfile )
+    {
+        this.chaiProviderFactory = chaiProviderFactory;
+        this.config = config;
+        this.maxIdlePerProfile = maxIdlePerProfile;
+
+        final long idleTimeoutSeconds = config.readSettingAsLong( PwmSetting.LDAP_IDLE_TIMEOUT );
+        this.maxIdleAge = idleTimeoutSeconds > 0 ? Duration.ofSeconds( idleTimeoutSeconds ) : null;
+    }
+
+    /**
+     * Verify a user's password with a bind on a pooled connection.  A rejected bind is reported as a
+     * {@link ChaiOperationException} with the same error code mapping used by chai providers.
+     *
+     * @return true if the credentials were verified, false if no pooled connection could be used and the caller
+     *     should verify the credentials another way.
+     */
+    public boolean verifyCredentials(
+            final SessionLabel sessionLabel,
+            final LdapProfile ldapProfile,
+            final String userDN,
+            final PasswordData password
+    )
+            throws ChaiOperationException, PwmUnrecoverableException
+    {
+        if ( closed )
+        {
+            return false;
+        }
+
+        final PooledConnection pooledConnection = borrow( sessionLabel, ldapProfile );
+        if ( pooledConnection == null )
+        {
+            unavailable.increment();
+            return false;
+        }
+
+        verifications.increment();
+        final LDAPConnection ldapConnection = pooledConnection.getLdapConnection();
+        try
+        {
+            ldapConnection.bind( LDAPConnection.LDAP_V3, userDN, password.getStringValue().getBytes( StandardCharsets.UTF_8 ) );
+        }
+        catch ( LDAPException e )
+        {
+            if ( isConnectionError( e ) || !ldapConnection.isConnected() )
+            {
+                LOGGER.debug( sessionLabel, () -> "discarding pooled bind connection after connection error: " + e.getMessage() );
+                discard( pooledConnection );
+                unavailable.increment();
+                return false;
+            }
+
+            bindFailures.increment();
+            release( ldapProfile, pooledConnection );
+            final String errorMessage = e.getLDAPErrorMessage() == null ? e.getMessage() : e.getLDAPErrorMessage() + " " + e.getMessage();
+            throw ChaiOperationException.forErrorMessage( errorMessage );
+        }
+
+        release( ldapProfile, pooledConnection );
+        return true;
+    }
+
+    public Map<String, String> debugInfo( )
+    {
+        int idleCount = 0;
+        for ( final Deque<PooledConnection> deque : idleConnections.values() )
+        {
+            idleCount += deque.size();
+        }
+
+        final Map<String, String> debugInfo = new LinkedHashMap<>();
+        debugInfo.put( "BindPool_IdleConnections", String.valueOf( idleCount ) );
+        debugInfo.put( "BindPool_Verifications", String.valueOf( verifications.sum() ) );
+        debugInfo.put( "BindPool_BindFailures", String.valueOf( bindFailures.sum() ) );
+        debugInfo.put( "BindPool_Created", String.valueOf( created.sum() ) );
+        debugInfo.put( "BindPool_Reused", String.valueOf( reused.sum() ) );
+        debugInfo.put( "BindPool_Discarded", String.valueOf( discarded.sum() ) );
+        debugInfo.put( "BindPool_Unavailable", String.valueOf( unavailable.sum() ) );
+        return debugInfo;
+    }
+
+    void close( )
+    {
+        closed = true;
+        for ( final Deque<PooledConnection> deque : idleConnections.values() )
+        {
+            PooledConnection pooledConnection = deque.pollFirst();
+            while ( pooledConnection != null )
+            {
+                discard( pooledConnection );
+                pooledConnection = deque.pollFirst();
+            }
+        }
+        idleConnections.clear();
+    }
+
+    private PooledConnection borrow( final SessionLabel sessionLabel, final LdapProfile ldapProfile )
+            throws PwmUnrecoverableException
+    {
+        final Deque<PooledConnection> deque = idleConnections.computeIfAbsent( ldapProfile, k -> new LinkedBlockingDeque<>() );
+
+        PooledConnection pooledConnection = deque.pollFirst();
+        while ( pooledConnection != null )
+        {
+            if ( pooledConnection.isUsable() )
+            {
+                reused.increment();
+                return pooledConnection;
+            }
+            discard( pooledConnection );
+            pooledConnection = deque.pollFirst();
+        }
+
+        return create( sessionLabel, ldapProfile );
+    }
+
+    private PooledConnection create( final SessionLabel sessionLabel, final LdapProfile ldapProfile )
+            throws PwmUnrecoverableException
+    {
+        final ChaiConfiguration chaiConfiguration = LdapOperationsHelper.createJldapChaiConfiguration( config, ldapProfile );
+
+        ChaiProvider chaiProvider = null;
+        try
+        {
+            chaiProvider = chaiProviderFactory.newProvider( chaiConfiguration );
+
+            // issue a read operation to establish the connection.
+            chaiProvider.readStringAttribute( chaiConfiguration.getSetting( ChaiSetting.BIND_DN ), ChaiConstant.ATTR_LDAP_OBJECTCLASS );
+
+            final LDAPConnection ldapConnection = ( LDAPConnection ) ( ( ChaiProviderImplementor ) chaiProvider ).getConnectionObject();
+            if ( ldapConnection == null || !ldapConnection.isConnected() )
+            {
+                chaiProvider.close();
+                return null;
+            }
+
+            created.increment();
+            return new PooledConnection( chaiProvider, ldapConnection );
+        }
+        catch ( Exception e )
+        {
+            LOGGER.debug( sessionLabel, () -> "unable to create pooled bind connection for profile "
+                    + ldapProfile.getIdentifier() + ": " + e.getMessage() );
+            if ( chaiProvider != null )
+            {
+                chaiProvider.close();
+            }
+            return null;
+        }
+    }
+
+    private void release( final LdapProfile ldapProfile, final PooledConnection pooledConnection )
+    {
+        final LDAPConnection ldapConnection = pooledConnection.getLdapConnection();
+        final Deque<PooledConnection> deque = idleConnections.get( ldapProfile );
+        if ( closed || deque == null || deque.size() >= maxIdlePerProfile || !ldapConnection.isConnected() )
+        {
+            discard( pooledConnection );
+            return;
+        }
+
+        pooledConnection.markIdle();
+        deque.offerFirst( pooledConnection );
+    }
+
+    private void discard( final PooledConnection pooledConnection )
+    {
+        discarded.increment();
+        try
+        {
+            pooledConnection.getChaiProvider().close();
+        }
+        catch ( Exception e )
+        {
+            LOGGER.trace( () -> "error closing pooled bind connection: " + e.getMessage() );
+        }
+    }
+
+    private static boolean isConnectionError( final LDAPException e )
+    {
+        switch ( e.getResultCode() )
+        {
+            case LDAPException.BUSY:
+            case LDAPException.UNAVAILABLE:
+            case LDAPException.SERVER_DOWN:
+            case LDAPException.LDAP_TIMEOUT:
+            case LDAPException.CONNECT_ERROR:
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    private class PooledConnection
+    {
+        private final ChaiProvider chaiProvider;
+        private final LDAPConnection ldapConnection;
+        private volatile Instant idleSince = Instant.now();
+
+        PooledConnection( final ChaiProvider chaiProvider, final LDAPConnection ldapConnection )
+        {
+            this.chaiProvider = chaiProvider;
+            this.ldapConnection = ldapConnection;
+        }
+
+        ChaiProvider getChaiProvider( )
+        {
+            return chaiProvider;
+        }
+
+        LDAPConnection getLdapConnection( )
+        {
+            return ldapConnection;
+        }
+
+        void markIdle( )
+        {
+            idleSince = Instant.now();
+        }
+
+        boolean isUsable( )
+        {
+            if ( !ldapConnection.isConnected() )
+            {
+                return false;
+            }
+            return maxIdleAge == null || Duration.between( idleSince, Instant.now() ).compareTo( maxIdleAge ) < 0;
+        }
+    }
+}
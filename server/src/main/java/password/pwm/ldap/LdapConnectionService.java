@@ -35,8 +35,9 @@ import password.pwm.error.PwmException;
 import password.pwm.error.PwmUnrecoverableException;
 import password.pwm.health.HealthRecord;
 import password.pwm.svc.PwmService;
-import password.pwm.util.java.AtomicLoopIntIncrementer;
+import password.pwm.util.PwmScheduler;
 import password.pwm.util.java.JsonUtil;
+import password.pwm.util.java.TimeDuration;
 import password.pwm.util.logging.PwmLogger;
 
 import java.time.Instant;
@@ -46,20 +47,22 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 
 public class LdapConnectionService implements PwmService
 {
     private static final PwmLogger LOGGER = PwmLogger.forClass( LdapConnectionService.class );
 
-    private final Map<LdapProfile, Map<Integer, ChaiProvider>> proxyChaiProviders = new ConcurrentHashMap<>();
+    private final Map<LdapProfile, ProxyConnectionPool> proxyConnectionPools = new ConcurrentHashMap<>();
     private final Map<LdapProfile, ErrorInformation> lastLdapErrors = new ConcurrentHashMap<>();
 
     private boolean useThreadLocal;
     private PwmApplication pwmApplication;
     private STATUS status = STATUS.NEW;
-    private AtomicLoopIntIncrementer slotIncrementer;
+    private ExecutorService executorService;
     private final ThreadLocal<Map<LdapProfile, ChaiProvider>> threadLocalProvider = new ThreadLocal<>();
     private ChaiProviderFactory chaiProviderFactory;
+    private volatile LdapBindPool bindPool;
 
     public STATUS status( )
     {
@@ -79,12 +82,30 @@ public class LdapConnectionService implements PwmService
         this.lastLdapErrors.putAll( readLastLdapFailure( pwmApplication ) );
 
         final int connectionsPerProfile = maxSlotsPerProfile( pwmApplication );
-        LOGGER.trace( () -> "allocating " + connectionsPerProfile + " ldap proxy connections per profile" );
-        slotIncrementer = new AtomicLoopIntIncrementer( connectionsPerProfile );
+        final int minConnectionsPerProfile = Integer.parseInt( pwmApplication.getConfig().readAppProperty( AppProperty.LDAP_PROXY_MIN_CONNECTIONS_PER_PROFILE ) );
+        final TimeDuration idleEvictionTime = TimeDuration.of(
+                Integer.parseInt( pwmApplication.getConfig().readAppProperty( AppProperty.LDAP_PROXY_IDLE_EVICTION_SECONDS ) ),
+                TimeDuration.Unit.SECONDS );
+        LOGGER.trace( () -> "allocating up to " + connectionsPerProfile + " ldap proxy connections per profile" );
 
         for ( final LdapProfile ldapProfile : pwmApplication.getConfig().getLdapProfiles().values() )
         {
-            proxyChaiProviders.put( ldapProfile, new ConcurrentHashMap<>() );
+            proxyConnectionPools.put( ldapProfile, new ProxyConnectionPool(
+                    pwmApplication,
+                    ldapProfile,
+                    minConnectionsPerProfile,
+                    connectionsPerProfile,
+                    idleEvictionTime
+            ) );
+        }
+
+        executorService = PwmScheduler.makeBackgroundExecutor( pwmApplication, this.getClass() );
+        pwmApplication.getPwmScheduler().scheduleFixedRateJob( this::evictIdleProxyConnections, executorService, idleEvictionTime, idleEvictionTime );
+
+        if ( Boolean.parseBoolean( pwmApplication.getConfig().readAppProperty( AppProperty.LDAP_BIND_POOL_ENABLE ) ) )
+        {
+            final int maxIdlePerProfile = Integer.parseInt( pwmApplication.getConfig().readAppProperty( AppProperty.LDAP_BIND_POOL_MAX_IDLE_PER_PROFILE ) );
+            bindPool = new LdapBindPool( chaiProviderFactory, pwmApplication.getConfig(), maxIdlePerProfile );
         }
 
         status = STATUS.OPEN;
@@ -94,6 +115,20 @@ public class LdapConnectionService implements PwmService
     {
         status = STATUS.CLOSED;
         LOGGER.trace( () -> "closing ldap proxy connections" );
+        if ( executorService != null )
+        {
+            executorService.shutdown();
+            executorService = null;
+        }
+        for ( final ProxyConnectionPool proxyConnectionPool : proxyConnectionPools.values() )
+        {
+            proxyConnectionPool.close();
+        }
+        if ( bindPool != null )
+        {
+            bindPool.close();
+            bindPool = null;
+        }
         if ( chaiProviderFactory != null )
         {
             try
@@ -105,7 +140,7 @@ public class LdapConnectionService implements PwmService
                 LOGGER.error( "error closing ldap proxy connection: " + e.getMessage(), e );
             }
         }
-        proxyChaiProviders.clear();
+        proxyConnectionPools.clear();
     }
 
     public List<HealthRecord> healthCheck( )
@@ -118,6 +153,15 @@ public class LdapConnectionService implements PwmService
         final Map<String, String> debugProperties = new LinkedHashMap<>();
         debugProperties.putAll( chaiProviderFactory.getGlobalStatistics() );
         debugProperties.putAll( connectionDebugInfo() );
+        for ( final ProxyConnectionPool proxyConnectionPool : proxyConnectionPools.values() )
+        {
+            debugProperties.putAll( proxyConnectionPool.debugInfo() );
+        }
+        final LdapBindPool currentBindPool = bindPool;
+        if ( currentBindPool != null )
+        {
+            debugProperties.putAll( currentBindPool.debugInfo() );
+        }
         return new ServiceInfoBean(
                 Collections.singletonList( DataStorageMethod.LDAP ),
                 Collections.unmodifiableMap( debugProperties )
@@ -169,27 +213,16 @@ public class LdapConnectionService implements PwmService
             throw new NullPointerException( "ldapProfile must not be null" );
         }
 
-        final int slot = slotIncrementer.next();
-
-        final ChaiProvider proxyChaiProvider = proxyChaiProviders.get( ldapProfile ).get( slot );
-
-        if ( proxyChaiProvider != null )
+        final ProxyConnectionPool proxyConnectionPool = proxyConnectionPools.get( ldapProfile );
+        if ( proxyConnectionPool == null )
         {
-            return proxyChaiProvider;
+            final String errorMsg = "no proxy connection pool available for ldap profile " + ldapProfile.getIdentifier();
+            throw new PwmUnrecoverableException( new ErrorInformation( PwmError.ERROR_INTERNAL, errorMsg ) );
         }
 
         try
         {
-            final ChaiProvider newProvider = LdapOperationsHelper.openProxyChaiProvider(
-                    pwmApplication,
-                    null,
-                    ldapProfile,
-                    pwmApplication.getConfig(),
-                    pwmApplication.getStatisticsManager()
-            );
-            proxyChaiProviders.get( ldapProfile ).put( slot, newProvider );
-
-            return newProvider;
+            return proxyConnectionPool.select();
         }
         catch ( PwmUnrecoverableException e )
         {
@@ -205,6 +238,14 @@ public class LdapConnectionService implements PwmService
         }
     }
 
+    private void evictIdleProxyConnections( )
+    {
+        for ( final ProxyConnectionPool proxyConnectionPool : proxyConnectionPools.values() )
+        {
+            proxyConnectionPool.evictIdleConnections();
+        }
+    }
+
     public void setLastLdapFailure( final LdapProfile ldapProfile, final ErrorInformation errorInformation )
     {
         lastLdapErrors.put( ldapProfile, errorInformation );
@@ -302,6 +343,14 @@ public class LdapConnectionService implements PwmService
         return chaiProviderFactory;
     }
 
+    /**
+     * @return the pool of connections used for credential verification, or null if the bind pool is disabled.
+     */
+    public LdapBindPool getBindPool( )
+    {
+        return bindPool;
+    }
+
     private enum DebugKey
     {
         ALLOCATED_CONNECTIONS,
@@ -33,6 +33,7 @@ import com.novell.ldapchai.provider.ChaiConfiguration;
 import com.novell.ldapchai.provider.ChaiProvider;
 import com.novell.ldapchai.provider.ChaiProviderFactory;
 import com.novell.ldapchai.provider.ChaiSetting;
+import com.novell.ldapchai.provider.JLDAPProviderImpl;
 import com.novell.ldapchai.provider.SearchScope;
 import com.novell.ldapchai.util.SearchHelper;
 import password.pwm.AppProperty;
@@ -664,6 +665,22 @@ public class LdapOperationsHelper
         return createChaiConfiguration( config, ldapProfile, ldapURLs, userDN, userPassword );
     }
 
+    /**
+     * Proxy user configuration for connections whose underlying JLDAP connection object is used directly, so the
+     * implementation is fixed and the watchdog, which may replace the connection object, is disabled.
+     */
+    public static ChaiConfiguration createJldapChaiConfiguration(
+            final Configuration config,
+            final LdapProfile ldapProfile
+    )
+            throws PwmUnrecoverableException
+    {
+        return ChaiConfiguration.builder( createChaiConfiguration( config, ldapProfile ) )
+                .setSetting( ChaiSetting.PROVIDER_IMPLEMENTATION, JLDAPProviderImpl.class.getName() )
+                .setSetting( ChaiSetting.WATCHDOG_ENABLE, "false" )
+                .build();
+    }
+
     public static ChaiConfiguration createChaiConfiguration(
             final Configuration config,
             final LdapProfile ldapProfile,
@@ -25,6 +25,8 @@ package password.pwm.ldap;
 import com.novell.ldapchai.ChaiUser;
 import com.novell.ldapchai.exception.ChaiException;
 import com.novell.ldapchai.provider.SearchScope;
+import lombok.Value;
+import password.pwm.AppProperty;
 import password.pwm.PwmApplication;
 import password.pwm.PwmConstants;
 import password.pwm.bean.SessionLabel;
@@ -36,16 +38,26 @@ import password.pwm.error.ErrorInformation;
 import password.pwm.error.PwmError;
 import password.pwm.error.PwmOperationalException;
 import password.pwm.error.PwmUnrecoverableException;
+import password.pwm.ldap.filter.LdapFilter;
 import password.pwm.ldap.search.SearchConfiguration;
 import password.pwm.ldap.search.UserSearchEngine;
+import password.pwm.svc.cache.CacheKey;
+import password.pwm.svc.cache.CachePolicy;
+import password.pwm.svc.cache.ImmutableCacheValue;
 import password.pwm.util.java.TimeDuration;
 import password.pwm.util.logging.PwmLogger;
 
+import java.io.Serializable;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
 
 public class LdapPermissionTester
 {
@@ -64,9 +76,12 @@ public class LdapPermissionTester
             return false;
         }
 
+        final LocalFilterEvaluator localFilterEvaluator = new LocalFilterEvaluator( pwmApplication, sessionLabel, userIdentity );
+        localFilterEvaluator.loadAttributesForPermissions( userPermissions );
+
         for ( final UserPermission userPermission : userPermissions )
         {
-            if ( testUserPermission( pwmApplication, sessionLabel, userIdentity, userPermission ) )
+            if ( testUserPermission( pwmApplication, sessionLabel, userIdentity, userPermission, localFilterEvaluator ) )
             {
                 return true;
             }
@@ -74,11 +89,23 @@ public class LdapPermissionTester
         return false;
     }
 
+    private static boolean profileAppliesToUser( final UserPermission userPermission, final UserIdentity userIdentity )
+    {
+        if ( userPermission.getLdapProfileID() == null
+                || userPermission.getLdapProfileID().isEmpty()
+                || userPermission.getLdapProfileID().equals( PwmConstants.PROFILE_ID_ALL ) )
+        {
+            return true;
+        }
+        return userIdentity.getLdapProfileID().equals( userPermission.getLdapProfileID() );
+    }
+
     private static boolean testUserPermission(
             final PwmApplication pwmApplication,
             final SessionLabel sessionLabel,
             final UserIdentity userIdentity,
-            final UserPermission userPermission
+            final UserPermission userPermission,
+            final LocalFilterEvaluator localFilterEvaluator
     )
             throws PwmUnrecoverableException
     {
@@ -87,18 +114,7 @@ public class LdapPermissionTester
             return false;
         }
 
-        boolean profileAppliesToUser = false;
-        if ( userPermission.getLdapProfileID() == null
-                || userPermission.getLdapProfileID().isEmpty()
-                || userPermission.getLdapProfileID().equals( PwmConstants.PROFILE_ID_ALL ) )
-        {
-            profileAppliesToUser = true;
-        }
-        else if ( userIdentity.getLdapProfileID().equals( userPermission.getLdapProfileID() ) )
-        {
-            profileAppliesToUser = true;
-        }
-        if ( !profileAppliesToUser )
+        if ( !profileAppliesToUser( userPermission, userIdentity ) )
         {
             return false;
         }
@@ -115,12 +131,12 @@ public class LdapPermissionTester
                     }
                 }
 
-                return testQueryMatch( pwmApplication, sessionLabel, userIdentity, userPermission.getLdapQuery() );
+                return testQueryMatch( pwmApplication, sessionLabel, userIdentity, userPermission.getLdapQuery(), localFilterEvaluator );
             }
 
             case ldapGroup:
             {
-                return testGroupMatch( pwmApplication, sessionLabel, userIdentity, userPermission.getLdapBase() );
+                return testGroupMatch( pwmApplication, sessionLabel, userIdentity, userPermission.getLdapBase(), localFilterEvaluator );
             }
 
             default:
@@ -135,6 +151,18 @@ public class LdapPermissionTester
             final String groupDN
     )
             throws PwmUnrecoverableException
+    {
+        return testGroupMatch( pwmApplication, pwmSession, userIdentity, groupDN, new LocalFilterEvaluator( pwmApplication, pwmSession, userIdentity ) );
+    }
+
+    private static boolean testGroupMatch(
+            final PwmApplication pwmApplication,
+            final SessionLabel pwmSession,
+            final UserIdentity userIdentity,
+            final String groupDN,
+            final LocalFilterEvaluator localFilterEvaluator
+    )
+            throws PwmUnrecoverableException
     {
         final Instant startTime = Instant.now();
 
@@ -152,25 +180,33 @@ public class LdapPermissionTester
         }
         else
         {
-            final LdapProfile ldapProfile = userIdentity.getLdapProfile( pwmApplication.getConfig() );
-            final String filterString = "(" + ldapProfile.readSettingAsString( PwmSetting.LDAP_USER_GROUP_ATTRIBUTE ) + "=" + groupDN + ")";
-            try
+            final String filterString = groupFilter( pwmApplication, userIdentity, groupDN );
+            final LdapFilter.Result localResult = localFilterEvaluator.evaluate( filterString );
+            if ( localResult != LdapFilter.Result.UNDETERMINED )
             {
-                LOGGER.trace( pwmSession, () -> "checking ldap to see if " + userIdentity + " matches group '" + groupDN + "' using filter '" + filterString + "'" );
-                final ChaiUser theUser = pwmApplication.getProxiedChaiUser( userIdentity );
-                final Map<String, Map<String, String>> results = theUser.getChaiProvider().search(
-                        theUser.getEntryDN(),
-                        filterString,
-                        Collections.<String>emptySet(), SearchScope.BASE
-                );
-                if ( results.size() == 1 && results.keySet().contains( theUser.getEntryDN() ) )
-                {
-                    result = true;
-                }
+                LOGGER.trace( pwmSession, () -> "evaluated group filter '" + filterString + "' using locally read attribute values" );
+                result = localResult == LdapFilter.Result.MATCH;
             }
-            catch ( ChaiException e )
+            else
             {
-                LOGGER.warn( pwmSession, "LDAP error during group for " + userIdentity + " using " + filterString + ", error:" + e.getMessage() );
+                try
+                {
+                    LOGGER.trace( pwmSession, () -> "checking ldap to see if " + userIdentity + " matches group '" + groupDN + "' using filter '" + filterString + "'" );
+                    final ChaiUser theUser = pwmApplication.getProxiedChaiUser( userIdentity );
+                    final Map<String, Map<String, String>> results = theUser.getChaiProvider().search(
+                            theUser.getEntryDN(),
+                            filterString,
+                            Collections.<String>emptySet(), SearchScope.BASE
+                    );
+                    if ( results.size() == 1 && results.keySet().contains( theUser.getEntryDN() ) )
+                    {
+                        result = true;
+                    }
+                }
+                catch ( ChaiException e )
+                {
+                    LOGGER.warn( pwmSession, "LDAP error during group for " + userIdentity + " using " + filterString + ", error:" + e.getMessage() );
+                }
             }
         }
 
@@ -192,6 +228,18 @@ public class LdapPermissionTester
             final String filterString
     )
             throws PwmUnrecoverableException
+    {
+        return testQueryMatch( pwmApplication, pwmSession, userIdentity, filterString, new LocalFilterEvaluator( pwmApplication, pwmSession, userIdentity ) );
+    }
+
+    private static boolean testQueryMatch(
+            final PwmApplication pwmApplication,
+            final SessionLabel pwmSession,
+            final UserIdentity userIdentity,
+            final String filterString,
+            final LocalFilterEvaluator localFilterEvaluator
+    )
+            throws PwmUnrecoverableException
     {
         final Instant startTime = Instant.now();
 
@@ -214,19 +262,33 @@ public class LdapPermissionTester
         }
         else
         {
-            try
+            final LdapFilter.Result localResult = localFilterEvaluator.evaluate( filterString );
+            if ( localResult != LdapFilter.Result.UNDETERMINED )
             {
-                LOGGER.trace( pwmSession, () -> "checking ldap to see if " + userIdentity + " matches '" + filterString + "'" );
-                final ChaiUser theUser = pwmApplication.getProxiedChaiUser( userIdentity );
-                final Map<String, Map<String, String>> results = theUser.getChaiProvider().search( theUser.getEntryDN(), filterString, Collections.emptySet(), SearchScope.BASE );
-                if ( results.size() == 1 && results.keySet().contains( theUser.getEntryDN() ) )
-                {
-                    result = true;
-                }
+                LOGGER.trace( pwmSession, () -> "evaluated filter '" + filterString + "' using locally read attribute values" );
+                result = localResult == LdapFilter.Result.MATCH;
             }
-            catch ( ChaiException e )
+            else
             {
-                LOGGER.warn( pwmSession, "LDAP error during check for " + userIdentity + " using " + filterString + ", error:" + e.getMessage() );
+                try
+                {
+                    LOGGER.trace( pwmSession, () -> "checking ldap to see if " + userIdentity + " matches '" + filterString + "'" );
+                    final ChaiUser theUser = pwmApplication.getProxiedChaiUser( userIdentity );
+                    final Map<String, Map<String, String>> results = theUser.getChaiProvider().search(
+                            theUser.getEntryDN(),
+                            filterString,
+                            Collections.emptySet(),
+                            SearchScope.BASE
+                    );
+                    if ( results.size() == 1 && results.keySet().contains( theUser.getEntryDN() ) )
+                    {
+                        result = true;
+                    }
+                }
+                catch ( ChaiException e )
+                {
+                    LOGGER.warn( pwmSession, "LDAP error during check for " + userIdentity + " using " + filterString + ", error:" + e.getMessage() );
+                }
             }
         }
 
@@ -332,4 +394,193 @@ public class LdapPermissionTester
         final String userDN = userIdentity.getUserDN();
         return userDN.endsWith( canonicalBaseDN );
     }
+
+    private static String groupFilter( final PwmApplication pwmApplication, final UserIdentity userIdentity, final String groupDN )
+    {
+        final LdapProfile ldapProfile = userIdentity.getLdapProfile( pwmApplication.getConfig() );
+        return "(" + ldapProfile.readSettingAsString( PwmSetting.LDAP_USER_GROUP_ATTRIBUTE ) + "=" + groupDN + ")";
+    }
+
+    /**
+     * Evaluates permission filters against the user's attribute values, reading each needed attribute once and
+     * sharing the values between permission checks for a short time.  Filters that can not be decided locally
+     * are left to the directory.
+     */
+    private static class LocalFilterEvaluator
+    {
+        private static final String CACHE_VALUE_ID = "permissionAttributeValues";
+
+        private final PwmApplication pwmApplication;
+        private final SessionLabel sessionLabel;
+        private final UserIdentity userIdentity;
+        private final boolean enabled;
+
+        private Map<String, List<String>> attributeValues = Collections.emptyMap();
+
+        LocalFilterEvaluator( final PwmApplication pwmApplication, final SessionLabel sessionLabel, final UserIdentity userIdentity )
+        {
+            this.pwmApplication = pwmApplication;
+            this.sessionLabel = sessionLabel;
+            this.userIdentity = userIdentity;
+            this.enabled = userIdentity != null
+                    && Boolean.parseBoolean( pwmApplication.getConfig().readAppProperty( AppProperty.LDAP_PERMISSION_LOCAL_EVAL_ENABLE ) );
+        }
+
+        /**
+         * Read the attributes needed by all of the permissions at once, rather than one read per permission.
+         */
+        void loadAttributesForPermissions( final List<UserPermission> userPermissions )
+                throws PwmUnrecoverableException
+        {
+            if ( !enabled )
+            {
+                return;
+            }
+
+            final Set<String> attributeNames = new TreeSet<>();
+            for ( final UserPermission userPermission : userPermissions )
+            {
+                if ( userPermission != null && profileAppliesToUser( userPermission, userIdentity ) )
+                {
+                    final String filterString = userPermission.getType() == UserPermission.Type.ldapGroup
+                            ? groupFilter( pwmApplication, userIdentity, userPermission.getLdapBase() )
+                            : userPermission.getLdapQuery();
+                    final LdapFilter ldapFilter = parseFilter( filterString );
+                    if ( ldapFilter != null )
+                    {
+                        attributeNames.addAll( ldapFilter.attributeNames() );
+                    }
+                }
+            }
+            loadAttributes( attributeNames );
+        }
+
+        LdapFilter.Result evaluate( final String filterString )
+                throws PwmUnrecoverableException
+        {
+            if ( !enabled )
+            {
+                return LdapFilter.Result.UNDETERMINED;
+            }
+
+            final LdapFilter ldapFilter = parseFilter( filterString );
+            if ( ldapFilter == null )
+            {
+                return LdapFilter.Result.UNDETERMINED;
+            }
+
+            loadAttributes( ldapFilter.attributeNames() );
+            return ldapFilter.evaluate( attributeValues );
+        }
+
+        private LdapFilter parseFilter( final String filterString )
+        {
+            if ( filterString == null || filterString.trim().isEmpty() )
+            {
+                return null;
+            }
+
+            try
+            {
+                return LdapFilter.parse( filterString );
+            }
+            catch ( IllegalArgumentException e )
+            {
+                LOGGER.trace( sessionLabel, () -> "unable to parse filter '" + filterString + "' for local evaluation: " + e.getMessage() );
+                return null;
+            }
+        }
+
+        private void loadAttributes( final Set<String> attributeNames )
+                throws PwmUnrecoverableException
+        {
+            if ( attributeNames.isEmpty() || attributeValues.keySet().containsAll( attributeNames ) )
+            {
+                return;
+            }
+
+            final CacheKey cacheKey = CacheKey.newKey( LdapPermissionTester.class, userIdentity, CACHE_VALUE_ID );
+            final AttributeSnapshot cachedSnapshot = pwmApplication.getCacheService().get( cacheKey, AttributeSnapshot.class );
+            final Map<String, List<String>> values = new HashMap<>( attributeValues );
+            if ( cachedSnapshot != null )
+            {
+                values.putAll( cachedSnapshot.getValues() );
+            }
+
+            final Set<String> missingNames = new TreeSet<>( attributeNames );
+            missingNames.removeAll( values.keySet() );
+            if ( !missingNames.isEmpty() )
+            {
+                values.putAll( readAttributeValues( missingNames ) );
+                final long cacheSeconds = Long.parseLong( pwmApplication.getConfig().readAppProperty( AppProperty.LDAP_PERMISSION_LOCAL_EVAL_CACHE_SECONDS ) );
+                if ( cacheSeconds > 0 )
+                {
+                    final CachePolicy cachePolicy = CachePolicy.makePolicyWithExpiration( TimeDuration.of( cacheSeconds, TimeDuration.Unit.SECONDS ) );
+                    pwmApplication.getCacheService().put( cacheKey, cachePolicy, new AttributeSnapshot( Collections.unmodifiableMap( values ) ) );
+                }
+            }
+
+            attributeValues = Collections.unmodifiableMap( values );
+        }
+
+        /**
+         * Read the requested attributes.  Attributes whose absence can not be confirmed, such as after a read error
+         * or when the directory returns names other than those requested, are omitted so filters using them are
+         * evaluated by the directory.
+         *
+         * @return values keyed by lower case attribute name
+         */
+        private Map<String, List<String>> readAttributeValues( final Set<String> attributeNames )
+                throws PwmUnrecoverableException
+        {
+            final Map<String, List<String>> returnValues = new HashMap<>();
+            try
+            {
+                final ChaiUser theUser = pwmApplication.getProxiedChaiUser( userIdentity );
+                final Map<String, Map<String, List<String>>> results = theUser.getChaiProvider().searchMultiValues(
+                        theUser.getEntryDN(),
+                        "(objectClass=*)",
+                        attributeNames,
+                        SearchScope.BASE
+                );
+                if ( results.size() != 1 )
+                {
+                    return returnValues;
+                }
+
+                final Map<String, List<String>> entryValues = new HashMap<>();
+                for ( final Map.Entry<String, List<String>> entry : results.values().iterator().next().entrySet() )
+                {
+                    entryValues.put( entry.getKey().toLowerCase( Locale.ROOT ), entry.getValue() );
+                }
+
+                // an alias or OID was returned under its canonical name, so a missing attribute may not be absent
+                final boolean namesMatchRequest = attributeNames.containsAll( entryValues.keySet() );
+                for ( final String attributeName : attributeNames )
+                {
+                    final List<String> values = entryValues.get( attributeName );
+                    if ( values != null )
+                    {
+                        returnValues.put( attributeName, Collections.unmodifiableList( new ArrayList<>( values ) ) );
+                    }
+                    else if ( namesMatchRequest )
+                    {
+                        returnValues.put( attributeName, Collections.emptyList() );
+                    }
+                }
+            }
+            catch ( ChaiException e )
+            {
+                LOGGER.debug( sessionLabel, () -> "error reading attributes " + attributeNames + " of " + userIdentity
+                        + " for local filter evaluation: " + e.getMessage() );
+            }
+            return returnValues;
+        }
+    }
+
+    @Value
+    private static class AttributeSnapshot implements Serializable, ImmutableCacheValue
+    {
+        private final Map<String, List<String>> values;
+    }
 }
@@ -0,0 +1,304 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package password.pwm.ldap;
+
+import com.novell.ldapchai.provider.SearchScope;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Attribute values of a single ldap entry that have already been read, typically by a bulk search.  While an entry
+ * is active on the current thread, reads of its attributes made through pooled proxy connections are answered
+ * from the prefetched values instead of the directory.
+ *
+ * <p>Only reads addressed to the entry's DN and limited to prefetched attributes are answered; everything else
+ * is passed through to the directory.  A recording entry answers nothing and instead collects the names of the
+ * attributes read for its DN, so callers can learn which attributes a bulk search needs to return.</p>
+ */
+public class PrefetchedLdapEntry
+{
+    static final Object NOT_PREFETCHED = new Object();
+
+    private static final ThreadLocal<PrefetchedLdapEntry> CURRENT_ENTRY = new ThreadLocal<>();
+    private static final String OBJECTCLASS_FILTER = "(objectclass=*)";
+
+    private final String entryDN;
+    private final Set<String> stringAttributes;
+    private final Set<String> binaryAttributes;
+    private final Map<String, List<String>> stringValues;
+    private final Map<String, byte[][]> binaryValues;
+    private final Recorder recorder;
+
+    private PrefetchedLdapEntry(
+            final String entryDN,
+            final Collection<String> stringAttributes,
+            final Collection<String> binaryAttributes,
+            final Map<String, List<String>> stringValues,
+            final Map<String, byte[][]> binaryValues,
+            final Recorder recorder
+    )
+    {
+        this.entryDN = entryDN;
+        this.stringAttributes = caseInsensitiveSet( stringAttributes );
+        this.binaryAttributes = caseInsensitiveSet( binaryAttributes );
+        this.stringValues = new TreeMap<>( String.CASE_INSENSITIVE_ORDER );
+        this.stringValues.putAll( stringValues );
+        this.binaryValues = new TreeMap<>( String.CASE_INSENSITIVE_ORDER );
+        this.binaryValues.putAll( binaryValues );
+        this.recorder = recorder;
+    }
+
+    /**
+     * Create an entry answering reads of the listed attributes.  Listed attributes without a value are reported as
+     * absent from the entry.
+     */
+    public static PrefetchedLdapEntry forValues(
+            final String entryDN,
+            final Collection<String> stringAttributes,
+            final Collection<String> binaryAttributes,
+            final Map<String, List<String>> stringValues,
+            final Map<String, byte[][]> binaryValues
+    )
+    {
+        return new PrefetchedLdapEntry( entryDN, stringAttributes, binaryAttributes, stringValues, binaryValues, null );
+    }
+
+    public static PrefetchedLdapEntry forRecording( final String entryDN, final Recorder recorder )
+    {
+        return new PrefetchedLdapEntry( entryDN, Collections.emptySet(), Collections.emptySet(), Collections.emptyMap(), Collections.emptyMap(), recorder );
+    }
+
+    public String getEntryDN( )
+    {
+        return entryDN;
+    }
+
+    public List<String> getStringValues( final String attribute )
+    {
+        final List<String> values = stringValues.get( attribute );
+        return values == null ? Collections.emptyList() : Collections.unmodifiableList( values );
+    }
+
+    public byte[][] getBinaryValues( final String attribute )
+    {
+        final byte[][] values = binaryValues.get( attribute );
+        return values == null ? new byte[0][0] : copy( values );
+    }
+
+    /**
+     * Make this entry the active entry of the current thread.  Must be paired with {@link #deactivate()}.
+     */
+    public void activate( )
+    {
+        CURRENT_ENTRY.set( this );
+    }
+
+    public static void deactivate( )
+    {
+        CURRENT_ENTRY.remove();
+    }
+
+    /**
+     * Answer a provider method invocation from the active entry of the current thread.
+     *
+     * @return the method result, or {@link #NOT_PREFETCHED} if the invocation must be passed to the directory.
+     */
+    static Object answer( final Method method, final Object[] args )
+    {
+        final PrefetchedLdapEntry entry = CURRENT_ENTRY.get();
+        if ( entry == null || args == null || args.length < 2 || !( args[0] instanceof String ) )
+        {
+            return NOT_PREFETCHED;
+        }
+
+        if ( !entry.entryDN.equalsIgnoreCase( ( String ) args[0] ) )
+        {
+            return NOT_PREFETCHED;
+        }
+
+        return entry.answerImpl( method.getName(), args );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private Object answerImpl( final String methodName, final Object[] args )
+    {
+        switch ( methodName )
+        {
+            case "readStringAttribute":
+                if ( args.length == 2 && args[1] instanceof String && coversStrings( Collections.singleton( ( String ) args[1] ) ) )
+                {
+                    final List<String> values = stringValues.get( args[1] );
+                    return values == null || values.isEmpty() ? null : values.get( 0 );
+                }
+                break;
+
+            case "readMultiStringAttribute":
+                if ( args.length == 2 && args[1] instanceof String && coversStrings( Collections.singleton( ( String ) args[1] ) ) )
+                {
+                    final List<String> values = stringValues.get( args[1] );
+                    return values == null ? new HashSet<String>() : new HashSet<>( values );
+                }
+                break;
+
+            case "readStringAttributes":
+                if ( args.length == 2 && args[1] instanceof Set && coversStrings( ( Set<String> ) args[1] ) )
+                {
+                    return firstValues( ( Set<String> ) args[1] );
+                }
+                break;
+
+            case "readMultiByteAttribute":
+                if ( args.length == 2 && args[1] instanceof String && coversBinary( ( String ) args[1] ) )
+                {
+                    final byte[][] values = binaryValues.get( args[1] );
+                    return values == null ? new byte[0][0] : copy( values );
+                }
+                break;
+
+            case "searchMultiValues":
+                if ( isBaseEntryRead( args ) && coversStrings( ( Set<String> ) args[2] ) )
+                {
+                    final Map<String, List<String>> attributeValues = new LinkedHashMap<>();
+                    for ( final String attribute : ( Set<String> ) args[2] )
+                    {
+                        final List<String> values = stringValues.get( attribute );
+                        if ( values != null && !values.isEmpty() )
+                        {
+                            attributeValues.put( attribute, values );
+                        }
+                    }
+                    return Collections.singletonMap( entryDN, attributeValues );
+                }
+                break;
+
+            case "search":
+                if ( isBaseEntryRead( args ) && coversStrings( ( Set<String> ) args[2] ) )
+                {
+                    return Collections.singletonMap( entryDN, firstValues( ( Set<String> ) args[2] ) );
+                }
+                break;
+
+            default:
+                break;
+        }
+
+        return NOT_PREFETCHED;
+    }
+
+    private boolean isBaseEntryRead( final Object[] args )
+    {
+        return args.length == 4
+                && args[1] instanceof String
+                && OBJECTCLASS_FILTER.equalsIgnoreCase( ( String ) args[1] )
+                && args[2] instanceof Set
+                && !( ( Set ) args[2] ).isEmpty()
+                && args[3] == SearchScope.BASE;
+    }
+
+    private boolean coversStrings( final Collection<String> attributes )
+    {
+        if ( attributes == null || attributes.isEmpty() )
+        {
+            return false;
+        }
+
+        if ( recorder != null )
+        {
+            recorder.stringAttributes.addAll( attributes );
+        }
+
+        return stringAttributes.containsAll( attributes );
+    }
+
+    private boolean coversBinary( final String attribute )
+    {
+        if ( recorder != null )
+        {
+            recorder.binaryAttributes.add( attribute );
+        }
+
+        return binaryAttributes.contains( attribute );
+    }
+
+    private Map<String, String> firstValues( final Collection<String> attributes )
+    {
+        final Map<String, String> returnMap = new LinkedHashMap<>();
+        for ( final String attribute : attributes )
+        {
+            final List<String> values = stringValues.get( attribute );
+            if ( values != null && !values.isEmpty() )
+            {
+                returnMap.put( attribute, values.get( 0 ) );
+            }
+        }
+        return returnMap;
+    }
+
+    private static byte[][] copy( final byte[][] values )
+    {
+        final byte[][] returnValues = new byte[values.length][];
+        for ( int i = 0; i < values.length; i++ )
+        {
+            returnValues[i] = Arrays.copyOf( values[i], values[i].length );
+        }
+        return returnValues;
+    }
+
+    private static Set<String> caseInsensitiveSet( final Collection<String> values )
+    {
+        final Set<String> returnSet = new TreeSet<>( String.CASE_INSENSITIVE_ORDER );
+        returnSet.addAll( values );
+        return returnSet;
+    }
+
+    /**
+     * Names of attributes read for the DN of recording entries, separated into string and binary reads.
+     */
+    public static class Recorder
+    {
+        private final Set<String> stringAttributes = new ConcurrentSkipListSet<>( String.CASE_INSENSITIVE_ORDER );
+        private final Set<String> binaryAttributes = new ConcurrentSkipListSet<>( String.CASE_INSENSITIVE_ORDER );
+
+        public Set<String> getStringAttributes( )
+        {
+            return Collections.unmodifiableSet( stringAttributes );
+        }
+
+        public Set<String> getBinaryAttributes( )
+        {
+            return Collections.unmodifiableSet( binaryAttributes );
+        }
+    }
+}
@@ -0,0 +1,455 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package password.pwm.ldap;
+
+import com.novell.ldapchai.ChaiEntryFactory;
+import com.novell.ldapchai.exception.ChaiError;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.provider.ChaiProvider;
+import password.pwm.PwmApplication;
+import password.pwm.config.profile.LdapProfile;
+import password.pwm.error.PwmUnrecoverableException;
+import password.pwm.svc.PwmService;
+import password.pwm.svc.stats.AvgStatistic;
+import password.pwm.svc.stats.StatisticsManager;
+import password.pwm.util.java.TimeDuration;
+import password.pwm.util.logging.PwmLogger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Demand driven pool of proxy connections for a single ldap profile.
+ *
+ * <p>Callers hold on to proxy providers for the length of a request or job and never hand them back, so each pooled
+ * provider is wrapped in a tracking proxy that checks the connection out for the duration of every ldap operation.
+ * Selection picks the connection with the lowest score of outstanding operations weighted by its recent latency
+ * and consecutive unavailable errors, so a slow or failing server (after chai's failover has moved a connection to
+ * it) receives proportionally less traffic.  The pool grows when every connection is busy, up to the configured
+ * maximum, and connections idle past the eviction time are retired down to the configured minimum.</p>
+ *
+ * <p>A retired connection is closed once its in-flight operations finish.  Callers still holding its provider are
+ * transparently routed to a live connection of the pool.</p>
+ */
+class ProxyConnectionPool
+{
+    private static final PwmLogger LOGGER = PwmLogger.forClass( ProxyConnectionPool.class );
+
+    private static final long FAILURE_PENALTY = 4;
+    private static final long LATENCY_FLOOR_MICROS = 1000;
+    private static final int LATENCY_SMOOTHING = 8;
+
+    private final PwmApplication pwmApplication;
+    private final LdapProfile ldapProfile;
+    private final int minConnections;
+    private final int maxConnections;
+    private final TimeDuration idleEvictionTime;
+    private final ProviderOpener providerOpener;
+    private final List<PooledConnection> connections = new CopyOnWriteArrayList<>();
+
+    private final LongAdder selections = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder rerouted = new LongAdder();
+    private final LongAdder prefetchHits = new LongAdder();
+
+    ProxyConnectionPool(
+            final PwmApplication pwmApplication,
+            final LdapProfile ldapProfile,
+            final int minConnections,
+            final int maxConnections,
+            final TimeDuration idleEvictionTime
+    )
+    {
+        this( pwmApplication, ldapProfile, minConnections, maxConnections, idleEvictionTime, () -> LdapOperationsHelper.openProxyChaiProvider(
+                pwmApplication,
+                null,
+                ldapProfile,
+                pwmApplication.getConfig(),
+                pwmApplication.getStatisticsManager()
+        ) );
+    }
+
+    ProxyConnectionPool(
+            final PwmApplication pwmApplication,
+            final LdapProfile ldapProfile,
+            final int minConnections,
+            final int maxConnections,
+            final TimeDuration idleEvictionTime,
+            final ProviderOpener providerOpener
+    )
+    {
+        this.pwmApplication = pwmApplication;
+        this.providerOpener = providerOpener;
+        this.ldapProfile = ldapProfile;
+        this.maxConnections = Math.max( 1, maxConnections );
+        this.minConnections = Math.max( 0, Math.min( minConnections, this.maxConnections ) );
+        this.idleEvictionTime = idleEvictionTime;
+    }
+
+    ChaiProvider select( )
+            throws PwmUnrecoverableException
+    {
+        final long startTime = System.currentTimeMillis();
+        PooledConnection selected = bestConnection();
+        if ( selected == null || ( selected.outstanding() > 0 && connections.size() < maxConnections ) )
+        {
+            selected = grow();
+        }
+
+        selected.markSelected();
+        selections.increment();
+        recordSelectionStatistics( startTime );
+        return selected.getProxy();
+    }
+
+    /**
+     * Retire connections that have been idle for longer than the eviction time, keeping at least the minimum number
+     * of connections, and close retired connections with no operations in progress.
+     */
+    void evictIdleConnections( )
+    {
+        final long now = System.currentTimeMillis();
+        final List<PooledConnection> candidates = new ArrayList<>( connections );
+        int remaining = candidates.size();
+        for ( int i = candidates.size() - 1; i >= 0 && remaining > minConnections; i-- )
+        {
+            final PooledConnection connection = candidates.get( i );
+            if ( connection.outstanding() == 0 && now - connection.getLastUsed() > idleEvictionTime.asMillis() )
+            {
+                retire( connection );
+                evicted.increment();
+                remaining--;
+            }
+        }
+    }
+
+    void close( )
+    {
+        for ( final PooledConnection connection : new ArrayList<>( connections ) )
+        {
+            retire( connection );
+        }
+    }
+
+    int connectionCount( )
+    {
+        return connections.size();
+    }
+
+    Map<String, String> debugInfo( )
+    {
+        int outstanding = 0;
+        int busy = 0;
+        long latencyTotal = 0;
+        for ( final PooledConnection connection : connections )
+        {
+            final int connectionOutstanding = connection.outstanding();
+            outstanding += connectionOutstanding;
+            busy += connectionOutstanding > 0 ? 1 : 0;
+            latencyTotal += connection.getLatencyMicros();
+        }
+        final int connectionCount = connections.size();
+
+        final String prefix = "ProxyPool_" + ldapProfile.getIdentifier() + "_";
+        final Map<String, String> debugInfo = new LinkedHashMap<>();
+        debugInfo.put( prefix + "Connections", String.valueOf( connectionCount ) );
+        debugInfo.put( prefix + "BusyConnections", String.valueOf( busy ) );
+        debugInfo.put( prefix + "OutstandingOperations", String.valueOf( outstanding ) );
+        debugInfo.put( prefix + "AvgLatencyMicros", String.valueOf( connectionCount == 0 ? 0 : latencyTotal / connectionCount ) );
+        debugInfo.put( prefix + "Selections", String.valueOf( selections.sum() ) );
+        debugInfo.put( prefix + "Created", String.valueOf( created.sum() ) );
+        debugInfo.put( prefix + "Evicted", String.valueOf( evicted.sum() ) );
+        debugInfo.put( prefix + "Rerouted", String.valueOf( rerouted.sum() ) );
+        debugInfo.put( prefix + "PrefetchHits", String.valueOf( prefetchHits.sum() ) );
+        return debugInfo;
+    }
+
+    private PooledConnection bestConnection( )
+    {
+        PooledConnection best = null;
+        long bestScore = Long.MAX_VALUE;
+        for ( final PooledConnection connection : connections )
+        {
+            final long score = connection.score();
+            if ( score < bestScore )
+            {
+                best = connection;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    private synchronized PooledConnection grow( )
+            throws PwmUnrecoverableException
+    {
+        final PooledConnection best = bestConnection();
+        if ( best != null && ( best.outstanding() == 0 || connections.size() >= maxConnections ) )
+        {
+            return best;
+        }
+
+        final ChaiProvider chaiProvider;
+        try
+        {
+            chaiProvider = providerOpener.open();
+        }
+        catch ( PwmUnrecoverableException e )
+        {
+            if ( best != null )
+            {
+                LOGGER.debug( () -> "unable to grow proxy connection pool for profile " + ldapProfile.getIdentifier()
+                        + ", using existing connection: " + e.getMessage() );
+                return best;
+            }
+            throw e;
+        }
+
+        final PooledConnection connection = new PooledConnection( chaiProvider );
+        connections.add( connection );
+        created.increment();
+        LOGGER.trace( () -> "added proxy connection to pool for profile " + ldapProfile.getIdentifier()
+                + ", pool size is now " + connections.size() );
+        return connection;
+    }
+
+    private void retire( final PooledConnection connection )
+    {
+        connection.retire();
+        connections.remove( connection );
+        connection.closeIfIdle();
+    }
+
+    private void recordSelectionStatistics( final long startTime )
+    {
+        final StatisticsManager statisticsManager = pwmApplication.getStatisticsManager();
+        if ( statisticsManager == null || statisticsManager.status() != PwmService.STATUS.OPEN )
+        {
+            return;
+        }
+
+        int busy = 0;
+        for ( final PooledConnection connection : connections )
+        {
+            busy += connection.outstanding() > 0 ? 1 : 0;
+        }
+
+        statisticsManager.updateAverageValue( AvgStatistic.AVG_LDAP_PROXY_WAIT_TIME, System.currentTimeMillis() - startTime );
+        statisticsManager.updateAverageValue( AvgStatistic.AVG_LDAP_PROXY_UTILIZATION, busy * 100L / maxConnections );
+    }
+
+    /**
+     * Opens the real provider for a new pooled connection.
+     */
+    interface ProviderOpener
+    {
+        ChaiProvider open( )
+                throws PwmUnrecoverableException;
+    }
+
+    private class PooledConnection implements InvocationHandler
+    {
+        private final ChaiProvider realProvider;
+        private final ChaiProvider proxy;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private final AtomicLong latencyMicros = new AtomicLong();
+        private volatile long lastUsed = System.currentTimeMillis();
+        private volatile boolean retired;
+        private volatile boolean closed;
+
+        PooledConnection( final ChaiProvider realProvider )
+        {
+            this.realProvider = realProvider;
+            this.proxy = ( ChaiProvider ) Proxy.newProxyInstance(
+                    realProvider.getClass().getClassLoader(),
+                    realProvider.getClass().getInterfaces(),
+                    this
+            );
+        }
+
+        ChaiProvider getProxy( )
+        {
+            return proxy;
+        }
+
+        int outstanding( )
+        {
+            return outstanding.get();
+        }
+
+        long getLastUsed( )
+        {
+            return lastUsed;
+        }
+
+        long getLatencyMicros( )
+        {
+            return latencyMicros.get();
+        }
+
+        void markSelected( )
+        {
+            lastUsed = System.currentTimeMillis();
+        }
+
+        long score( )
+        {
+            final long latency = Math.max( LATENCY_FLOOR_MICROS, latencyMicros.get() );
+            final long failurePenalty = 1 + FAILURE_PENALTY * consecutiveFailures.get();
+            return ( outstanding.get() + 1 ) * latency * failurePenalty;
+        }
+
+        void retire( )
+        {
+            retired = true;
+        }
+
+        synchronized void closeIfIdle( )
+        {
+            if ( !closed && outstanding.get() == 0 )
+            {
+                closed = true;
+                realProvider.close();
+            }
+        }
+
+        @Override
+        public Object invoke( final Object proxyInstance, final Method method, final Object[] args )
+                throws Throwable
+        {
+            final String methodName = method.getName();
+            if ( "getEntryFactory".equals( methodName ) )
+            {
+                return ChaiEntryFactory.newChaiFactory( proxy );
+            }
+
+            if ( "close".equals( methodName ) )
+            {
+                ProxyConnectionPool.this.retire( this );
+                return null;
+            }
+
+            if ( method.getAnnotation( ChaiProvider.LdapOperation.class ) == null )
+            {
+                if ( closed )
+                {
+                    final PooledConnection liveConnection = liveConnection();
+                    return liveConnection.invoke( liveConnection.proxy, method, args );
+                }
+                return invokeReal( method, args );
+            }
+
+            final Object prefetched = PrefetchedLdapEntry.answer( method, args );
+            if ( prefetched != PrefetchedLdapEntry.NOT_PREFETCHED )
+            {
+                prefetchHits.increment();
+                return prefetched;
+            }
+
+            outstanding.incrementAndGet();
+            try
+            {
+                if ( retired )
+                {
+                    rerouted.increment();
+                    final PooledConnection liveConnection = liveConnection();
+                    return liveConnection.invoke( liveConnection.proxy, method, args );
+                }
+
+                final long startNanos = System.nanoTime();
+                try
+                {
+                    final Object result = invokeReal( method, args );
+                    consecutiveFailures.set( 0 );
+                    return result;
+                }
+                catch ( ChaiUnavailableException e )
+                {
+                    consecutiveFailures.incrementAndGet();
+                    throw e;
+                }
+                finally
+                {
+                    final long elapsedMicros = ( System.nanoTime() - startNanos ) / 1000;
+                    latencyMicros.accumulateAndGet( elapsedMicros, ( current, sample ) -> current == 0
+                            ? sample
+                            : current + ( sample - current ) / LATENCY_SMOOTHING );
+                    lastUsed = System.currentTimeMillis();
+                }
+            }
+            finally
+            {
+                outstanding.decrementAndGet();
+                if ( retired )
+                {
+                    closeIfIdle();
+                }
+            }
+        }
+
+        private PooledConnection liveConnection( )
+                throws ChaiUnavailableException
+        {
+            final PooledConnection live = bestConnection();
+            if ( live != null )
+            {
+                return live;
+            }
+
+            try
+            {
+                return grow();
+            }
+            catch ( PwmUnrecoverableException e )
+            {
+                throw new ChaiUnavailableException( e.getMessage(), ChaiError.COMMUNICATION );
+            }
+        }
+
+        private Object invokeReal( final Method method, final Object[] args )
+                throws Throwable
+        {
+            try
+            {
+                return method.invoke( realProvider, args );
+            }
+            catch ( InvocationTargetException e )
+            {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -46,6 +46,7 @@ import password.pwm.error.PwmError;
 import password.pwm.error.PwmOperationalException;
 import password.pwm.error.PwmUnrecoverableException;
 import password.pwm.http.servlet.forgottenpw.ForgottenPasswordUtil;
+import password.pwm.ldap.LdapBindPool;
 import password.pwm.ldap.LdapOperationsHelper;
 import password.pwm.svc.event.AuditEvent;
 import password.pwm.svc.event.AuditRecord;
@@ -414,11 +415,22 @@ class LDAPAuthenticationRequest implements AuthenticationRequest
         boolean bindSucceeded = false;
         try
         {
+            final LdapProfile ldapProfile = userIdentity.getLdapProfile( pwmApplication.getConfig() );
+
+            // when the session will use a proxy connection the user's connection is never used, so a pooled bind is
+            // enough to verify the password.  otherwise the user's own connection does the bind and is kept.
+            if ( isProxyNeededForAuthType( requestedAuthType, password )
+                    && verifyWithBindPool( ldapProfile, userIdentity.getUserDN(), password ) )
+            {
+                bindSucceeded = true;
+                return;
+            }
+
             //read a provider using the user's DN and password.
             userProvider = LdapOperationsHelper.createChaiProvider(
                     pwmApplication,
                     sessionLabel,
-                    userIdentity.getLdapProfile( pwmApplication.getConfig() ),
+                    ldapProfile,
                     pwmApplication.getConfig(),
                     userIdentity.getUserDN(),
                     password
@@ -468,6 +480,23 @@ class LDAPAuthenticationRequest implements AuthenticationRequest
         }
     }
 
+    private boolean verifyWithBindPool( final LdapProfile ldapProfile, final String userDN, final PasswordData password )
+            throws ChaiOperationException, PwmUnrecoverableException
+    {
+        final LdapBindPool bindPool = pwmApplication.getLdapConnectionService().getBindPool();
+        if ( bindPool == null )
+        {
+            return false;
+        }
+
+        final boolean verified = bindPool.verifyCredentials( sessionLabel, ldapProfile, userDN, password );
+        if ( verified )
+        {
+            log( PwmLogLevel.TRACE, () -> "credentials verified using pooled bind connection" );
+        }
+        return verified;
+    }
+
     private PasswordData learnUserPassword( )
             throws ChaiUnavailableException, PwmUnrecoverableException
     {
@@ -646,6 +675,11 @@ class LDAPAuthenticationRequest implements AuthenticationRequest
             return false;
         }
 
+        return isProxyNeededForAuthType( authenticationType, userPassword );
+    }
+
+    private boolean isProxyNeededForAuthType( final AuthenticationType authenticationType, final PasswordData userPassword )
+    {
         final boolean authIsBindInhibit = authenticationType == AuthenticationType.AUTH_BIND_INHIBIT;
         final boolean authIsFromForgottenPw = authenticationType == AuthenticationType.AUTH_FROM_PUBLIC_MODULE;
         final boolean alwaysUseProxyIsEnabled = pwmApplication.getConfig().readSettingAsBoolean( PwmSetting.AD_USE_PROXY_FOR_FORGOTTEN );
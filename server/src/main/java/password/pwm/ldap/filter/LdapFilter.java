@@ -0,0 +1,832 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package password.pwm.ldap.filter;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * Parsed RFC 4515 search filter that can be evaluated against a snapshot of an entry's attribute values.
+ *
+ * <p>Evaluation is conservative: an assertion is only evaluated locally when the matching rule of its attribute is
+ * known, either from the built in list of standard attributes or from rules supplied by the caller, such as rules
+ * resolved from the directory schema.  Assertions on any other attribute, and assertions the directory would
+ * evaluate using rules not available here (approximate and extensible matches, attribute options, string ordering),
+ * evaluate to {@link Result#UNDETERMINED}, as do assertions on attributes missing from the snapshot, so callers can
+ * fall back to evaluating the filter on the directory.  Presence assertions do not depend on a matching rule and
+ * are evaluated for any attribute.</p>
+ */
+public abstract class LdapFilter
+{
+    public enum Result
+    {
+        MATCH,
+        NO_MATCH,
+        UNDETERMINED,
+    }
+
+    /**
+     * Equality matching rules that can be evaluated locally.
+     */
+    public enum MatchingRule
+    {
+        /**
+         * caseIgnoreMatch and caseIgnoreIA5Match, which also define case insensitive substring matching.
+         */
+        CASE_IGNORE,
+
+        /**
+         * distinguishedNameMatch, evaluated only for names without escaped, quoted or multi-valued RDNs.
+         */
+        DISTINGUISHED_NAME,
+
+        /**
+         * objectIdentifierMatch, evaluated for descriptive names only.  Because directories may also match an object
+         * class against its subclasses, only a match is decided locally.
+         */
+        OBJECT_IDENTIFIER,
+
+        /**
+         * integerMatch and integerOrderingMatch.
+         */
+        INTEGER,
+
+        /**
+         * generalizedTimeMatch and generalizedTimeOrderingMatch, evaluated for UTC values without fractions only.
+         */
+        GENERALIZED_TIME,
+    }
+
+    private static final Map<String, MatchingRule> DEFAULT_MATCHING_RULES;
+
+    static
+    {
+        final Map<String, MatchingRule> rules = new HashMap<>();
+        for ( final String name : new String[] {
+                "cn", "sn", "givenname", "initials", "displayname", "title", "description", "ou", "o", "l", "st", "c", "street",
+                "uid", "mail", "employeenumber", "employeetype", "departmentnumber", "businesscategory", "preferredlanguage",
+                "samaccountname", "userprincipalname", "company", "department",
+        } )
+        {
+            rules.put( name, MatchingRule.CASE_IGNORE );
+        }
+        for ( final String name : new String[] {
+                "member", "uniquemember", "memberof", "groupmembership", "securityequals", "equivalenttome",
+                "manager", "secretary", "owner", "seealso", "roleoccupant",
+        } )
+        {
+            rules.put( name, MatchingRule.DISTINGUISHED_NAME );
+        }
+        for ( final String name : new String[] {
+                "uidnumber", "gidnumber", "logingraceremaining", "logingracelimit", "loginmaximumsimultaneous", "passwordminimumlength",
+                "useraccountcontrol", "logoncount", "badpwdcount", "pwdlastset", "accountexpires", "lastlogontimestamp",
+                "shadowlastchange", "shadowexpire",
+        } )
+        {
+            rules.put( name, MatchingRule.INTEGER );
+        }
+        for ( final String name : new String[] {
+                "passwordexpirationtime", "logintime", "loginexpirationtime", "createtimestamp", "modifytimestamp",
+                "pwdchangedtime", "pwdaccountlockedtime",
+        } )
+        {
+            rules.put( name, MatchingRule.GENERALIZED_TIME );
+        }
+        rules.put( "objectclass", MatchingRule.OBJECT_IDENTIFIER );
+        DEFAULT_MATCHING_RULES = Collections.unmodifiableMap( rules );
+    }
+
+    private static final Pattern GENERALIZED_TIME_PATTERN = Pattern.compile( "^[0-9]{14}Z$" );
+    private static final Pattern INTEGER_PATTERN = Pattern.compile( "^-?[0-9]+$" );
+    private static final Pattern NUMERIC_OID_PATTERN = Pattern.compile( "^[0-9]+(\\.[0-9]+)*$" );
+
+    /**
+     * Parse a filter string.  A filter that is not enclosed in parenthesis, such as {@code objectClass=*}, is
+     * accepted as well.
+     *
+     * @throws IllegalArgumentException if the filter is not well formed
+     */
+    public static LdapFilter parse( final String filterString )
+    {
+        return parse( filterString, Collections.emptyMap() );
+    }
+
+    /**
+     * Parse a filter string using additional matching rules, keyed by lower case attribute name, that take precedence
+     * over the built in rules.
+     *
+     * @throws IllegalArgumentException if the filter is not well formed
+     */
+    public static LdapFilter parse( final String filterString, final Map<String, MatchingRule> matchingRules )
+    {
+        if ( filterString == null || filterString.trim().isEmpty() )
+        {
+            throw new IllegalArgumentException( "filter can not be empty" );
+        }
+
+        final String trimmed = filterString.trim();
+        final String input = trimmed.startsWith( "(" ) ? trimmed : "(" + trimmed + ")";
+        final Map<String, MatchingRule> effectiveRules = new HashMap<>( DEFAULT_MATCHING_RULES );
+        effectiveRules.putAll( matchingRules );
+        final Parser parser = new Parser( input, effectiveRules );
+        final LdapFilter filter = parser.parseFilter();
+        if ( !parser.atEnd() )
+        {
+            throw new IllegalArgumentException( "unexpected content after end of filter at position " + parser.position );
+        }
+        return filter;
+    }
+
+    /**
+     * @return lower case names of the attributes this filter can evaluate locally.
+     */
+    public Set<String> attributeNames( )
+    {
+        final Set<String> names = new TreeSet<>();
+        collectAttributeNames( names );
+        return Collections.unmodifiableSet( names );
+    }
+
+    /**
+     * Evaluate the filter against values keyed by lower case attribute name.  An attribute mapped to an empty list
+     * is known to have no values; an attribute that is not present in the map is unknown.
+     */
+    public abstract Result evaluate( Map<String, List<String>> attributeValues );
+
+    abstract void collectAttributeNames( Set<String> names );
+
+    /**
+     * Normalize a value for case insensitive comparison, or return null if the value contains characters for which
+     * the directory's case folding and insignificant space handling may differ from a plain lower case comparison.
+     * Distinguished names containing escapes, quoted values or multi-valued RDNs have equivalent spellings that
+     * this comparison does not recognize, so they are not normalized either.
+     */
+    static String normalizeValue( final String value, final MatchingRule matchingRule )
+    {
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            final char c = value.charAt( i );
+            if ( c > 0x7E )
+            {
+                return null;
+            }
+            if ( matchingRule == MatchingRule.DISTINGUISHED_NAME && ( c == '\\' || c == '"' || c == '+' ) )
+            {
+                return null;
+            }
+        }
+
+        final String collapsed = value.trim().replaceAll( "\\s+", " " ).toLowerCase( Locale.ROOT );
+        return matchingRule == MatchingRule.DISTINGUISHED_NAME
+                ? collapsed.replaceAll( " ?([,=]) ?", "$1" )
+                : collapsed;
+    }
+
+    private static Result and( final List<LdapFilter> components, final Map<String, List<String>> attributeValues )
+    {
+        Result result = Result.MATCH;
+        for ( final LdapFilter component : components )
+        {
+            final Result componentResult = component.evaluate( attributeValues );
+            if ( componentResult == Result.NO_MATCH )
+            {
+                return Result.NO_MATCH;
+            }
+            if ( componentResult == Result.UNDETERMINED )
+            {
+                result = Result.UNDETERMINED;
+            }
+        }
+        return result;
+    }
+
+    private static Result or( final List<LdapFilter> components, final Map<String, List<String>> attributeValues )
+    {
+        Result result = Result.NO_MATCH;
+        for ( final LdapFilter component : components )
+        {
+            final Result componentResult = component.evaluate( attributeValues );
+            if ( componentResult == Result.MATCH )
+            {
+                return Result.MATCH;
+            }
+            if ( componentResult == Result.UNDETERMINED )
+            {
+                result = Result.UNDETERMINED;
+            }
+        }
+        return result;
+    }
+
+    private static class CompositeFilter extends LdapFilter
+    {
+        private final boolean conjunction;
+        private final List<LdapFilter> components;
+
+        CompositeFilter( final boolean conjunction, final List<LdapFilter> components )
+        {
+            this.conjunction = conjunction;
+            this.components = components;
+        }
+
+        @Override
+        public Result evaluate( final Map<String, List<String>> attributeValues )
+        {
+            return conjunction ? and( components, attributeValues ) : or( components, attributeValues );
+        }
+
+        @Override
+        void collectAttributeNames( final Set<String> names )
+        {
+            for ( final LdapFilter component : components )
+            {
+                component.collectAttributeNames( names );
+            }
+        }
+    }
+
+    private static class NotFilter extends LdapFilter
+    {
+        private final LdapFilter component;
+
+        NotFilter( final LdapFilter component )
+        {
+            this.component = component;
+        }
+
+        @Override
+        public Result evaluate( final Map<String, List<String>> attributeValues )
+        {
+            switch ( component.evaluate( attributeValues ) )
+            {
+                case MATCH:
+                    return Result.NO_MATCH;
+
+                case NO_MATCH:
+                    return Result.MATCH;
+
+                default:
+                    return Result.UNDETERMINED;
+            }
+        }
+
+        @Override
+        void collectAttributeNames( final Set<String> names )
+        {
+            component.collectAttributeNames( names );
+        }
+    }
+
+    /**
+     * Assertion that can not be evaluated locally.
+     */
+    private static class UnsupportedFilter extends LdapFilter
+    {
+        @Override
+        public Result evaluate( final Map<String, List<String>> attributeValues )
+        {
+            return Result.UNDETERMINED;
+        }
+
+        @Override
+        void collectAttributeNames( final Set<String> names )
+        {
+        }
+    }
+
+    private abstract static class AttributeFilter extends LdapFilter
+    {
+        private final String attributeName;
+
+        AttributeFilter( final String attributeName )
+        {
+            this.attributeName = attributeName.toLowerCase( Locale.ROOT );
+        }
+
+        @Override
+        public Result evaluate( final Map<String, List<String>> attributeValues )
+        {
+            final List<String> values = attributeValues.get( attributeName );
+            if ( values == null )
+            {
+                return Result.UNDETERMINED;
+            }
+
+            Result result = Result.NO_MATCH;
+            for ( final String value : values )
+            {
+                final Result valueResult = matchValue( value );
+                if ( valueResult == Result.MATCH )
+                {
+                    return Result.MATCH;
+                }
+                if ( valueResult == Result.UNDETERMINED )
+                {
+                    result = Result.UNDETERMINED;
+                }
+            }
+            return result;
+        }
+
+        @Override
+        void collectAttributeNames( final Set<String> names )
+        {
+            names.add( attributeName );
+        }
+
+        String getAttributeName( )
+        {
+            return attributeName;
+        }
+
+        abstract Result matchValue( String value );
+    }
+
+    private static class PresentFilter extends AttributeFilter
+    {
+        PresentFilter( final String attributeName )
+        {
+            super( attributeName );
+        }
+
+        @Override
+        public Result evaluate( final Map<String, List<String>> attributeValues )
+        {
+            // every entry has an object class, no need to read it
+            if ( "objectclass".equals( getAttributeName() ) )
+            {
+                return Result.MATCH;
+            }
+            return super.evaluate( attributeValues );
+        }
+
+        @Override
+        void collectAttributeNames( final Set<String> names )
+        {
+            if ( !"objectclass".equals( getAttributeName() ) )
+            {
+                super.collectAttributeNames( names );
+            }
+        }
+
+        @Override
+        Result matchValue( final String value )
+        {
+            return Result.MATCH;
+        }
+    }
+
+    private static class EqualityFilter extends AttributeFilter
+    {
+        private final MatchingRule matchingRule;
+        private final String assertionValue;
+        private final String normalizedAssertion;
+
+        EqualityFilter( final String attributeName, final MatchingRule matchingRule, final String assertionValue )
+        {
+            super( attributeName );
+            this.matchingRule = matchingRule;
+            this.assertionValue = assertionValue.trim();
+            this.normalizedAssertion = normalizeValue( assertionValue, matchingRule );
+        }
+
+        @Override
+        Result matchValue( final String value )
+        {
+            switch ( matchingRule )
+            {
+                case INTEGER:
+                case GENERALIZED_TIME:
+                {
+                    final Integer comparison = compareOrdered( matchingRule, value, assertionValue );
+                    if ( comparison == null )
+                    {
+                        return Result.UNDETERMINED;
+                    }
+                    return comparison == 0 ? Result.MATCH : Result.NO_MATCH;
+                }
+
+                case OBJECT_IDENTIFIER:
+                {
+                    // a numeric oid may name the same object class as a descriptive name
+                    if ( NUMERIC_OID_PATTERN.matcher( assertionValue ).matches() || NUMERIC_OID_PATTERN.matcher( value.trim() ).matches() )
+                    {
+                        return Result.UNDETERMINED;
+                    }
+
+                    // the directory may also match a superclass of the stored object classes, so only a match is trusted
+                    final Result result = matchNormalized( value );
+                    return result == Result.NO_MATCH ? Result.UNDETERMINED : result;
+                }
+
+                default:
+                    return matchNormalized( value );
+            }
+        }
+
+        private Result matchNormalized( final String value )
+        {
+            final String normalizedValue = normalizeValue( value, matchingRule );
+            if ( normalizedAssertion == null || normalizedValue == null )
+            {
+                return Result.UNDETERMINED;
+            }
+            return normalizedAssertion.equals( normalizedValue ) ? Result.MATCH : Result.NO_MATCH;
+        }
+    }
+
+    private static class SubstringFilter extends AttributeFilter
+    {
+        private final String initial;
+        private final List<String> any;
+        private final String last;
+        private final boolean comparable;
+
+        SubstringFilter( final String attributeName, final String initial, final List<String> any, final String last )
+        {
+            super( attributeName );
+            this.initial = initial == null ? null : initial.toLowerCase( Locale.ROOT );
+            this.last = last == null ? null : last.toLowerCase( Locale.ROOT );
+            final List<String> lowerAny = new ArrayList<>();
+            for ( final String value : any )
+            {
+                lowerAny.add( value.toLowerCase( Locale.ROOT ) );
+            }
+            this.any = Collections.unmodifiableList( lowerAny );
+
+            boolean piecesComparable = isComparablePiece( initial ) && isComparablePiece( last );
+            for ( final String value : any )
+            {
+                piecesComparable &= isComparablePiece( value );
+            }
+            this.comparable = piecesComparable;
+        }
+
+        /**
+         * Pieces with repeated spaces or characters outside of ascii are left to the directory's space and case handling.
+         */
+        private static boolean isComparablePiece( final String piece )
+        {
+            return piece == null || ( !piece.contains( "  " ) && normalizeValue( piece, MatchingRule.CASE_IGNORE ) != null );
+        }
+
+        @Override
+        Result matchValue( final String value )
+        {
+            final String lowerValue = normalizeValue( value, MatchingRule.CASE_IGNORE );
+            if ( !comparable || lowerValue == null )
+            {
+                return Result.UNDETERMINED;
+            }
+            int position = 0;
+            if ( initial != null )
+            {
+                if ( !lowerValue.startsWith( initial ) )
+                {
+                    return Result.NO_MATCH;
+                }
+                position = initial.length();
+            }
+
+            for ( final String anyValue : any )
+            {
+                final int index = lowerValue.indexOf( anyValue, position );
+                if ( index < 0 )
+                {
+                    return Result.NO_MATCH;
+                }
+                position = index + anyValue.length();
+            }
+
+            if ( last != null )
+            {
+                return lowerValue.length() - last.length() >= position && lowerValue.endsWith( last )
+                        ? Result.MATCH
+                        : Result.NO_MATCH;
+            }
+            return Result.MATCH;
+        }
+    }
+
+    /**
+     * Greater-or-equal and less-or-equal assertions, evaluated only for integer and generalized time attributes.
+     */
+    private static class OrderingFilter extends AttributeFilter
+    {
+        private final MatchingRule matchingRule;
+        private final boolean greaterOrEqual;
+        private final String assertionValue;
+
+        OrderingFilter( final String attributeName, final MatchingRule matchingRule, final boolean greaterOrEqual, final String assertionValue )
+        {
+            super( attributeName );
+            this.matchingRule = matchingRule;
+            this.greaterOrEqual = greaterOrEqual;
+            this.assertionValue = assertionValue.trim();
+        }
+
+        @Override
+        Result matchValue( final String value )
+        {
+            final Integer comparison = compareOrdered( matchingRule, value, assertionValue );
+            if ( comparison == null )
+            {
+                return Result.UNDETERMINED;
+            }
+
+            final boolean matches = greaterOrEqual ? comparison >= 0 : comparison <= 0;
+            return matches ? Result.MATCH : Result.NO_MATCH;
+        }
+    }
+
+    /**
+     * Compare integer or generalized time values.
+     *
+     * @return the comparison result, or null if either value is not in a form that can be compared locally.
+     */
+    private static Integer compareOrdered( final MatchingRule matchingRule, final String rawValue, final String assertionValue )
+    {
+        final String value = rawValue.trim();
+        if ( matchingRule == MatchingRule.INTEGER
+                && INTEGER_PATTERN.matcher( value ).matches() && INTEGER_PATTERN.matcher( assertionValue ).matches() )
+        {
+            return new BigInteger( value ).compareTo( new BigInteger( assertionValue ) );
+        }
+
+        if ( matchingRule == MatchingRule.GENERALIZED_TIME
+                && GENERALIZED_TIME_PATTERN.matcher( value ).matches() && GENERALIZED_TIME_PATTERN.matcher( assertionValue ).matches() )
+        {
+            return value.compareTo( assertionValue );
+        }
+
+        return null;
+    }
+
+    private static class Parser
+    {
+        private final String input;
+        private final Map<String, MatchingRule> matchingRules;
+        private int position;
+
+        Parser( final String input, final Map<String, MatchingRule> matchingRules )
+        {
+            this.input = input;
+            this.matchingRules = matchingRules;
+        }
+
+        boolean atEnd( )
+        {
+            return position >= input.length();
+        }
+
+        LdapFilter parseFilter( )
+        {
+            expect( '(' );
+            final LdapFilter filter;
+            switch ( peek() )
+            {
+                case '&':
+                    position++;
+                    filter = new CompositeFilter( true, parseFilterList() );
+                    break;
+
+                case '|':
+                    position++;
+                    filter = new CompositeFilter( false, parseFilterList() );
+                    break;
+
+                case '!':
+                    position++;
+                    filter = new NotFilter( parseFilter() );
+                    break;
+
+                default:
+                    filter = parseItem();
+            }
+            expect( ')' );
+            return filter;
+        }
+
+        private List<LdapFilter> parseFilterList( )
+        {
+            final List<LdapFilter> components = new ArrayList<>();
+            while ( peek() == '(' )
+            {
+                components.add( parseFilter() );
+            }
+            return Collections.unmodifiableList( components );
+        }
+
+        private LdapFilter parseItem( )
+        {
+            final int start = position;
+            while ( !atEnd() && "=~<>:()".indexOf( input.charAt( position ) ) < 0 )
+            {
+                position++;
+            }
+            final String attributeDescription = input.substring( start, position ).trim();
+
+            if ( peek() == ':' )
+            {
+                // extensible match
+                readValue();
+                return new UnsupportedFilter();
+            }
+
+            if ( attributeDescription.isEmpty() || !isAttributeDescription( attributeDescription ) )
+            {
+                throw new IllegalArgumentException( "invalid attribute description at position " + start );
+            }
+
+            final char operator = peek();
+            if ( operator == '~' || operator == '>' || operator == '<' )
+            {
+                position++;
+                expect( '=' );
+                final List<String> pieces = readValue();
+                if ( pieces.size() != 1 )
+                {
+                    throw new IllegalArgumentException( "wildcard not permitted in assertion at position " + start );
+                }
+
+                final MatchingRule matchingRule = matchingRules.get( attributeDescription.toLowerCase( Locale.ROOT ) );
+                if ( operator == '~' || hasOptions( attributeDescription )
+                        || ( matchingRule != MatchingRule.INTEGER && matchingRule != MatchingRule.GENERALIZED_TIME ) )
+                {
+                    return new UnsupportedFilter();
+                }
+                return new OrderingFilter( attributeDescription, matchingRule, operator == '>', pieces.get( 0 ) );
+            }
+
+            expect( '=' );
+            final List<String> pieces = readValue();
+            if ( hasOptions( attributeDescription ) )
+            {
+                return new UnsupportedFilter();
+            }
+
+            if ( pieces.size() == 2 && pieces.get( 0 ).isEmpty() && pieces.get( 1 ).isEmpty() )
+            {
+                return new PresentFilter( attributeDescription );
+            }
+
+            // without a known matching rule the directory may compare values differently than any local rule
+            final MatchingRule matchingRule = matchingRules.get( attributeDescription.toLowerCase( Locale.ROOT ) );
+            if ( matchingRule == null )
+            {
+                return new UnsupportedFilter();
+            }
+
+            if ( pieces.size() == 1 )
+            {
+                return new EqualityFilter( attributeDescription, matchingRule, pieces.get( 0 ) );
+            }
+
+            if ( matchingRule != MatchingRule.CASE_IGNORE )
+            {
+                return new UnsupportedFilter();
+            }
+
+            final String initial = pieces.get( 0 ).isEmpty() ? null : pieces.get( 0 );
+            final String last = pieces.get( pieces.size() - 1 ).isEmpty() ? null : pieces.get( pieces.size() - 1 );
+            final List<String> any = new ArrayList<>();
+            for ( final String piece : pieces.subList( 1, pieces.size() - 1 ) )
+            {
+                if ( !piece.isEmpty() )
+                {
+                    any.add( piece );
+                }
+            }
+            return new SubstringFilter( attributeDescription, initial, any, last );
+        }
+
+        /**
+         * Read an assertion value up to the closing parenthesis, decoding escapes and splitting it on unescaped
+         * asterisks.
+         */
+        private List<String> readValue( )
+        {
+            final List<String> pieces = new ArrayList<>();
+            final ByteArrayOutputStream current = new ByteArrayOutputStream();
+            while ( !atEnd() && input.charAt( position ) != ')' )
+            {
+                final char nextChar = input.charAt( position );
+                if ( nextChar == '(' )
+                {
+                    throw new IllegalArgumentException( "unescaped parenthesis in value at position " + position );
+                }
+
+                if ( nextChar == '*' )
+                {
+                    pieces.add( new String( current.toByteArray(), StandardCharsets.UTF_8 ) );
+                    current.reset();
+                    position++;
+                }
+                else if ( nextChar == '\\' )
+                {
+                    position++;
+                    readEscape( current );
+                }
+                else
+                {
+                    final int codePoint = input.codePointAt( position );
+                    final byte[] bytes = new String( Character.toChars( codePoint ) ).getBytes( StandardCharsets.UTF_8 );
+                    current.write( bytes, 0, bytes.length );
+                    position += Character.charCount( codePoint );
+                }
+            }
+            pieces.add( new String( current.toByteArray(), StandardCharsets.UTF_8 ) );
+            return pieces;
+        }
+
+        private void readEscape( final ByteArrayOutputStream current )
+        {
+            if ( position + 1 < input.length() && isHex( input.charAt( position ) ) && isHex( input.charAt( position + 1 ) ) )
+            {
+                current.write( Integer.parseInt( input.substring( position, position + 2 ), 16 ) );
+                position += 2;
+                return;
+            }
+
+            // lenient handling of the older "\*" style escapes
+            if ( atEnd() )
+            {
+                throw new IllegalArgumentException( "incomplete escape at end of filter" );
+            }
+            final byte[] bytes = String.valueOf( input.charAt( position ) ).getBytes( StandardCharsets.UTF_8 );
+            current.write( bytes, 0, bytes.length );
+            position++;
+        }
+
+        private char peek( )
+        {
+            if ( atEnd() )
+            {
+                throw new IllegalArgumentException( "unexpected end of filter" );
+            }
+            return input.charAt( position );
+        }
+
+        private void expect( final char expected )
+        {
+            if ( peek() != expected )
+            {
+                throw new IllegalArgumentException( "expected '" + expected + "' at position " + position );
+            }
+            position++;
+        }
+
+        private static boolean isHex( final char value )
+        {
+            return Character.digit( value, 16 ) >= 0;
+        }
+
+        private static boolean hasOptions( final String attributeDescription )
+        {
+            return attributeDescription.indexOf( ';' ) >= 0;
+        }
+
+        private static boolean isAttributeDescription( final String value )
+        {
+            for ( int i = 0; i < value.length(); i++ )
+            {
+                final char nextChar = value.charAt( i );
+                if ( !Character.isLetterOrDigit( nextChar ) && nextChar != '-' && nextChar != '.' && nextChar != ';' && nextChar != '_' )
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package password.pwm.svc.cache;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for values produced by {@link CacheLoader}s on behalf of {@link CacheService}.
+ */
+public class CacheLoadStatistics implements Serializable
+{
+    private final AtomicLong loadCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong refreshAheadCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    public void incrementLoadCount( )
+    {
+        loadCount.incrementAndGet();
+    }
+
+    public void incrementCoalescedCount( )
+    {
+        coalescedCount.incrementAndGet();
+    }
+
+    public void incrementRefreshAheadCount( )
+    {
+        refreshAheadCount.incrementAndGet();
+    }
+
+    public void incrementFailedCount( )
+    {
+        failedCount.incrementAndGet();
+    }
+
+    /**
+     * @return number of times a loader was invoked.
+     */
+    public long getLoadCount( )
+    {
+        return loadCount.get();
+    }
+
+    /**
+     * @return number of cache misses satisfied by waiting on a load already in progress for the same key.
+     */
+    public long getCoalescedCount( )
+    {
+        return coalescedCount.get();
+    }
+
+    /**
+     * @return number of background reloads started for entries nearing expiration.
+     */
+    public long getRefreshAheadCount( )
+    {
+        return refreshAheadCount.get();
+    }
+
+    public long getFailedCount( )
+    {
+        return failedCount.get();
+    }
+}
@@ -29,9 +29,11 @@ import password.pwm.error.PwmException;
 import password.pwm.error.PwmUnrecoverableException;
 import password.pwm.health.HealthRecord;
 import password.pwm.svc.PwmService;
+import password.pwm.util.PwmScheduler;
 import password.pwm.util.java.ConditionalTaskExecutor;
 import password.pwm.util.java.JsonUtil;
 import password.pwm.util.java.TimeDuration;
+import password.pwm.util.localdb.LocalDBException;
 import password.pwm.util.logging.PwmLogger;
 
 import java.io.Serializable;
@@ -44,6 +46,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 
 public class CacheService implements PwmService
 {
@@ -51,6 +57,20 @@ public class CacheService implements PwmService
 
     private MemoryCacheStore memoryCacheStore;
 
+    private LocalDBCacheStore localDBCacheStore;
+
+    private ExecutorService executorService;
+
+    private ExecutorService localDBWriteExecutor;
+
+    private final Map<CacheKey, InFlightLoad> inFlightLoads = new ConcurrentHashMap<>();
+
+    private final CacheLoadStatistics loadStatistics = new CacheLoadStatistics();
+
+    private boolean refreshAheadEnabled;
+
+    private int refreshAheadPercent;
+
     private STATUS status = STATUS.NEW;
 
     private ConditionalTaskExecutor traceDebugOutputter;
@@ -89,7 +109,12 @@ public class CacheService implements PwmService
 
         status = STATUS.OPENING;
         final int maxMemItems = Integer.parseInt( pwmApplication.getConfig().readAppProperty( AppProperty.CACHE_MEMORY_MAX_ITEMS ) );
-        memoryCacheStore = new MemoryCacheStore( maxMemItems );
+        final boolean directValues = Boolean.parseBoolean( pwmApplication.getConfig().readAppProperty( AppProperty.CACHE_MEMORY_DIRECT_VALUES ) );
+        memoryCacheStore = new MemoryCacheStore( maxMemItems, directValues );
+        refreshAheadEnabled = Boolean.parseBoolean( pwmApplication.getConfig().readAppProperty( AppProperty.CACHE_REFRESH_AHEAD_ENABLE ) );
+        refreshAheadPercent = Integer.parseInt( pwmApplication.getConfig().readAppProperty( AppProperty.CACHE_REFRESH_AHEAD_PERCENT ) );
+        executorService = PwmScheduler.makeBackgroundExecutor( pwmApplication, this.getClass() );
+        initLocalDBCacheStore( pwmApplication );
         this.traceDebugOutputter = new ConditionalTaskExecutor(
                 ( ) -> outputTraceInfo(),
                 new ConditionalTaskExecutor.TimeDurationPredicate( 1, TimeDuration.Unit.MINUTES )
@@ -97,10 +122,58 @@ public class CacheService implements PwmService
         status = STATUS.OPEN;
     }
 
+    private void initLocalDBCacheStore( final PwmApplication pwmApplication )
+    {
+        final boolean localDBEnabled = Boolean.parseBoolean( pwmApplication.getConfig().readAppProperty( AppProperty.CACHE_LOCALDB_ENABLE ) );
+        if ( !localDBEnabled )
+        {
+            return;
+        }
+
+        final int maxItems = Integer.parseInt( pwmApplication.getConfig().readAppProperty( AppProperty.CACHE_LOCALDB_MAX_ITEMS ) );
+        final TimeDuration minLifetime = TimeDuration.of(
+                Long.parseLong( pwmApplication.getConfig().readAppProperty( AppProperty.CACHE_LOCALDB_MIN_LIFETIME_SECONDS ) ),
+                TimeDuration.Unit.SECONDS );
+        final ExecutorService writeExecutor = PwmScheduler.makeBackgroundExecutor( pwmApplication, LocalDBCacheStore.class );
+
+        try
+        {
+            final LocalDBCacheStore newStore = new LocalDBCacheStore(
+                    pwmApplication.getLocalDB(),
+                    maxItems,
+                    minLifetime.asMillis(),
+                    pwmApplication.getConfig().configurationHash(),
+                    pwmApplication.getConfig().getSecurityKey(),
+                    writeExecutor );
+            newStore.open();
+            localDBWriteExecutor = writeExecutor;
+            localDBCacheStore = newStore;
+
+            final TimeDuration purgeFrequency = TimeDuration.of( 1, TimeDuration.Unit.MINUTES );
+            pwmApplication.getPwmScheduler().scheduleFixedRateJob( ( ) -> newStore.purgeExpired(), executorService, purgeFrequency, purgeFrequency );
+        }
+        catch ( LocalDBException | PwmUnrecoverableException e )
+        {
+            writeExecutor.shutdown();
+            LOGGER.warn( "unable to open LocalDB cache store, continuing with memory cache only: " + e.getMessage() );
+        }
+    }
+
     @Override
     public void close( )
     {
         status = STATUS.CLOSED;
+        if ( executorService != null )
+        {
+            executorService.shutdown();
+            executorService = null;
+        }
+        if ( localDBWriteExecutor != null )
+        {
+            localDBWriteExecutor.shutdown();
+            localDBWriteExecutor = null;
+        }
+        localDBCacheStore = null;
     }
 
     @Override
@@ -116,7 +189,14 @@ public class CacheService implements PwmService
         debugInfo.put( "itemCount", String.valueOf( memoryCacheStore.itemCount() ) );
         debugInfo.put( "byteCount", String.valueOf( memoryCacheStore.byteCount() ) );
         debugInfo.putAll( JsonUtil.deserializeStringMap( JsonUtil.serialize( memoryCacheStore.getCacheStoreInfo() ) ) );
+        debugInfo.putAll( latencyDebugMap( memoryCacheStore.getCacheStoreInfo() ) );
+        debugInfo.putAll( loadDebugMap() );
         debugInfo.putAll( JsonUtil.deserializeStringMap( JsonUtil.serializeMap( memoryCacheStore.storedClassHistogram( "histogram." ) ) ) );
+        final LocalDBCacheStore localDBStore = localDBCacheStore;
+        if ( localDBStore != null )
+        {
+            debugInfo.putAll( localDBDebugMap( localDBStore ) );
+        }
         return new ServiceInfoBean( Collections.emptyList(), debugInfo );
     }
 
@@ -124,8 +204,16 @@ public class CacheService implements PwmService
     {
         final Map<String, Serializable> debugInfo = new LinkedHashMap<>( );
         debugInfo.put( "memory-statistics", memoryCacheStore.getCacheStoreInfo() );
+        debugInfo.put( "memory-latency", new LinkedHashMap<>( latencyDebugMap( memoryCacheStore.getCacheStoreInfo() ) ) );
         debugInfo.put( "memory-items", new ArrayList<Serializable>( memoryCacheStore.getCacheDebugItems() ) );
         debugInfo.put( "memory-histogram", new HashMap<>( memoryCacheStore.storedClassHistogram( "" ) ) );
+        debugInfo.put( "load-statistics", loadStatistics );
+        final LocalDBCacheStore localDBStore = localDBCacheStore;
+        if ( localDBStore != null )
+        {
+            debugInfo.put( "localDB-statistics", localDBStore.getCacheStoreInfo() );
+            debugInfo.put( "localDB-latency", new LinkedHashMap<>( latencyDebugMap( localDBStore.getCacheStoreInfo() ) ) );
+        }
         return Collections.unmodifiableMap( debugInfo );
     }
 
@@ -144,6 +232,12 @@ public class CacheService implements PwmService
         final Instant expirationDate = cachePolicy.getExpiration();
         memoryCacheStore.store( cacheKey, expirationDate, payload );
 
+        final LocalDBCacheStore localDBStore = localDBCacheStore;
+        if ( localDBStore != null )
+        {
+            localDBStore.store( cacheKey, expirationDate, payload );
+        }
+
         traceDebugOutputter.conditionallyExecuteTask();
     }
 
@@ -163,6 +257,11 @@ public class CacheService implements PwmService
             payload = memoryCacheStore.read( cacheKey, classOfT );
         }
 
+        if ( payload == null )
+        {
+            payload = readPersisted( cacheKey, classOfT );
+        }
+
         traceDebugOutputter.conditionallyExecuteTask();
 
         return payload;
@@ -183,8 +282,235 @@ public class CacheService implements PwmService
 
         traceDebugOutputter.conditionallyExecuteTask();
 
-        final Instant expirationDate = cachePolicy.getExpiration();
-        return memoryCacheStore.readAndStore( cacheKey, expirationDate, classOfT, cacheLoader );
+        final T memoryPayload = memoryCacheStore.read( cacheKey, classOfT );
+        if ( memoryPayload != null )
+        {
+            if ( refreshAheadEnabled )
+            {
+                checkRefreshAhead( cacheKey, cachePolicy, cacheLoader );
+            }
+            return memoryPayload;
+        }
+
+        final T persistedPayload = readPersisted( cacheKey, classOfT );
+        if ( persistedPayload != null )
+        {
+            return persistedPayload;
+        }
+
+        return loadSingleFlight( cacheKey, cachePolicy, classOfT, cacheLoader );
+    }
+
+    /**
+     * Invoke the loader, unless a load for the same key is already in progress in which case wait for it and read
+     * its result from the memory store.  Waiting callers read the stored copy rather than sharing the loader's
+     * instance, so mutable values are never shared between callers.
+     */
+    private <T extends Serializable> T loadSingleFlight(
+            final CacheKey cacheKey,
+            final CachePolicy cachePolicy,
+            final Class<T> classOfT,
+            final CacheLoader<T> cacheLoader
+    )
+            throws PwmUnrecoverableException
+    {
+        final InFlightLoad newLoad = new InFlightLoad( Thread.currentThread() );
+        final InFlightLoad existingLoad = inFlightLoads.putIfAbsent( cacheKey, newLoad );
+
+        if ( existingLoad == null )
+        {
+            return executeLoad( cacheKey, cachePolicy, cacheLoader, newLoad );
+        }
+
+        // a loader that reads its own key would otherwise wait on itself
+        if ( existingLoad.getLoadingThread() != Thread.currentThread() )
+        {
+            loadStatistics.incrementCoalescedCount();
+            if ( awaitLoad( existingLoad ) )
+            {
+                final T loadedPayload = memoryCacheStore.read( cacheKey, classOfT );
+                if ( loadedPayload != null )
+                {
+                    return loadedPayload;
+                }
+            }
+        }
+
+        loadStatistics.incrementLoadCount();
+        final T payload = cacheLoader.read();
+        if ( payload != null )
+        {
+            put( cacheKey, cachePolicy, payload );
+        }
+        return payload;
+    }
+
+    private <T extends Serializable> T executeLoad(
+            final CacheKey cacheKey,
+            final CachePolicy cachePolicy,
+            final CacheLoader<T> cacheLoader,
+            final InFlightLoad inFlightLoad
+    )
+            throws PwmUnrecoverableException
+    {
+        try
+        {
+            loadStatistics.incrementLoadCount();
+            final T payload = cacheLoader.read();
+            if ( payload != null )
+            {
+                put( cacheKey, cachePolicy, payload );
+            }
+            inFlightLoad.getCompletion().complete( null );
+            return payload;
+        }
+        catch ( PwmUnrecoverableException | RuntimeException e )
+        {
+            loadStatistics.incrementFailedCount();
+            inFlightLoad.getCompletion().completeExceptionally( e );
+            throw e;
+        }
+        finally
+        {
+            inFlightLoads.remove( cacheKey, inFlightLoad );
+        }
+    }
+
+    /**
+     * @return true if the load completed normally, false if waiting was interrupted.
+     */
+    private static boolean awaitLoad( final InFlightLoad inFlightLoad )
+            throws PwmUnrecoverableException
+    {
+        try
+        {
+            inFlightLoad.getCompletion().get();
+            return true;
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        catch ( ExecutionException e )
+        {
+            // share the loader's failure rather than repeating a load that is likely to fail the same way
+            if ( e.getCause() instanceof PwmUnrecoverableException )
+            {
+                throw ( PwmUnrecoverableException ) e.getCause();
+            }
+            if ( e.getCause() instanceof RuntimeException )
+            {
+                throw ( RuntimeException ) e.getCause();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Start a background reload if the stored value has less than {@code cache.refreshAhead.percent} of the policy's
+     * lifetime remaining, so frequently read values are replaced before they expire rather than after.
+     */
+    private <T extends Serializable> void checkRefreshAhead(
+            final CacheKey cacheKey,
+            final CachePolicy cachePolicy,
+            final CacheLoader<T> cacheLoader
+    )
+    {
+        final Instant expiration = memoryCacheStore.readExpiration( cacheKey );
+        if ( expiration == null || inFlightLoads.containsKey( cacheKey ) )
+        {
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        final long lifetimeMs = cachePolicy.getExpiration().toEpochMilli() - now;
+        final long remainingMs = expiration.toEpochMilli() - now;
+        if ( remainingMs > lifetimeMs * refreshAheadPercent / 100 )
+        {
+            return;
+        }
+
+        final InFlightLoad refreshLoad = new InFlightLoad( null );
+        if ( inFlightLoads.putIfAbsent( cacheKey, refreshLoad ) != null )
+        {
+            return;
+        }
+
+        loadStatistics.incrementRefreshAheadCount();
+        try
+        {
+            executorService.execute( ( ) ->
+            {
+                refreshLoad.setLoadingThread( Thread.currentThread() );
+                try
+                {
+                    executeLoad( cacheKey, cachePolicy, cacheLoader, refreshLoad );
+                }
+                catch ( PwmUnrecoverableException | RuntimeException e )
+                {
+                    LOGGER.debug( () -> "error during refresh-ahead load of cache item: " + e.getMessage() );
+                }
+            } );
+        }
+        catch ( RuntimeException e )
+        {
+            refreshLoad.getCompletion().complete( null );
+            inFlightLoads.remove( cacheKey, refreshLoad );
+        }
+    }
+
+    /**
+     * Read from the LocalDB tier, promoting a hit to the memory tier with its original expiration.
+     */
+    private <T extends Serializable> T readPersisted( final CacheKey cacheKey, final Class<T> classOfT )
+    {
+        final LocalDBCacheStore localDBStore = localDBCacheStore;
+        if ( localDBStore == null )
+        {
+            return null;
+        }
+
+        try
+        {
+            final LocalDBCacheStore.PersistedValue<T> persistedValue = localDBStore.readPersisted( cacheKey, classOfT );
+            if ( persistedValue != null )
+            {
+                memoryCacheStore.store( cacheKey, persistedValue.getExpiration(), persistedValue.getValue() );
+                return persistedValue.getValue();
+            }
+        }
+        catch ( PwmUnrecoverableException e )
+        {
+            LOGGER.debug( () -> "error reading LocalDB cache tier: " + e.getMessage() );
+        }
+        return null;
+    }
+
+    private Map<String, String> loadDebugMap( )
+    {
+        final Map<String, String> output = new LinkedHashMap<>();
+        JsonUtil.deserializeStringMap( JsonUtil.serialize( loadStatistics ) ).forEach( ( key, value ) -> output.put( "loader." + key, value ) );
+        return output;
+    }
+
+    private static Map<String, String> localDBDebugMap( final LocalDBCacheStore localDBStore )
+    {
+        final Map<String, String> output = new LinkedHashMap<>();
+        output.put( "localDB.itemCount", String.valueOf( localDBStore.itemCount() ) );
+        output.put( "localDB.byteCount", String.valueOf( localDBStore.byteCount() ) );
+        final Map<String, String> storeInfo = JsonUtil.deserializeStringMap( JsonUtil.serialize( localDBStore.getCacheStoreInfo() ) );
+        storeInfo.forEach( ( key, value ) -> output.put( "localDB." + key, value ) );
+        latencyDebugMap( localDBStore.getCacheStoreInfo() ).forEach( ( key, value ) -> output.put( "localDB." + key, value ) );
+        return output;
+    }
+
+    private static Map<String, String> latencyDebugMap( final CacheStoreInfo cacheStoreInfo )
+    {
+        final Map<String, String> output = new LinkedHashMap<>();
+        output.putAll( cacheStoreInfo.getHitLatency().debugMap( "hitLatency." ) );
+        output.putAll( cacheStoreInfo.getMissLatency().debugMap( "missLatency." ) );
+        return output;
     }
 
     private void outputTraceInfo( )
@@ -195,9 +521,45 @@ public class CacheService implements PwmService
             final CacheStoreInfo info = memoryCacheStore.getCacheStoreInfo();
             traceOutput.append( "memCache=" );
             traceOutput.append( JsonUtil.serialize( info ) );
+            traceOutput.append( ", latency=" );
+            traceOutput.append( JsonUtil.serializeMap( latencyDebugMap( info ) ) );
             traceOutput.append( ", histogram=" );
             traceOutput.append( JsonUtil.serializeMap( memoryCacheStore.storedClassHistogram( "" ) ) );
         }
+        traceOutput.append( ", loader=" );
+        traceOutput.append( JsonUtil.serialize( loadStatistics ) );
+        final LocalDBCacheStore localDBStore = localDBCacheStore;
+        if ( localDBStore != null )
+        {
+            traceOutput.append( ", localDBCache=" );
+            traceOutput.append( JsonUtil.serializeMap( localDBDebugMap( localDBStore ) ) );
+        }
         LOGGER.trace( () -> traceOutput );
     }
+
+    private static class InFlightLoad
+    {
+        private final CompletableFuture<Void> completion = new CompletableFuture<>();
+        private volatile Thread loadingThread;
+
+        InFlightLoad( final Thread loadingThread )
+        {
+            this.loadingThread = loadingThread;
+        }
+
+        CompletableFuture<Void> getCompletion( )
+        {
+            return completion;
+        }
+
+        Thread getLoadingThread( )
+        {
+            return loadingThread;
+        }
+
+        void setLoadingThread( final Thread loadingThread )
+        {
+            this.loadingThread = loadingThread;
+        }
+    }
 }
@@ -22,6 +22,8 @@
 
 package password.pwm.svc.cache;
 
+import password.pwm.util.java.LatencyHistogram;
+
 import java.io.Serializable;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -32,6 +34,10 @@ public class CacheStoreInfo implements Serializable
     private final AtomicLong hitCount = new AtomicLong();
     private final AtomicLong missCount = new AtomicLong();
 
+    // histograms are reported through their debug maps rather than serialized with the counters
+    private final transient LatencyHistogram hitLatency = new LatencyHistogram();
+    private final transient LatencyHistogram missLatency = new LatencyHistogram();
+
     public void incrementStoreCount( )
     {
         storeCount.incrementAndGet();
@@ -71,4 +77,14 @@ public class CacheStoreInfo implements Serializable
     {
         return missCount.get();
     }
+
+    public LatencyHistogram getHitLatency( )
+    {
+        return hitLatency;
+    }
+
+    public LatencyHistogram getMissLatency( )
+    {
+        return missLatency;
+    }
 }
@@ -22,6 +22,50 @@
 
 package password.pwm.svc.cache;
 
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * How a payload is held by the memory cache.
+ */
 public enum CacheValueType
 {
+    /**
+     * The payload instance itself is stored and returned to every reader.  Only used for types that can not be
+     * modified after they are stored.
+     */
+    Direct,
+
+    /**
+     * The payload is serialized to JSON when stored and deserialized on every read, so each reader gets a private
+     * copy.
+     */
+    Json;
+
+    private static final Set<Class<?>> IMMUTABLE_CLASSES = Collections.unmodifiableSet( new HashSet<>( Arrays.asList(
+            String.class,
+            Boolean.class,
+            Character.class,
+            Byte.class,
+            Short.class,
+            Integer.class,
+            Long.class,
+            Float.class,
+            Double.class,
+            Instant.class
+    ) ) );
+
+    public static CacheValueType forClass( final Class<?> payloadClass )
+    {
+        if ( IMMUTABLE_CLASSES.contains( payloadClass )
+                || payloadClass.isEnum()
+                || ImmutableCacheValue.class.isAssignableFrom( payloadClass ) )
+        {
+            return Direct;
+        }
+        return Json;
+    }
 }
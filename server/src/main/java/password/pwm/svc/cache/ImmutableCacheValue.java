@@ -0,0 +1,35 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package password.pwm.svc.cache;
+
+/**
+ * Marker for cache payload classes whose instances are never modified once they have been stored in the
+ * {@link CacheService}, by either the code storing them or any reader.  Payloads of these classes are shared between
+ * readers instead of being copied through JSON on every cache read.
+ *
+ * <p>Implementations must be deeply immutable: final fields only (for example lombok {@code @Value}), nested beans
+ * that are themselves immutable, and collections wrapped as unmodifiable when the instance is built.</p>
+ */
+public interface ImmutableCacheValue
+{
+}
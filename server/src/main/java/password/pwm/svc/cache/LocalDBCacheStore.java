@@ -0,0 +1,457 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package password.pwm.svc.cache;
+
+import lombok.Value;
+import password.pwm.error.PwmUnrecoverableException;
+import password.pwm.util.java.JsonUtil;
+import password.pwm.util.localdb.LocalDB;
+import password.pwm.util.localdb.LocalDBException;
+import password.pwm.util.logging.PwmLogger;
+import password.pwm.util.secure.PwmBlockAlgorithm;
+import password.pwm.util.secure.PwmHashAlgorithm;
+import password.pwm.util.secure.PwmSecurityKey;
+import password.pwm.util.secure.SecureEngine;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Second level cache store persisted in {@link LocalDB.DB#CACHE}, so cached values survive a restart and the memory
+ * store can be kept small.
+ *
+ * <p>Stored keys are hashes of the {@link CacheKey} so that key material (which may contain DNs or password hashes)
+ * is not written to disk, and stored values are encrypted with the configuration security key.  Keys also include a
+ * key epoch, normally the configuration hash, so values cached under a different configuration are never read; they
+ * are discarded when the store is opened.</p>
+ *
+ * <p>Writes are made on the supplied executor rather than the calling thread.  An in-memory index ordered by
+ * expiration is built when the store is opened; it makes purging expired entries and trimming the store to its maximum
+ * size proportional to the number of entries removed rather than the size of the store.</p>
+ */
+class LocalDBCacheStore implements CacheStore
+{
+    private static final PwmLogger LOGGER = PwmLogger.forClass( LocalDBCacheStore.class );
+
+    private static final LocalDB.DB DB = LocalDB.DB.CACHE;
+    private static final PwmBlockAlgorithm BLOCK_ALGORITHM = PwmBlockAlgorithm.AES128_GCM;
+    private static final int MAX_PENDING_WRITES = 1000;
+
+    private final LocalDB localDB;
+    private final int maxItems;
+    private final long minLifetimeMs;
+    private final String keyEpoch;
+    private final PwmSecurityKey securityKey;
+    private final Executor writeExecutor;
+    private final CacheStoreInfo cacheStoreInfo = new CacheStoreInfo();
+    private final AtomicInteger pendingWrites = new AtomicInteger( 0 );
+
+    private final Map<String, IndexEntry> indexByKey = new ConcurrentHashMap<>();
+    private final NavigableSet<IndexEntry> expirationIndex = new ConcurrentSkipListSet<>();
+
+    LocalDBCacheStore(
+            final LocalDB localDB,
+            final int maxItems,
+            final long minLifetimeMs,
+            final String keyEpoch,
+            final PwmSecurityKey securityKey,
+            final Executor writeExecutor
+    )
+    {
+        this.localDB = localDB;
+        this.maxItems = maxItems;
+        this.minLifetimeMs = minLifetimeMs;
+        this.keyEpoch = keyEpoch;
+        this.securityKey = securityKey;
+        this.writeExecutor = writeExecutor;
+    }
+
+    /**
+     * Build the expiration index from the stored entries, discarding any that have expired while the application
+     * was not running or that were stored under a different key epoch.
+     */
+    void open( ) throws LocalDBException
+    {
+        final long now = System.currentTimeMillis();
+        final List<String> expiredKeys = new ArrayList<>();
+
+        try ( LocalDB.LocalDBIterator<String> iterator = localDB.iterator( DB ) )
+        {
+            while ( iterator.hasNext() )
+            {
+                final String key = iterator.next();
+                final StoredValue storedValue = parseStoredValue( localDB.get( DB, key ) );
+                if ( storedValue == null || storedValue.getExpiration() <= now || !keyEpoch.equals( storedValue.getEpoch() ) )
+                {
+                    expiredKeys.add( key );
+                }
+                else
+                {
+                    index( key, storedValue.getExpiration(), storedValue.getPayload().length() );
+                }
+            }
+        }
+
+        if ( !expiredKeys.isEmpty() )
+        {
+            localDB.removeAll( DB, expiredKeys );
+        }
+
+        LOGGER.debug( () -> "opened with " + indexByKey.size() + " stored items, discarded " + expiredKeys.size() + " expired or stale items" );
+        trimToMaxItems();
+    }
+
+    @Override
+    public void store( final CacheKey cacheKey, final Instant expirationDate, final Serializable data )
+            throws PwmUnrecoverableException
+    {
+        final long expiration = expirationDate.toEpochMilli();
+        if ( expiration - System.currentTimeMillis() < minLifetimeMs )
+        {
+            return;
+        }
+
+        if ( pendingWrites.get() >= MAX_PENDING_WRITES )
+        {
+            LOGGER.trace( () -> "skipping cache item write, " + MAX_PENDING_WRITES + " writes are already pending" );
+            return;
+        }
+
+        // serialize on the calling thread so the stored value is a snapshot of the data as it was cached
+        final String json = JsonUtil.serialize( data );
+        final String key = storageKey( cacheKey );
+        cacheStoreInfo.incrementStoreCount();
+        pendingWrites.incrementAndGet();
+        try
+        {
+            writeExecutor.execute( ( ) ->
+            {
+                try
+                {
+                    write( key, expiration, json );
+                }
+                finally
+                {
+                    pendingWrites.decrementAndGet();
+                }
+            } );
+        }
+        catch ( RejectedExecutionException e )
+        {
+            pendingWrites.decrementAndGet();
+        }
+    }
+
+    private void write( final String key, final long expiration, final String json )
+    {
+        try
+        {
+            final String payload = SecureEngine.encryptToString( json, securityKey, BLOCK_ALGORITHM );
+            final String value = JsonUtil.serialize( new StoredValue( expiration, keyEpoch, payload ) );
+            if ( value.length() > LocalDB.MAX_VALUE_LENGTH )
+            {
+                return;
+            }
+
+            localDB.put( DB, key, value );
+            index( key, expiration, payload.length() );
+        }
+        catch ( LocalDBException | PwmUnrecoverableException e )
+        {
+            LOGGER.debug( () -> "unable to write cache item to LocalDB: " + e.getMessage() );
+        }
+
+        trimToMaxItems();
+    }
+
+    @Override
+    public <T extends Serializable> T readAndStore(
+            final CacheKey cacheKey,
+            final Instant expirationDate,
+            final Class<T> classOfT,
+            final CacheLoader<T> cacheLoader
+    )
+            throws PwmUnrecoverableException
+    {
+        final T storedValue = read( cacheKey, classOfT );
+        if ( storedValue != null )
+        {
+            return storedValue;
+        }
+
+        final T data = cacheLoader.read();
+        store( cacheKey, expirationDate, data );
+        return data;
+    }
+
+    @Override
+    public <T extends Serializable> T read( final CacheKey cacheKey, final Class<T> classOfT )
+            throws PwmUnrecoverableException
+    {
+        final PersistedValue<T> persistedValue = readPersisted( cacheKey, classOfT );
+        return persistedValue == null ? null : persistedValue.getValue();
+    }
+
+    /**
+     * Read the stored value along with its original expiration, so it can be promoted to a faster store without
+     * extending its lifetime.
+     *
+     * @return the persisted value, or null if there is no unexpired value for the key.
+     */
+    <T extends Serializable> PersistedValue<T> readPersisted( final CacheKey cacheKey, final Class<T> classOfT )
+            throws PwmUnrecoverableException
+    {
+        final long startNanos = System.nanoTime();
+        cacheStoreInfo.incrementReadCount();
+
+        final String key = storageKey( cacheKey );
+        if ( !indexByKey.containsKey( key ) )
+        {
+            recordMiss( startNanos );
+            return null;
+        }
+
+        try
+        {
+            final StoredValue storedValue = parseStoredValue( localDB.get( DB, key ) );
+            if ( storedValue != null && storedValue.getExpiration() > System.currentTimeMillis() )
+            {
+                final String json = SecureEngine.decryptStringValue( storedValue.getPayload(), securityKey, BLOCK_ALGORITHM );
+                final T value = JsonUtil.deserialize( json, classOfT );
+                if ( value != null )
+                {
+                    cacheStoreInfo.incrementHitCount();
+                    cacheStoreInfo.getHitLatency().recordSince( startNanos );
+                    return new PersistedValue<>( value, Instant.ofEpochMilli( storedValue.getExpiration() ) );
+                }
+            }
+        }
+        catch ( LocalDBException | PwmUnrecoverableException e )
+        {
+            LOGGER.debug( () -> "unable to read cache item from LocalDB: " + e.getMessage() );
+        }
+
+        remove( key );
+        recordMiss( startNanos );
+        return null;
+    }
+
+    /**
+     * Remove expired entries, oldest expiration first.
+     */
+    void purgeExpired( )
+    {
+        final long now = System.currentTimeMillis();
+        final List<String> expiredKeys = new ArrayList<>();
+        while ( true )
+        {
+            final IndexEntry first = expirationIndex.isEmpty() ? null : expirationIndex.first();
+            if ( first == null || first.getExpiration() > now )
+            {
+                break;
+            }
+            unindex( first );
+            expiredKeys.add( first.getKey() );
+        }
+
+        removeFromDB( expiredKeys );
+        if ( !expiredKeys.isEmpty() )
+        {
+            LOGGER.trace( () -> "purged " + expiredKeys.size() + " expired items" );
+        }
+    }
+
+    @Override
+    public CacheStoreInfo getCacheStoreInfo( )
+    {
+        return cacheStoreInfo;
+    }
+
+    @Override
+    public int itemCount( )
+    {
+        return indexByKey.size();
+    }
+
+    @Override
+    public List<CacheDebugItem> getCacheDebugItems( )
+    {
+        // stored keys are one-way hashes, so there is nothing meaningful to show per item
+        return Collections.emptyList();
+    }
+
+    @Override
+    public long byteCount( )
+    {
+        long byteCount = 0;
+        for ( final IndexEntry indexEntry : indexByKey.values() )
+        {
+            byteCount += indexEntry.getKey().length() + indexEntry.getByteCount();
+        }
+        return byteCount;
+    }
+
+    private void trimToMaxItems( )
+    {
+        if ( indexByKey.size() <= maxItems )
+        {
+            return;
+        }
+
+        // evict the items closest to expiring, they have the least remaining value
+        final List<String> evictedKeys = new ArrayList<>();
+        while ( indexByKey.size() > maxItems && !expirationIndex.isEmpty() )
+        {
+            final IndexEntry first = expirationIndex.first();
+            unindex( first );
+            evictedKeys.add( first.getKey() );
+        }
+        removeFromDB( evictedKeys );
+    }
+
+    private void remove( final String key )
+    {
+        final IndexEntry existing = indexByKey.get( key );
+        if ( existing != null )
+        {
+            unindex( existing );
+        }
+
+        try
+        {
+            writeExecutor.execute( ( ) -> removeFromDB( Collections.singletonList( key ) ) );
+        }
+        catch ( RejectedExecutionException e )
+        {
+            LOGGER.trace( () -> "unable to schedule removal of cache item: " + e.getMessage() );
+        }
+    }
+
+    private void removeFromDB( final List<String> keys )
+    {
+        if ( keys.isEmpty() )
+        {
+            return;
+        }
+
+        try
+        {
+            localDB.removeAll( DB, keys );
+        }
+        catch ( LocalDBException e )
+        {
+            LOGGER.debug( () -> "unable to remove cache items from LocalDB: " + e.getMessage() );
+        }
+    }
+
+    private synchronized void index( final String key, final long expiration, final int byteCount )
+    {
+        final IndexEntry newEntry = new IndexEntry( key, expiration, byteCount );
+        final IndexEntry existing = indexByKey.put( key, newEntry );
+        if ( existing != null )
+        {
+            expirationIndex.remove( existing );
+        }
+        expirationIndex.add( newEntry );
+    }
+
+    private synchronized void unindex( final IndexEntry indexEntry )
+    {
+        expirationIndex.remove( indexEntry );
+        indexByKey.remove( indexEntry.getKey(), indexEntry );
+    }
+
+    private void recordMiss( final long startNanos )
+    {
+        cacheStoreInfo.incrementMissCount();
+        cacheStoreInfo.getMissLatency().recordSince( startNanos );
+    }
+
+    private String storageKey( final CacheKey cacheKey )
+            throws PwmUnrecoverableException
+    {
+        final String keyString = keyEpoch
+                + "|" + ( cacheKey.getSrcClass() == null ? "" : cacheKey.getSrcClass().getName() )
+                + "|" + ( cacheKey.getUserIdentity() == null ? "" : cacheKey.getUserIdentity().toDelimitedKey() )
+                + "|" + cacheKey.getValueID();
+        return SecureEngine.hash( keyString, PwmHashAlgorithm.SHA256 );
+    }
+
+    private static StoredValue parseStoredValue( final String value )
+    {
+        if ( value == null )
+        {
+            return null;
+        }
+
+        try
+        {
+            final StoredValue storedValue = JsonUtil.deserialize( value, StoredValue.class );
+            return storedValue == null || storedValue.getPayload() == null ? null : storedValue;
+        }
+        catch ( Exception e )
+        {
+            return null;
+        }
+    }
+
+    @Value
+    private static class StoredValue implements Serializable
+    {
+        private final long expiration;
+        private final String epoch;
+        private final String payload;
+    }
+
+    @Value
+    static class PersistedValue<T extends Serializable>
+    {
+        private final T value;
+        private final Instant expiration;
+    }
+
+    @Value
+    private static class IndexEntry implements Comparable<IndexEntry>
+    {
+        private final String key;
+        private final long expiration;
+        private final int byteCount;
+
+        @Override
+        public int compareTo( final IndexEntry other )
+        {
+            final int comparison = Long.compare( expiration, other.expiration );
+            return comparison != 0 ? comparison : key.compareTo( other.key );
+        }
+    }
+}
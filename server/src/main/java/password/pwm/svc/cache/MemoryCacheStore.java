@@ -44,12 +44,14 @@ class MemoryCacheStore implements CacheStore
     private static final PwmLogger LOGGER = PwmLogger.forClass( MemoryCacheStore.class );
     private final Cache<CacheKey, CacheValueWrapper> memoryStore;
     private final CacheStoreInfo cacheStoreInfo = new CacheStoreInfo();
+    private final boolean directValuesEnabled;
 
-    MemoryCacheStore( final int maxItems )
+    MemoryCacheStore( final int maxItems, final boolean directValuesEnabled )
     {
         memoryStore = Caffeine.newBuilder()
                 .maximumSize( maxItems )
                 .build();
+        this.directValuesEnabled = directValuesEnabled;
     }
 
     @Override
@@ -57,32 +59,45 @@ class MemoryCacheStore implements CacheStore
             throws PwmUnrecoverableException
     {
         cacheStoreInfo.incrementStoreCount();
-
-        final String jsonData = JsonUtil.serialize( data );
-        memoryStore.put( cacheKey, new CacheValueWrapper( cacheKey, expirationDate, jsonData ) );
+        memoryStore.put( cacheKey, wrapValue( cacheKey, expirationDate, data ) );
     }
 
     @Override
     public <T extends Serializable> T readAndStore( final CacheKey cacheKey, final Instant expirationDate, final Class<T> classOfT, final CacheLoader<T> cacheLoader )
             throws PwmUnrecoverableException
     {
+        final long startNanos = System.nanoTime();
         cacheStoreInfo.incrementReadCount();
         {
             final CacheValueWrapper valueWrapper = memoryStore.getIfPresent( cacheKey );
             final T extractedValue = extractValue( classOfT, valueWrapper, cacheKey );
             if ( extractedValue != null )
             {
+                cacheStoreInfo.getHitLatency().recordSince( startNanos );
                 return extractedValue;
             }
         }
 
         final T data = cacheLoader.read();
-        final String jsonIfiedData = JsonUtil.serialize( data );
         cacheStoreInfo.incrementMissCount();
-        memoryStore.put( cacheKey, new CacheValueWrapper( cacheKey, expirationDate, jsonIfiedData ) );
+        memoryStore.put( cacheKey, wrapValue( cacheKey, expirationDate, data ) );
+        cacheStoreInfo.getMissLatency().recordSince( startNanos );
         return data;
     }
 
+    private CacheValueWrapper wrapValue( final CacheKey cacheKey, final Instant expirationDate, final Serializable data )
+    {
+        final CacheValueType valueType = directValuesEnabled
+                ? CacheValueType.forClass( data.getClass() )
+                : CacheValueType.Json;
+
+        final Serializable payload = valueType == CacheValueType.Direct
+                ? data
+                : JsonUtil.serialize( data );
+
+        return new CacheValueWrapper( cacheKey, expirationDate, valueType, payload );
+    }
+
     private <T extends Serializable> T extractValue( final Class<T> classOfT, final CacheValueWrapper valueWrapper, final CacheKey cacheKey )
     {
         if ( valueWrapper != null )
@@ -91,9 +106,12 @@ class MemoryCacheStore implements CacheStore
             {
                 if ( valueWrapper.getExpirationDate().isAfter( Instant.now() ) )
                 {
-                    cacheStoreInfo.incrementHitCount();
-                    final String jsonValue  = valueWrapper.getPayload();
-                    return JsonUtil.deserialize( jsonValue, classOfT );
+                    final T value = unwrapValue( classOfT, valueWrapper );
+                    if ( value != null )
+                    {
+                        cacheStoreInfo.incrementHitCount();
+                    }
+                    return value;
                 }
             }
         }
@@ -101,22 +119,51 @@ class MemoryCacheStore implements CacheStore
         return null;
     }
 
+    private static <T extends Serializable> T unwrapValue( final Class<T> classOfT, final CacheValueWrapper valueWrapper )
+    {
+        if ( valueWrapper.getValueType() == CacheValueType.Direct )
+        {
+            final Serializable payload = valueWrapper.getPayload();
+            if ( classOfT.isInstance( payload ) )
+            {
+                return classOfT.cast( payload );
+            }
+
+            // stored under the same key with an unrelated type; convert the same way a json read would
+            return JsonUtil.deserialize( JsonUtil.serialize( payload ), classOfT );
+        }
+
+        return JsonUtil.deserialize( ( String ) valueWrapper.getPayload(), classOfT );
+    }
+
     @Override
     public <T extends Serializable> T read( final CacheKey cacheKey, final Class<T> classOfT )
     {
+        final long startNanos = System.nanoTime();
         cacheStoreInfo.incrementReadCount();
         final CacheValueWrapper valueWrapper = memoryStore.getIfPresent( cacheKey );
         final T extractedValue = extractValue( classOfT, valueWrapper, cacheKey );
         if ( extractedValue != null )
         {
+            cacheStoreInfo.getHitLatency().recordSince( startNanos );
             return extractedValue;
         }
 
         memoryStore.invalidate( cacheKey );
         cacheStoreInfo.incrementMissCount();
+        cacheStoreInfo.getMissLatency().recordSince( startNanos );
         return null;
     }
 
+    /**
+     * @return the expiration of the value currently stored for the key, or null if no value is stored.
+     */
+    Instant readExpiration( final CacheKey cacheKey )
+    {
+        final CacheValueWrapper valueWrapper = memoryStore.getIfPresent( cacheKey );
+        return valueWrapper == null ? null : valueWrapper.getExpirationDate();
+    }
+
     @Override
     public CacheStoreInfo getCacheStoreInfo( )
     {
@@ -139,7 +186,7 @@ class MemoryCacheStore implements CacheStore
             final CacheValueWrapper cacheValueWrapper = entry.getValue();
             final Instant storeDate = cacheValueWrapper.getExpirationDate();
             final String age = Duration.between( storeDate, Instant.now() ).toString();
-            final int chars = cacheValueWrapper.getPayload().length();
+            final int chars = cacheValueWrapper.payloadLength();
             final String keyClass = cacheKey.getSrcClass() == null ? "null" : cacheKey.getSrcClass().getName();
             final String keyUserID = cacheKey.getUserIdentity() == null ? "null" : cacheKey.getUserIdentity().toDisplayString();
             final String keyValue = cacheKey.getValueID() == null ? "null" : cacheKey.getValueID();
@@ -162,10 +209,16 @@ class MemoryCacheStore implements CacheStore
     {
         private final CacheKey cacheKey;
         private final Instant expirationDate;
+        private final CacheValueType valueType;
+
+        // either the payload itself (for types known to be immutable) or its json form, which makes
+        // an effective clone for each store/read of types that might be modified by the caller.
+        private final Serializable payload;
 
-        // serialize to json even though stored in memory, this prevents object-reuse because we don't know
-        // if the object is immutable.  Thus an effective clone is made for each store/read.
-        private final String payload;
+        int payloadLength( )
+        {
+            return payload instanceof String ? ( ( String ) payload ).length() : 0;
+        }
     }
 
     Map<String, Integer> storedClassHistogram( final String prefix )
@@ -194,7 +247,7 @@ class MemoryCacheStore implements CacheStore
             final String valueID = cacheKey.getValueID();
             byteCount += valueID == null ? 0 : cacheKey.getValueID().length();
             final CacheValueWrapper cacheValueWrapper = entry.getValue();
-            byteCount += cacheValueWrapper.payload.length();
+            byteCount += cacheValueWrapper.payloadLength();
         }
         return byteCount;
     }
@@ -22,13 +22,36 @@
 
 package password.pwm.svc.email;
 
-import lombok.Value;
+import lombok.Getter;
 
 import javax.mail.Transport;
+import java.time.Instant;
 
-@Value
+/**
+ * A connected smtp transport owned by an {@link EmailConnectionPool}.  A connection is used by a single thread between
+ * borrow and release.
+ */
+@Getter
 class EmailConnection
 {
     private final EmailServer emailServer;
     private final Transport transport;
+    private Instant idleSince = Instant.now();
+    private int messagesSent;
+
+    EmailConnection( final EmailServer emailServer, final Transport transport )
+    {
+        this.emailServer = emailServer;
+        this.transport = transport;
+    }
+
+    void markMessageSent( )
+    {
+        messagesSent++;
+    }
+
+    void markIdle( )
+    {
+        idleSince = Instant.now();
+    }
 }
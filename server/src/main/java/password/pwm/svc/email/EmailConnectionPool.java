@@ -0,0 +1,479 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package password.pwm.svc.email;
+
+import password.pwm.error.ErrorInformation;
+import password.pwm.error.PwmError;
+import password.pwm.error.PwmUnrecoverableException;
+import password.pwm.util.java.AtomicLoopIntIncrementer;
+import password.pwm.util.java.TimeDuration;
+import password.pwm.util.logging.PwmLogger;
+
+import javax.mail.MessagingException;
+import javax.mail.Transport;
+import java.time.Instant;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool of connected smtp transports for each configured email server.  Connections are kept open between
+ * messages so a run of many emails costs one connect and authentication per pooled connection instead of one per
+ * message.  Idle connections are checked with a NOOP before reuse, discarded after the maximum idle time, and recycled
+ * after a configured number of messages.
+ *
+ * <p>When no specific server is requested, servers with fewer recent consecutive failures are preferred, and servers of
+ * equal health are used in rotation.</p>
+ */
+class EmailConnectionPool
+{
+    private static final PwmLogger LOGGER = PwmLogger.forClass( EmailConnectionPool.class );
+
+    private static final TimeDuration DEFAULT_BORROW_WAIT_TIME = TimeDuration.of( 30, TimeDuration.Unit.SECONDS );
+    private static final TimeDuration VALIDATE_IDLE_TIME = TimeDuration.of( 5, TimeDuration.Unit.SECONDS );
+    private static final TimeDuration FAILURE_MEMORY_TIME = TimeDuration.of( 5, TimeDuration.Unit.MINUTES );
+
+    private final List<EmailServer> servers;
+    private final Map<EmailServer, ServerPool> serverPools;
+    private final int maxConnectionsPerServer;
+    private final int maxMessagesPerConnection;
+    private final TimeDuration maxIdleTime;
+    private final TimeDuration borrowWaitTime;
+    private final TransportFactory transportFactory;
+    private final AtomicLoopIntIncrementer serverIncrementer = new AtomicLoopIntIncrementer();
+
+    private final LongAdder created = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+    private final LongAdder recycled = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+    private final LongAdder connectFailures = new LongAdder();
+    private final LongAdder borrowTimeouts = new LongAdder();
+    private final LongAdder messagesSent = new LongAdder();
+
+    private volatile boolean closed;
+
+    EmailConnectionPool(
+            final List<EmailServer> servers,
+            final int maxConnectionsPerServer,
+            final int maxMessagesPerConnection,
+            final TimeDuration maxIdleTime
+    )
+    {
+        this( servers, maxConnectionsPerServer, maxMessagesPerConnection, maxIdleTime, DEFAULT_BORROW_WAIT_TIME, EmailServerUtil::makeSmtpTransport );
+    }
+
+    EmailConnectionPool(
+            final List<EmailServer> servers,
+            final int maxConnectionsPerServer,
+            final int maxMessagesPerConnection,
+            final TimeDuration maxIdleTime,
+            final TimeDuration borrowWaitTime,
+            final TransportFactory transportFactory
+    )
+    {
+        this.borrowWaitTime = borrowWaitTime;
+        this.transportFactory = transportFactory;
+        this.servers = Collections.unmodifiableList( new ArrayList<>( servers ) );
+        this.maxConnectionsPerServer = Math.max( 1, maxConnectionsPerServer );
+        this.maxMessagesPerConnection = maxMessagesPerConnection;
+        this.maxIdleTime = maxIdleTime;
+
+        final Map<EmailServer, ServerPool> pools = new LinkedHashMap<>();
+        for ( final EmailServer server : servers )
+        {
+            pools.put( server, new ServerPool( this.maxConnectionsPerServer ) );
+        }
+        this.serverPools = Collections.unmodifiableMap( pools );
+    }
+
+    /**
+     * Borrow a connection, which must be returned with {@link #release(EmailConnection, boolean)}.  Servers are tried
+     * healthiest first.  The preferred server is tried first while it is as healthy as any other server; otherwise
+     * it is tried in its place by health, so mail preferring a failing server is delivered by the others.
+     *
+     * @param preferredServer server to try first, or null to use the healthiest reachable server.
+     * @return a connected transport.
+     * @throws PwmUnrecoverableException with {@link PwmError#ERROR_SERVICE_UNREACHABLE} if no connection could be made.
+     */
+    EmailConnection borrow( final EmailServer preferredServer )
+            throws PwmUnrecoverableException
+    {
+        if ( closed )
+        {
+            throw PwmUnrecoverableException.newException( PwmError.ERROR_SERVICE_UNREACHABLE, "email connection pool is closed" );
+        }
+
+        final List<EmailServer> candidates = serversByHealth();
+        if ( preferredServer != null && candidates.remove( preferredServer ) )
+        {
+            final Instant now = Instant.now();
+            final int preferredFailures = serverPools.get( preferredServer ).recentFailures( now );
+            int insertIndex = 0;
+            while ( insertIndex < candidates.size() && serverPools.get( candidates.get( insertIndex ) ).recentFailures( now ) < preferredFailures )
+            {
+                insertIndex++;
+            }
+            candidates.add( insertIndex, preferredServer );
+        }
+
+        PwmUnrecoverableException lastException = null;
+        for ( final EmailServer server : candidates )
+        {
+            try
+            {
+                return borrowFromServer( server );
+            }
+            catch ( PwmUnrecoverableException e )
+            {
+                lastException = e;
+            }
+        }
+
+        if ( candidates.size() == 1 && lastException != null )
+        {
+            throw lastException;
+        }
+
+        throw PwmUnrecoverableException.newException( PwmError.ERROR_SERVICE_UNREACHABLE, "unable to reach any configured email server" );
+    }
+
+    /**
+     * Return a borrowed connection to the pool.
+     *
+     * @param reusable false if the connection may be in an unknown state and should be closed.
+     */
+    void release( final EmailConnection emailConnection, final boolean reusable )
+    {
+        final ServerPool serverPool = serverPools.get( emailConnection.getEmailServer() );
+        try
+        {
+            if ( closed || !reusable )
+            {
+                discard( emailConnection );
+            }
+            else if ( maxMessagesPerConnection > 0 && emailConnection.getMessagesSent() >= maxMessagesPerConnection )
+            {
+                recycled.increment();
+                closeTransport( emailConnection );
+            }
+            else
+            {
+                emailConnection.markIdle();
+                serverPool.getIdle().offerFirst( emailConnection );
+            }
+        }
+        finally
+        {
+            serverPool.getPermits().release();
+        }
+    }
+
+    void markMessageSent( final EmailConnection emailConnection )
+    {
+        emailConnection.markMessageSent();
+        messagesSent.increment();
+    }
+
+    void markSuccess( final EmailServer emailServer )
+    {
+        final ServerPool serverPool = serverPools.get( emailServer );
+        if ( serverPool != null )
+        {
+            serverPool.recordSuccess();
+        }
+    }
+
+    void markFailure( final EmailServer emailServer, final ErrorInformation errorInformation )
+    {
+        final ServerPool serverPool = serverPools.get( emailServer );
+        if ( serverPool != null )
+        {
+            serverPool.recordFailure( errorInformation );
+        }
+    }
+
+    /**
+     * @return the most recent error of each server, empty if the last operation with the server succeeded.
+     */
+    Map<EmailServer, Optional<ErrorInformation>> serverErrors( )
+    {
+        final Map<EmailServer, Optional<ErrorInformation>> returnMap = new LinkedHashMap<>();
+        for ( final Map.Entry<EmailServer, ServerPool> entry : serverPools.entrySet() )
+        {
+            returnMap.put( entry.getKey(), Optional.ofNullable( entry.getValue().getLastError() ) );
+        }
+        return returnMap;
+    }
+
+    /**
+     * @return all servers, healthiest first, rotating the order of servers with equal health on each call.
+     */
+    List<EmailServer> serversByHealth( )
+    {
+        final int offset = serverIncrementer.next();
+        final Instant now = Instant.now();
+
+        // snapshot the health of each server, other threads may record failures while the list is sorted
+        final List<Map.Entry<EmailServer, Integer>> rankedServers = new ArrayList<>( servers.size() );
+        for ( int i = 0; i < servers.size(); i++ )
+        {
+            final EmailServer server = servers.get( ( offset + i ) % servers.size() );
+            rankedServers.add( new AbstractMap.SimpleImmutableEntry<>( server, serverPools.get( server ).recentFailures( now ) ) );
+        }
+        rankedServers.sort( Map.Entry.comparingByValue() );
+
+        final List<EmailServer> returnList = new ArrayList<>( servers.size() );
+        for ( final Map.Entry<EmailServer, Integer> entry : rankedServers )
+        {
+            returnList.add( entry.getKey() );
+        }
+        return returnList;
+    }
+
+    Map<String, String> debugInfo( )
+    {
+        int idleCount = 0;
+        int activeCount = 0;
+        for ( final ServerPool serverPool : serverPools.values() )
+        {
+            idleCount += serverPool.getIdle().size();
+            activeCount += maxConnectionsPerServer - serverPool.getPermits().availablePermits();
+        }
+
+        final Map<String, String> debugInfo = new LinkedHashMap<>();
+        debugInfo.put( "SmtpPool_IdleConnections", String.valueOf( idleCount ) );
+        debugInfo.put( "SmtpPool_ActiveConnections", String.valueOf( activeCount ) );
+        debugInfo.put( "SmtpPool_Created", String.valueOf( created.sum() ) );
+        debugInfo.put( "SmtpPool_Reused", String.valueOf( reused.sum() ) );
+        debugInfo.put( "SmtpPool_Recycled", String.valueOf( recycled.sum() ) );
+        debugInfo.put( "SmtpPool_Discarded", String.valueOf( discarded.sum() ) );
+        debugInfo.put( "SmtpPool_ConnectFailures", String.valueOf( connectFailures.sum() ) );
+        debugInfo.put( "SmtpPool_BorrowTimeouts", String.valueOf( borrowTimeouts.sum() ) );
+        debugInfo.put( "SmtpPool_MessagesSent", String.valueOf( messagesSent.sum() ) );
+        for ( final Map.Entry<EmailServer, ServerPool> entry : serverPools.entrySet() )
+        {
+            final ServerPool serverPool = entry.getValue();
+            debugInfo.put( "SmtpPool_Server_" + entry.getKey().getId(), "idle=" + serverPool.getIdle().size()
+                    + ",active=" + ( maxConnectionsPerServer - serverPool.getPermits().availablePermits() )
+                    + ",consecutiveFailures=" + serverPool.getConsecutiveFailures() );
+        }
+        return debugInfo;
+    }
+
+    void close( )
+    {
+        closed = true;
+        for ( final ServerPool serverPool : serverPools.values() )
+        {
+            EmailConnection emailConnection = serverPool.getIdle().pollFirst();
+            while ( emailConnection != null )
+            {
+                discard( emailConnection );
+                emailConnection = serverPool.getIdle().pollFirst();
+            }
+        }
+    }
+
+    private EmailConnection borrowFromServer( final EmailServer server )
+            throws PwmUnrecoverableException
+    {
+        final ServerPool serverPool = serverPools.get( server );
+        if ( serverPool == null )
+        {
+            throw PwmUnrecoverableException.newException( PwmError.ERROR_INTERNAL, "unknown email server '" + server.getId() + "'" );
+        }
+
+        acquirePermit( server, serverPool );
+        try
+        {
+            EmailConnection emailConnection = serverPool.getIdle().pollFirst();
+            while ( emailConnection != null )
+            {
+                if ( isUsable( emailConnection ) )
+                {
+                    reused.increment();
+                    return emailConnection;
+                }
+                discard( emailConnection );
+                emailConnection = serverPool.getIdle().pollFirst();
+            }
+
+            return connect( server );
+        }
+        catch ( PwmUnrecoverableException | RuntimeException e )
+        {
+            serverPool.getPermits().release();
+            throw e;
+        }
+    }
+
+    private void acquirePermit( final EmailServer server, final ServerPool serverPool )
+            throws PwmUnrecoverableException
+    {
+        boolean acquired = false;
+        try
+        {
+            acquired = serverPool.getPermits().tryAcquire( borrowWaitTime.asMillis(), TimeUnit.MILLISECONDS );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        if ( !acquired )
+        {
+            borrowTimeouts.increment();
+            final String msg = "no connection to email server '" + server.getId() + "' became available within " + borrowWaitTime.asCompactString();
+            throw PwmUnrecoverableException.newException( PwmError.ERROR_SERVICE_UNREACHABLE, msg );
+        }
+    }
+
+    private EmailConnection connect( final EmailServer server )
+            throws PwmUnrecoverableException
+    {
+        try
+        {
+            final Transport transport = transportFactory.open( server );
+            created.increment();
+            markSuccess( server );
+            return new EmailConnection( server, transport );
+        }
+        catch ( MessagingException e )
+        {
+            connectFailures.increment();
+            final String msg = "unable to connect to email server '" + server.toDebugString() + "', error: " + e.getMessage();
+            final ErrorInformation errorInformation = new ErrorInformation( PwmError.ERROR_SERVICE_UNREACHABLE, msg );
+            markFailure( server, errorInformation );
+            LOGGER.warn( errorInformation.toDebugStr() );
+            throw new PwmUnrecoverableException( errorInformation );
+        }
+    }
+
+    private boolean isUsable( final EmailConnection emailConnection )
+    {
+        final TimeDuration idleTime = TimeDuration.fromCurrent( emailConnection.getIdleSince() );
+        if ( maxIdleTime != null && idleTime.isLongerThan( maxIdleTime ) )
+        {
+            return false;
+        }
+
+        // isConnected() issues an smtp NOOP, so only check connections that have been idle for a while.
+        return !idleTime.isLongerThan( VALIDATE_IDLE_TIME ) || emailConnection.getTransport().isConnected();
+    }
+
+    private void discard( final EmailConnection emailConnection )
+    {
+        discarded.increment();
+        closeTransport( emailConnection );
+    }
+
+    private static void closeTransport( final EmailConnection emailConnection )
+    {
+        try
+        {
+            emailConnection.getTransport().close();
+        }
+        catch ( MessagingException e )
+        {
+            LOGGER.trace( () -> "error closing smtp transport: " + e.getMessage() );
+        }
+    }
+
+    /**
+     * Opens a connected transport to a server.
+     */
+    interface TransportFactory
+    {
+        Transport open( EmailServer server )
+                throws MessagingException, PwmUnrecoverableException;
+    }
+
+    private static class ServerPool
+    {
+        private final Deque<EmailConnection> idle = new LinkedBlockingDeque<>();
+        private final Semaphore permits;
+        private int consecutiveFailures;
+        private Instant lastFailureTime;
+        private ErrorInformation lastError;
+
+        ServerPool( final int maxConnections )
+        {
+            this.permits = new Semaphore( maxConnections );
+        }
+
+        Deque<EmailConnection> getIdle( )
+        {
+            return idle;
+        }
+
+        Semaphore getPermits( )
+        {
+            return permits;
+        }
+
+        synchronized int getConsecutiveFailures( )
+        {
+            return consecutiveFailures;
+        }
+
+        synchronized ErrorInformation getLastError( )
+        {
+            return lastError;
+        }
+
+        synchronized void recordSuccess( )
+        {
+            consecutiveFailures = 0;
+            lastError = null;
+            lastFailureTime = null;
+        }
+
+        synchronized void recordFailure( final ErrorInformation errorInformation )
+        {
+            consecutiveFailures = consecutiveFailures + 1;
+            lastError = errorInformation;
+            lastFailureTime = Instant.now();
+        }
+
+        /**
+         * @return the consecutive failure count, or zero if the last failure is older than the failure memory time.
+         */
+        synchronized int recentFailures( final Instant now )
+        {
+            if ( lastFailureTime == null || lastFailureTime.plusMillis( FAILURE_MEMORY_TIME.asMillis() ).isBefore( now ) )
+            {
+                return 0;
+            }
+            return consecutiveFailures;
+        }
+    }
+}
@@ -40,7 +40,6 @@ import password.pwm.ldap.UserInfo;
 import password.pwm.svc.PwmService;
 import password.pwm.svc.stats.Statistic;
 import password.pwm.svc.stats.StatisticsManager;
-import password.pwm.util.java.AtomicLoopIntIncrementer;
 import password.pwm.util.java.JavaHelper;
 import password.pwm.util.java.StringUtil;
 import password.pwm.util.java.TimeDuration;
@@ -52,19 +51,15 @@ import password.pwm.util.macro.MacroMachine;
 
 import javax.mail.Message;
 import javax.mail.MessagingException;
-import javax.mail.Transport;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author Jason D. Rivard
@@ -75,16 +70,13 @@ public class EmailService implements PwmService
     private static final PwmLogger LOGGER = PwmLogger.forClass( EmailService.class );
 
     private PwmApplication pwmApplication;
-    private final Map<EmailServer, Optional<ErrorInformation>> serverErrors = new ConcurrentHashMap<>( );
     private final List<EmailServer> servers = new ArrayList<>( );
     private WorkQueueProcessor<EmailItemBean> workQueueProcessor;
-    private AtomicLoopIntIncrementer serverIncrementer;
+    private EmailConnectionPool connectionPool;
     private Set<Integer> retryableStatusResponses = Collections.emptySet();
 
     private PwmService.STATUS status = STATUS.NEW;
 
-    private final ThreadLocal<EmailConnection> threadLocalTransport = new ThreadLocal<>();
-
     public void init( final PwmApplication pwmApplication )
             throws PwmException
     {
@@ -100,12 +92,12 @@ public class EmailService implements PwmService
             return;
         }
 
-        for ( final EmailServer emailServer : servers )
-        {
-            serverErrors.put( emailServer, Optional.empty() );
-        }
-
-        serverIncrementer = new AtomicLoopIntIncrementer( servers.size() - 1 );
+        connectionPool = new EmailConnectionPool(
+                servers,
+                Integer.parseInt( pwmApplication.getConfig().readAppProperty( AppProperty.SMTP_POOL_MAX_CONNECTIONS_PER_SERVER ) ),
+                Integer.parseInt( pwmApplication.getConfig().readAppProperty( AppProperty.SMTP_POOL_MAX_MESSAGES_PER_CONNECTION ) ),
+                TimeDuration.of( Long.parseLong( pwmApplication.getConfig().readAppProperty( AppProperty.SMTP_POOL_MAX_IDLE_SECONDS ) ), TimeDuration.Unit.SECONDS )
+        );
 
         if ( pwmApplication.getLocalDB() == null || pwmApplication.getLocalDB().status() != LocalDB.Status.OPEN )
         {
@@ -122,13 +114,14 @@ public class EmailService implements PwmService
                         TimeDuration.Unit.MILLISECONDS )
                 )
                 .preThreads( Integer.parseInt( pwmApplication.getConfig().readAppProperty( AppProperty.QUEUE_EMAIL_MAX_THREADS ) ) )
+                .workerThreads( Integer.parseInt( pwmApplication.getConfig().readAppProperty( AppProperty.QUEUE_EMAIL_WORKER_THREADS ) ) )
+                .maxLaneThreads( Integer.parseInt( pwmApplication.getConfig().readAppProperty( AppProperty.QUEUE_EMAIL_MAX_LANE_THREADS ) ) )
                 .build();
         final LocalDBStoredQueue localDBStoredQueue = LocalDBStoredQueue.createLocalDBStoredQueue( pwmApplication, pwmApplication.getLocalDB(), LocalDB.DB.EMAIL_QUEUE );
 
-        workQueueProcessor = new WorkQueueProcessor<>( pwmApplication, localDBStoredQueue, settings, new EmailItemProcessor(), this.getClass() );
-
         retryableStatusResponses = readRetryableStatusCodes( pwmApplication.getConfig() );
 
+        workQueueProcessor = new WorkQueueProcessor<>( pwmApplication, localDBStoredQueue, settings, new EmailItemProcessor(), this.getClass() );
 
         status = STATUS.OPEN;
     }
@@ -140,6 +133,10 @@ public class EmailService implements PwmService
         {
             workQueueProcessor.close();
         }
+        if ( connectionPool != null )
+        {
+            connectionPool.close();
+        }
     }
 
     @Override
@@ -161,7 +158,12 @@ public class EmailService implements PwmService
         }
 
         final List<HealthRecord> records = new ArrayList<>( );
-        for ( final Map.Entry<EmailServer, Optional<ErrorInformation>> entry : serverErrors.entrySet() )
+        if ( connectionPool == null )
+        {
+            return records;
+        }
+
+        for ( final Map.Entry<EmailServer, Optional<ErrorInformation>> entry : connectionPool.serverErrors().entrySet() )
         {
             if ( entry.getValue().isPresent() )
             {
@@ -181,6 +183,10 @@ public class EmailService implements PwmService
         {
             debugItems.putAll( workQueueProcessor.debugInfo() );
         }
+        if ( connectionPool != null )
+        {
+            debugItems.putAll( connectionPool.debugInfo() );
+        }
         if ( status() == STATUS.OPEN )
         {
             return new ServiceInfoBean( Collections.singletonList( DataStorageMethod.LOCALDB ), debugItems );
@@ -210,7 +216,40 @@ public class EmailService implements PwmService
         @Override
         public WorkQueueProcessor.ProcessResult process( final EmailItemBean workItem )
         {
-            return sendItem( workItem );
+            return sendItem( workItem, null );
+        }
+
+        /**
+         * Each item is assigned to a lane per email server, preferring the healthiest servers, so a retrying
+         * server only delays the items assigned to it.  The lane server is only a preference, items are sent
+         * through the other servers when it is failing.
+         */
+        @Override
+        public String laneKey( final EmailItemBean workItem )
+        {
+            if ( servers.size() < 2 )
+            {
+                return null;
+            }
+
+            return connectionPool.serversByHealth().get( 0 ).getId();
+        }
+
+        @Override
+        public WorkQueueProcessor.ProcessResult process( final EmailItemBean workItem, final String laneKey )
+        {
+            EmailServer preferredServer = null;
+            if ( laneKey != null )
+            {
+                for ( final EmailServer server : servers )
+                {
+                    if ( laneKey.equals( server.getId() ) )
+                    {
+                        preferredServer = server;
+                    }
+                }
+            }
+            return sendItem( workItem, preferredServer );
         }
 
         public String convertToDebugString( final EmailItemBean emailItemBean )
@@ -331,55 +370,19 @@ public class EmailService implements PwmService
         }
     }
 
-    private final AtomicInteger newThreadLocalTransport = new AtomicInteger();
-    private final AtomicInteger useExistingConnection = new AtomicInteger();
-    private final AtomicInteger useExistingTransport = new AtomicInteger();
-    private final AtomicInteger newConnectionCounter = new AtomicInteger();
-
-    private String stats( )
-    {
-        final Map<String, Integer> map = new HashMap<>();
-        map.put( "newThreadLocalTransport", newThreadLocalTransport.get() );
-        map.put( "useExistingConnection", newThreadLocalTransport.get() );
-        map.put( "useExistingTransport", useExistingTransport.get() );
-        map.put( "newConnectionCounter", newConnectionCounter.get() );
-        return StringUtil.mapToString( map );
-    }
-
-    private WorkQueueProcessor.ProcessResult sendItem( final EmailItemBean emailItemBean )
+    /**
+     * Send an item using a pooled connection.  The preferred server, if any, is used while it is healthy,
+     * otherwise the healthiest reachable server is used.
+     */
+    private WorkQueueProcessor.ProcessResult sendItem( final EmailItemBean emailItemBean, final EmailServer preferredServer )
     {
         EmailConnection serverTransport = null;
+        boolean reusable = false;
 
         // create a new MimeMessage object (using the Session created above)
         try
         {
-            if ( threadLocalTransport.get() == null )
-            {
-
-                LOGGER.trace( () -> "initializing new threadLocal transport, stats: " + stats() );
-                threadLocalTransport.set( getSmtpTransport( ) );
-                newThreadLocalTransport.getAndIncrement();
-            }
-            else
-            {
-                LOGGER.trace( () -> "using existing threadLocal transport, stats: " + stats() );
-                useExistingTransport.getAndIncrement();
-            }
-
-            serverTransport = threadLocalTransport.get();
-
-            if ( !serverTransport.getTransport().isConnected() )
-            {
-                LOGGER.trace( () -> "connecting threadLocal transport, stats: " + stats() );
-                threadLocalTransport.set( getSmtpTransport( ) );
-                serverTransport = threadLocalTransport.get();
-                newConnectionCounter.getAndIncrement();
-            }
-            else
-            {
-                LOGGER.trace( () -> "using existing threadLocal: stats: " + stats() );
-                useExistingConnection.getAndIncrement();
-            }
+            serverTransport = connectionPool.borrow( preferredServer );
 
             final List<Message> messages = EmailServerUtil.convertEmailItemToMessages(
                     emailItemBean,
@@ -391,9 +394,11 @@ public class EmailService implements PwmService
             {
                 message.saveChanges();
                 serverTransport.getTransport().sendMessage( message, message.getAllRecipients() );
+                connectionPool.markMessageSent( serverTransport );
             }
 
-            serverErrors.put( serverTransport.getEmailServer(), Optional.empty() );
+            reusable = true;
+            connectionPool.markSuccess( serverTransport.getEmailServer() );
 
             LOGGER.debug( () -> "sent email: " + emailItemBean.toDebugString() );
             StatisticsManager.incrementStat( pwmApplication, Statistic.EMAIL_SEND_SUCCESSES );
@@ -420,58 +425,34 @@ public class EmailService implements PwmService
                 );
             }
 
-            if ( serverTransport != null )
-            {
-                serverErrors.put( serverTransport.getEmailServer(), Optional.of( errorInformation ) );
-            }
             LOGGER.error( errorInformation );
 
             if ( EmailServerUtil.examineSendFailure( e, retryableStatusResponses ) )
             {
+                if ( serverTransport != null )
+                {
+                    connectionPool.markFailure( serverTransport.getEmailServer(), errorInformation );
+                }
                 LOGGER.error( "error sending email (" + e.getMessage() + ") " + emailItemBean.toDebugString() + ", will retry" );
                 StatisticsManager.incrementStat( pwmApplication, Statistic.EMAIL_SEND_FAILURES );
                 return WorkQueueProcessor.ProcessResult.RETRY;
             }
             else
             {
+                // a permanent failure is specific to the message, the connection remains usable if still connected.
+                reusable = serverTransport != null && serverTransport.getTransport().isConnected();
                 LOGGER.error( "error sending email (" + e.getMessage() + ") " + emailItemBean.toDebugString() + ", permanent failure, discarding message" );
                 StatisticsManager.incrementStat( pwmApplication, Statistic.EMAIL_SEND_DISCARDS );
                 return WorkQueueProcessor.ProcessResult.FAILED;
             }
         }
-    }
-
-    private EmailConnection getSmtpTransport( )
-            throws PwmUnrecoverableException
-    {
-
-        // the global server incrementer rotates the server list by 1 offset each attempt to get an smtp transport.
-        int nextSlot = serverIncrementer.next();
-
-        for ( int i = 0; i < servers.size(); i++ )
+        finally
         {
-            nextSlot = nextSlot >= ( servers.size() - 1 )
-                    ? 0
-                    : nextSlot + 1;
-
-            final EmailServer server = servers.get( nextSlot );
-            try
-            {
-                final Transport transport = EmailServerUtil.makeSmtpTransport( server );
-
-                serverErrors.put( server, Optional.empty() );
-                return new EmailConnection( server, transport );
-            }
-            catch ( MessagingException e )
+            if ( serverTransport != null )
             {
-                final String msg = "unable to connect to email server '" + server.toDebugString() + "', error: " + e.getMessage();
-                final ErrorInformation errorInformation = new ErrorInformation( PwmError.ERROR_SERVICE_UNREACHABLE, msg );
-                serverErrors.put( server, Optional.of( errorInformation ) );
-                LOGGER.warn( errorInformation.toDebugStr() );
+                connectionPool.release( serverTransport, reusable );
             }
         }
-
-        throw PwmUnrecoverableException.newException( PwmError.ERROR_SERVICE_UNREACHABLE, "unable to reach any configured email server" );
     }
 
     private static Set<Integer> readRetryableStatusCodes( final Configuration configuration )
@@ -0,0 +1,190 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package password.pwm.svc.report;
+
+import lombok.Value;
+import password.pwm.PwmApplication;
+import password.pwm.bean.SessionLabel;
+import password.pwm.bean.UserIdentity;
+import password.pwm.config.profile.LdapProfile;
+import password.pwm.config.value.data.UserPermission;
+import password.pwm.error.PwmOperationalException;
+import password.pwm.error.PwmUnrecoverableException;
+import password.pwm.ldap.search.SearchConfiguration;
+import password.pwm.util.java.StringUtil;
+import password.pwm.util.logging.PwmLogger;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the report users modified since the previous run by searching for entries whose modification timestamp is at
+ * or after the high-water mark of their ldap profile.
+ *
+ * <p>The new high-water mark of a profile is the newest timestamp seen in its results, less the configured overlap
+ * so that changes replicated late from other servers are picked up by the following run.  Changes are re-read
+ * harmlessly when they fall within the overlap.</p>
+ */
+class ReportChangeSearch
+{
+    private static final PwmLogger LOGGER = PwmLogger.forClass( ReportChangeSearch.class );
+
+    private static final DateTimeFormatter GENERALIZED_TIME_FORMAT = DateTimeFormatter.ofPattern( "yyyyMMddHHmmss" ).withZone( ZoneOffset.UTC );
+    private static final int GENERALIZED_TIME_SECONDS_LENGTH = 14;
+
+    private final PwmApplication pwmApplication;
+    private final ReportSettings settings;
+
+    ReportChangeSearch( final PwmApplication pwmApplication, final ReportSettings settings )
+    {
+        this.pwmApplication = pwmApplication;
+        this.settings = settings;
+    }
+
+    @Value
+    static class Result
+    {
+        private final Set<UserIdentity> changedUsers;
+        private final Map<String, Instant> highWaterMarks;
+        private final boolean complete;
+    }
+
+    /**
+     * Search for users changed since the given high-water marks.  The result is incomplete if a profile has no
+     * high-water mark or the maximum search size was reached, in which case a full read is required.
+     */
+    Result search( final Map<String, Instant> highWaterMarks )
+            throws PwmUnrecoverableException, PwmOperationalException
+    {
+        final Set<UserIdentity> changedUsers = new LinkedHashSet<>();
+        final Map<String, Instant> newHighWaterMarks = new HashMap<>( highWaterMarks );
+        final String timestampAttribute = settings.getIncrementalTimestampAttribute();
+
+        for ( final UserPermission permission : ReportHarvester.reportPermissions( settings ) )
+        {
+            for ( final LdapProfile ldapProfile : ReportHarvester.profilesForPermission( pwmApplication, permission ) )
+            {
+                final Instant highWaterMark = highWaterMarks.get( ldapProfile.getIdentifier() );
+                if ( highWaterMark == null )
+                {
+                    LOGGER.debug( SessionLabel.REPORTING_SESSION_LABEL, () -> "no high-water mark for profile " + ldapProfile.getIdentifier() );
+                    return new Result( Collections.emptySet(), highWaterMarks, false );
+                }
+
+                final String filter = "(&"
+                        + wrapFilter( ReportHarvester.filterForPermission( permission, ldapProfile ) )
+                        + "(" + timestampAttribute + ">=" + formatGeneralizedTime( highWaterMark ) + "))";
+
+                final SearchConfiguration searchConfiguration = SearchConfiguration.builder()
+                        .filter( filter )
+                        .contexts( ReportHarvester.contextsForPermission( pwmApplication, permission, ldapProfile ) )
+                        .ldapProfile( ldapProfile.getIdentifier() )
+                        .enableContextValidation( false )
+                        .build();
+
+                final int remaining = settings.getMaxSearchSize() - changedUsers.size();
+                final Map<UserIdentity, Map<String, String>> results = pwmApplication.getUserSearchEngine().performMultiUserSearch(
+                        searchConfiguration,
+                        remaining,
+                        Collections.singletonList( timestampAttribute ),
+                        SessionLabel.REPORTING_SESSION_LABEL
+                );
+
+                if ( results.size() >= remaining )
+                {
+                    LOGGER.debug( SessionLabel.REPORTING_SESSION_LABEL, () -> "changed users of profile " + ldapProfile.getIdentifier()
+                            + " exceed the maximum search size" );
+                    return new Result( Collections.emptySet(), highWaterMarks, false );
+                }
+
+                for ( final Map.Entry<UserIdentity, Map<String, String>> entry : results.entrySet() )
+                {
+                    changedUsers.add( entry.getKey() );
+                    final Instant modified = parseGeneralizedTime( findValue( entry.getValue(), timestampAttribute ) );
+                    if ( modified != null )
+                    {
+                        final Instant candidate = modified.minus( settings.getIncrementalOverlap().asDuration() );
+                        newHighWaterMarks.merge( ldapProfile.getIdentifier(), candidate, ( a, b ) -> a.isAfter( b ) ? a : b );
+                    }
+                }
+            }
+        }
+
+        return new Result( Collections.unmodifiableSet( changedUsers ), Collections.unmodifiableMap( newHighWaterMarks ), true );
+    }
+
+    static String formatGeneralizedTime( final Instant instant )
+    {
+        return GENERALIZED_TIME_FORMAT.format( instant ) + "Z";
+    }
+
+    /**
+     * Parse a UTC generalized time value such as {@code 20180101120000Z} or {@code 20180101120000.0Z}, ignoring any
+     * fraction of a second.
+     *
+     * @return the parsed time, or null if the value is not a UTC generalized time.
+     */
+    static Instant parseGeneralizedTime( final String value )
+    {
+        if ( StringUtil.isEmpty( value ) || value.length() <= GENERALIZED_TIME_SECONDS_LENGTH || !value.toUpperCase().endsWith( "Z" ) )
+        {
+            return null;
+        }
+
+        try
+        {
+            return LocalDateTime.parse( value.substring( 0, GENERALIZED_TIME_SECONDS_LENGTH ), GENERALIZED_TIME_FORMAT ).toInstant( ZoneOffset.UTC );
+        }
+        catch ( DateTimeParseException e )
+        {
+            return null;
+        }
+    }
+
+    private static String wrapFilter( final String filter )
+    {
+        final String trimmed = filter.trim();
+        return trimmed.startsWith( "(" ) ? trimmed : "(" + trimmed + ")";
+    }
+
+    private static String findValue( final Map<String, String> values, final String attribute )
+    {
+        for ( final Map.Entry<String, String> entry : values.entrySet() )
+        {
+            if ( entry.getKey().equalsIgnoreCase( attribute ) )
+            {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+}
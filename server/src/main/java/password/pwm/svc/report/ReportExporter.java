@@ -0,0 +1,347 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package password.pwm.svc.report;
+
+import org.apache.commons.csv.CSVPrinter;
+import password.pwm.AppProperty;
+import password.pwm.PwmApplication;
+import password.pwm.PwmConstants;
+import password.pwm.config.Configuration;
+import password.pwm.error.PwmError;
+import password.pwm.error.PwmUnrecoverableException;
+import password.pwm.i18n.Display;
+import password.pwm.util.PwmScheduler;
+import password.pwm.util.java.ClosableIterator;
+import password.pwm.util.java.JavaHelper;
+import password.pwm.util.java.JsonUtil;
+import password.pwm.util.java.TimeDuration;
+import password.pwm.util.localdb.LocalDBException;
+import password.pwm.util.logging.PwmLogger;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams cached report records to an output stream.  The user cache key space is read in partitions of
+ * consecutive keys; a pool of worker threads reads, decodes and formats each partition into an encoded buffer, and the
+ * calling thread writes the buffers in key order.  At most a fixed number of partitions are in flight, so a slow
+ * consumer throttles the workers instead of accumulating formatted output in memory.
+ */
+public class ReportExporter
+{
+    private static final PwmLogger LOGGER = PwmLogger.forClass( ReportExporter.class );
+
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    public enum Format
+    {
+        /**
+         * Localized comma separated values, one record per row.
+         */
+        CSV,
+
+        /**
+         * Newline-delimited json, one compact json record per line.
+         */
+        NDJSON,
+    }
+
+    private final PwmApplication pwmApplication;
+    private final Configuration config;
+    private final int threadCount;
+    private final int partitionSize;
+    private final int maxPendingPartitions;
+
+    public ReportExporter( final PwmApplication pwmApplication, final Configuration config )
+    {
+        this.pwmApplication = pwmApplication;
+        this.config = config;
+        this.threadCount = Math.max( 1, Integer.parseInt( config.readAppProperty( AppProperty.REPORTING_EXPORT_THREADS ) ) );
+        this.partitionSize = Math.max( 1, Integer.parseInt( config.readAppProperty( AppProperty.REPORTING_EXPORT_PARTITION_SIZE ) ) );
+        this.maxPendingPartitions = Math.max( threadCount, Integer.parseInt( config.readAppProperty( AppProperty.REPORTING_EXPORT_MAX_PENDING_PARTITIONS ) ) );
+    }
+
+    /**
+     * Write the records matching the filter, or all records if the filter is null.  The output stream is not closed.
+     *
+     * @return the number of records written.
+     */
+    public long export(
+            final OutputStream outputStream,
+            final Format format,
+            final boolean gzip,
+            final boolean includeHeader,
+            final Locale locale,
+            final ReportFilter filter
+    )
+            throws IOException, PwmUnrecoverableException
+    {
+        final Instant startTime = Instant.now();
+        final ReportService reportService = pwmApplication.getReportService();
+        final UserCacheService userCacheService = reportService.getUserCacheService();
+        if ( userCacheService == null )
+        {
+            throw PwmUnrecoverableException.newException( PwmError.ERROR_SERVICE_NOT_AVAILABLE, "report service is not open" );
+        }
+
+        final PartitionFormatter formatter = new PartitionFormatter( format, locale );
+        final OutputStream output = gzip
+                ? new GZIPOutputStream( outputStream, OUTPUT_BUFFER_SIZE )
+                : new BufferedOutputStream( outputStream, OUTPUT_BUFFER_SIZE );
+
+        if ( includeHeader && format == Format.CSV )
+        {
+            output.write( formatter.formatHeader() );
+        }
+
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                threadCount,
+                threadCount,
+                1, TimeUnit.MINUTES,
+                new LinkedBlockingQueue<>(),
+                PwmScheduler.makePwmThreadFactory( PwmScheduler.makeThreadName( pwmApplication, ReportExporter.class ) + "-", true ) );
+
+        final Deque<Future<Partition>> pendingPartitions = new ArrayDeque<>();
+        long recordCount = 0;
+
+        try ( ClosableIterator<UserCacheService.StorageKey> keyIterator = keyIterator( reportService, userCacheService, filter ) )
+        {
+            List<UserCacheService.StorageKey> keys = new ArrayList<>( partitionSize );
+            while ( keyIterator.hasNext() )
+            {
+                keys.add( keyIterator.next() );
+                if ( keys.size() >= partitionSize )
+                {
+                    final List<UserCacheService.StorageKey> partitionKeys = keys;
+                    pendingPartitions.addLast( executor.submit( () -> formatter.formatPartition( userCacheService, partitionKeys ) ) );
+                    keys = new ArrayList<>( partitionSize );
+
+                    while ( pendingPartitions.size() >= maxPendingPartitions )
+                    {
+                        recordCount += writePartition( pendingPartitions.removeFirst(), output );
+                    }
+                }
+            }
+
+            if ( !keys.isEmpty() )
+            {
+                final List<UserCacheService.StorageKey> partitionKeys = keys;
+                pendingPartitions.addLast( executor.submit( () -> formatter.formatPartition( userCacheService, partitionKeys ) ) );
+            }
+
+            while ( !pendingPartitions.isEmpty() )
+            {
+                recordCount += writePartition( pendingPartitions.removeFirst(), output );
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        if ( output instanceof GZIPOutputStream )
+        {
+            ( ( GZIPOutputStream ) output ).finish();
+        }
+        output.flush();
+
+        final long finalCount = recordCount;
+        LOGGER.debug( () -> "exported " + finalCount + " report records as " + format + ( gzip ? " (gzip)" : "" )
+                + " in " + TimeDuration.compactFromCurrent( startTime ) );
+        return recordCount;
+    }
+
+    private ClosableIterator<UserCacheService.StorageKey> keyIterator(
+            final ReportService reportService,
+            final UserCacheService userCacheService,
+            final ReportFilter filter
+    )
+            throws PwmUnrecoverableException
+    {
+        if ( filter == null )
+        {
+            final ClosableIterator<UserCacheService.StorageKey> cacheIterator = userCacheService.iterator();
+            if ( cacheIterator == null )
+            {
+                throw PwmUnrecoverableException.newException( PwmError.ERROR_REPORTING_ERROR, "unable to read user cache" );
+            }
+            return cacheIterator;
+        }
+
+        reportService.checkIndexReady();
+        final Iterator<UserCacheService.StorageKey> selectedKeys = userCacheService.selectKeys( filter, Integer.MAX_VALUE ).iterator();
+        return new ClosableIterator<UserCacheService.StorageKey>()
+        {
+            @Override
+            public boolean hasNext( )
+            {
+                return selectedKeys.hasNext();
+            }
+
+            @Override
+            public UserCacheService.StorageKey next( )
+            {
+                return selectedKeys.next();
+            }
+
+            @Override
+            public void close( )
+            {
+            }
+        };
+    }
+
+    private static int writePartition( final Future<Partition> future, final OutputStream output )
+            throws IOException, PwmUnrecoverableException
+    {
+        final Partition partition;
+        try
+        {
+            partition = future.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw PwmUnrecoverableException.newException( PwmError.ERROR_REPORTING_ERROR, "interrupted while exporting report records" );
+        }
+        catch ( ExecutionException e )
+        {
+            final Throwable cause = e.getCause() == null ? e : e.getCause();
+            if ( cause instanceof PwmUnrecoverableException )
+            {
+                throw ( PwmUnrecoverableException ) cause;
+            }
+            throw PwmUnrecoverableException.newException( PwmError.ERROR_REPORTING_ERROR, "error exporting report records: " + cause.getMessage() );
+        }
+
+        output.write( partition.getBytes() );
+        return partition.getRecordCount();
+    }
+
+    private static class Partition
+    {
+        private final byte[] bytes;
+        private final int recordCount;
+
+        Partition( final byte[] bytes, final int recordCount )
+        {
+            this.bytes = bytes;
+            this.recordCount = recordCount;
+        }
+
+        byte[] getBytes( )
+        {
+            return bytes;
+        }
+
+        int getRecordCount( )
+        {
+            return recordCount;
+        }
+    }
+
+    private class PartitionFormatter
+    {
+        private final Format format;
+        private final Locale locale;
+        private final String trueField;
+        private final String falseField;
+        private final String naField;
+
+        PartitionFormatter( final Format format, final Locale locale )
+        {
+            this.format = format;
+            this.locale = locale;
+            this.trueField = Display.getLocalizedMessage( locale, Display.Value_True, config );
+            this.falseField = Display.getLocalizedMessage( locale, Display.Value_False, config );
+            this.naField = Display.getLocalizedMessage( locale, Display.Value_NotApplicable, config );
+        }
+
+        byte[] formatHeader( )
+                throws IOException
+        {
+            final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            final CSVPrinter csvPrinter = JavaHelper.makeCsvPrinter( byteArrayOutputStream );
+            csvPrinter.printRecord( ReportCsvUtility.makeHeaderRow( locale, config ) );
+            csvPrinter.flush();
+            return byteArrayOutputStream.toByteArray();
+        }
+
+        Partition formatPartition( final UserCacheService userCacheService, final List<UserCacheService.StorageKey> keys )
+                throws IOException, LocalDBException
+        {
+            final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream( keys.size() * 256 );
+            int recordCount = 0;
+
+            if ( format == Format.CSV )
+            {
+                final CSVPrinter csvPrinter = JavaHelper.makeCsvPrinter( byteArrayOutputStream );
+                for ( final UserCacheService.StorageKey key : keys )
+                {
+                    final UserCacheRecord userCacheRecord = userCacheService.readStorageKey( key );
+                    if ( userCacheRecord != null )
+                    {
+                        csvPrinter.printRecord( ReportCsvUtility.makeRecordRow( userCacheRecord, trueField, falseField, naField ) );
+                        recordCount++;
+                    }
+                }
+                csvPrinter.flush();
+            }
+            else
+            {
+                final Writer writer = new OutputStreamWriter( byteArrayOutputStream, PwmConstants.DEFAULT_CHARSET );
+                for ( final UserCacheService.StorageKey key : keys )
+                {
+                    final UserCacheRecord userCacheRecord = userCacheService.readStorageKey( key );
+                    if ( userCacheRecord != null )
+                    {
+                        writer.write( JsonUtil.serialize( userCacheRecord ) );
+                        writer.write( '\n' );
+                        recordCount++;
+                    }
+                }
+                writer.flush();
+            }
+
+            return new Partition( byteArrayOutputStream.toByteArray(), recordCount );
+        }
+    }
+}
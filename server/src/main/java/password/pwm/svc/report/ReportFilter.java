@@ -0,0 +1,85 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package password.pwm.svc.report;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Criteria for selecting user cache records.  Date ranges are expressed in whole days relative to the current day,
+ * so a password expiring within the next week is {@code dateField=passwordExpirationTime, fromDays=0, toDays=7}.
+ */
+@Value
+@Builder
+public class ReportFilter implements Serializable
+{
+    public enum DateField
+    {
+        passwordExpirationTime,
+        passwordChangeTime,
+        lastLoginTime,
+        accountExpirationTime,
+        responseSetTime,
+        otpSecretSetTime,
+        passwordExpirationNoticeSendTime,
+    }
+
+    public enum Flag
+    {
+        hasResponses,
+        hasHelpdeskResponses,
+        hasOtpSecret,
+        passwordExpired,
+        passwordPreExpired,
+        passwordWarnPeriod,
+        passwordViolatesPolicy,
+        requiresPasswordUpdate,
+        requiresResponseUpdate,
+        requiresProfileUpdate,
+    }
+
+    private String ldapProfile;
+
+    /**
+     * Date the range applies to.  Without a range, records having any value for the date are selected.
+     */
+    private DateField dateField;
+
+    /**
+     * First day of the range relative to today, inclusive, or null for no lower bound.
+     */
+    private Integer fromDays;
+
+    /**
+     * Last day of the range relative to today, inclusive, or null for no upper bound.
+     */
+    private Integer toDays;
+
+    @Builder.Default
+    private Map<Flag, Boolean> flags = Collections.emptyMap();
+}
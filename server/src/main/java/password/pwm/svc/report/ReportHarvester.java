@@ -0,0 +1,513 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package password.pwm.svc.report;
+
+import com.novell.ldap.LDAPAttribute;
+import com.novell.ldap.LDAPConnection;
+import com.novell.ldap.LDAPControl;
+import com.novell.ldap.LDAPEntry;
+import com.novell.ldap.LDAPException;
+import com.novell.ldap.LDAPReferralException;
+import com.novell.ldap.LDAPSearchConstraints;
+import com.novell.ldap.LDAPSearchResults;
+import com.novell.ldap.controls.LDAPPagedResultsControl;
+import com.novell.ldap.controls.LDAPPagedResultsResponse;
+import com.novell.ldapchai.ChaiConstant;
+import com.novell.ldapchai.exception.ChaiException;
+import com.novell.ldapchai.provider.ChaiConfiguration;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.ChaiProviderImplementor;
+import com.novell.ldapchai.provider.ChaiSetting;
+import com.novell.ldapchai.provider.SearchScope;
+import com.novell.ldapchai.util.SearchHelper;
+import password.pwm.AppProperty;
+import password.pwm.PwmApplication;
+import password.pwm.PwmConstants;
+import password.pwm.bean.SessionLabel;
+import password.pwm.bean.UserIdentity;
+import password.pwm.config.PwmSetting;
+import password.pwm.config.profile.LdapProfile;
+import password.pwm.config.value.data.UserPermission;
+import password.pwm.error.ErrorInformation;
+import password.pwm.error.PwmError;
+import password.pwm.error.PwmUnrecoverableException;
+import password.pwm.ldap.LdapOperationsHelper;
+import password.pwm.ldap.PrefetchedLdapEntry;
+import password.pwm.util.java.StringUtil;
+import password.pwm.util.java.TimeDuration;
+import password.pwm.util.logging.PwmLogger;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Reads report users with one paged subtree search per search context instead of reading each user individually.
+ *
+ * <p>The attributes needed to build a cache record are learned per ldap profile by building the record of one sample
+ * user while recording the reads made for its DN.  The sample entry is then read both through the harvest connection
+ * and through the proxy connections, and attributes whose values differ (such as constructed attributes that are not
+ * returned by subtree searches) are left to be read per user.  Each harvested entry is handed to the sink together
+ * with its prefetched attribute values.</p>
+ */
+class ReportHarvester
+{
+    private static final PwmLogger LOGGER = PwmLogger.forClass( ReportHarvester.class );
+    private static final SessionLabel SESSION_LABEL = SessionLabel.REPORTING_SESSION_LABEL;
+    private static final String OBJECTCLASS_FILTER = "(objectclass=*)";
+    private static final String NO_ATTRIBUTES = "1.1";
+
+    private final PwmApplication pwmApplication;
+    private final ReportSettings settings;
+    private final BooleanSupplier cancelled;
+    private final Map<String, ProfileHarvest> profileHarvests = new HashMap<>();
+
+    private int harvestedCount;
+
+    interface SampleReader
+    {
+        void read( UserIdentity userIdentity ) throws Exception;
+    }
+
+    interface EntrySink
+    {
+        void accept( UserIdentity userIdentity, PrefetchedLdapEntry prefetchedLdapEntry ) throws PwmUnrecoverableException;
+    }
+
+    ReportHarvester( final PwmApplication pwmApplication, final ReportSettings settings, final BooleanSupplier cancelled )
+    {
+        this.pwmApplication = pwmApplication;
+        this.settings = settings;
+        this.cancelled = cancelled;
+    }
+
+    int getHarvestedCount( )
+    {
+        return harvestedCount;
+    }
+
+    /**
+     * Harvest all users matching the report search filter, up to the maximum search size.
+     *
+     * @return the number of entries handed to the sink.
+     */
+    int harvest( final SampleReader sampleReader, final EntrySink entrySink )
+            throws PwmUnrecoverableException
+    {
+        final Instant startTime = Instant.now();
+        try
+        {
+            for ( final UserPermission permission : reportPermissions( settings ) )
+            {
+                for ( final LdapProfile ldapProfile : profilesForPermission( pwmApplication, permission ) )
+                {
+                    for ( final String context : contextsForPermission( pwmApplication, permission, ldapProfile ) )
+                    {
+                        if ( isComplete() )
+                        {
+                            return harvestedCount;
+                        }
+                        harvestContext( ldapProfile, context, filterForPermission( permission, ldapProfile ), sampleReader, entrySink );
+                    }
+                }
+            }
+        }
+        finally
+        {
+            close();
+            LOGGER.debug( SESSION_LABEL, () -> "harvested " + harvestedCount + " ldap entries in " + TimeDuration.compactFromCurrent( startTime ) );
+        }
+
+        return harvestedCount;
+    }
+
+    private void harvestContext(
+            final LdapProfile ldapProfile,
+            final String context,
+            final String filter,
+            final SampleReader sampleReader,
+            final EntrySink entrySink
+    )
+            throws PwmUnrecoverableException
+    {
+        final String sampleDN = findSampleDN( ldapProfile, context, filter );
+        if ( sampleDN == null )
+        {
+            LOGGER.trace( SESSION_LABEL, () -> "no users in context " + context + " of profile " + ldapProfile.getIdentifier() + " match " + filter );
+            return;
+        }
+
+        ProfileHarvest profileHarvest = profileHarvests.get( ldapProfile.getIdentifier() );
+        if ( profileHarvest == null )
+        {
+            profileHarvest = discover( ldapProfile, sampleDN, sampleReader );
+            profileHarvests.put( ldapProfile.getIdentifier(), profileHarvest );
+        }
+
+        final int pageSize = Integer.parseInt( pwmApplication.getConfig().readAppProperty( AppProperty.LDAP_SEARCH_PAGING_SIZE ) );
+        final int timeLimitMs = Integer.parseInt( pwmApplication.getConfig().readAppProperty( AppProperty.REPORTING_LDAP_SEARCH_TIMEOUT ) );
+        final LDAPConnection ldapConnection = profileHarvest.getLdapConnection();
+
+        try
+        {
+            byte[] cookie = null;
+            do
+            {
+                final LDAPSearchConstraints constraints = new LDAPSearchConstraints( ldapConnection.getSearchConstraints() );
+                constraints.setTimeLimit( timeLimitMs );
+                constraints.setControls( cookie == null
+                        ? new LDAPPagedResultsControl( pageSize, true )
+                        : new LDAPPagedResultsControl( pageSize, cookie, true ) );
+
+                final LDAPSearchResults searchResults = ldapConnection.search(
+                        context,
+                        LDAPConnection.SCOPE_SUB,
+                        filter,
+                        profileHarvest.getRequestAttributes(),
+                        false,
+                        constraints
+                );
+
+                while ( searchResults.hasMore() )
+                {
+                    final LDAPEntry ldapEntry;
+                    try
+                    {
+                        ldapEntry = searchResults.next();
+                    }
+                    catch ( LDAPReferralException e )
+                    {
+                        continue;
+                    }
+
+                    if ( isComplete() )
+                    {
+                        return;
+                    }
+
+                    entrySink.accept( new UserIdentity( ldapEntry.getDN(), ldapProfile.getIdentifier() ), profileHarvest.toPrefetchedEntry( ldapEntry ) );
+                    harvestedCount++;
+                }
+
+                cookie = readCookie( searchResults.getResponseControls() );
+            }
+            while ( cookie != null && cookie.length > 0 && !isComplete() );
+        }
+        catch ( LDAPException e )
+        {
+            final String errorMsg = "error during paged search of context " + context + " of profile " + ldapProfile.getIdentifier() + ": " + e.getMessage();
+            throw new PwmUnrecoverableException( new ErrorInformation( PwmError.ERROR_DIRECTORY_UNAVAILABLE, errorMsg ) );
+        }
+    }
+
+    private String findSampleDN( final LdapProfile ldapProfile, final String context, final String filter )
+            throws PwmUnrecoverableException
+    {
+        final SearchHelper searchHelper = new SearchHelper( filter, SearchScope.SUBTREE );
+        searchHelper.returnNoAttributes();
+        searchHelper.setMaxResults( 1 );
+        try
+        {
+            final Map<String, Map<String, String>> results = ldapProfile.getProxyChaiProvider( pwmApplication ).search( context, searchHelper );
+            return results.isEmpty() ? null : results.keySet().iterator().next();
+        }
+        catch ( ChaiException e )
+        {
+            throw PwmUnrecoverableException.fromChaiException( e );
+        }
+    }
+
+    private ProfileHarvest discover( final LdapProfile ldapProfile, final String sampleDN, final SampleReader sampleReader )
+            throws PwmUnrecoverableException
+    {
+        final PrefetchedLdapEntry.Recorder recorder = new PrefetchedLdapEntry.Recorder();
+        final PrefetchedLdapEntry recordingEntry = PrefetchedLdapEntry.forRecording( sampleDN, recorder );
+        recordingEntry.activate();
+        try
+        {
+            sampleReader.read( new UserIdentity( sampleDN, ldapProfile.getIdentifier() ) );
+        }
+        catch ( PwmUnrecoverableException e )
+        {
+            throw e;
+        }
+        catch ( Exception e )
+        {
+            final String errorMsg = "unable to read sample user " + sampleDN + " of profile " + ldapProfile.getIdentifier() + ": " + e.getMessage();
+            throw new PwmUnrecoverableException( new ErrorInformation( PwmError.ERROR_REPORTING_ERROR, errorMsg ) );
+        }
+        finally
+        {
+            PrefetchedLdapEntry.deactivate();
+        }
+
+        final ProfileHarvest profileHarvest = new ProfileHarvest( openHarvestConnection( ldapProfile ), recorder.getStringAttributes(), recorder.getBinaryAttributes() );
+        calibrate( ldapProfile, sampleDN, profileHarvest );
+        LOGGER.debug( SESSION_LABEL, () -> "harvesting profile " + ldapProfile.getIdentifier()
+                + " with string attributes " + profileHarvest.stringAttributes
+                + ", binary attributes " + profileHarvest.binaryAttributes );
+        return profileHarvest;
+    }
+
+    /**
+     * Compare the harvest connection's view of the sample entry with the proxy connections' view and stop
+     * prefetching any attribute that differs, so harvested values never change a cache record.
+     */
+    private void calibrate( final LdapProfile ldapProfile, final String sampleDN, final ProfileHarvest profileHarvest )
+            throws PwmUnrecoverableException
+    {
+        final PrefetchedLdapEntry harvestedEntry;
+        try
+        {
+            final LDAPEntry ldapEntry = profileHarvest.getLdapConnection().read( sampleDN, profileHarvest.getRequestAttributes() );
+            harvestedEntry = profileHarvest.toPrefetchedEntry( ldapEntry );
+        }
+        catch ( LDAPException e )
+        {
+            final String errorMsg = "unable to read sample user " + sampleDN + " using harvest connection: " + e.getMessage();
+            throw new PwmUnrecoverableException( new ErrorInformation( PwmError.ERROR_DIRECTORY_UNAVAILABLE, errorMsg ) );
+        }
+
+        final Set<String> mismatched = new TreeSet<>( String.CASE_INSENSITIVE_ORDER );
+        try
+        {
+            final ChaiProvider proxyProvider = ldapProfile.getProxyChaiProvider( pwmApplication );
+            if ( !profileHarvest.stringAttributes.isEmpty() )
+            {
+                final Map<String, Map<String, List<String>>> liveResults = proxyProvider.searchMultiValues(
+                        sampleDN,
+                        OBJECTCLASS_FILTER,
+                        new HashSet<>( profileHarvest.stringAttributes ),
+                        SearchScope.BASE
+                );
+                final Map<String, List<String>> liveValues = liveResults.isEmpty()
+                        ? Collections.emptyMap()
+                        : liveResults.values().iterator().next();
+
+                for ( final String attribute : profileHarvest.stringAttributes )
+                {
+                    final Collection<String> harvestedValues = harvestedEntry.getStringValues( attribute );
+                    if ( !new HashSet<>( harvestedValues ).equals( new HashSet<>( findValues( liveValues, attribute ) ) ) )
+                    {
+                        mismatched.add( attribute );
+                    }
+                }
+            }
+
+            for ( final String attribute : profileHarvest.binaryAttributes )
+            {
+                final byte[][] liveValues = proxyProvider.readMultiByteAttribute( sampleDN, attribute );
+                if ( !Arrays.deepEquals( liveValues, harvestedEntry.getBinaryValues( attribute ) ) )
+                {
+                    mismatched.add( attribute );
+                }
+            }
+        }
+        catch ( ChaiException e )
+        {
+            throw PwmUnrecoverableException.fromChaiException( e );
+        }
+
+        if ( !mismatched.isEmpty() )
+        {
+            LOGGER.debug( SESSION_LABEL, () -> "attributes " + mismatched + " of profile " + ldapProfile.getIdentifier()
+                    + " differ between harvest and proxy reads and will be read per user" );
+            profileHarvest.stringAttributes.removeAll( mismatched );
+            profileHarvest.binaryAttributes.removeAll( mismatched );
+        }
+    }
+
+    private ChaiProvider openHarvestConnection( final LdapProfile ldapProfile )
+            throws PwmUnrecoverableException
+    {
+        final ChaiConfiguration chaiConfiguration = LdapOperationsHelper.createJldapChaiConfiguration( pwmApplication.getConfig(), ldapProfile );
+        try
+        {
+            final ChaiProvider chaiProvider = pwmApplication.getLdapConnectionService().getChaiProviderFactory().newProvider( chaiConfiguration );
+
+            // issue a read operation to establish the connection.
+            chaiProvider.readStringAttribute( chaiConfiguration.getSetting( ChaiSetting.BIND_DN ), ChaiConstant.ATTR_LDAP_OBJECTCLASS );
+            return chaiProvider;
+        }
+        catch ( ChaiException e )
+        {
+            throw PwmUnrecoverableException.fromChaiException( e );
+        }
+    }
+
+    private void close( )
+    {
+        for ( final ProfileHarvest profileHarvest : profileHarvests.values() )
+        {
+            profileHarvest.chaiProvider.close();
+        }
+        profileHarvests.clear();
+    }
+
+    private boolean isComplete( )
+    {
+        return cancelled.getAsBoolean() || harvestedCount >= settings.getMaxSearchSize();
+    }
+
+    static List<UserPermission> reportPermissions( final ReportSettings settings )
+    {
+        return settings.getSearchFilter() == null
+                ? Collections.singletonList( new UserPermission( UserPermission.Type.ldapQuery, PwmConstants.PROFILE_ID_ALL, null, null ) )
+                : settings.getSearchFilter();
+    }
+
+    static Collection<LdapProfile> profilesForPermission( final PwmApplication pwmApplication, final UserPermission permission )
+    {
+        final Map<String, LdapProfile> ldapProfiles = pwmApplication.getConfig().getLdapProfiles();
+        final String profileID = permission.getLdapProfileID();
+        if ( StringUtil.isEmpty( profileID ) || PwmConstants.PROFILE_ID_ALL.equalsIgnoreCase( profileID ) )
+        {
+            return ldapProfiles.values();
+        }
+
+        final LdapProfile ldapProfile = ldapProfiles.get( profileID );
+        return ldapProfile == null ? Collections.emptyList() : Collections.singletonList( ldapProfile );
+    }
+
+    static List<String> contextsForPermission( final PwmApplication pwmApplication, final UserPermission permission, final LdapProfile ldapProfile )
+            throws PwmUnrecoverableException
+    {
+        return StringUtil.isEmpty( permission.getLdapBase() )
+                ? ldapProfile.getRootContexts( pwmApplication )
+                : Collections.singletonList( permission.getLdapBase() );
+    }
+
+    static String filterForPermission( final UserPermission permission, final LdapProfile ldapProfile )
+    {
+        final String filter = permission.getLdapQuery() != null && permission.getLdapQuery().length() > 1
+                ? permission.getLdapQuery()
+                : ldapProfile.readSettingAsString( PwmSetting.LDAP_USERNAME_SEARCH_FILTER );
+        return filter.replace( PwmConstants.VALUE_REPLACEMENT_USERNAME, "*" );
+    }
+
+    private static byte[] readCookie( final LDAPControl[] controls )
+    {
+        if ( controls != null )
+        {
+            for ( final LDAPControl control : controls )
+            {
+                if ( control instanceof LDAPPagedResultsResponse )
+                {
+                    return ( ( LDAPPagedResultsResponse ) control ).getCookie();
+                }
+            }
+        }
+        return null;
+    }
+
+    private static List<String> findValues( final Map<String, List<String>> values, final String attribute )
+    {
+        for ( final Map.Entry<String, List<String>> entry : values.entrySet() )
+        {
+            if ( entry.getKey().equalsIgnoreCase( attribute ) )
+            {
+                return entry.getValue();
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    private static class ProfileHarvest
+    {
+        private final ChaiProvider chaiProvider;
+        private final Set<String> stringAttributes = new TreeSet<>( String.CASE_INSENSITIVE_ORDER );
+        private final Set<String> binaryAttributes = new TreeSet<>( String.CASE_INSENSITIVE_ORDER );
+
+        ProfileHarvest( final ChaiProvider chaiProvider, final Set<String> stringAttributes, final Set<String> binaryAttributes )
+        {
+            this.chaiProvider = chaiProvider;
+            this.stringAttributes.addAll( stringAttributes );
+            this.binaryAttributes.addAll( binaryAttributes );
+        }
+
+        LDAPConnection getLdapConnection( )
+                throws PwmUnrecoverableException
+        {
+            final LDAPConnection ldapConnection;
+            try
+            {
+                ldapConnection = ( LDAPConnection ) ( ( ChaiProviderImplementor ) chaiProvider ).getConnectionObject();
+            }
+            catch ( Exception e )
+            {
+                throw PwmUnrecoverableException.newException( PwmError.ERROR_DIRECTORY_UNAVAILABLE, "unable to read harvest connection: " + e.getMessage() );
+            }
+
+            if ( ldapConnection == null || !ldapConnection.isConnected() )
+            {
+                throw PwmUnrecoverableException.newException( PwmError.ERROR_DIRECTORY_UNAVAILABLE, "harvest connection is not connected" );
+            }
+            return ldapConnection;
+        }
+
+        String[] getRequestAttributes( )
+        {
+            final Set<String> attributes = new LinkedHashSet<>( stringAttributes );
+            attributes.addAll( binaryAttributes );
+            if ( attributes.isEmpty() )
+            {
+                attributes.add( NO_ATTRIBUTES );
+            }
+            return attributes.toArray( new String[0] );
+        }
+
+        PrefetchedLdapEntry toPrefetchedEntry( final LDAPEntry ldapEntry )
+        {
+            final Map<String, List<String>> stringValues = new LinkedHashMap<>();
+            final Map<String, byte[][]> binaryValues = new LinkedHashMap<>();
+            final Iterator attributeIterator = ldapEntry.getAttributeSet().iterator();
+            while ( attributeIterator.hasNext() )
+            {
+                final LDAPAttribute ldapAttribute = ( LDAPAttribute ) attributeIterator.next();
+                final String name = ldapAttribute.getBaseName();
+                if ( stringAttributes.contains( name ) )
+                {
+                    stringValues.put( name, new ArrayList<>( Arrays.asList( ldapAttribute.getStringValueArray() ) ) );
+                }
+                if ( binaryAttributes.contains( name ) )
+                {
+                    binaryValues.put( name, ldapAttribute.getByteValueArray() );
+                }
+            }
+            return PrefetchedLdapEntry.forValues( ldapEntry.getDN(), stringAttributes, binaryAttributes, stringValues, binaryValues );
+        }
+    }
+}
@@ -37,6 +37,7 @@ import password.pwm.error.PwmOperationalException;
 import password.pwm.error.PwmUnrecoverableException;
 import password.pwm.health.HealthRecord;
 import password.pwm.ldap.LdapOperationsHelper;
+import password.pwm.ldap.PrefetchedLdapEntry;
 import password.pwm.ldap.UserInfo;
 import password.pwm.ldap.UserInfoFactory;
 import password.pwm.svc.PwmService;
@@ -59,9 +60,11 @@ import java.math.MathContext;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.locks.Lock;
@@ -205,7 +208,7 @@ public class ReportService implements PwmService
                 )
                 {
                     executorService.execute( new ClearTask() );
-                    executorService.execute( new ReadLDAPTask() );
+                    executorService.execute( makeReadTask() );
                     LOGGER.trace( SessionLabel.REPORTING_SESSION_LABEL, () -> "submitted new ldap dredge task to executorService" );
                 }
             }
@@ -230,6 +233,80 @@ public class ReportService implements PwmService
         }
     }
 
+    private Runnable makeReadTask( )
+    {
+        return settings.isHarvestEnabled() ? new HarvestLDAPTask() : new ReadLDAPTask();
+    }
+
+    private boolean isIncrementalRefreshAvailable( )
+    {
+        return settings.isIncrementalEnabled()
+                && reportStatus.getFullRefreshDate() != null
+                && reportStatus.getHighWaterMarks() != null
+                && !reportStatus.getHighWaterMarks().isEmpty()
+                && TimeDuration.fromCurrent( reportStatus.getFullRefreshDate() ).isShorterThan( settings.getIncrementalFullRefreshInterval() );
+    }
+
+    /**
+     * Record the completion of a read of all users, which becomes the starting point of incremental refreshes.
+     */
+    private void recordFullRefresh( )
+    {
+        final Instant startDate = reportStatus.getStartDate();
+        if ( startDate == null )
+        {
+            return;
+        }
+
+        final Instant highWaterMark = startDate.minus( settings.getIncrementalOverlap().asDuration() );
+        final Map<String, Instant> highWaterMarks = new HashMap<>();
+        for ( final String profileID : pwmApplication.getConfig().getLdapProfiles().keySet() )
+        {
+            highWaterMarks.put( profileID, highWaterMark );
+        }
+        reportStatus.setFullRefreshDate( startDate );
+        reportStatus.setHighWaterMarks( highWaterMarks );
+    }
+
+    /**
+     * Summary data is kept only in memory, so after a restart it is recomputed from the stored records before
+     * incremental changes are applied to it.  It is also recomputed once its time windows are from an earlier day,
+     * since the passage of time moves records in and out of the windows without any change to the records.
+     */
+    private void rebuildSummaryFromCache( )
+    {
+        final Instant startTime = Instant.now();
+        final boolean summaryCurrent = summaryData.getAsOfDay() == UserCacheIndex.toEpochDay( startTime );
+        if ( ( summaryData.getTotalUsers().get() > 0 && summaryCurrent ) || userCacheService.size() == 0 )
+        {
+            return;
+        }
+
+        final ReportSummaryData rebuiltSummaryData;
+        if ( userCacheService.isIndexReady() )
+        {
+            rebuiltSummaryData = ReportSummaryData.fromIndex( userCacheService.getIndex(), settings.getTrackDays(), startTime );
+        }
+        else
+        {
+            rebuiltSummaryData = ReportSummaryData.newSummaryData( settings.getTrackDays(), startTime );
+            try ( RecordIterator<UserCacheRecord> recordIterator = iterator() )
+            {
+                while ( recordIterator.hasNext() )
+                {
+                    final UserCacheRecord userCacheRecord = recordIterator.next();
+                    if ( userCacheRecord != null )
+                    {
+                        rebuiltSummaryData.update( userCacheRecord );
+                    }
+                }
+            }
+        }
+        summaryData = rebuiltSummaryData;
+        LOGGER.debug( SessionLabel.REPORTING_SESSION_LABEL, () -> "rebuilt report summary from " + rebuiltSummaryData.getTotalUsers().get()
+                + " stored records in " + TimeDuration.compactFromCurrent( startTime ) );
+    }
+
     PwmApplication getPwmApplication( )
     {
         return pwmApplication;
@@ -326,6 +403,83 @@ public class ReportService implements PwmService
     }
 
 
+    /**
+     * Count the cached records matching the filter using the in-memory index.
+     */
+    public int countRecords( final ReportFilter filter )
+            throws PwmUnrecoverableException
+    {
+        checkIndexReady();
+        return userCacheService.getIndex().count( filter, Instant.now() );
+    }
+
+    /**
+     * Iterate the cached records matching the filter.  Only matching records are read from the LocalDB.
+     */
+    public RecordIterator<UserCacheRecord> iterator( final ReportFilter filter, final int maximum )
+            throws PwmUnrecoverableException
+    {
+        checkIndexReady();
+        final Iterator<UserCacheService.StorageKey> keyIterator = userCacheService.selectKeys( filter, maximum ).iterator();
+        return new RecordIterator<UserCacheRecord>()
+        {
+            private UserCacheRecord nextRecord = readNext();
+
+            @Override
+            public boolean hasNext( )
+            {
+                return nextRecord != null;
+            }
+
+            @Override
+            public UserCacheRecord next( )
+            {
+                final UserCacheRecord returnRecord = nextRecord;
+                nextRecord = readNext();
+                return returnRecord;
+            }
+
+            private UserCacheRecord readNext( )
+            {
+                try
+                {
+                    while ( keyIterator.hasNext() )
+                    {
+                        final UserCacheRecord userCacheRecord = userCacheService.readStorageKey( keyIterator.next() );
+                        if ( userCacheRecord != null )
+                        {
+                            return userCacheRecord;
+                        }
+                    }
+                }
+                catch ( LocalDBException e )
+                {
+                    throw new IllegalStateException( "unexpected iterator traversal error while reading LocalDB: " + e.getMessage() );
+                }
+                return null;
+            }
+
+            @Override
+            public void close( )
+            {
+            }
+        };
+    }
+
+    void checkIndexReady( )
+            throws PwmUnrecoverableException
+    {
+        if ( userCacheService == null || !userCacheService.isIndexReady() )
+        {
+            throw PwmUnrecoverableException.newException( PwmError.ERROR_SERVICE_NOT_AVAILABLE, "report index is not yet loaded" );
+        }
+    }
+
+    UserCacheService getUserCacheService( )
+    {
+        return userCacheService;
+    }
+
     public ReportSummaryData getSummaryData( )
     {
         return summaryData;
@@ -423,6 +577,7 @@ public class ReportService implements PwmService
 
             resetJobStatus();
             clearWorkQueue();
+            reportStatus.setStartDate( startTime );
 
             final Iterator<UserIdentity> memQueue = LdapOperationsHelper.readUsersFromLdapForPermissions(
                     pwmApplication,
@@ -508,87 +663,24 @@ public class ReportService implements PwmService
 
             resetJobStatus();
 
-            final int threadCount = settings.getReportJobIntensity() == ReportSettings.JobIntensity.HIGH
-                    ? settings.getReportJobThreads()
-                    : 1;
-
-            final boolean pauseBetweenIterations = settings.getReportJobIntensity() == ReportSettings.JobIntensity.LOW;
-
-            final Lock updateTimeLock = new ReentrantLock();
-
             try
             {
-                LOGGER.trace( SessionLabel.REPORTING_SESSION_LABEL, () -> "about to begin ldap processing with thread count of " + threadCount );
-                final BlockingThreadPool threadService = new BlockingThreadPool( threadCount, "reporting-thread" );
+                final RecordUpdateProcessor recordUpdateProcessor = new RecordUpdateProcessor( false );
                 while ( status == STATUS.OPEN && !dnQueue.isEmpty() && !cancelFlag )
                 {
                     final UserIdentity userIdentity = UserIdentity.fromDelimitedKey( dnQueue.poll() );
-                    if ( pwmApplication.getConfig().isDevDebugMode() )
-                    {
-                        LOGGER.trace( SessionLabel.REPORTING_SESSION_LABEL, () -> "submit " + Instant.now().toString()
-                                + " size=" + threadService.getQueue().size() );
-                    }
-                    threadService.blockingSubmit( ( ) ->
-                    {
-                        if ( pwmApplication.getConfig().isDevDebugMode() )
-                        {
-                            LOGGER.trace( SessionLabel.REPORTING_SESSION_LABEL, () -> "start " + Instant.now().toString()
-                                    + " size=" + threadService.getQueue().size() );
-                        }
-                        try
-                        {
-                            final Instant startUpdateTime = Instant.now();
-                            updateCachedRecordFromLdap( userIdentity );
-                            reportStatus.setCount( reportStatus.getCount() + 1 );
-                            eventRateMeter.markEvents( 1 );
-                            final TimeDuration totalUpdateTime = TimeDuration.fromCurrent( startUpdateTime );
-                            avgTracker.addSample( totalUpdateTime.asMillis() );
-
-                            try
-                            {
-                                updateTimeLock.lock();
-                                final TimeDuration scaledTime = TimeDuration.of( totalUpdateTime.asMillis() / threadCount, TimeDuration.Unit.MILLISECONDS );
-                                reportStatus.setJobDuration( reportStatus.getJobDuration().add( scaledTime ) );
-                            }
-                            finally
-                            {
-                                updateTimeLock.unlock();
-                            }
-
-                            if ( pauseBetweenIterations )
-                            {
-                                TimeDuration.of( avgTracker.avgAsLong(), TimeDuration.Unit.MILLISECONDS ).pause();
-                            }
-                        }
-                        catch ( Exception e )
-                        {
-                            String errorMsg = "error while updating report cache for " + userIdentity.toString() + ", cause: ";
-                            errorMsg += e instanceof PwmException ? ( ( PwmException ) e ).getErrorInformation().toDebugStr() : e.getMessage();
-                            final ErrorInformation errorInformation;
-                            errorInformation = new ErrorInformation( PwmError.ERROR_REPORTING_ERROR, errorMsg );
-                            LOGGER.error( SessionLabel.REPORTING_SESSION_LABEL, errorInformation.toDebugStr(), e );
-                            reportStatus.setLastError( errorInformation );
-                            reportStatus.setErrors( reportStatus.getErrors() + 1 );
-                        }
-                        if ( pwmApplication.getConfig().isDevDebugMode() )
-                        {
-                            LOGGER.trace( SessionLabel.REPORTING_SESSION_LABEL, () -> "finish " + Instant.now().toString()
-                                    + " size=" + threadService.getQueue().size() );
-                        }
-                    } );
-                }
-                if ( pwmApplication.getConfig().isDevDebugMode() )
-                {
-                    LOGGER.trace( SessionLabel.REPORTING_SESSION_LABEL, () -> "exit " + Instant.now().toString()
-                            + " size=" + threadService.getQueue().size() );
+                    recordUpdateProcessor.submit( userIdentity, null );
                 }
-
-                JavaHelper.closeAndWaitExecutor( threadService, TimeDuration.SECONDS_10 );
+                recordUpdateProcessor.finish();
 
                 if ( cancelFlag )
                 {
                     reportStatus.setLastError( new ErrorInformation( PwmError.ERROR_SERVICE_NOT_AVAILABLE, "report cancelled by operator" ) );
                 }
+                else if ( status == STATUS.OPEN )
+                {
+                    recordFullRefresh();
+                }
             }
             finally
             {
@@ -597,30 +689,296 @@ public class ReportService implements PwmService
             }
             LOGGER.debug( SessionLabel.REPORTING_SESSION_LABEL, () -> "update user cache process completed: " + JsonUtil.serialize( reportStatus ) );
         }
+    }
+
+    private class HarvestLDAPTask implements Runnable
+    {
+        @Override
+        public void run( )
+        {
+            reportStatus.setCurrentProcess( ReportStatusInfo.ReportEngineProcess.ReadData );
+            resetJobStatus();
+            clearWorkQueue();
+            reportStatus.setStartDate( Instant.now() );
+
+            final ReportHarvester reportHarvester = new ReportHarvester( pwmApplication, settings, ( ) -> cancelFlag || status != STATUS.OPEN );
+            final RecordUpdateProcessor recordUpdateProcessor = new RecordUpdateProcessor( false );
+            boolean fallbackToSearch = false;
+            try
+            {
+                LOGGER.debug( SessionLabel.REPORTING_SESSION_LABEL, () -> "beginning ldap harvest to update user cache records" );
+                reportHarvester.harvest(
+                        userIdentity -> userCacheService.updateUserCache( readUserInfo( userIdentity ) ),
+                        recordUpdateProcessor::submit
+                );
+                recordUpdateProcessor.finish();
+
+                if ( cancelFlag )
+                {
+                    reportStatus.setLastError( new ErrorInformation( PwmError.ERROR_SERVICE_NOT_AVAILABLE, "report cancelled by operator" ) );
+                }
+                else if ( status == STATUS.OPEN )
+                {
+                    recordFullRefresh();
+                }
+            }
+            catch ( Exception e )
+            {
+                recordUpdateProcessor.finish();
+                if ( reportHarvester.getHarvestedCount() == 0 && executorService != null )
+                {
+                    LOGGER.debug( SessionLabel.REPORTING_SESSION_LABEL, () -> "unable to harvest ldap entries, will read users individually; error: " + e.getMessage() );
+                    fallbackToSearch = true;
+                }
+                else
+                {
+                    final ErrorInformation errorInformation = e instanceof PwmException
+                            ? ( ( PwmException ) e ).getErrorInformation()
+                            : new ErrorInformation( PwmError.ERROR_REPORTING_ERROR, e.getMessage() );
+                    LOGGER.error( SessionLabel.REPORTING_SESSION_LABEL, "error during background ldap harvest: " + errorInformation.toDebugStr() );
+                    reportStatus.setLastError( errorInformation );
+                }
+            }
+            finally
+            {
+                if ( !fallbackToSearch )
+                {
+                    reportStatus.setFinishDate( Instant.now() );
+                    saveTempData();
+                }
+                reportStatus.setCurrentProcess( ReportStatusInfo.ReportEngineProcess.None );
+            }
+
+            if ( fallbackToSearch )
+            {
+                executorService.execute( new ReadLDAPTask() );
+            }
+            else
+            {
+                LOGGER.debug( SessionLabel.REPORTING_SESSION_LABEL, () -> "ldap harvest process completed: " + JsonUtil.serialize( reportStatus ) );
+            }
+        }
+    }
 
+    private class IncrementalLDAPTask implements Runnable
+    {
+        @Override
+        public void run( )
+        {
+            reportStatus.setCurrentProcess( ReportStatusInfo.ReportEngineProcess.SearchLDAP );
+            resetJobStatus();
+            clearWorkQueue();
+            reportStatus.setStartDate( Instant.now() );
+
+            boolean fullReadRequired = false;
+            try
+            {
+                final Map<String, Instant> highWaterMarks = reportStatus.getHighWaterMarks() == null
+                        ? Collections.emptyMap()
+                        : reportStatus.getHighWaterMarks();
+                final ReportChangeSearch.Result result = new ReportChangeSearch( pwmApplication, settings ).search( highWaterMarks );
+                fullReadRequired = !result.isComplete();
+                if ( !fullReadRequired )
+                {
+                    LOGGER.debug( SessionLabel.REPORTING_SESSION_LABEL, () -> "beginning incremental update of "
+                            + result.getChangedUsers().size() + " changed user cache records" );
+                    reportStatus.setCurrentProcess( ReportStatusInfo.ReportEngineProcess.ReadData );
+                    rebuildSummaryFromCache();
+
+                    final RecordUpdateProcessor recordUpdateProcessor = new RecordUpdateProcessor( true );
+                    for ( final UserIdentity userIdentity : result.getChangedUsers() )
+                    {
+                        if ( status != STATUS.OPEN || cancelFlag )
+                        {
+                            break;
+                        }
+                        recordUpdateProcessor.submit( userIdentity, null );
+                    }
+                    recordUpdateProcessor.finish();
 
-        private void updateCachedRecordFromLdap( final UserIdentity userIdentity )
-                throws PwmUnrecoverableException, LocalDBException
+                    if ( cancelFlag )
+                    {
+                        reportStatus.setLastError( new ErrorInformation( PwmError.ERROR_SERVICE_NOT_AVAILABLE, "report cancelled by operator" ) );
+                    }
+                    else if ( status == STATUS.OPEN )
+                    {
+                        reportStatus.setHighWaterMarks( new HashMap<>( result.getHighWaterMarks() ) );
+                    }
+                }
+            }
+            catch ( Exception e )
+            {
+                final ErrorInformation errorInformation = e instanceof PwmException
+                        ? ( ( PwmException ) e ).getErrorInformation()
+                        : new ErrorInformation( PwmError.ERROR_REPORTING_ERROR, e.getMessage() );
+                LOGGER.error( SessionLabel.REPORTING_SESSION_LABEL, "error during incremental report update: " + errorInformation.toDebugStr() );
+                reportStatus.setLastError( errorInformation );
+            }
+            finally
+            {
+                if ( !fullReadRequired )
+                {
+                    reportStatus.setFinishDate( Instant.now() );
+                    saveTempData();
+                }
+                reportStatus.setCurrentProcess( ReportStatusInfo.ReportEngineProcess.None );
+            }
+
+            if ( fullReadRequired && executorService != null )
+            {
+                LOGGER.debug( SessionLabel.REPORTING_SESSION_LABEL, () -> "incremental update not possible, will read all users" );
+                executorService.execute( new ClearTask() );
+                executorService.execute( makeReadTask() );
+            }
+        }
+    }
+
+    /**
+     * Updates user cache records on the reporting threads, optionally answering ldap reads of the user's entry from
+     * prefetched values.
+     */
+    private class RecordUpdateProcessor
+    {
+        private final int threadCount = settings.getReportJobIntensity() == ReportSettings.JobIntensity.HIGH
+                ? settings.getReportJobThreads()
+                : 1;
+
+        private final boolean pauseBetweenIterations = settings.getReportJobIntensity() == ReportSettings.JobIntensity.LOW;
+
+        private final Lock updateTimeLock = new ReentrantLock();
+
+        private final BlockingThreadPool threadService = new BlockingThreadPool( threadCount, "reporting-thread" );
+
+        private final boolean applySummaryDelta;
+
+        RecordUpdateProcessor( final boolean applySummaryDelta )
         {
-            if ( status != STATUS.OPEN )
+            this.applySummaryDelta = applySummaryDelta;
+            LOGGER.trace( SessionLabel.REPORTING_SESSION_LABEL, () -> "about to begin ldap processing with thread count of " + threadCount );
+        }
+
+        void submit( final UserIdentity userIdentity, final PrefetchedLdapEntry prefetchedLdapEntry )
+        {
+            if ( pwmApplication.getConfig().isDevDebugMode() )
             {
-                return;
+                LOGGER.trace( SessionLabel.REPORTING_SESSION_LABEL, () -> "submit " + Instant.now().toString()
+                        + " size=" + threadService.getQueue().size() );
             }
+            threadService.blockingSubmit( ( ) ->
+            {
+                if ( pwmApplication.getConfig().isDevDebugMode() )
+                {
+                    LOGGER.trace( SessionLabel.REPORTING_SESSION_LABEL, () -> "start " + Instant.now().toString()
+                            + " size=" + threadService.getQueue().size() );
+                }
+                try
+                {
+                    final Instant startUpdateTime = Instant.now();
+                    updateCachedRecordFromLdap( userIdentity, prefetchedLdapEntry, applySummaryDelta );
+                    reportStatus.setCount( reportStatus.getCount() + 1 );
+                    eventRateMeter.markEvents( 1 );
+                    final TimeDuration totalUpdateTime = TimeDuration.fromCurrent( startUpdateTime );
+                    avgTracker.addSample( totalUpdateTime.asMillis() );
+
+                    try
+                    {
+                        updateTimeLock.lock();
+                        final TimeDuration scaledTime = TimeDuration.of( totalUpdateTime.asMillis() / threadCount, TimeDuration.Unit.MILLISECONDS );
+                        reportStatus.setJobDuration( reportStatus.getJobDuration().add( scaledTime ) );
+                    }
+                    finally
+                    {
+                        updateTimeLock.unlock();
+                    }
 
-            final UserInfo userInfo = UserInfoFactory.newUserInfoUsingProxyForOfflineUser(
-                    pwmApplication,
-                    SessionLabel.REPORTING_SESSION_LABEL,
-                    userIdentity
-            );
-            final UserCacheRecord newUserCacheRecord = userCacheService.updateUserCache( userInfo );
+                    if ( pauseBetweenIterations )
+                    {
+                        TimeDuration.of( avgTracker.avgAsLong(), TimeDuration.Unit.MILLISECONDS ).pause();
+                    }
+                }
+                catch ( Exception e )
+                {
+                    String errorMsg = "error while updating report cache for " + userIdentity.toString() + ", cause: ";
+                    errorMsg += e instanceof PwmException ? ( ( PwmException ) e ).getErrorInformation().toDebugStr() : e.getMessage();
+                    final ErrorInformation errorInformation;
+                    errorInformation = new ErrorInformation( PwmError.ERROR_REPORTING_ERROR, errorMsg );
+                    LOGGER.error( SessionLabel.REPORTING_SESSION_LABEL, errorInformation.toDebugStr(), e );
+                    reportStatus.setLastError( errorInformation );
+                    reportStatus.setErrors( reportStatus.getErrors() + 1 );
+                }
+                if ( pwmApplication.getConfig().isDevDebugMode() )
+                {
+                    LOGGER.trace( SessionLabel.REPORTING_SESSION_LABEL, () -> "finish " + Instant.now().toString()
+                            + " size=" + threadService.getQueue().size() );
+                }
+            } );
+        }
 
-            userCacheService.store( newUserCacheRecord );
-            summaryData.update( newUserCacheRecord );
+        void finish( )
+        {
+            if ( pwmApplication.getConfig().isDevDebugMode() )
+            {
+                LOGGER.trace( SessionLabel.REPORTING_SESSION_LABEL, () -> "exit " + Instant.now().toString()
+                        + " size=" + threadService.getQueue().size() );
+            }
 
-            LOGGER.trace( SessionLabel.REPORTING_SESSION_LABEL, () -> "stored cache for " + userIdentity );
+            JavaHelper.closeAndWaitExecutor( threadService, TimeDuration.SECONDS_10 );
         }
     }
 
+    private UserInfo readUserInfo( final UserIdentity userIdentity )
+            throws PwmUnrecoverableException
+    {
+        return UserInfoFactory.newUserInfoUsingProxyForOfflineUser(
+                pwmApplication,
+                SessionLabel.REPORTING_SESSION_LABEL,
+                userIdentity
+        );
+    }
+
+    /**
+     * Read a user and store its cache record.  When {@code applySummaryDelta} is set the summary already counts the
+     * user's previous record, which is replaced by the new one instead of being counted again.
+     */
+    private void updateCachedRecordFromLdap(
+            final UserIdentity userIdentity,
+            final PrefetchedLdapEntry prefetchedLdapEntry,
+            final boolean applySummaryDelta
+    )
+            throws PwmUnrecoverableException, LocalDBException
+    {
+        if ( status != STATUS.OPEN )
+        {
+            return;
+        }
+
+        final UserCacheRecord previousUserCacheRecord;
+        final UserCacheRecord newUserCacheRecord;
+        if ( prefetchedLdapEntry != null )
+        {
+            prefetchedLdapEntry.activate();
+        }
+        try
+        {
+            final UserInfo userInfo = readUserInfo( userIdentity );
+            previousUserCacheRecord = applySummaryDelta ? userCacheService.readUserCache( userInfo ) : null;
+            newUserCacheRecord = userCacheService.updateUserCache( userInfo );
+        }
+        finally
+        {
+            PrefetchedLdapEntry.deactivate();
+        }
+
+        userCacheService.store( newUserCacheRecord );
+        if ( previousUserCacheRecord != null )
+        {
+            summaryData.remove( previousUserCacheRecord );
+        }
+        summaryData.update( newUserCacheRecord );
+
+        LOGGER.trace( SessionLabel.REPORTING_SESSION_LABEL, () -> "stored cache for " + userIdentity );
+    }
+
     private class DailyJobExecuteTask implements Runnable
     {
         @Override
@@ -630,8 +988,15 @@ public class ReportService implements PwmService
 
             if ( settings.isDailyJobEnabled() )
             {
-                executorService.execute( new ClearTask() );
-                executorService.execute( new ReadLDAPTask() );
+                if ( isIncrementalRefreshAvailable() )
+                {
+                    executorService.execute( new IncrementalLDAPTask() );
+                }
+                else
+                {
+                    executorService.execute( new ClearTask() );
+                    executorService.execute( makeReadTask() );
+                }
             }
         }
 
@@ -662,6 +1027,16 @@ public class ReportService implements PwmService
                 return;
             }
 
+            try
+            {
+                userCacheService.buildIndex();
+                rebuildSummaryFromCache();
+            }
+            catch ( LocalDBException e )
+            {
+                LOGGER.error( SessionLabel.REPORTING_SESSION_LABEL, "error loading user cache index: " + e.getMessage() );
+            }
+
             final boolean reportingEnabled = pwmApplication.getConfig().readSettingAsBoolean( PwmSetting.REPORTING_ENABLE_DAILY_JOB );
             if ( reportingEnabled )
             {
@@ -48,6 +48,19 @@ class ReportSettings implements Serializable
 
     private boolean dailyJobEnabled;
 
+    private boolean harvestEnabled;
+
+    private boolean incrementalEnabled;
+
+    @Builder.Default
+    private String incrementalTimestampAttribute = "modifyTimestamp";
+
+    @Builder.Default
+    private TimeDuration incrementalFullRefreshInterval = TimeDuration.of( 7, TimeDuration.Unit.DAYS );
+
+    @Builder.Default
+    private TimeDuration incrementalOverlap = TimeDuration.HOUR;
+
     @Builder.Default
     private TimeDuration maxCacheAge = TimeDuration.of( 10, TimeDuration.Unit.DAYS );
 
@@ -97,6 +110,15 @@ class ReportSettings implements Serializable
 
         builder.trackDays( parseDayIntervalStr( config ) );
 
+        builder.harvestEnabled( Boolean.parseBoolean( config.readAppProperty( AppProperty.REPORTING_LDAP_HARVEST_ENABLE ) ) );
+
+        builder.incrementalEnabled( Boolean.parseBoolean( config.readAppProperty( AppProperty.REPORTING_INCREMENTAL_ENABLE ) ) );
+        builder.incrementalTimestampAttribute( config.readAppProperty( AppProperty.REPORTING_INCREMENTAL_TIMESTAMP_ATTRIBUTE ) );
+        builder.incrementalFullRefreshInterval( TimeDuration.of(
+                Long.parseLong( config.readAppProperty( AppProperty.REPORTING_INCREMENTAL_FULL_REFRESH_SECONDS ) ), TimeDuration.Unit.SECONDS ) );
+        builder.incrementalOverlap( TimeDuration.of(
+                Long.parseLong( config.readAppProperty( AppProperty.REPORTING_INCREMENTAL_OVERLAP_SECONDS ) ), TimeDuration.Unit.SECONDS ) );
+
         builder.reportJobThreads( Integer.parseInt( config.readAppProperty( AppProperty.REPORTING_LDAP_SEARCH_THREADS ) ) );
 
         builder.reportJobIntensity( config.readSettingAsEnum( PwmSetting.REPORTING_JOB_INTENSITY, JobIntensity.class ) );
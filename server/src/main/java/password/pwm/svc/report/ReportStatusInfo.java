@@ -29,6 +29,8 @@ import password.pwm.util.java.TimeDuration;
 
 import java.io.Serializable;
 import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
 
 @Data
 @Builder( toBuilder = true )
@@ -38,12 +40,20 @@ public class ReportStatusInfo implements Serializable
     private TimeDuration jobDuration = TimeDuration.ZERO;
 
     private Instant startDate;
+    private Instant fullRefreshDate;
     private Instant finishDate;
     private int count;
     private int errors;
     private ErrorInformation lastError;
     private String settingsHash;
 
+    /**
+     * Per ldap profile, the directory modification time from which the next incremental refresh searches for changed
+     * users.  Empty until a full read of the directory has completed.
+     */
+    @Builder.Default
+    private Map<String, Instant> highWaterMarks = new HashMap<>();
+
     @Builder.Default
     private ReportEngineProcess currentProcess = ReportEngineProcess.None;
 
@@ -31,7 +31,6 @@ import password.pwm.i18n.Admin;
 import password.pwm.util.i18n.LocaleHelper;
 import password.pwm.util.java.Percent;
 import password.pwm.util.java.PwmNumberFormat;
-import password.pwm.util.java.TimeDuration;
 
 import java.math.BigInteger;
 import java.time.Instant;
@@ -49,7 +48,6 @@ import java.util.stream.Collectors;
 @Value
 public class ReportSummaryData
 {
-    private static final long MS_DAY = TimeDuration.DAY.asMillis();
     private static final BigInteger TWO = new BigInteger( "2" );
 
     private final AtomicInteger totalUsers = new AtomicInteger( 0 );
@@ -78,13 +76,26 @@ public class ReportSummaryData
     private final Map<Integer, AtomicInteger> loginDays = new ConcurrentHashMap<>();
     private final Map<Integer, AtomicInteger> pwExpireNotificationDays = new ConcurrentHashMap<>();
 
-    private ReportSummaryData( )
+    /**
+     * Day, as a count of days since the epoch, that the tracked time windows are evaluated against.  Every record is
+     * counted and removed against this same day, so a removal always reverses the matching update even if the clock
+     * has moved on since the record was counted.
+     */
+    private final int asOfDay;
+
+    private ReportSummaryData( final Instant asOf )
     {
+        this.asOfDay = UserCacheIndex.toEpochDay( asOf );
     }
 
     static ReportSummaryData newSummaryData( final List<Integer> trackedDays )
     {
-        final ReportSummaryData reportSummaryData = new ReportSummaryData();
+        return newSummaryData( trackedDays, Instant.now() );
+    }
+
+    static ReportSummaryData newSummaryData( final List<Integer> trackedDays, final Instant asOf )
+    {
+        final ReportSummaryData reportSummaryData = new ReportSummaryData( asOf );
 
         if ( trackedDays != null )
         {
@@ -103,6 +114,64 @@ public class ReportSummaryData
         return reportSummaryData;
     }
 
+    /**
+     * Compute the summary from the user cache index instead of from individual records.  Time windows are evaluated
+     * in whole days: a window of n days counts events from today through n days ahead (or back, for negative n).
+     */
+    static ReportSummaryData fromIndex( final UserCacheIndex index, final List<Integer> trackedDays, final Instant now )
+    {
+        final ReportSummaryData summaryData = newSummaryData( trackedDays, now );
+
+        summaryData.totalUsers.set( index.size() );
+        summaryData.hasResponses.set( countFlag( index, ReportFilter.Flag.hasResponses, now ) );
+        summaryData.hasHelpdeskResponses.set( countFlag( index, ReportFilter.Flag.hasHelpdeskResponses, now ) );
+        summaryData.hasOtpSecret.set( countFlag( index, ReportFilter.Flag.hasOtpSecret, now ) );
+        summaryData.pwExpired.set( countFlag( index, ReportFilter.Flag.passwordExpired, now ) );
+        summaryData.pwPreExpired.set( countFlag( index, ReportFilter.Flag.passwordPreExpired, now ) );
+        summaryData.pwWarnPeriod.set( countFlag( index, ReportFilter.Flag.passwordWarnPeriod, now ) );
+
+        countDates( index, ReportFilter.DateField.responseSetTime, summaryData.hasResponseSetTime, summaryData.responseSetDays, now );
+        countDates( index, ReportFilter.DateField.passwordExpirationTime, summaryData.hasPasswordExpirationTime, summaryData.pwExpireDays, now );
+        countDates( index, ReportFilter.DateField.accountExpirationTime, summaryData.hasAccountExpirationTime, summaryData.accountExpireDays, now );
+        countDates( index, ReportFilter.DateField.lastLoginTime, summaryData.hasLoginTime, summaryData.loginDays, now );
+        countDates( index, ReportFilter.DateField.passwordChangeTime, summaryData.hasChangePwTime, summaryData.changePwDays, now );
+        countDates( index, ReportFilter.DateField.otpSecretSetTime, summaryData.hasOtpSecretSetTime, summaryData.otpSetDays, now );
+        countDates( index, ReportFilter.DateField.passwordExpirationNoticeSendTime, summaryData.hasReceivedPwExpireNotification,
+                summaryData.pwExpireNotificationDays, now );
+
+        index.countByResponseStorageMethod().forEach( ( method, count ) -> summaryData.responseStorage.put( method, new AtomicInteger( count ) ) );
+        index.countByResponseFormatType().forEach( ( type, count ) -> summaryData.responseFormatType.put( type, new AtomicInteger( count ) ) );
+        index.countByLdapProfile().forEach( ( profile, count ) -> summaryData.ldapProfile.put( profile, new AtomicInteger( count ) ) );
+
+        return summaryData;
+    }
+
+    private static int countFlag( final UserCacheIndex index, final ReportFilter.Flag flag, final Instant now )
+    {
+        return index.count( ReportFilter.builder().flags( Collections.singletonMap( flag, true ) ).build(), now );
+    }
+
+    private static void countDates(
+            final UserCacheIndex index,
+            final ReportFilter.DateField dateField,
+            final AtomicInteger total,
+            final Map<Integer, AtomicInteger> windows,
+            final Instant now
+    )
+    {
+        total.set( index.count( ReportFilter.builder().dateField( dateField ).build(), now ) );
+        for ( final Map.Entry<Integer, AtomicInteger> entry : windows.entrySet() )
+        {
+            final int day = entry.getKey();
+            final ReportFilter filter = ReportFilter.builder()
+                    .dateField( dateField )
+                    .fromDays( windowStart( day ) )
+                    .toDays( windowEnd( day ) )
+                    .build();
+            entry.getValue().set( index.count( filter, now ) );
+        }
+    }
+
     public Map<DataStorageMethod, Integer> getResponseStorage( )
     {
         return Collections.unmodifiableMap( responseStorage.entrySet()
@@ -121,134 +190,149 @@ public class ReportSummaryData
 
     void update( final UserCacheRecord userCacheRecord )
     {
-        totalUsers.incrementAndGet();
+        apply( userCacheRecord, 1 );
+    }
+
+    /**
+     * Reverse a previous {@link #update(UserCacheRecord)} of a record, so a changed user can be re-counted without
+     * recomputing the summary.  Time windows are evaluated against {@link #getAsOfDay()}, the same as when the record
+     * was counted.
+     */
+    void remove( final UserCacheRecord userCacheRecord )
+    {
+        apply( userCacheRecord, -1 );
+    }
+
+    private void apply( final UserCacheRecord userCacheRecord, final int delta )
+    {
+        totalUsers.addAndGet( delta );
 
         if ( userCacheRecord.isHasResponses() )
         {
-            hasResponses.incrementAndGet();
+            hasResponses.addAndGet( delta );
         }
 
         if ( userCacheRecord.isHasHelpdeskResponses() )
         {
-            hasHelpdeskResponses.incrementAndGet();
+            hasHelpdeskResponses.addAndGet( delta );
         }
 
         if ( userCacheRecord.getResponseSetTime() != null )
         {
-            hasResponseSetTime.incrementAndGet();
-            incrementIfWithinTimeWindow( userCacheRecord, responseSetDays );
+            hasResponseSetTime.addAndGet( delta );
+            addIfWithinTimeWindow( userCacheRecord.getResponseSetTime(), responseSetDays, delta );
         }
 
         if ( userCacheRecord.getPasswordExpirationTime() != null )
         {
-            hasPasswordExpirationTime.incrementAndGet();
-            incrementIfWithinTimeWindow( userCacheRecord, pwExpireDays );
+            hasPasswordExpirationTime.addAndGet( delta );
+            addIfWithinTimeWindow( userCacheRecord.getPasswordExpirationTime(), pwExpireDays, delta );
         }
 
         if ( userCacheRecord.getAccountExpirationTime() != null )
         {
-            hasAccountExpirationTime.incrementAndGet();
-            incrementIfWithinTimeWindow( userCacheRecord, accountExpireDays );
+            hasAccountExpirationTime.addAndGet( delta );
+            addIfWithinTimeWindow( userCacheRecord.getAccountExpirationTime(), accountExpireDays, delta );
         }
 
         if ( userCacheRecord.getLastLoginTime() != null )
         {
-            hasLoginTime.incrementAndGet();
-            incrementIfWithinTimeWindow( userCacheRecord, loginDays );
+            hasLoginTime.addAndGet( delta );
+            addIfWithinTimeWindow( userCacheRecord.getLastLoginTime(), loginDays, delta );
         }
 
         if ( userCacheRecord.getPasswordChangeTime() != null )
         {
-            hasChangePwTime.incrementAndGet();
-            incrementIfWithinTimeWindow( userCacheRecord, changePwDays );
+            hasChangePwTime.addAndGet( delta );
+            addIfWithinTimeWindow( userCacheRecord.getPasswordChangeTime(), changePwDays, delta );
         }
 
         if ( userCacheRecord.getPasswordExpirationNoticeSendTime() != null )
         {
-            hasReceivedPwExpireNotification.incrementAndGet();
-            incrementIfWithinTimeWindow( userCacheRecord, pwExpireNotificationDays );
+            hasReceivedPwExpireNotification.addAndGet( delta );
+            addIfWithinTimeWindow( userCacheRecord.getPasswordExpirationNoticeSendTime(), pwExpireNotificationDays, delta );
         }
 
         if ( userCacheRecord.getPasswordStatus() != null )
         {
             if ( userCacheRecord.getPasswordStatus().isExpired() )
             {
-                pwExpired.incrementAndGet();
+                pwExpired.addAndGet( delta );
             }
             if ( userCacheRecord.getPasswordStatus().isPreExpired() )
             {
-                pwPreExpired.incrementAndGet();
+                pwPreExpired.addAndGet( delta );
             }
             if ( userCacheRecord.getPasswordStatus().isWarnPeriod() )
             {
-                pwWarnPeriod.incrementAndGet();
+                pwWarnPeriod.addAndGet( delta );
             }
         }
 
         if ( userCacheRecord.getResponseStorageMethod() != null )
         {
             final DataStorageMethod method = userCacheRecord.getResponseStorageMethod();
-            responseStorage.putIfAbsent( method, new AtomicInteger( 0 ) );
-            responseStorage.get( method ).incrementAndGet();
+            responseStorage.computeIfAbsent( method, k -> new AtomicInteger( 0 ) ).addAndGet( delta );
         }
 
         if ( userCacheRecord.getLdapProfile() != null )
         {
             final String userProfile = userCacheRecord.getLdapProfile();
-            if ( !ldapProfile.containsKey( userProfile ) )
-            {
-                ldapProfile.put( userProfile, new AtomicInteger( 0 ) );
-            }
-            ldapProfile.get( userProfile ).incrementAndGet();
+            ldapProfile.computeIfAbsent( userProfile, k -> new AtomicInteger( 0 ) ).addAndGet( delta );
         }
 
         if ( userCacheRecord.getResponseFormatType() != null )
         {
             final Answer.FormatType type = userCacheRecord.getResponseFormatType();
-            responseFormatType.putIfAbsent( type, new AtomicInteger( 0 ) );
-            responseFormatType.get( type ).incrementAndGet();
+            responseFormatType.computeIfAbsent( type, k -> new AtomicInteger( 0 ) ).addAndGet( delta );
         }
 
         if ( userCacheRecord.isHasOtpSecret() )
         {
-            hasOtpSecret.incrementAndGet();
+            hasOtpSecret.addAndGet( delta );
         }
 
         if ( userCacheRecord.getOtpSecretSetTime() != null )
         {
-            hasOtpSecretSetTime.incrementAndGet();
-            incrementIfWithinTimeWindow( userCacheRecord, otpSetDays );
+            hasOtpSecretSetTime.addAndGet( delta );
+            addIfWithinTimeWindow( userCacheRecord.getOtpSecretSetTime(), otpSetDays, delta );
         }
     }
 
-    private void incrementIfWithinTimeWindow(
-            final UserCacheRecord userCacheRecord,
-            final Map<Integer, AtomicInteger> map
+    private void addIfWithinTimeWindow(
+            final Instant eventDate,
+            final Map<Integer, AtomicInteger> map,
+            final int delta
     )
     {
+        final int today = asOfDay;
+        final int eventDay = UserCacheIndex.toEpochDay( eventDate );
         for ( final Map.Entry<Integer, AtomicInteger> entry : map.entrySet() )
         {
             final int day = entry.getKey();
-            final Instant eventDate = userCacheRecord.getOtpSecretSetTime();
-            final long timeWindow = MS_DAY * day;
-            final AtomicInteger number = entry.getValue();
-
-            if ( eventDate != null )
+            if ( eventDay >= today + windowStart( day ) && eventDay <= today + windowEnd( day ) )
             {
-                final TimeDuration timeBoundary = TimeDuration.of( timeWindow, TimeDuration.Unit.MILLISECONDS );
-                final TimeDuration eventDifference = TimeDuration.fromCurrent( eventDate );
-
-                if (
-                        ( timeWindow >= 0 && eventDate.isAfter( Instant.now() ) && eventDifference.isShorterThan( timeBoundary ) )
-                                || ( timeWindow < 0 && eventDate.isBefore( Instant.now() ) && eventDifference.isShorterThan( timeBoundary ) )
-                )
-                {
-                    number.incrementAndGet();
-                }
+                entry.getValue().addAndGet( delta );
             }
         }
     }
 
+    /**
+     * First day of a tracked window relative to today, inclusive.  Windows are whole days, the same as
+     * {@link ReportFilter} ranges, so the record and index paths count the same events.
+     */
+    private static int windowStart( final int day )
+    {
+        return Math.min( day, 0 );
+    }
+
+    /**
+     * Last day of a tracked window relative to today, inclusive.
+     */
+    private static int windowEnd( final int day )
+    {
+        return Math.max( day, 0 );
+    }
 
     public List<PresentationRow> asPresentableCollection( final Configuration config, final Locale locale )
     {
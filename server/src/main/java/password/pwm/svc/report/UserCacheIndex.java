@@ -0,0 +1,458 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package password.pwm.svc.report;
+
+import com.novell.ldapchai.cr.Answer;
+import password.pwm.bean.PasswordStatus;
+import password.pwm.config.option.DataStorageMethod;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Column oriented in-memory index of the user cache, so report counts and filters are answered without reading and
+ * deserializing every stored record.
+ *
+ * <p>Each stored record occupies a row.  Dates are held as epoch-day ints, booleans as bitsets and ldap profiles and
+ * enum values as small dictionary codes.  Rows of replaced records are reused; the live bitset marks rows in use.</p>
+ */
+class UserCacheIndex
+{
+    private static final int ABSENT_DAY = Integer.MIN_VALUE;
+    private static final int NO_CODE = -1;
+    private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final ReportFilter.DateField[] DATE_FIELDS = ReportFilter.DateField.values();
+    private static final ReportFilter.Flag[] FLAGS = ReportFilter.Flag.values();
+    private static final DataStorageMethod[] STORAGE_METHODS = DataStorageMethod.values();
+    private static final Answer.FormatType[] FORMAT_TYPES = Answer.FormatType.values();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Integer> rowsByKey = new HashMap<>();
+    private final Deque<Integer> freeRows = new ArrayDeque<>();
+    private final BitSet live = new BitSet();
+    private final List<String> profileDictionary = new ArrayList<>();
+    private final Map<String, Integer> profileCodes = new HashMap<>();
+    private final BitSet[] flagColumns = new BitSet[FLAGS.length];
+
+    private String[] keys = new String[INITIAL_CAPACITY];
+    private int[] profileColumn = new int[INITIAL_CAPACITY];
+    private byte[] storageMethodColumn = new byte[INITIAL_CAPACITY];
+    private byte[] formatTypeColumn = new byte[INITIAL_CAPACITY];
+    private final int[][] dateColumns = new int[DATE_FIELDS.length][INITIAL_CAPACITY];
+    private int rowCount;
+
+    UserCacheIndex( )
+    {
+        for ( int i = 0; i < flagColumns.length; i++ )
+        {
+            flagColumns[i] = new BitSet();
+        }
+    }
+
+    void put( final String key, final UserCacheRecord record )
+    {
+        final Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try
+        {
+            Integer row = rowsByKey.get( key );
+            if ( row == null )
+            {
+                row = allocateRow();
+                rowsByKey.put( key, row );
+                keys[row] = key;
+                live.set( row );
+            }
+            writeRow( row, record );
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
+    }
+
+    void remove( final String key )
+    {
+        final Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try
+        {
+            final Integer row = rowsByKey.remove( key );
+            if ( row != null )
+            {
+                live.clear( row );
+                keys[row] = null;
+                freeRows.push( row );
+            }
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
+    }
+
+    void clear( )
+    {
+        final Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try
+        {
+            rowsByKey.clear();
+            freeRows.clear();
+            live.clear();
+            for ( final BitSet flagColumn : flagColumns )
+            {
+                flagColumn.clear();
+            }
+            Arrays.fill( keys, null );
+            rowCount = 0;
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
+    }
+
+    int size( )
+    {
+        final Lock readLock = lock.readLock();
+        readLock.lock();
+        try
+        {
+            return rowsByKey.size();
+        }
+        finally
+        {
+            readLock.unlock();
+        }
+    }
+
+    int count( final ReportFilter filter, final Instant now )
+    {
+        final Lock readLock = lock.readLock();
+        readLock.lock();
+        try
+        {
+            return select( filter, now ).cardinality();
+        }
+        finally
+        {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Storage keys of the records matching the filter, in row order.
+     */
+    List<String> selectKeys( final ReportFilter filter, final Instant now, final int maximum )
+    {
+        final Lock readLock = lock.readLock();
+        readLock.lock();
+        try
+        {
+            final BitSet selected = select( filter, now );
+            final List<String> returnList = new ArrayList<>( Math.min( selected.cardinality(), maximum ) );
+            for ( int row = selected.nextSetBit( 0 ); row >= 0 && returnList.size() < maximum; row = selected.nextSetBit( row + 1 ) )
+            {
+                returnList.add( keys[row] );
+            }
+            return returnList;
+        }
+        finally
+        {
+            readLock.unlock();
+        }
+    }
+
+    Map<String, Integer> countByLdapProfile( )
+    {
+        final Lock readLock = lock.readLock();
+        readLock.lock();
+        try
+        {
+            final int[] counts = countCodes( profileColumn, profileDictionary.size() );
+            final Map<String, Integer> returnMap = new LinkedHashMap<>();
+            for ( int code = 0; code < counts.length; code++ )
+            {
+                if ( counts[code] > 0 )
+                {
+                    returnMap.put( profileDictionary.get( code ), counts[code] );
+                }
+            }
+            return returnMap;
+        }
+        finally
+        {
+            readLock.unlock();
+        }
+    }
+
+    Map<DataStorageMethod, Integer> countByResponseStorageMethod( )
+    {
+        return countByEnum( storageMethodColumn, STORAGE_METHODS, DataStorageMethod.class );
+    }
+
+    Map<Answer.FormatType, Integer> countByResponseFormatType( )
+    {
+        return countByEnum( formatTypeColumn, FORMAT_TYPES, Answer.FormatType.class );
+    }
+
+    static int toEpochDay( final Instant instant )
+    {
+        return instant == null ? ABSENT_DAY : ( int ) Math.floorDiv( instant.getEpochSecond(), SECONDS_PER_DAY );
+    }
+
+    private BitSet select( final ReportFilter filter, final Instant now )
+    {
+        final BitSet selected = ( BitSet ) live.clone();
+        if ( filter == null )
+        {
+            return selected;
+        }
+
+        if ( filter.getFlags() != null )
+        {
+            for ( final Map.Entry<ReportFilter.Flag, Boolean> entry : filter.getFlags().entrySet() )
+            {
+                if ( entry.getValue() != null )
+                {
+                    final BitSet flagColumn = flagColumns[entry.getKey().ordinal()];
+                    if ( entry.getValue() )
+                    {
+                        selected.and( flagColumn );
+                    }
+                    else
+                    {
+                        selected.andNot( flagColumn );
+                    }
+                }
+            }
+        }
+
+        if ( filter.getLdapProfile() != null )
+        {
+            final Integer profileCode = profileCodes.get( filter.getLdapProfile() );
+            if ( profileCode == null )
+            {
+                selected.clear();
+                return selected;
+            }
+            final int code = profileCode;
+            final int[] column = profileColumn;
+            for ( int row = selected.nextSetBit( 0 ); row >= 0; row = selected.nextSetBit( row + 1 ) )
+            {
+                if ( column[row] != code )
+                {
+                    selected.clear( row );
+                }
+            }
+        }
+
+        if ( filter.getDateField() != null )
+        {
+            final int today = toEpochDay( now );
+            final int fromDay = filter.getFromDays() == null ? ABSENT_DAY + 1 : today + filter.getFromDays();
+            final int toDay = filter.getToDays() == null ? Integer.MAX_VALUE : today + filter.getToDays();
+            final int[] column = dateColumns[filter.getDateField().ordinal()];
+            for ( int row = selected.nextSetBit( 0 ); row >= 0; row = selected.nextSetBit( row + 1 ) )
+            {
+                final int day = column[row];
+                if ( day < fromDay || day > toDay )
+                {
+                    selected.clear( row );
+                }
+            }
+        }
+
+        return selected;
+    }
+
+    private int[] countCodes( final int[] column, final int codeCount )
+    {
+        final int[] counts = new int[codeCount];
+        for ( int row = live.nextSetBit( 0 ); row >= 0; row = live.nextSetBit( row + 1 ) )
+        {
+            final int code = column[row];
+            if ( code != NO_CODE )
+            {
+                counts[code]++;
+            }
+        }
+        return counts;
+    }
+
+    private <E extends Enum<E>> Map<E, Integer> countByEnum( final byte[] column, final E[] values, final Class<E> enumClass )
+    {
+        final Lock readLock = lock.readLock();
+        readLock.lock();
+        try
+        {
+            final int[] counts = new int[values.length];
+            for ( int row = live.nextSetBit( 0 ); row >= 0; row = live.nextSetBit( row + 1 ) )
+            {
+                final int code = column[row];
+                if ( code != NO_CODE )
+                {
+                    counts[code]++;
+                }
+            }
+
+            final Map<E, Integer> returnMap = new EnumMap<>( enumClass );
+            for ( int code = 0; code < counts.length; code++ )
+            {
+                if ( counts[code] > 0 )
+                {
+                    returnMap.put( values[code], counts[code] );
+                }
+            }
+            return Collections.unmodifiableMap( returnMap );
+        }
+        finally
+        {
+            readLock.unlock();
+        }
+    }
+
+    private int allocateRow( )
+    {
+        if ( !freeRows.isEmpty() )
+        {
+            return freeRows.pop();
+        }
+
+        if ( rowCount == keys.length )
+        {
+            final int newCapacity = keys.length * 2;
+            keys = Arrays.copyOf( keys, newCapacity );
+            profileColumn = Arrays.copyOf( profileColumn, newCapacity );
+            storageMethodColumn = Arrays.copyOf( storageMethodColumn, newCapacity );
+            formatTypeColumn = Arrays.copyOf( formatTypeColumn, newCapacity );
+            for ( int i = 0; i < dateColumns.length; i++ )
+            {
+                dateColumns[i] = Arrays.copyOf( dateColumns[i], newCapacity );
+            }
+        }
+        return rowCount++;
+    }
+
+    private void writeRow( final int row, final UserCacheRecord record )
+    {
+        profileColumn[row] = profileCode( record.getLdapProfile() );
+        storageMethodColumn[row] = ( byte ) ( record.getResponseStorageMethod() == null ? NO_CODE : record.getResponseStorageMethod().ordinal() );
+        formatTypeColumn[row] = ( byte ) ( record.getResponseFormatType() == null ? NO_CODE : record.getResponseFormatType().ordinal() );
+
+        for ( final ReportFilter.DateField dateField : DATE_FIELDS )
+        {
+            dateColumns[dateField.ordinal()][row] = toEpochDay( readDate( record, dateField ) );
+        }
+
+        for ( final ReportFilter.Flag flag : FLAGS )
+        {
+            flagColumns[flag.ordinal()].set( row, readFlag( record, flag ) );
+        }
+    }
+
+    private int profileCode( final String ldapProfile )
+    {
+        if ( ldapProfile == null )
+        {
+            return NO_CODE;
+        }
+
+        return profileCodes.computeIfAbsent( ldapProfile, profile ->
+        {
+            profileDictionary.add( profile );
+            return profileDictionary.size() - 1;
+        } );
+    }
+
+    static Instant readDate( final UserCacheRecord record, final ReportFilter.DateField dateField )
+    {
+        switch ( dateField )
+        {
+            case passwordExpirationTime:
+                return record.getPasswordExpirationTime();
+            case passwordChangeTime:
+                return record.getPasswordChangeTime();
+            case lastLoginTime:
+                return record.getLastLoginTime();
+            case accountExpirationTime:
+                return record.getAccountExpirationTime();
+            case responseSetTime:
+                return record.getResponseSetTime();
+            case otpSecretSetTime:
+                return record.getOtpSecretSetTime();
+            case passwordExpirationNoticeSendTime:
+                return record.getPasswordExpirationNoticeSendTime();
+            default:
+                throw new IllegalArgumentException( "unknown date field " + dateField );
+        }
+    }
+
+    static boolean readFlag( final UserCacheRecord record, final ReportFilter.Flag flag )
+    {
+        final PasswordStatus passwordStatus = record.getPasswordStatus();
+        switch ( flag )
+        {
+            case hasResponses:
+                return record.isHasResponses();
+            case hasHelpdeskResponses:
+                return record.isHasHelpdeskResponses();
+            case hasOtpSecret:
+                return record.isHasOtpSecret();
+            case passwordExpired:
+                return passwordStatus != null && passwordStatus.isExpired();
+            case passwordPreExpired:
+                return passwordStatus != null && passwordStatus.isPreExpired();
+            case passwordWarnPeriod:
+                return passwordStatus != null && passwordStatus.isWarnPeriod();
+            case passwordViolatesPolicy:
+                return passwordStatus != null && passwordStatus.isViolatesPolicy();
+            case requiresPasswordUpdate:
+                return record.isRequiresPasswordUpdate();
+            case requiresResponseUpdate:
+                return record.isRequiresResponseUpdate();
+            case requiresProfileUpdate:
+                return record.isRequiresProfileUpdate();
+            default:
+                throw new IllegalArgumentException( "unknown flag " + flag );
+        }
+    }
+}
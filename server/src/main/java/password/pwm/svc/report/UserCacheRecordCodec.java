@@ -0,0 +1,148 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package password.pwm.svc.report;
+
+import com.novell.ldapchai.cr.Answer;
+import password.pwm.bean.PasswordStatus;
+import password.pwm.config.option.DataStorageMethod;
+import password.pwm.util.localdb.LocalDBCodec;
+import password.pwm.util.localdb.LocalDBCodecs;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary encoding of {@link UserCacheRecord}s in the user cache store.  Fields are written in declaration order;
+ * a version bump is required when fields are added, removed or re-ordered.
+ */
+class UserCacheRecordCodec implements LocalDBCodec<UserCacheRecord>
+{
+    static final UserCacheRecordCodec INSTANCE = new UserCacheRecordCodec();
+
+    private static final int VERSION = 1;
+
+    @Override
+    public int getVersion( )
+    {
+        return VERSION;
+    }
+
+    @Override
+    public Class<UserCacheRecord> getValueClass( )
+    {
+        return UserCacheRecord.class;
+    }
+
+    @Override
+    public void encode( final UserCacheRecord value, final DataOutput output )
+            throws IOException
+    {
+        LocalDBCodecs.writeString( output, value.getUserDN() );
+        LocalDBCodecs.writeString( output, value.getLdapProfile() );
+        LocalDBCodecs.writeString( output, value.getUserGUID() );
+
+        LocalDBCodecs.writeString( output, value.getUsername() );
+        LocalDBCodecs.writeString( output, value.getEmail() );
+
+        final PasswordStatus passwordStatus = value.getPasswordStatus();
+        output.writeBoolean( passwordStatus != null );
+        if ( passwordStatus != null )
+        {
+            output.writeBoolean( passwordStatus.isExpired() );
+            output.writeBoolean( passwordStatus.isPreExpired() );
+            output.writeBoolean( passwordStatus.isViolatesPolicy() );
+            output.writeBoolean( passwordStatus.isWarnPeriod() );
+        }
+        LocalDBCodecs.writeInstant( output, value.getPasswordExpirationTime() );
+        LocalDBCodecs.writeInstant( output, value.getPasswordChangeTime() );
+        LocalDBCodecs.writeInstant( output, value.getLastLoginTime() );
+        LocalDBCodecs.writeInstant( output, value.getAccountExpirationTime() );
+        LocalDBCodecs.writeInstant( output, value.getPasswordExpirationNoticeSendTime() );
+
+        output.writeBoolean( value.isHasResponses() );
+        output.writeBoolean( value.isHasHelpdeskResponses() );
+        LocalDBCodecs.writeInstant( output, value.getResponseSetTime() );
+        LocalDBCodecs.writeEnum( output, value.getResponseStorageMethod() );
+        LocalDBCodecs.writeEnum( output, value.getResponseFormatType() );
+
+        output.writeBoolean( value.isHasOtpSecret() );
+        LocalDBCodecs.writeInstant( output, value.getOtpSecretSetTime() );
+
+        output.writeBoolean( value.isRequiresPasswordUpdate() );
+        output.writeBoolean( value.isRequiresResponseUpdate() );
+        output.writeBoolean( value.isRequiresProfileUpdate() );
+
+        LocalDBCodecs.writeInstant( output, value.getCacheTimestamp() );
+    }
+
+    @Override
+    public UserCacheRecord decode( final DataInput input, final int version )
+            throws IOException
+    {
+        if ( version != VERSION )
+        {
+            throw new IOException( "unsupported user cache record version " + version );
+        }
+
+        final UserCacheRecord.UserCacheRecordBuilder builder = UserCacheRecord.builder();
+        builder.userDN( LocalDBCodecs.readString( input ) );
+        builder.ldapProfile( LocalDBCodecs.readString( input ) );
+        builder.userGUID( LocalDBCodecs.readString( input ) );
+
+        builder.username( LocalDBCodecs.readString( input ) );
+        builder.email( LocalDBCodecs.readString( input ) );
+
+        if ( input.readBoolean() )
+        {
+            builder.passwordStatus( PasswordStatus.builder()
+                    .expired( input.readBoolean() )
+                    .preExpired( input.readBoolean() )
+                    .violatesPolicy( input.readBoolean() )
+                    .warnPeriod( input.readBoolean() )
+                    .build() );
+        }
+        builder.passwordExpirationTime( LocalDBCodecs.readInstant( input ) );
+        builder.passwordChangeTime( LocalDBCodecs.readInstant( input ) );
+        builder.lastLoginTime( LocalDBCodecs.readInstant( input ) );
+        builder.accountExpirationTime( LocalDBCodecs.readInstant( input ) );
+        builder.passwordExpirationNoticeSendTime( LocalDBCodecs.readInstant( input ) );
+
+        builder.hasResponses( input.readBoolean() );
+        builder.hasHelpdeskResponses( input.readBoolean() );
+        builder.responseSetTime( LocalDBCodecs.readInstant( input ) );
+        builder.responseStorageMethod( LocalDBCodecs.readEnum( input, DataStorageMethod.class ) );
+        builder.responseFormatType( LocalDBCodecs.readEnum( input, Answer.FormatType.class ) );
+
+        builder.hasOtpSecret( input.readBoolean() );
+        builder.otpSecretSetTime( LocalDBCodecs.readInstant( input ) );
+
+        builder.requiresPasswordUpdate( input.readBoolean() );
+        builder.requiresResponseUpdate( input.readBoolean() );
+        builder.requiresProfileUpdate( input.readBoolean() );
+
+        builder.cacheTimestamp( LocalDBCodecs.readInstant( input ) );
+        return builder.build();
+    }
+}
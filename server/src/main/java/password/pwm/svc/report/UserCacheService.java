@@ -34,12 +34,15 @@ import password.pwm.ldap.LdapOperationsHelper;
 import password.pwm.ldap.UserInfo;
 import password.pwm.svc.PwmService;
 import password.pwm.util.java.ClosableIterator;
-import password.pwm.util.java.JsonUtil;
+import password.pwm.util.java.TimeDuration;
 import password.pwm.util.localdb.LocalDB;
+import password.pwm.util.localdb.LocalDBCodecs;
 import password.pwm.util.localdb.LocalDBException;
 import password.pwm.util.logging.PwmLogger;
 import password.pwm.util.secure.SecureService;
 
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -48,8 +51,11 @@ public class UserCacheService implements PwmService
 
     private static final PwmLogger LOGGER = PwmLogger.forClass( UserCacheService.class );
 
+    private final UserCacheIndex index = new UserCacheIndex();
+
     private CacheStoreWrapper cacheStore;
     private STATUS status;
+    private volatile boolean indexReady;
 
     private PwmApplication pwmApplication;
 
@@ -82,9 +88,20 @@ public class UserCacheService implements PwmService
         return null;
     }
 
+    UserCacheRecord readUserCache( final UserInfo userInfo )
+            throws PwmUnrecoverableException, LocalDBException
+    {
+        return cacheStore.read( StorageKey.fromUserInfo( userInfo, pwmApplication ) );
+    }
+
     UserCacheRecord readStorageKey( final StorageKey storageKey ) throws LocalDBException
     {
-        return cacheStore.read( storageKey );
+        final UserCacheRecord userCacheRecord = cacheStore.read( storageKey );
+        if ( userCacheRecord == null )
+        {
+            index.remove( storageKey.getKey() );
+        }
+        return userCacheRecord;
     }
 
     public void store( final UserCacheRecord userCacheRecord )
@@ -92,12 +109,58 @@ public class UserCacheService implements PwmService
     {
         final StorageKey storageKey = StorageKey.fromUserGUID( userCacheRecord.getUserGUID(), pwmApplication );
         cacheStore.write( storageKey, userCacheRecord );
+        index.put( storageKey.getKey(), userCacheRecord );
     }
 
     public void clear( )
             throws LocalDBException
     {
         cacheStore.clear();
+        index.clear();
+    }
+
+    /**
+     * Load the index from the stored records.  Until this completes, index queries are not available.
+     */
+    void buildIndex( )
+            throws LocalDBException
+    {
+        final Instant startTime = Instant.now();
+        index.clear();
+        try ( LocalDB.LocalDBIterator<String> keyIterator = cacheStore.localDB.iterator( CacheStoreWrapper.DB ) )
+        {
+            while ( keyIterator.hasNext() )
+            {
+                final StorageKey storageKey = new StorageKey( keyIterator.next() );
+                final UserCacheRecord userCacheRecord = cacheStore.read( storageKey );
+                if ( userCacheRecord != null )
+                {
+                    index.put( storageKey.getKey(), userCacheRecord );
+                }
+            }
+        }
+        indexReady = true;
+        LOGGER.debug( () -> "loaded user cache index with " + index.size() + " records in " + TimeDuration.compactFromCurrent( startTime ) );
+    }
+
+    boolean isIndexReady( )
+    {
+        return indexReady;
+    }
+
+    UserCacheIndex getIndex( )
+    {
+        return index;
+    }
+
+    List<StorageKey> selectKeys( final ReportFilter filter, final int maximum )
+    {
+        final List<StorageKey> returnList = new ArrayList<>();
+        for ( final String key : index.selectKeys( filter, Instant.now(), maximum ) )
+        {
+            returnList.add( new StorageKey( key ) );
+        }
+        return returnList;
     }
 
     public UserStatusCacheBeanIterator<StorageKey> iterator( )
@@ -113,7 +176,7 @@ public class UserCacheService implements PwmService
         }
     }
 
-    public class UserStatusCacheBeanIterator<K extends StorageKey> implements ClosableIterator
+    public class UserStatusCacheBeanIterator<K extends StorageKey> implements ClosableIterator<StorageKey>
     {
 
         private LocalDB.LocalDBIterator<String> innerIterator;
@@ -227,21 +290,20 @@ public class UserCacheService implements PwmService
         private void write( final StorageKey key, final UserCacheRecord cacheBean )
                 throws LocalDBException
         {
-            final String jsonValue = JsonUtil.serialize( cacheBean );
-            localDB.put( DB, key.getKey(), jsonValue );
+            LocalDBCodecs.write( localDB, DB, key.getKey(), cacheBean, UserCacheRecordCodec.INSTANCE );
         }
 
         private UserCacheRecord read( final StorageKey key )
                 throws LocalDBException
         {
-            final String jsonValue = localDB.get( DB, key.getKey() );
-            if ( jsonValue != null && !jsonValue.isEmpty() )
+            final byte[] storedValue = localDB.getBytes( DB, key.getKey() );
+            if ( storedValue != null && storedValue.length > 0 )
             {
                 try
                 {
-                    return JsonUtil.deserialize( jsonValue, UserCacheRecord.class );
+                    return LocalDBCodecs.decode( UserCacheRecordCodec.INSTANCE, storedValue );
                 }
-                catch ( JsonSyntaxException e )
+                catch ( JsonSyntaxException | LocalDBException e )
                 {
                     LOGGER.error( "error reading record from cache store for key=" + key.getKey() + ", error: " + e.getMessage() );
                     localDB.remove( DB, key.getKey() );
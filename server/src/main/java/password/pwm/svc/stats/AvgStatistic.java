@@ -33,6 +33,8 @@ public enum AvgStatistic
     AVG_AUTHENTICATION_TIME( "AvgAuthenticationTime", null, "ms" ),
     AVG_PASSWORD_STRENGTH( "AvgPasswordStrength", null, "" ),
     AVG_LDAP_SEARCH_TIME( "AvgLdapSearchTime", null, "ms" ),
+    AVG_LDAP_PROXY_WAIT_TIME( "AvgLdapProxyWaitTime", null, "ms" ),
+    AVG_LDAP_PROXY_UTILIZATION( "AvgLdapProxyUtilization", null, "%" ),
     AVG_REQUEST_PROCESS_TIME( "AvgRequestProcessTime", null, "ms" ),;
 
     private final String key;
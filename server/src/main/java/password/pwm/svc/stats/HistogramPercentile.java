@@ -0,0 +1,54 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package password.pwm.svc.stats;
+
+/**
+ * Percentiles reported for the value distribution of each {@link AvgStatistic}.
+ */
+public enum HistogramPercentile
+{
+    P50( 50 ),
+    P90( 90 ),
+    P99( 99 ),
+    P999( 99.9 ),;
+
+    private final double percentile;
+
+    HistogramPercentile( final double percentile )
+    {
+        this.percentile = percentile;
+    }
+
+    public double getPercentile( )
+    {
+        return percentile;
+    }
+
+    /**
+     * @return name used for the percentile of a statistic in REST and CSV output, for example {@code AVG_LDAP_SEARCH_TIME_P99}.
+     */
+    public String statName( final AvgStatistic avgStatistic )
+    {
+        return avgStatistic.name() + "_" + this.name();
+    }
+}
@@ -27,4 +27,5 @@ public enum StatisticType
     INCREMENTER,
     AVERAGE,
     EPS,
+    HISTOGRAM,
 }
@@ -0,0 +1,130 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package password.pwm.svc.stats;
+
+import password.pwm.util.java.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects statistic updates on the request path using striped {@link LongAdder}s, so concurrent threads do not
+ * contend on a shared counter.  Pending values are periodically folded into the {@link StatisticsBundle}s.
+ *
+ * <p>The adders are never reset; each fold applies the difference from the previously folded sum.  An update that
+ * races with a fold is therefore picked up by the next fold rather than lost.</p>
+ */
+class StatisticsAccumulator
+{
+    private final LongAdder[] counters = makeAdders( Statistic.values().length );
+    private final long[] foldedCounters = new long[Statistic.values().length];
+
+    private final LongAdder[] averageCounts = makeAdders( AvgStatistic.values().length );
+    private final LongAdder[] averageTotals = makeAdders( AvgStatistic.values().length );
+    private final long[] foldedAverageCounts = new long[AvgStatistic.values().length];
+    private final long[] foldedAverageTotals = new long[AvgStatistic.values().length];
+
+    private final LatencyHistogram[] histograms = makeHistograms( AvgStatistic.values().length );
+    private final LatencyHistogram[] foldedHistograms = makeHistograms( AvgStatistic.values().length );
+
+    void increment( final Statistic statistic )
+    {
+        counters[statistic.ordinal()].increment();
+    }
+
+    void appendAverageValue( final AvgStatistic statistic, final long value )
+    {
+        averageCounts[statistic.ordinal()].increment();
+        averageTotals[statistic.ordinal()].add( value );
+        histograms[statistic.ordinal()].record( value );
+    }
+
+    /**
+     * Apply every value accumulated since the previous fold to each of the bundles.
+     */
+    synchronized void foldInto( final StatisticsBundle... bundles )
+    {
+        for ( final Statistic statistic : Statistic.values() )
+        {
+            final int index = statistic.ordinal();
+            final long sum = counters[index].sum();
+            final long delta = sum - foldedCounters[index];
+            if ( delta != 0 )
+            {
+                foldedCounters[index] = sum;
+                for ( final StatisticsBundle bundle : bundles )
+                {
+                    bundle.addValue( statistic, delta );
+                }
+            }
+        }
+
+        for ( final AvgStatistic statistic : AvgStatistic.values() )
+        {
+            final int index = statistic.ordinal();
+            final long countSum = averageCounts[index].sum();
+            final long totalSum = averageTotals[index].sum();
+            final long countDelta = countSum - foldedAverageCounts[index];
+            final long totalDelta = totalSum - foldedAverageTotals[index];
+            if ( countDelta != 0 || totalDelta != 0 )
+            {
+                foldedAverageCounts[index] = countSum;
+                foldedAverageTotals[index] = totalSum;
+                for ( final StatisticsBundle bundle : bundles )
+                {
+                    bundle.appendAverageValues( statistic, countDelta, totalDelta );
+                }
+            }
+
+            final LatencyHistogram histogramSnapshot = histograms[index].snapshot();
+            final LatencyHistogram histogramDelta = histogramSnapshot.minus( foldedHistograms[index] );
+            if ( histogramDelta.count() > 0 )
+            {
+                foldedHistograms[index] = histogramSnapshot;
+                for ( final StatisticsBundle bundle : bundles )
+                {
+                    bundle.mergeHistogram( statistic, histogramDelta );
+                }
+            }
+        }
+    }
+
+    private static LatencyHistogram[] makeHistograms( final int count )
+    {
+        final LatencyHistogram[] newHistograms = new LatencyHistogram[count];
+        for ( int i = 0; i < count; i++ )
+        {
+            newHistograms[i] = new LatencyHistogram();
+        }
+        return newHistograms;
+    }
+
+    private static LongAdder[] makeAdders( final int count )
+    {
+        final LongAdder[] adders = new LongAdder[count];
+        for ( int i = 0; i < count; i++ )
+        {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
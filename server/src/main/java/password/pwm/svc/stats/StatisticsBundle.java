@@ -25,6 +25,7 @@ package password.pwm.svc.stats;
 import password.pwm.util.java.AtomicLoopLongIncrementer;
 import password.pwm.util.java.JavaHelper;
 import password.pwm.util.java.JsonUtil;
+import password.pwm.util.java.LatencyHistogram;
 import password.pwm.util.java.StringUtil;
 
 import java.io.Serializable;
@@ -37,6 +38,9 @@ public class StatisticsBundle
 {
     private final Map<Statistic, AtomicLoopLongIncrementer> incrementerMap = new EnumMap<>( Statistic.class );
     private final Map<AvgStatistic, AverageBean> avgMap = new EnumMap<>( AvgStatistic.class );
+    private final Map<AvgStatistic, LatencyHistogram> histogramMap = new EnumMap<>( AvgStatistic.class );
+
+    private static final String HISTOGRAM_KEY_PREFIX = "HISTOGRAM_";
 
     StatisticsBundle( )
     {
@@ -47,6 +51,7 @@ public class StatisticsBundle
         for ( final AvgStatistic avgStatistic : AvgStatistic.values() )
         {
             avgMap.put( avgStatistic, new AverageBean() );
+            histogramMap.put( avgStatistic, new LatencyHistogram() );
         }
     }
 
@@ -70,6 +75,14 @@ public class StatisticsBundle
                 outputMap.put( epsStatistic.name(), JsonUtil.serialize( averageBean ) );
             }
         }
+        for ( final AvgStatistic avgStatistic : AvgStatistic.values() )
+        {
+            final LatencyHistogram histogram = histogramMap.get( avgStatistic );
+            if ( histogram.count() > 0 )
+            {
+                outputMap.put( HISTOGRAM_KEY_PREFIX + avgStatistic.name(), histogram.encode() );
+            }
+        }
 
         return JsonUtil.serializeMap( outputMap );
     }
@@ -98,19 +111,30 @@ public class StatisticsBundle
                 final AverageBean avgBean = JsonUtil.deserialize( value, AverageBean.class );
                 bundle.avgMap.put( loopStat, avgBean );
             }
+
+            final String histogramValue = loadedMap.get( HISTOGRAM_KEY_PREFIX + loopStat.name() );
+            if ( !StringUtil.isEmpty( histogramValue ) )
+            {
+                bundle.histogramMap.put( loopStat, LatencyHistogram.decode( histogramValue ) );
+            }
         }
 
         return bundle;
     }
 
-    void incrementValue( final Statistic statistic )
+    void addValue( final Statistic statistic, final long delta )
+    {
+        incrementerMap.get( statistic ).addAndGet( delta );
+    }
+
+    void appendAverageValues( final AvgStatistic statistic, final long count, final long total )
     {
-        incrementerMap.get( statistic ).incrementAndGet();
+        avgMap.get( statistic ).appendValues( count, total );
     }
 
-    void updateAverageValue( final AvgStatistic statistic, final long timeDuration )
+    void mergeHistogram( final AvgStatistic statistic, final LatencyHistogram values )
     {
-        avgMap.get( statistic ).appendValue( timeDuration );
+        histogramMap.get( statistic ).merge( values );
     }
 
     public String getStatistic( final Statistic statistic )
@@ -123,6 +147,14 @@ public class StatisticsBundle
         return avgMap.get( statistic ).getAverage().toString();
     }
 
+    /**
+     * @return the percentile of recorded values, in the statistic's own unit, or zero if nothing has been recorded.
+     */
+    public String getHistogramPercentile( final AvgStatistic statistic, final HistogramPercentile percentile )
+    {
+        return Long.toString( histogramMap.get( statistic ).percentile( percentile.getPercentile() ) );
+    }
+
     private static class AverageBean implements Serializable
     {
         BigInteger total = BigInteger.ZERO;
@@ -142,10 +174,10 @@ public class StatisticsBundle
             return total.divide( count );
         }
 
-        synchronized void appendValue( final long value )
+        synchronized void appendValues( final long addedCount, final long addedTotal )
         {
-            count = count.add( BigInteger.ONE );
-            total = total.add( BigInteger.valueOf( value ) );
+            count = count.add( BigInteger.valueOf( addedCount ) );
+            total = total.add( BigInteger.valueOf( addedTotal ) );
         }
 
         synchronized boolean isZero()
@@ -78,6 +78,7 @@ public class StatisticsManager implements PwmService
 
     private ExecutorService executorService;
 
+    private final StatisticsAccumulator pendingStats = new StatisticsAccumulator();
     private final StatisticsBundle statsCurrent = new StatisticsBundle();
     private StatisticsBundle statsDaily = new StatisticsBundle();
     private StatisticsBundle statsCummulative = new StatisticsBundle();
@@ -107,16 +108,21 @@ public class StatisticsManager implements PwmService
 
     public void incrementValue( final Statistic statistic )
     {
-        statsCurrent.incrementValue( statistic );
-        statsDaily.incrementValue( statistic );
-        statsCummulative.incrementValue( statistic );
+        pendingStats.increment( statistic );
     }
 
     public void updateAverageValue( final AvgStatistic statistic, final long value )
     {
-        statsCurrent.updateAverageValue( statistic, value );
-        statsDaily.updateAverageValue( statistic, value );
-        statsCummulative.updateAverageValue( statistic, value );
+        pendingStats.appendAverageValue( statistic, value );
+    }
+
+    /**
+     * Fold pending updates into the current, daily and cumulative bundles.  Called before the bundles are read
+     * so readers always see every update made before the read.
+     */
+    private synchronized void foldPendingStats( )
+    {
+        pendingStats.foldInto( statsCurrent, statsDaily, statsCummulative );
     }
 
     public Map<String, String> getStatHistory( final Statistic statistic, final int days )
@@ -143,16 +149,19 @@ public class StatisticsManager implements PwmService
     {
         if ( key == null || key.length() < 1 || KEY_CUMULATIVE.equals( key ) )
         {
+            foldPendingStats();
             return statsCummulative;
         }
 
         if ( KEY_CURRENT.equals( key ) )
         {
+            foldPendingStats();
             return statsCurrent;
         }
 
         if ( currentDailyKey.toString().equals( key ) )
         {
+            foldPendingStats();
             return statsDaily;
         }
 
@@ -213,6 +222,7 @@ public class StatisticsManager implements PwmService
 
     public String toString( )
     {
+        foldPendingStats();
         final StringBuilder sb = new StringBuilder();
 
         for ( final Statistic m : Statistic.values() )
@@ -304,6 +314,7 @@ public class StatisticsManager implements PwmService
     {
         if ( localDB != null && status == STATUS.OPEN )
         {
+            foldPendingStats();
             try
             {
                 final Map<String, String> dbData = new LinkedHashMap<>();
@@ -320,6 +331,7 @@ public class StatisticsManager implements PwmService
 
     public Map<String, String> dailyStatisticsAsLabelValueMap()
     {
+        foldPendingStats();
         final Map<String, String> emailValues = new LinkedHashMap<>();
         for ( final Statistic statistic : Statistic.values() )
         {
@@ -331,7 +343,7 @@ public class StatisticsManager implements PwmService
         return Collections.unmodifiableMap( emailValues );
     }
 
-    private void resetDailyStats( )
+    private synchronized void resetDailyStats( )
     {
         currentDailyKey = DailyKey.forToday();
         statsDaily = new StatisticsBundle();
@@ -418,6 +430,13 @@ public class StatisticsManager implements PwmService
             {
                 headers.add( stat.getLabel( locale ) );
             }
+            for ( final AvgStatistic stat : AvgStatistic.values() )
+            {
+                for ( final HistogramPercentile percentile : HistogramPercentile.values() )
+                {
+                    headers.add( stat.getLabel( locale ) + " " + percentile.name() );
+                }
+            }
             csvPrinter.printRecord( headers );
         }
 
@@ -435,6 +454,13 @@ public class StatisticsManager implements PwmService
             {
                 lineOutput.add( bundle.getStatistic( stat ) );
             }
+            for ( final AvgStatistic stat : AvgStatistic.values() )
+            {
+                for ( final HistogramPercentile percentile : HistogramPercentile.values() )
+                {
+                    lineOutput.add( bundle.getHistogramPercentile( stat, percentile ) );
+                }
+            }
             csvPrinter.printRecord( lineOutput );
         }
 
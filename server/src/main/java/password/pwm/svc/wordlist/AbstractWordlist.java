@@ -278,6 +278,11 @@ abstract class AbstractWordlist implements Wordlist, PwmService
 
     abstract PwmLogger getLogger();
 
+    PwmApplication getPwmApplication()
+    {
+        return pwmApplication;
+    }
+
     WordlistBucket getWordlistBucket()
     {
         return wordklistBucket;
@@ -0,0 +1,371 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package password.pwm.svc.wordlist;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Read-only, memory-mapped segment of a sorted wordlist.
+ *
+ * <p>File layout:</p>
+ * <pre>
+ *   header:  magic(int) version(int) wordCount(long) blockSize(int) blockCount(int) indexOffset(long)
+ *   blocks:  first word as varint(length) bytes, then each following word as varint(prefix) varint(suffix) suffix-bytes
+ *   index:   blockCount absolute block offsets (long)
+ * </pre>
+ *
+ * <p>Words are UTF-8 encoded and ordered by unsigned byte comparison.  Lookups binary search the block index and then
+ * scan a single block, using per-thread scratch buffers so that no objects are allocated per lookup.</p>
+ */
+class MappedWordlistFile
+{
+    static final int MAGIC = 0x5057464c;
+    static final int VERSION = 1;
+    static final int HEADER_LENGTH = 4 + 4 + 8 + 4 + 4 + 8;
+    static final int BLOCK_SIZE = 16;
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial( Scratch::new );
+
+    private final ByteBuffer buffer;
+    private final long wordCount;
+    private final int blockCount;
+    private final int indexOffset;
+
+    private MappedWordlistFile( final ByteBuffer buffer, final long wordCount, final int blockCount, final int indexOffset )
+    {
+        this.buffer = buffer;
+        this.wordCount = wordCount;
+        this.blockCount = blockCount;
+        this.indexOffset = indexOffset;
+    }
+
+    static MappedWordlistFile open( final File file ) throws IOException
+    {
+        try ( RandomAccessFile randomAccessFile = new RandomAccessFile( file, "r" ) )
+        {
+            final FileChannel channel = randomAccessFile.getChannel();
+            if ( channel.size() < HEADER_LENGTH || channel.size() > Integer.MAX_VALUE )
+            {
+                throw new IOException( "wordlist segment " + file.getName() + " has invalid length " + channel.size() );
+            }
+
+            final ByteBuffer buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+            final int magic = buffer.getInt( 0 );
+            final int version = buffer.getInt( 4 );
+            final long wordCount = buffer.getLong( 8 );
+            final int blockSize = buffer.getInt( 16 );
+            final int blockCount = buffer.getInt( 20 );
+            final long indexOffset = buffer.getLong( 24 );
+
+            if ( magic != MAGIC || version != VERSION || blockSize != BLOCK_SIZE )
+            {
+                throw new IOException( "wordlist segment " + file.getName() + " has unknown format" );
+            }
+
+            if ( indexOffset + (long) blockCount * 8 != channel.size() )
+            {
+                throw new IOException( "wordlist segment " + file.getName() + " is incomplete" );
+            }
+
+            return new MappedWordlistFile( buffer, wordCount, blockCount, (int) indexOffset );
+        }
+    }
+
+    long size()
+    {
+        return wordCount;
+    }
+
+    boolean isEmpty()
+    {
+        return blockCount == 0;
+    }
+
+    /**
+     * Compare the given UTF-8 value against the first word of this segment.
+     */
+    int compareToFirstWord( final byte[] value, final int valueLength )
+    {
+        return -compareFirstWordOfBlock( 0, value, valueLength );
+    }
+
+    boolean contains( final byte[] value, final int valueLength )
+    {
+        if ( blockCount == 0 )
+        {
+            return false;
+        }
+
+        int low = 0;
+        int high = blockCount - 1;
+        int candidateBlock = -1;
+        while ( low <= high )
+        {
+            final int mid = ( low + high ) >>> 1;
+            final int comparison = compareFirstWordOfBlock( mid, value, valueLength );
+            if ( comparison == 0 )
+            {
+                return true;
+            }
+            else if ( comparison < 0 )
+            {
+                candidateBlock = mid;
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid - 1;
+            }
+        }
+
+        return candidateBlock >= 0 && scanBlock( candidateBlock, value, valueLength );
+    }
+
+    String wordAt( final long index )
+    {
+        if ( index < 0 || index >= wordCount )
+        {
+            throw new IndexOutOfBoundsException( "word index " + index + " out of range" );
+        }
+
+        final int block = (int) ( index / BLOCK_SIZE );
+        final int offsetInBlock = (int) ( index % BLOCK_SIZE );
+        final Scratch scratch = SCRATCH.get();
+
+        int position = blockOffset( block );
+        final int firstLength = readVarint( buffer, position );
+        position += varintSize( firstLength );
+        scratch.ensureWordCapacity( firstLength );
+        readBytes( position, scratch.word, 0, firstLength );
+        position += firstLength;
+        int length = firstLength;
+
+        for ( int i = 1; i <= offsetInBlock; i++ )
+        {
+            final int prefix = readVarint( buffer, position );
+            position += varintSize( prefix );
+            final int suffix = readVarint( buffer, position );
+            position += varintSize( suffix );
+            scratch.ensureWordCapacity( prefix + suffix );
+            readBytes( position, scratch.word, prefix, suffix );
+            position += suffix;
+            length = prefix + suffix;
+        }
+
+        return new String( scratch.word, 0, length, StandardCharsets.UTF_8 );
+    }
+
+    private boolean scanBlock( final int block, final byte[] value, final int valueLength )
+    {
+        final Scratch scratch = SCRATCH.get();
+        final long wordsInBlock = Math.min( BLOCK_SIZE, wordCount - (long) block * BLOCK_SIZE );
+
+        int position = blockOffset( block );
+        final int firstLength = readVarint( buffer, position );
+        position += varintSize( firstLength );
+        scratch.ensureWordCapacity( firstLength );
+        readBytes( position, scratch.word, 0, firstLength );
+        position += firstLength;
+
+        for ( int i = 1; i < wordsInBlock; i++ )
+        {
+            final int prefix = readVarint( buffer, position );
+            position += varintSize( prefix );
+            final int suffix = readVarint( buffer, position );
+            position += varintSize( suffix );
+            scratch.ensureWordCapacity( prefix + suffix );
+            readBytes( position, scratch.word, prefix, suffix );
+            position += suffix;
+
+            final int comparison = compareBytes( scratch.word, prefix + suffix, value, valueLength );
+            if ( comparison == 0 )
+            {
+                return true;
+            }
+            if ( comparison > 0 )
+            {
+                return false;
+            }
+        }
+
+        return false;
+    }
+
+    private int compareFirstWordOfBlock( final int block, final byte[] value, final int valueLength )
+    {
+        int position = blockOffset( block );
+        final int length = readVarint( buffer, position );
+        position += varintSize( length );
+
+        final int commonLength = Math.min( length, valueLength );
+        for ( int i = 0; i < commonLength; i++ )
+        {
+            final int stored = buffer.get( position + i ) & 0xFF;
+            final int test = value[i] & 0xFF;
+            if ( stored != test )
+            {
+                return stored - test;
+            }
+        }
+        return length - valueLength;
+    }
+
+    private int blockOffset( final int block )
+    {
+        return (int) buffer.getLong( indexOffset + block * 8 );
+    }
+
+    private void readBytes( final int position, final byte[] destination, final int destinationOffset, final int length )
+    {
+        for ( int i = 0; i < length; i++ )
+        {
+            destination[destinationOffset + i] = buffer.get( position + i );
+        }
+    }
+
+    static int compareBytes( final byte[] value1, final int length1, final byte[] value2, final int length2 )
+    {
+        final int commonLength = Math.min( length1, length2 );
+        for ( int i = 0; i < commonLength; i++ )
+        {
+            final int b1 = value1[i] & 0xFF;
+            final int b2 = value2[i] & 0xFF;
+            if ( b1 != b2 )
+            {
+                return b1 - b2;
+            }
+        }
+        return length1 - length2;
+    }
+
+    static int readVarint( final ByteBuffer buffer, final int position )
+    {
+        int result = 0;
+        int shift = 0;
+        int index = position;
+        while ( true )
+        {
+            final byte b = buffer.get( index++ );
+            result |= ( b & 0x7F ) << shift;
+            if ( ( b & 0x80 ) == 0 )
+            {
+                return result;
+            }
+            shift += 7;
+        }
+    }
+
+    static int varintSize( final int value )
+    {
+        int size = 1;
+        int remaining = value >>> 7;
+        while ( remaining != 0 )
+        {
+            size++;
+            remaining >>>= 7;
+        }
+        return size;
+    }
+
+    /**
+     * Encode a range of {@code value} as UTF-8 into the calling thread's query scratch buffer.
+     *
+     * @return the encoded length, the bytes are available from {@link #queryBuffer()}
+     */
+    static int encodeQuery( final CharSequence value, final int start, final int end )
+    {
+        final Scratch scratch = SCRATCH.get();
+        scratch.ensureQueryCapacity( ( end - start ) * 3 );
+        final byte[] output = scratch.query;
+
+        int length = 0;
+        int index = start;
+        while ( index < end )
+        {
+            final char c = value.charAt( index++ );
+            if ( c < 0x80 )
+            {
+                output[length++] = (byte) c;
+            }
+            else if ( c < 0x800 )
+            {
+                output[length++] = (byte) ( 0xC0 | ( c >> 6 ) );
+                output[length++] = (byte) ( 0x80 | ( c & 0x3F ) );
+            }
+            else if ( Character.isHighSurrogate( c ) && index < end && Character.isLowSurrogate( value.charAt( index ) ) )
+            {
+                final int codePoint = Character.toCodePoint( c, value.charAt( index++ ) );
+                output[length++] = (byte) ( 0xF0 | ( codePoint >> 18 ) );
+                output[length++] = (byte) ( 0x80 | ( ( codePoint >> 12 ) & 0x3F ) );
+                output[length++] = (byte) ( 0x80 | ( ( codePoint >> 6 ) & 0x3F ) );
+                output[length++] = (byte) ( 0x80 | ( codePoint & 0x3F ) );
+            }
+            else if ( Character.isSurrogate( c ) )
+            {
+                // unpaired surrogate, encoded as '?' the same way String.getBytes() does
+                output[length++] = (byte) '?';
+            }
+            else
+            {
+                output[length++] = (byte) ( 0xE0 | ( c >> 12 ) );
+                output[length++] = (byte) ( 0x80 | ( ( c >> 6 ) & 0x3F ) );
+                output[length++] = (byte) ( 0x80 | ( c & 0x3F ) );
+            }
+        }
+        return length;
+    }
+
+    static byte[] queryBuffer()
+    {
+        return SCRATCH.get().query;
+    }
+
+    private static class Scratch
+    {
+        private byte[] query = new byte[256];
+        private byte[] word = new byte[256];
+
+        void ensureQueryCapacity( final int length )
+        {
+            if ( query.length < length )
+            {
+                query = new byte[Math.max( length, query.length * 2 )];
+            }
+        }
+
+        void ensureWordCapacity( final int length )
+        {
+            if ( word.length < length )
+            {
+                final byte[] newWord = new byte[Math.max( length, word.length * 2 )];
+                System.arraycopy( word, 0, newWord, 0, word.length );
+                word = newWord;
+            }
+        }
+    }
+}
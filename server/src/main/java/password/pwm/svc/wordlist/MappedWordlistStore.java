@@ -0,0 +1,415 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package password.pwm.svc.wordlist;
+
+import password.pwm.util.java.FileSystemUtility;
+import password.pwm.util.java.StringUtil;
+import password.pwm.util.java.TimeDuration;
+import password.pwm.util.logging.PwmLogger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Wordlist storage backed by memory-mapped {@link MappedWordlistFile} segments.
+ *
+ * <p>During import each batch of words is sorted and written to a run file; when the import completes the runs
+ * are k-way merged into front-coded segments in a single streaming pass.  Run files survive a restart, so an
+ * interrupted import resumes the same way the LocalDB engine does.</p>
+ *
+ * <p>Directory layout:</p>
+ * <pre>
+ *   runs/       sorted batches of the import in progress
+ *   segments/   completed, read-only segment files
+ * </pre>
+ */
+class MappedWordlistStore
+{
+    private static final PwmLogger LOGGER = PwmLogger.forClass( MappedWordlistStore.class );
+
+    private static final String RUN_SUFFIX = ".run";
+    private static final int MERGE_FAN_IN = 64;
+    private static final long MAX_SEGMENT_BYTES = 1024 * 1024 * 1024;
+
+    private static final Comparator<byte[]> BYTE_ORDER = ( o1, o2 ) -> MappedWordlistFile.compareBytes( o1, o1.length, o2, o2.length );
+
+    private final File directory;
+    private final File runDirectory;
+    private final File segmentDirectory;
+
+    private volatile List<MappedWordlistFile> segments = Collections.emptyList();
+    private int nextRunNumber;
+
+    MappedWordlistStore( final File directory )
+    {
+        this.directory = directory;
+        this.runDirectory = new File( directory, "runs" );
+        this.segmentDirectory = new File( directory, "segments" );
+    }
+
+    void open() throws IOException
+    {
+        final List<MappedWordlistFile> loadedSegments = new ArrayList<>();
+        for ( final File file : listFiles( segmentDirectory, MappedWordlistWriter.SEGMENT_SUFFIX ) )
+        {
+            final MappedWordlistFile segment = MappedWordlistFile.open( file );
+            if ( !segment.isEmpty() )
+            {
+                loadedSegments.add( segment );
+            }
+        }
+        this.segments = Collections.unmodifiableList( loadedSegments );
+
+        int highestRunNumber = -1;
+        for ( final File runFile : listFiles( runDirectory, RUN_SUFFIX ) )
+        {
+            final String name = runFile.getName();
+            highestRunNumber = Math.max( highestRunNumber, Integer.parseInt( name.substring( "run-".length(), name.length() - RUN_SUFFIX.length() ) ) );
+        }
+        nextRunNumber = highestRunNumber + 1;
+    }
+
+    boolean contains( final CharSequence value, final int start, final int end )
+    {
+        final List<MappedWordlistFile> currentSegments = this.segments;
+        if ( currentSegments.isEmpty() )
+        {
+            return false;
+        }
+
+        final int length = MappedWordlistFile.encodeQuery( value, start, end );
+        final byte[] query = MappedWordlistFile.queryBuffer();
+
+        // segments hold disjoint, ascending ranges; find the last one starting at or before the value
+        int low = 0;
+        int high = currentSegments.size() - 1;
+        int candidate = -1;
+        while ( low <= high )
+        {
+            final int mid = ( low + high ) >>> 1;
+            if ( currentSegments.get( mid ).compareToFirstWord( query, length ) >= 0 )
+            {
+                candidate = mid;
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid - 1;
+            }
+        }
+
+        return candidate >= 0 && currentSegments.get( candidate ).contains( query, length );
+    }
+
+    String wordAt( final long index )
+    {
+        long remaining = index;
+        for ( final MappedWordlistFile segment : segments )
+        {
+            if ( remaining < segment.size() )
+            {
+                return segment.wordAt( remaining );
+            }
+            remaining -= segment.size();
+        }
+        throw new IndexOutOfBoundsException( "word index " + index + " out of range" );
+    }
+
+    long size()
+    {
+        long total = 0;
+        for ( final MappedWordlistFile segment : segments )
+        {
+            total += segment.size();
+        }
+        return total;
+    }
+
+    synchronized void addWords( final Collection<String> normalizedWords ) throws IOException
+    {
+        if ( normalizedWords.isEmpty() )
+        {
+            return;
+        }
+
+        final byte[][] encoded = new byte[normalizedWords.size()][];
+        int index = 0;
+        for ( final String word : normalizedWords )
+        {
+            encoded[index++] = word.getBytes( StandardCharsets.UTF_8 );
+        }
+        Arrays.sort( encoded, BYTE_ORDER );
+
+        mkdirs( runDirectory );
+        final File runFile = new File( runDirectory, String.format( "run-%08d", nextRunNumber++ ) + RUN_SUFFIX );
+        final File tempFile = new File( runDirectory, runFile.getName() + ".tmp" );
+        try ( OutputStream outputStream = new BufferedOutputStream( new FileOutputStream( tempFile ) ) )
+        {
+            byte[] previous = null;
+            for ( final byte[] word : encoded )
+            {
+                if ( previous == null || BYTE_ORDER.compare( previous, word ) != 0 )
+                {
+                    MappedWordlistWriter.writeVarint( outputStream, word.length );
+                    outputStream.write( word );
+                }
+                previous = word;
+            }
+        }
+        rename( tempFile, runFile );
+    }
+
+    /**
+     * Merge all run files of the current import into the final segment files and publish them to readers.
+     */
+    synchronized void completeImport( final BooleanSupplier cancelFlag ) throws IOException
+    {
+        final Instant startTime = Instant.now();
+        List<File> runs = listFiles( runDirectory, RUN_SUFFIX );
+        final int initialRunCount = runs.size();
+
+        LOGGER.debug( () -> "beginning merge of wordlist import runs into segment files" );
+
+        while ( runs.size() > MERGE_FAN_IN )
+        {
+            if ( cancelFlag.getAsBoolean() )
+            {
+                return;
+            }
+
+            final List<File> group = runs.subList( 0, MERGE_FAN_IN );
+            final File mergedRun = new File( runDirectory, String.format( "run-%08d", nextRunNumber++ ) + RUN_SUFFIX );
+            final File tempFile = new File( runDirectory, mergedRun.getName() + ".tmp" );
+            try ( OutputStream outputStream = new BufferedOutputStream( new FileOutputStream( tempFile ) ) )
+            {
+                mergeRuns( group, word ->
+                {
+                    MappedWordlistWriter.writeVarint( outputStream, word.length );
+                    outputStream.write( word );
+                } );
+            }
+            rename( tempFile, mergedRun );
+            for ( final File file : new ArrayList<>( group ) )
+            {
+                delete( file );
+            }
+            runs = listFiles( runDirectory, RUN_SUFFIX );
+        }
+
+        final File tempSegmentDirectory = new File( directory, "segments.tmp" );
+        deleteDirectory( tempSegmentDirectory );
+        mkdirs( tempSegmentDirectory );
+
+        final long wordCount;
+        try ( MappedWordlistWriter writer = new MappedWordlistWriter( tempSegmentDirectory, MAX_SEGMENT_BYTES ) )
+        {
+            mergeRuns( runs, writer::write );
+            wordCount = writer.getWordCount();
+        }
+
+        if ( cancelFlag.getAsBoolean() )
+        {
+            return;
+        }
+
+        this.segments = Collections.emptyList();
+        deleteDirectory( segmentDirectory );
+        rename( tempSegmentDirectory, segmentDirectory );
+        deleteDirectory( runDirectory );
+        open();
+
+        LOGGER.debug( () -> "completed merge of " + initialRunCount + " runs into " + wordCount + " words, "
+                + StringUtil.formatDiskSizeforDebug( FileSystemUtility.getFileDirectorySize( segmentDirectory ) )
+                + " (" + TimeDuration.compactFromCurrent( startTime ) + ")" );
+    }
+
+    synchronized void clear() throws IOException
+    {
+        this.segments = Collections.emptyList();
+        deleteDirectory( directory );
+        nextRunNumber = 0;
+    }
+
+    private interface WordConsumer
+    {
+        void accept( byte[] word ) throws IOException;
+    }
+
+    private static void mergeRuns( final List<File> runFiles, final WordConsumer consumer ) throws IOException
+    {
+        final List<RunReader> readers = new ArrayList<>();
+        try
+        {
+            final PriorityQueue<RunReader> queue = new PriorityQueue<>( Math.max( 1, runFiles.size() ),
+                    ( o1, o2 ) -> BYTE_ORDER.compare( o1.current, o2.current ) );
+            for ( final File runFile : runFiles )
+            {
+                final RunReader reader = new RunReader( runFile );
+                readers.add( reader );
+                if ( reader.advance() )
+                {
+                    queue.add( reader );
+                }
+            }
+
+            byte[] previous = null;
+            while ( !queue.isEmpty() )
+            {
+                final RunReader reader = queue.poll();
+                final byte[] word = reader.current;
+                if ( previous == null || BYTE_ORDER.compare( previous, word ) != 0 )
+                {
+                    consumer.accept( word );
+                    previous = word;
+                }
+                if ( reader.advance() )
+                {
+                    queue.add( reader );
+                }
+            }
+        }
+        finally
+        {
+            for ( final RunReader reader : readers )
+            {
+                reader.close();
+            }
+        }
+    }
+
+    private static class RunReader implements Closeable
+    {
+        private final DataInputStream inputStream;
+        private byte[] current;
+
+        RunReader( final File file ) throws IOException
+        {
+            this.inputStream = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+        }
+
+        boolean advance() throws IOException
+        {
+            final int length = readVarint();
+            if ( length < 0 )
+            {
+                current = null;
+                return false;
+            }
+            current = new byte[length];
+            inputStream.readFully( current );
+            return true;
+        }
+
+        private int readVarint() throws IOException
+        {
+            int result = 0;
+            int shift = 0;
+            while ( true )
+            {
+                final int b = inputStream.read();
+                if ( b < 0 )
+                {
+                    if ( shift == 0 )
+                    {
+                        return -1;
+                    }
+                    throw new EOFException( "truncated wordlist run file" );
+                }
+                result |= ( b & 0x7F ) << shift;
+                if ( ( b & 0x80 ) == 0 )
+                {
+                    return result;
+                }
+                shift += 7;
+            }
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            inputStream.close();
+        }
+    }
+
+    private static List<File> listFiles( final File directory, final String suffix )
+    {
+        final File[] files = directory.listFiles( ( dir, name ) -> name.endsWith( suffix ) );
+        if ( files == null )
+        {
+            return Collections.emptyList();
+        }
+        Arrays.sort( files );
+        return Collections.unmodifiableList( Arrays.asList( files ) );
+    }
+
+    private static void mkdirs( final File directory ) throws IOException
+    {
+        if ( !directory.exists() && !directory.mkdirs() )
+        {
+            throw new IOException( "unable to create directory " + directory.getAbsolutePath() );
+        }
+    }
+
+    private static void rename( final File source, final File destination ) throws IOException
+    {
+        if ( !source.renameTo( destination ) )
+        {
+            throw new IOException( "unable to rename " + source.getAbsolutePath() + " to " + destination.getAbsolutePath() );
+        }
+    }
+
+    private static void delete( final File file ) throws IOException
+    {
+        if ( file.exists() && !file.delete() )
+        {
+            throw new IOException( "unable to delete " + file.getAbsolutePath() );
+        }
+    }
+
+    private static void deleteDirectory( final File directory ) throws IOException
+    {
+        if ( directory.exists() )
+        {
+            FileSystemUtility.deleteDirectoryContents( directory );
+            delete( directory );
+        }
+    }
+}
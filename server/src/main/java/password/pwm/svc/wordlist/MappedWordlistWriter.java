@@ -0,0 +1,213 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package password.pwm.svc.wordlist;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+/**
+ * Streams an ascending sequence of UTF-8 words into one or more {@link MappedWordlistFile} segments.  Duplicate
+ * consecutive words are dropped, out of order words are rejected.
+ */
+class MappedWordlistWriter implements Closeable
+{
+    static final String SEGMENT_SUFFIX = ".fcw";
+
+    private final File directory;
+    private final long maxSegmentBytes;
+
+    private SegmentOutput currentSegment;
+    private int segmentCount;
+    private long wordCount;
+    private byte[] previousWord;
+
+    MappedWordlistWriter( final File directory, final long maxSegmentBytes )
+    {
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+    }
+
+    void write( final byte[] word ) throws IOException
+    {
+        if ( previousWord != null )
+        {
+            final int comparison = MappedWordlistFile.compareBytes( previousWord, previousWord.length, word, word.length );
+            if ( comparison == 0 )
+            {
+                return;
+            }
+            if ( comparison > 0 )
+            {
+                throw new IllegalStateException( "wordlist segment words must be written in ascending order" );
+            }
+        }
+
+        if ( currentSegment == null || currentSegment.isFull() )
+        {
+            if ( currentSegment != null )
+            {
+                currentSegment.finish();
+            }
+            final File segmentFile = new File( directory, String.format( "segment-%05d", segmentCount ) + SEGMENT_SUFFIX );
+            currentSegment = new SegmentOutput( segmentFile );
+            segmentCount++;
+        }
+
+        currentSegment.write( word );
+        previousWord = word;
+        wordCount++;
+    }
+
+    long getWordCount()
+    {
+        return wordCount;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if ( currentSegment != null )
+        {
+            currentSegment.finish();
+            currentSegment = null;
+        }
+    }
+
+    static void writeVarint( final OutputStream outputStream, final int value ) throws IOException
+    {
+        int remaining = value;
+        while ( ( remaining & ~0x7F ) != 0 )
+        {
+            outputStream.write( ( remaining & 0x7F ) | 0x80 );
+            remaining >>>= 7;
+        }
+        outputStream.write( remaining );
+    }
+
+    private class SegmentOutput
+    {
+        private final File file;
+        private final OutputStream outputStream;
+
+        private long[] blockOffsets = new long[1024];
+        private int blockCount;
+        private long segmentWordCount;
+        private long position;
+        private byte[] previousSegmentWord;
+
+        SegmentOutput( final File file ) throws IOException
+        {
+            this.file = file;
+            this.outputStream = new BufferedOutputStream( new FileOutputStream( file ) );
+
+            // header is rewritten once the segment is complete
+            outputStream.write( new byte[MappedWordlistFile.HEADER_LENGTH] );
+            position = MappedWordlistFile.HEADER_LENGTH;
+        }
+
+        boolean isFull()
+        {
+            return segmentWordCount % MappedWordlistFile.BLOCK_SIZE == 0 && position >= maxSegmentBytes;
+        }
+
+        void write( final byte[] word ) throws IOException
+        {
+            if ( segmentWordCount % MappedWordlistFile.BLOCK_SIZE == 0 )
+            {
+                if ( blockCount == blockOffsets.length )
+                {
+                    blockOffsets = Arrays.copyOf( blockOffsets, blockOffsets.length * 2 );
+                }
+                blockOffsets[blockCount++] = position;
+
+                writeVarint( word.length );
+                writeBytes( word, 0, word.length );
+            }
+            else
+            {
+                final int prefix = commonPrefixLength( previousSegmentWord, word );
+                final int suffix = word.length - prefix;
+                writeVarint( prefix );
+                writeVarint( suffix );
+                writeBytes( word, prefix, suffix );
+            }
+
+            previousSegmentWord = word;
+            segmentWordCount++;
+        }
+
+        void finish() throws IOException
+        {
+            final long indexOffset = position;
+            try ( DataOutputStream dataOutputStream = new DataOutputStream( outputStream ) )
+            {
+                for ( int i = 0; i < blockCount; i++ )
+                {
+                    dataOutputStream.writeLong( blockOffsets[i] );
+                }
+            }
+
+            try ( RandomAccessFile randomAccessFile = new RandomAccessFile( file, "rw" ) )
+            {
+                randomAccessFile.seek( 0 );
+                randomAccessFile.writeInt( MappedWordlistFile.MAGIC );
+                randomAccessFile.writeInt( MappedWordlistFile.VERSION );
+                randomAccessFile.writeLong( segmentWordCount );
+                randomAccessFile.writeInt( MappedWordlistFile.BLOCK_SIZE );
+                randomAccessFile.writeInt( blockCount );
+                randomAccessFile.writeLong( indexOffset );
+                randomAccessFile.getFD().sync();
+            }
+        }
+
+        private void writeVarint( final int value ) throws IOException
+        {
+            MappedWordlistWriter.writeVarint( outputStream, value );
+            position += MappedWordlistFile.varintSize( value );
+        }
+
+        private void writeBytes( final byte[] value, final int offset, final int length ) throws IOException
+        {
+            outputStream.write( value, offset, length );
+            position += length;
+        }
+
+        private int commonPrefixLength( final byte[] value1, final byte[] value2 )
+        {
+            final int max = Math.min( value1.length, value2.length );
+            int length = 0;
+            while ( length < max && value1[length] == value2[length] )
+            {
+                length++;
+            }
+            return length;
+        }
+    }
+}
@@ -33,20 +33,26 @@ import password.pwm.error.PwmException;
 import password.pwm.health.HealthRecord;
 import password.pwm.svc.PwmService;
 import password.pwm.util.PwmScheduler;
-import password.pwm.util.java.JavaHelper;
+import password.pwm.util.java.FileSystemUtility;
 import password.pwm.util.java.TimeDuration;
 import password.pwm.util.localdb.LocalDB;
 import password.pwm.util.localdb.LocalDBException;
 import password.pwm.util.logging.PwmLogger;
 import password.pwm.util.secure.PwmRandom;
 
+import java.io.File;
+import java.io.IOException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 
 public class SharedHistoryManager implements PwmService
@@ -63,6 +69,12 @@ public class SharedHistoryManager implements PwmService
     // 1 day
     private static final int MAX_CLEANER_FREQUENCY = 1000 * 60 * 60 * 24;
 
+    // 1 minute
+    private static final long MIN_SEGMENT_DURATION = 1000 * 60;
+
+    private static final String SEGMENT_SUFFIX = ".shs";
+    private static final Pattern SEGMENT_FILENAME_PATTERN = Pattern.compile( "^(\\d+)-(\\d+)" + Pattern.quote( SEGMENT_SUFFIX ) + "$" );
+
     private static final LocalDB.DB META_DB = LocalDB.DB.SHAREDHISTORY_META;
     private static final LocalDB.DB WORDS_DB = LocalDB.DB.SHAREDHISTORY_WORDS;
 
@@ -72,7 +84,10 @@ public class SharedHistoryManager implements PwmService
 
     private LocalDB localDB;
     private String salt;
-    private long oldestEntry;
+    private File segmentDirectory;
+
+    private final Map<Long, SharedHistorySegment> segments = new ConcurrentHashMap<>();
+    private volatile SharedHistorySegment currentSegment;
 
     private final Settings settings = new Settings();
 
@@ -87,6 +102,12 @@ public class SharedHistoryManager implements PwmService
         {
             executorService.shutdown();
         }
+        currentSegment = null;
+        for ( final SharedHistorySegment segment : segments.values() )
+        {
+            closeSegment( segment );
+        }
+        segments.clear();
         localDB = null;
     }
 
@@ -104,31 +125,24 @@ public class SharedHistoryManager implements PwmService
             return false;
         }
 
-        //final long startTime = System.currentTimeMillis();
-        boolean result = false;
-
         try
         {
-            final String hashedWord = hashWord( testWord );
-            final boolean inDB = localDB.contains( WORDS_DB, hashedWord );
-            if ( inDB )
+            final long fingerprint = fingerprintWord( testWord );
+            final long oldestAllowed = System.currentTimeMillis() - settings.maxAgeMs;
+            for ( final SharedHistorySegment segment : segments.values() )
             {
-                final long timeStamp = Long.parseLong( localDB.get( WORDS_DB, hashedWord ) );
-                final long entryAge = System.currentTimeMillis() - timeStamp;
-                if ( entryAge < settings.maxAgeMs )
+                if ( segment.getEndTime() > oldestAllowed && segment.contains( fingerprint ) )
                 {
-                    result = true;
+                    return true;
                 }
             }
-
         }
         catch ( Exception e )
         {
             LOGGER.warn( "error checking global history list: " + e.getMessage() );
         }
 
-        //LOGGER.trace(pwmSession, "successfully checked word, result=" + result + ", duration=" + new TimeDuration(System.currentTimeMillis(), startTime).asCompactString());
-        return result;
+        return false;
     }
 
     public PwmService.STATUS status( )
@@ -138,31 +152,25 @@ public class SharedHistoryManager implements PwmService
 
     public Instant getOldestEntryTime( )
     {
-        if ( size() > 0 )
+        long oldestEntry = Long.MAX_VALUE;
+        for ( final SharedHistorySegment segment : segments.values() )
         {
-            return Instant.ofEpochMilli( oldestEntry );
+            if ( segment.size() > 0 )
+            {
+                oldestEntry = Math.min( oldestEntry, segment.getStartTime() );
+            }
         }
-        return null;
+        return oldestEntry == Long.MAX_VALUE ? null : Instant.ofEpochMilli( oldestEntry );
     }
 
     public long size( )
     {
-        if ( localDB != null )
-        {
-            try
-            {
-                return localDB.size( WORDS_DB );
-            }
-            catch ( Exception e )
-            {
-                LOGGER.error( "error checking wordlist size: " + e.getMessage() );
-                return 0;
-            }
-        }
-        else
+        long size = 0;
+        for ( final SharedHistorySegment segment : segments.values() )
         {
-            return 0;
+            size += segment.size();
         }
+        return size;
     }
 
     private boolean checkDbVersion( )
@@ -178,6 +186,7 @@ public class SharedHistoryManager implements PwmService
         {
             LOGGER.info( () -> "existing db version does not match current db version db=(" + versionInDB + ")  current=(" + currentVersion + "), clearing db" );
             localDB.truncate( WORDS_DB );
+            clearSegmentFiles();
             localDB.put( META_DB, KEY_VERSION, currentVersion );
             localDB.remove( META_DB, KEY_OLDEST_ENTRY );
         }
@@ -205,45 +214,24 @@ public class SharedHistoryManager implements PwmService
             return;
         }
 
-
         try
         {
-            final String oldestEntryStr = localDB.get( META_DB, KEY_OLDEST_ENTRY );
-            if ( oldestEntryStr == null || oldestEntryStr.length() < 1 )
-            {
-                oldestEntry = 0;
-                LOGGER.trace( () -> "no oldestEntry timestamp stored, will rescan" );
-            }
-            else
-            {
-                oldestEntry = Long.parseLong( oldestEntryStr );
-                LOGGER.trace( () -> "oldest timestamp loaded from localDB, age is " + TimeDuration.fromCurrent( oldestEntry ).asCompactString() );
-            }
+            loadSegments();
+            migrateLegacyWords();
         }
         catch ( LocalDBException e )
         {
-            LOGGER.error( "unexpected error loading oldest-entry meta record, will remain closed: " + e.getMessage(), e );
+            LOGGER.error( "unexpected error loading stored words, will remain closed: " + e.getMessage(), e );
             status = STATUS.CLOSED;
             return;
         }
 
-        try
-        {
-            final long size = localDB.size( WORDS_DB );
-            LOGGER.info( () -> "open with " + size + " words ("
-                    + TimeDuration.compactFromCurrent( startTime ) + ")"
-                    + ", maxAgeMs=" + TimeDuration.of( maxAgeMs, TimeDuration.Unit.MILLISECONDS ).asCompactString()
-                    + ", oldestEntry=" + TimeDuration.fromCurrent( oldestEntry ).asCompactString() );
-        }
-        catch ( LocalDBException e )
-        {
-            LOGGER.error( "unexpected error examining size of DB, will remain closed: " + e.getMessage(), e );
-            status = STATUS.CLOSED;
-            return;
-        }
+        LOGGER.info( () -> "open with " + size() + " words in " + segments.size() + " segments ("
+                + TimeDuration.compactFromCurrent( startTime ) + ")"
+                + ", maxAgeMs=" + TimeDuration.of( maxAgeMs, TimeDuration.Unit.MILLISECONDS ).asCompactString()
+                + ", segmentDuration=" + TimeDuration.of( settings.segmentDurationMs, TimeDuration.Unit.MILLISECONDS ).asCompactString() );
 
         status = STATUS.OPEN;
-        //populateFromWordlist();  //only used for debugging!!!
 
         if ( pwmApplication.getApplicationMode() == PwmApplicationMode.RUNNING || pwmApplication.getApplicationMode() == PwmApplicationMode.CONFIGURATION )
         {
@@ -257,6 +245,96 @@ public class SharedHistoryManager implements PwmService
         }
     }
 
+    private void loadSegments( )
+    {
+        if ( segmentDirectory == null )
+        {
+            return;
+        }
+
+        final File[] files = segmentDirectory.listFiles();
+        if ( files == null )
+        {
+            return;
+        }
+
+        final long oldestAllowed = System.currentTimeMillis() - settings.maxAgeMs;
+        for ( final File file : files )
+        {
+            final Matcher matcher = SEGMENT_FILENAME_PATTERN.matcher( file.getName() );
+            if ( !matcher.matches() )
+            {
+                continue;
+            }
+
+            final long segmentStart = Long.parseLong( matcher.group( 1 ) );
+            final long segmentEnd = Long.parseLong( matcher.group( 2 ) );
+            if ( segmentEnd <= oldestAllowed )
+            {
+                deleteSegmentFile( file );
+                continue;
+            }
+
+            try
+            {
+                segments.put( segmentStart, SharedHistorySegment.load( segmentStart, segmentEnd, file ) );
+            }
+            catch ( IOException e )
+            {
+                LOGGER.warn( "unable to read shared history segment " + file.getName() + ", will discard: " + e.getMessage() );
+                deleteSegmentFile( file );
+            }
+        }
+    }
+
+    /**
+     * Words stored by earlier versions are kept as hex encoded hashes in the words DB; the first eight bytes of those
+     * hashes are the same fingerprints used by the segments, so existing history is carried over instead of dropped.
+     */
+    private void migrateLegacyWords( )
+            throws LocalDBException
+    {
+        final long legacySize = localDB.size( WORDS_DB );
+        if ( legacySize < 1 )
+        {
+            return;
+        }
+
+        final Instant startTime = Instant.now();
+        final long oldestAllowed = System.currentTimeMillis() - settings.maxAgeMs;
+        int migrateCount = 0;
+
+        try ( LocalDB.LocalDBIterator<String> keyIterator = localDB.iterator( WORDS_DB ) )
+        {
+            while ( keyIterator.hasNext() )
+            {
+                final String key = keyIterator.next();
+                final String value = localDB.get( WORDS_DB, key );
+                try
+                {
+                    final long timeStamp = Long.parseLong( value );
+                    if ( timeStamp > oldestAllowed && key.length() >= 16 )
+                    {
+                        final long fingerprint = Long.parseUnsignedLong( key.substring( 0, 16 ), 16 );
+                        segmentFor( timeStamp ).add( fingerprint );
+                        migrateCount++;
+                    }
+                }
+                catch ( NumberFormatException | IOException e )
+                {
+                    LOGGER.debug( () -> "skipping unreadable shared history record during migration: " + e.getMessage() );
+                }
+            }
+        }
+
+        localDB.truncate( WORDS_DB );
+        localDB.remove( META_DB, KEY_OLDEST_ENTRY );
+
+        final int finalMigrateCount = migrateCount;
+        LOGGER.info( () -> "migrated " + finalMigrateCount + " of " + legacySize + " stored words to time segmented storage ("
+                + TimeDuration.compactFromCurrent( startTime ) + ")" );
+    }
+
     private String normalizeWord( final String input )
     {
         if ( input == null )
@@ -274,7 +352,7 @@ public class SharedHistoryManager implements PwmService
         return word.length() > 0 ? word : null;
     }
 
-    public synchronized void addWord(
+    public void addWord(
             final SessionLabel sessionLabel,
             final String word
     )
@@ -295,12 +373,10 @@ public class SharedHistoryManager implements PwmService
 
         try
         {
-            final String hashedWord = hashWord( addWord );
-
-            final boolean preExisting = localDB.contains( WORDS_DB, hashedWord );
-            localDB.put( WORDS_DB, hashedWord, Long.toString( System.currentTimeMillis() ) );
+            final long fingerprint = fingerprintWord( addWord );
+            final boolean added = segmentFor( System.currentTimeMillis() ).add( fingerprint );
 
-            LOGGER.trace( () -> ( preExisting ? "updated" : "added" ) + " word"
+            LOGGER.trace( () -> ( added ? "added" : "updated" ) + " word"
                     + " (" + TimeDuration.compactFromCurrent( startTime ) + ")"
                     + " (" + this.size() + " total words)" );
         }
@@ -310,7 +386,41 @@ public class SharedHistoryManager implements PwmService
         }
     }
 
-    private String hashWord( final String word ) throws NoSuchAlgorithmException
+    private SharedHistorySegment segmentFor( final long timestamp )
+            throws IOException
+    {
+        final SharedHistorySegment current = this.currentSegment;
+        if ( current != null && timestamp >= current.getStartTime() && timestamp < current.getEndTime() )
+        {
+            return current;
+        }
+        return openSegment( timestamp );
+    }
+
+    private synchronized SharedHistorySegment openSegment( final long timestamp )
+            throws IOException
+    {
+        final long segmentStart = timestamp - Math.floorMod( timestamp, settings.segmentDurationMs );
+        SharedHistorySegment segment = segments.get( segmentStart );
+        if ( segment == null )
+        {
+            final long segmentEnd = segmentStart + settings.segmentDurationMs;
+            final File file = segmentDirectory == null
+                    ? null
+                    : new File( segmentDirectory, segmentStart + "-" + segmentEnd + SEGMENT_SUFFIX );
+            segment = SharedHistorySegment.create( segmentStart, segmentEnd, file );
+            segments.put( segmentStart, segment );
+        }
+
+        final long now = System.currentTimeMillis();
+        if ( now >= segment.getStartTime() && now < segment.getEndTime() )
+        {
+            currentSegment = segment;
+        }
+        return segment;
+    }
+
+    private long fingerprintWord( final String word ) throws NoSuchAlgorithmException
     {
         final MessageDigest md = MessageDigest.getInstance( settings.hashName );
         final String wordWithSalt = salt + word;
@@ -322,110 +432,97 @@ public class SharedHistoryManager implements PwmService
             hashedAnswer = md.digest( hashedAnswer );
         }
 
-        return JavaHelper.binaryArrayToHex( hashedAnswer );
+        long fingerprint = 0;
+        for ( int i = 0; i < 8 && i < hashedAnswer.length; i++ )
+        {
+            fingerprint = ( fingerprint << 8 ) | ( hashedAnswer[i] & 0xFF );
+        }
+        return fingerprint;
     }
 
-    private class CleanerTask extends TimerTask
+    private void clearSegmentFiles( )
     {
-        private CleanerTask( )
+        currentSegment = null;
+        for ( final SharedHistorySegment segment : segments.values() )
         {
+            closeSegment( segment );
         }
+        segments.clear();
 
-        public void run( )
+        if ( segmentDirectory != null && segmentDirectory.exists() )
         {
             try
             {
-                reduceWordDB();
+                FileSystemUtility.deleteDirectoryContents( segmentDirectory );
             }
-            catch ( LocalDBException e )
+            catch ( IOException e )
             {
-                LOGGER.error( "error during old record purge: " + e.getMessage() );
+                LOGGER.error( "error clearing shared history segment directory: " + e.getMessage() );
             }
         }
+    }
 
+    private static void closeSegment( final SharedHistorySegment segment )
+    {
+        try
+        {
+            segment.close();
+        }
+        catch ( IOException e )
+        {
+            LOGGER.warn( "error closing shared history segment: " + e.getMessage() );
+        }
+    }
 
-        private void reduceWordDB( )
-                throws LocalDBException
+    private static void deleteSegmentFile( final File file )
+    {
+        if ( file != null && file.exists() && !file.delete() )
         {
+            LOGGER.warn( "unable to delete shared history segment file " + file.getAbsolutePath() );
+        }
+    }
 
-            if ( localDB == null || localDB.status() != LocalDB.Status.OPEN )
-            {
-                return;
-            }
+    private class CleanerTask extends TimerTask
+    {
+        private CleanerTask( )
+        {
+        }
+
+        public void run( )
+        {
+            reduceWordDB();
+        }
 
-            final long oldestEntryAge = System.currentTimeMillis() - oldestEntry;
-            if ( oldestEntryAge < settings.maxAgeMs )
+        private void reduceWordDB( )
+        {
+            if ( status != STATUS.OPEN )
             {
-                LOGGER.debug( () -> "skipping wordDB reduce operation, eldestEntry="
-                        + TimeDuration.asCompactString( oldestEntryAge )
-                        + ", maxAge="
-                        + TimeDuration.asCompactString( settings.maxAgeMs ) );
                 return;
             }
 
             final Instant startTime = Instant.now();
-            final long initialSize = size();
+            final long oldestAllowed = System.currentTimeMillis() - settings.maxAgeMs;
             int removeCount = 0;
-            long localOldestEntry = System.currentTimeMillis();
-
-            LOGGER.debug( () -> "beginning wordDB reduce operation, examining " + initialSize
-                    + " words for entries older than " + TimeDuration.asCompactString( settings.maxAgeMs ) );
+            int removeSegmentCount = 0;
 
-            LocalDB.LocalDBIterator<String> keyIterator = null;
-            try
+            for ( final SharedHistorySegment segment : segments.values() )
             {
-                keyIterator = localDB.iterator( WORDS_DB );
-                while ( status == STATUS.OPEN && keyIterator.hasNext() )
+                if ( segment.getEndTime() <= oldestAllowed && segments.remove( segment.getStartTime(), segment ) )
                 {
-                    final String key = keyIterator.next();
-                    final String value = localDB.get( WORDS_DB, key );
-                    final long timeStamp = Long.parseLong( value );
-                    final long entryAge = System.currentTimeMillis() - timeStamp;
-
-                    if ( entryAge > settings.maxAgeMs )
-                    {
-                        localDB.remove( WORDS_DB, key );
-                        removeCount++;
-
-                        if ( removeCount % 1000 == 0 )
-                        {
-                            final int finalRemove = removeCount;
-                            LOGGER.trace( () -> "wordDB reduce operation in progress, removed=" + finalRemove + ", total=" + ( initialSize - finalRemove ) );
-                        }
-                    }
-                    else
-                    {
-                        localOldestEntry = timeStamp < localOldestEntry ? timeStamp : localOldestEntry;
-                    }
+                    closeSegment( segment );
+                    deleteSegmentFile( segment.getFile() );
+                    removeCount += segment.size();
+                    removeSegmentCount++;
                 }
             }
-            finally
-            {
-                try
-                {
-                    if ( keyIterator != null )
-                    {
-                        keyIterator.close();
-                    }
-                }
-                catch ( Exception e )
-                {
-                    LOGGER.warn( "error returning LocalDB iterator: " + e.getMessage() );
-                }
-            }
-
-            //update the oldest entry
-            if ( status == STATUS.OPEN )
-            {
-                oldestEntry = localOldestEntry;
-                localDB.put( META_DB, KEY_OLDEST_ENTRY, Long.toString( oldestEntry ) );
-            }
 
             {
                 final int finalRemove = removeCount;
+                final int finalRemoveSegments = removeSegmentCount;
                 LOGGER.debug( () -> "completed wordDB reduce operation" + ", removed=" + finalRemove
+                        + " in " + finalRemoveSegments + " segments"
                         + ", totalRemaining=" + size()
-                        + ", oldestEntry=" + TimeDuration.asCompactString( oldestEntry )
+                        + ", oldestEntry=" + getOldestEntryTime()
                         + " in " + TimeDuration.compactFromCurrent( startTime ) );
             }
         }
@@ -446,6 +543,10 @@ public class SharedHistoryManager implements PwmService
         settings.hashIterations = Integer.parseInt( pwmApplication.getConfig().readAppProperty( AppProperty.SECURITY_SHAREDHISTORY_HASH_ITERATIONS ) );
         settings.version = "2" + "_" + settings.hashName + "_" + settings.hashIterations + "_" + settings.caseInsensitive;
 
+        // keep segments small relative to the max age so expiry stays reasonably precise for short retention periods
+        final long configuredSegmentMs = 1000 * Long.parseLong( pwmApplication.getConfig().readAppProperty( AppProperty.SECURITY_SHAREDHISTORY_SEGMENT_SECONDS ) );
+        settings.segmentDurationMs = Math.max( MIN_SEGMENT_DURATION, Math.min( configuredSegmentMs, settings.maxAgeMs / 8 ) );
+
         final int saltLength = Integer.parseInt( pwmApplication.getConfig().readAppProperty( AppProperty.SECURITY_SHAREDHISTORY_SALT_LENGTH ) );
         this.localDB = pwmApplication.getLocalDB();
 
@@ -457,6 +558,8 @@ public class SharedHistoryManager implements PwmService
             return;
         }
 
+        this.segmentDirectory = initSegmentDirectory( localDB );
+
         if ( settings.maxAgeMs < 1 )
         {
             LOGGER.debug( () -> "max age=" + settings.maxAgeMs + ", will remain closed" );
@@ -480,6 +583,7 @@ public class SharedHistoryManager implements PwmService
             try
             {
                 localDB.truncate( WORDS_DB );
+                clearSegmentFiles();
             }
             catch ( Exception e )
             {
@@ -497,12 +601,31 @@ public class SharedHistoryManager implements PwmService
         }, PwmScheduler.makeThreadName( pwmApplication, this.getClass() ) + " initializer" ).start();
     }
 
+    private static File initSegmentDirectory( final LocalDB localDB )
+    {
+        final File localDBLocation = localDB.getFileLocation();
+        if ( localDBLocation == null )
+        {
+            LOGGER.debug( () -> "LocalDB has no file location, shared history will be held in memory only" );
+            return null;
+        }
+
+        final File directory = new File( localDBLocation, WORDS_DB.toString().toLowerCase() );
+        if ( !directory.exists() && !directory.mkdirs() )
+        {
+            LOGGER.warn( "unable to create shared history directory " + directory.getAbsolutePath() + ", shared history will be held in memory only" );
+            return null;
+        }
+        return directory;
+    }
+
     private static class Settings
     {
         private String version;
         private String hashName;
         private int hashIterations;
         private long maxAgeMs;
+        private long segmentDurationMs;
         private boolean caseInsensitive;
     }
 
@@ -0,0 +1,328 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package password.pwm.svc.wordlist;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * One time bucket of the shared password history.  Holds the 64-bit salted fingerprints of every word added during
+ * the bucket in a compact open-addressed hash set, so expiring old history is a matter of dropping whole segments.
+ *
+ * <p>Adds use compare-and-set on the slot array and lookups take no locks; only growing the set, which happens
+ * a logarithmic number of times over the life of a segment, is serialized.  When a file is supplied each new
+ * fingerprint is appended to it so the segment can be reloaded on restart.</p>
+ */
+class SharedHistorySegment implements Closeable
+{
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final long startTime;
+    private final long endTime;
+    private final File file;
+    private final FileChannel channel;
+    private final AtomicInteger size = new AtomicInteger();
+
+    private volatile Table[] tables;
+
+    private SharedHistorySegment(
+            final long startTime,
+            final long endTime,
+            final File file,
+            final FileChannel channel,
+            final int initialCapacity
+    )
+    {
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.file = file;
+        this.channel = channel;
+        this.tables = new Table[] {
+                new Table( initialCapacity ),
+        };
+    }
+
+    static SharedHistorySegment create( final long startTime, final long endTime, final File file )
+            throws IOException
+    {
+        final FileChannel channel = file == null
+                ? null
+                : FileChannel.open( file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND );
+        return new SharedHistorySegment( startTime, endTime, file, channel, INITIAL_CAPACITY );
+    }
+
+    /**
+     * Read a segment previously written by {@link #add(long)}.  A partially written trailing fingerprint, left behind
+     * by an unclean shutdown, is ignored.
+     */
+    static SharedHistorySegment load( final long startTime, final long endTime, final File file )
+            throws IOException
+    {
+        final FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE );
+        final long completeLength = ( channel.size() / 8 ) * 8;
+        final int storedCount = (int) Math.min( Integer.MAX_VALUE, completeLength / 8 );
+        final SharedHistorySegment segment = new SharedHistorySegment( startTime, endTime, file, channel, capacityFor( storedCount ) );
+
+        final ByteBuffer buffer = ByteBuffer.allocate( 8 * 1024 );
+        long position = 0;
+        while ( position < completeLength )
+        {
+            buffer.clear();
+            buffer.limit( (int) Math.min( buffer.capacity(), completeLength - position ) );
+            while ( buffer.hasRemaining() )
+            {
+                if ( channel.read( buffer, position + buffer.position() ) < 0 )
+                {
+                    throw new IOException( "unexpected end of shared history segment " + file.getName() );
+                }
+            }
+            position += buffer.limit();
+            buffer.flip();
+            while ( buffer.remaining() >= 8 )
+            {
+                segment.insert( buffer.getLong() );
+            }
+        }
+
+        channel.truncate( completeLength );
+        channel.position( completeLength );
+        return segment;
+    }
+
+    /**
+     * @return epoch millisecond of the start of the time bucket, inclusive.
+     */
+    long getStartTime()
+    {
+        return startTime;
+    }
+
+    /**
+     * @return epoch millisecond of the end of the time bucket, exclusive.
+     */
+    long getEndTime()
+    {
+        return endTime;
+    }
+
+    File getFile()
+    {
+        return file;
+    }
+
+    int size()
+    {
+        return size.get();
+    }
+
+    boolean contains( final long fingerprint )
+    {
+        final long value = nonZero( fingerprint );
+        for ( final Table table : tables )
+        {
+            if ( table.contains( value ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the fingerprint was not already present in this segment.
+     */
+    boolean add( final long fingerprint ) throws IOException
+    {
+        final long value = nonZero( fingerprint );
+        if ( !insert( value ) )
+        {
+            return false;
+        }
+
+        if ( channel != null )
+        {
+            final ByteBuffer buffer = ByteBuffer.allocate( 8 );
+            buffer.putLong( 0, value );
+            while ( buffer.hasRemaining() )
+            {
+                channel.write( buffer );
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if ( channel != null )
+        {
+            channel.close();
+        }
+    }
+
+    private boolean insert( final long value )
+    {
+        while ( true )
+        {
+            final Table[] currentTables = this.tables;
+            for ( final Table table : currentTables )
+            {
+                if ( table.contains( value ) )
+                {
+                    return false;
+                }
+            }
+
+            final Table newest = currentTables[currentTables.length - 1];
+            final Table.Result result = newest.add( value );
+            if ( result == Table.Result.ADDED )
+            {
+                size.incrementAndGet();
+                return true;
+            }
+            if ( result == Table.Result.EXISTS )
+            {
+                return false;
+            }
+            grow( currentTables );
+        }
+    }
+
+    private synchronized void grow( final Table[] expectedTables )
+    {
+        if ( this.tables != expectedTables )
+        {
+            return;
+        }
+
+        final Table[] newTables = new Table[expectedTables.length + 1];
+        System.arraycopy( expectedTables, 0, newTables, 0, expectedTables.length );
+        newTables[expectedTables.length] = new Table( expectedTables[expectedTables.length - 1].capacity() * 2 );
+        this.tables = newTables;
+    }
+
+    private static long nonZero( final long fingerprint )
+    {
+        // zero marks an empty slot
+        return fingerprint == 0 ? 1 : fingerprint;
+    }
+
+    private static int capacityFor( final int count )
+    {
+        int capacity = INITIAL_CAPACITY;
+        while ( capacity < ( 1 << 30 ) && capacity / 2 <= count )
+        {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static class Table
+    {
+        enum Result
+        {
+            ADDED,
+            EXISTS,
+            FULL,
+        }
+
+        private final AtomicLongArray slots;
+        private final AtomicInteger count = new AtomicInteger();
+        private final int mask;
+        private final int maxCount;
+
+        Table( final int capacity )
+        {
+            this.slots = new AtomicLongArray( capacity );
+            this.mask = capacity - 1;
+            this.maxCount = capacity / 2;
+        }
+
+        int capacity()
+        {
+            return mask + 1;
+        }
+
+        boolean contains( final long value )
+        {
+            int index = slotFor( value );
+            while ( true )
+            {
+                final long slotValue = slots.get( index );
+                if ( slotValue == value )
+                {
+                    return true;
+                }
+                if ( slotValue == 0 )
+                {
+                    return false;
+                }
+                index = ( index + 1 ) & mask;
+            }
+        }
+
+        Result add( final long value )
+        {
+            int index = slotFor( value );
+            while ( true )
+            {
+                final long slotValue = slots.get( index );
+                if ( slotValue == value )
+                {
+                    return Result.EXISTS;
+                }
+                if ( slotValue == 0 )
+                {
+                    if ( count.get() >= maxCount )
+                    {
+                        return Result.FULL;
+                    }
+                    if ( slots.compareAndSet( index, 0, value ) )
+                    {
+                        count.incrementAndGet();
+                        return Result.ADDED;
+                    }
+
+                    // lost the race for this slot, re-examine it before probing further
+                    continue;
+                }
+                index = ( index + 1 ) & mask;
+            }
+        }
+
+        private int slotFor( final long value )
+        {
+            long hash = value;
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            return (int) hash & mask;
+        }
+    }
+}
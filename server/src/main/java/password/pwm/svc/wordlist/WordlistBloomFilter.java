@@ -0,0 +1,246 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package password.pwm.svc.wordlist;
+
+import lombok.Value;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Off-heap bloom filter used as a front for wordlist lookups.  A negative answer from {@link #mightContain(CharSequence, int, int)}
+ * is authoritative, a positive answer must be confirmed against the backing store.
+ *
+ * <p>Instances are populated by a single thread and then published; once published the filter is never modified
+ * and is safe for concurrent readers.  The bit array lives in a direct (or memory-mapped) buffer so large wordlists
+ * do not add to heap pressure.</p>
+ */
+class WordlistBloomFilter
+{
+    // "PWBF"
+    private static final int MAGIC = 0x50574246;
+    private static final int FILE_VERSION = 1;
+    private static final int HEADER_LENGTH = 4 + 4 + 8 + 8 + 8 + 4;
+
+    private static final long MAX_BIT_COUNT = ( (long) Integer.MAX_VALUE / 8 ) * 64;
+    private static final long MIN_BIT_COUNT = 64;
+
+    private final ByteBuffer bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final Stamp stamp;
+
+    private WordlistBloomFilter( final ByteBuffer bits, final long bitCount, final int hashCount, final Stamp stamp )
+    {
+        this.bits = bits;
+        this.bitCount = bitCount;
+        this.hashCount = hashCount;
+        this.stamp = stamp;
+    }
+
+    static WordlistBloomFilter create( final long expectedWords, final int bitsPerWord, final Stamp stamp )
+    {
+        final long requestedBits = Math.max( MIN_BIT_COUNT, expectedWords * Math.max( 1, bitsPerWord ) );
+        final long bitCount = roundToLong( Math.min( requestedBits, MAX_BIT_COUNT ) );
+        final int hashCount = Math.max( 1, (int) Math.round( ( (double) bitCount / Math.max( 1, expectedWords ) ) * Math.log( 2 ) ) );
+        final ByteBuffer buffer = ByteBuffer.allocateDirect( (int) ( bitCount / 8 ) ).order( ByteOrder.LITTLE_ENDIAN );
+        return new WordlistBloomFilter( buffer, bitCount, Math.min( hashCount, 16 ), stamp );
+    }
+
+    /**
+     * Map a previously written filter file read-only.  Returns null if the file is missing, unreadable or was
+     * written for a different wordlist generation than {@code expectedStamp}.
+     */
+    static WordlistBloomFilter load( final File file, final Stamp expectedStamp ) throws IOException
+    {
+        if ( file == null || !file.exists() )
+        {
+            return null;
+        }
+
+        try ( RandomAccessFile randomAccessFile = new RandomAccessFile( file, "r" ) )
+        {
+            final FileChannel channel = randomAccessFile.getChannel();
+            if ( channel.size() < HEADER_LENGTH )
+            {
+                return null;
+            }
+
+            final ByteBuffer header = ByteBuffer.allocate( HEADER_LENGTH ).order( ByteOrder.LITTLE_ENDIAN );
+            channel.read( header, 0 );
+            header.flip();
+
+            if ( header.getInt() != MAGIC || header.getInt() != FILE_VERSION )
+            {
+                return null;
+            }
+
+            final Stamp fileStamp = new Stamp( header.getLong(), header.getLong() );
+            final long bitCount = header.getLong();
+            final int hashCount = header.getInt();
+
+            if ( !fileStamp.equals( expectedStamp )
+                    || bitCount < MIN_BIT_COUNT
+                    || bitCount > MAX_BIT_COUNT
+                    || channel.size() != HEADER_LENGTH + bitCount / 8 )
+            {
+                return null;
+            }
+
+            final ByteBuffer mapped = channel.map( FileChannel.MapMode.READ_ONLY, HEADER_LENGTH, bitCount / 8 ).order( ByteOrder.LITTLE_ENDIAN );
+            return new WordlistBloomFilter( mapped, bitCount, hashCount, fileStamp );
+        }
+    }
+
+    void write( final File file ) throws IOException
+    {
+        final File tempFile = new File( file.getAbsolutePath() + ".tmp" );
+        try ( RandomAccessFile randomAccessFile = new RandomAccessFile( tempFile, "rw" ) )
+        {
+            randomAccessFile.setLength( 0 );
+            final FileChannel channel = randomAccessFile.getChannel();
+
+            final ByteBuffer header = ByteBuffer.allocate( HEADER_LENGTH ).order( ByteOrder.LITTLE_ENDIAN );
+            header.putInt( MAGIC );
+            header.putInt( FILE_VERSION );
+            header.putLong( stamp.getStoreTime() );
+            header.putLong( stamp.getWordCount() );
+            header.putLong( bitCount );
+            header.putInt( hashCount );
+            header.flip();
+            writeFully( channel, header );
+
+            final ByteBuffer data = bits.duplicate();
+            data.clear();
+            writeFully( channel, data );
+            channel.force( true );
+        }
+
+        if ( file.exists() && !file.delete() )
+        {
+            throw new IOException( "unable to remove existing filter file " + file.getAbsolutePath() );
+        }
+        if ( !tempFile.renameTo( file ) )
+        {
+            throw new IOException( "unable to rename filter file " + tempFile.getAbsolutePath() );
+        }
+    }
+
+    void add( final CharSequence value )
+    {
+        final long hash1 = hash( value, 0, value.length() );
+        final long hash2 = mix( hash1 ^ 0x9E3779B97F4A7C15L ) | 1;
+        for ( int i = 0; i < hashCount; i++ )
+        {
+            final long bit = ( ( hash1 + i * hash2 ) & Long.MAX_VALUE ) % bitCount;
+            final int index = (int) ( bit >>> 6 ) * 8;
+            bits.putLong( index, bits.getLong( index ) | ( 1L << ( bit & 63 ) ) );
+        }
+    }
+
+    /**
+     * Test a character range of {@code value} without allocating a substring.
+     */
+    boolean mightContain( final CharSequence value, final int start, final int end )
+    {
+        final long hash1 = hash( value, start, end );
+        final long hash2 = mix( hash1 ^ 0x9E3779B97F4A7C15L ) | 1;
+        for ( int i = 0; i < hashCount; i++ )
+        {
+            final long bit = ( ( hash1 + i * hash2 ) & Long.MAX_VALUE ) % bitCount;
+            final int index = (int) ( bit >>> 6 ) * 8;
+            if ( ( bits.getLong( index ) & ( 1L << ( bit & 63 ) ) ) == 0 )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    Stamp getStamp()
+    {
+        return stamp;
+    }
+
+    long sizeInBytes()
+    {
+        return bitCount / 8;
+    }
+
+    private static long hash( final CharSequence value, final int start, final int end )
+    {
+        // FNV-1a over the UTF-16 code units, finished with a murmur3 mix for better bit dispersion
+        long hash = 0xcbf29ce484222325L;
+        for ( int i = start; i < end; i++ )
+        {
+            hash ^= value.charAt( i );
+            hash *= 0x100000001b3L;
+        }
+        return mix( hash );
+    }
+
+    private static long mix( final long input )
+    {
+        long value = input;
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private static long roundToLong( final long bitCount )
+    {
+        return ( ( bitCount + 63 ) / 64 ) * 64;
+    }
+
+    private static void writeFully( final FileChannel channel, final ByteBuffer buffer ) throws IOException
+    {
+        while ( buffer.hasRemaining() )
+        {
+            channel.write( buffer );
+        }
+    }
+
+    /**
+     * Identifies the wordlist generation a filter was built from, so a stale file left over from a previous
+     * import is never used.
+     */
+    @Value
+    static class Stamp
+    {
+        private final long storeTime;
+        private final long wordCount;
+
+        static Stamp forStatus( final WordlistStatus wordlistStatus )
+        {
+            final long storeTime = wordlistStatus.getStoreDate() == null ? 0 : wordlistStatus.getStoreDate().toEpochMilli();
+            return new Stamp( storeTime, wordlistStatus.getValueCount() );
+        }
+    }
+}
@@ -22,9 +22,12 @@
 
 package password.pwm.svc.wordlist;
 
+import lombok.Value;
 import password.pwm.PwmApplication;
+import password.pwm.error.ErrorInformation;
 import password.pwm.error.PwmError;
 import password.pwm.error.PwmUnrecoverableException;
+import password.pwm.util.java.AhoCorasickMatcher;
 import password.pwm.util.java.JavaHelper;
 import password.pwm.util.java.StringUtil;
 import password.pwm.util.java.TimeDuration;
@@ -32,6 +35,8 @@ import password.pwm.util.localdb.LocalDB;
 import password.pwm.util.localdb.LocalDBException;
 import password.pwm.util.logging.PwmLogger;
 
+import java.io.File;
+import java.io.IOException;
 import java.time.Instant;
 import java.util.Collection;
 import java.util.Collections;
@@ -39,6 +44,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.function.BooleanSupplier;
 
 class WordlistBucket
 {
@@ -49,6 +55,10 @@ class WordlistBucket
     private final LocalDB.DB db;
     private final WordlistType type;
 
+    private final MappedWordlistStore mappedStore;
+
+    private volatile WordlistBloomFilter bloomFilter;
+    private volatile WordlistMatcher matcher;
 
     WordlistBucket(
             final PwmApplication pwmApplication,
@@ -61,6 +71,43 @@ class WordlistBucket
         this.wordlistConfiguration = wordlistConfiguration;
         this.db = wordlistConfiguration.getDb();
         this.type = type;
+        this.mappedStore = initMappedStore( pwmApplication, wordlistConfiguration, db );
+    }
+
+    private static MappedWordlistStore initMappedStore(
+            final PwmApplication pwmApplication,
+            final WordlistConfiguration wordlistConfiguration,
+            final LocalDB.DB db
+    )
+            throws LocalDBException
+    {
+        if ( wordlistConfiguration.getStorageEngine() != WordlistStorageEngine.MappedFile )
+        {
+            return null;
+        }
+
+        final File localDBLocation = pwmApplication.getLocalDB().getFileLocation();
+        if ( localDBLocation == null )
+        {
+            LOGGER.warn( "LocalDB has no file location, mapped file wordlist storage is not available; will use LocalDB storage" );
+            return null;
+        }
+
+        final MappedWordlistStore mappedWordlistStore = new MappedWordlistStore( new File( localDBLocation, db.toString().toLowerCase() ) );
+        try
+        {
+            mappedWordlistStore.open();
+        }
+        catch ( IOException e )
+        {
+            throw wrapIOException( "error opening mapped wordlist store", e );
+        }
+        return mappedWordlistStore;
+    }
+
+    WordlistStorageEngine getStorageEngine()
+    {
+        return mappedStore == null ? WordlistStorageEngine.LocalDB : WordlistStorageEngine.MappedFile;
     }
 
     boolean containsWord( final String word ) throws LocalDBException
@@ -77,6 +124,23 @@ class WordlistBucket
             return false;
         }
 
+        final WordlistMatcher currentMatcher = this.matcher;
+        if ( currentMatcher != null )
+        {
+            return currentMatcher.getAhoCorasickMatcher().matches( testWord, minimumMatchLength( testWord ) );
+        }
+
+        if ( mappedStore != null )
+        {
+            return mappedContainsWord( testWord );
+        }
+
+        final WordlistBloomFilter filter = this.bloomFilter;
+        if ( filter != null )
+        {
+            return filteredContainsWord( filter, testWord );
+        }
+
         final Set<String> testWords = chunkWord( testWord, this.wordlistConfiguration.getCheckSize() );
 
         final Instant startTime = Instant.now();
@@ -112,6 +176,11 @@ class WordlistBucket
         try
         {
             final long seedCount = size();
+            if ( seedCount > 1000 && mappedStore != null )
+            {
+                final long randomIndex = pwmApplication.getSecureService().pwmRandom().nextLong( seedCount );
+                return mappedStore.wordAt( randomIndex );
+            }
             if ( seedCount > 1000 )
             {
                 final long randomKey = pwmApplication.getSecureService().pwmRandom().nextLong( seedCount );
@@ -131,7 +200,22 @@ class WordlistBucket
     {
         final WordlistStatus initialStatus = abstractWordlist.readWordlistStatus();
         final MutableLongIncrementer valueIncrementer = new MutableLongIncrementer( initialStatus.getValueCount() );
-        pwmApplication.getLocalDB().putAll( db, getWriteTxnForValue( words, valueIncrementer ) );
+        final Map<String, String> writeTxn = getWriteTxnForValue( words, valueIncrementer );
+        if ( mappedStore != null )
+        {
+            try
+            {
+                mappedStore.addWords( type == WordlistType.SEEDLIST ? writeTxn.values() : writeTxn.keySet() );
+            }
+            catch ( IOException e )
+            {
+                throw wrapIOException( "error writing mapped wordlist import run", e );
+            }
+        }
+        else
+        {
+            pwmApplication.getLocalDB().putAll( db, writeTxn );
+        }
         if ( initialStatus.getValueCount() != valueIncrementer.get() )
         {
             final WordlistStatus incrementedStatus = initialStatus.toBuilder().valueCount( valueIncrementer.get() ).build();
@@ -141,15 +225,274 @@ class WordlistBucket
 
     long size() throws LocalDBException
     {
+        if ( mappedStore != null )
+        {
+            return mappedStore.size();
+        }
         return pwmApplication.getLocalDB().size( db );
     }
 
+    /**
+     * Called once all words of an import have been added.  The LocalDB engine has nothing left to do, the mapped
+     * engine merges the import runs into its segment files.
+     */
+    void completeImport( final BooleanSupplier cancelFlag ) throws LocalDBException
+    {
+        if ( mappedStore != null )
+        {
+            try
+            {
+                mappedStore.completeImport( cancelFlag );
+            }
+            catch ( IOException e )
+            {
+                throw wrapIOException( "error merging mapped wordlist segments", e );
+            }
+        }
+    }
+
 
     void clear() throws LocalDBException
     {
+        discardLookupIndexes();
+        if ( mappedStore != null )
+        {
+            try
+            {
+                mappedStore.clear();
+            }
+            catch ( IOException e )
+            {
+                throw wrapIOException( "error clearing mapped wordlist store", e );
+            }
+        }
         pwmApplication.getLocalDB().truncate( db );
     }
 
+    /**
+     * Make sure the in-memory lookup structures match the (completed) wordlist.  Lists of up to
+     * {@link WordlistConfiguration#getMatcherMaxWords()} words are compiled into an Aho-Corasick automaton that
+     * answers every check in a single scan of the password; larger lists get a bloom filter front, either mapped from
+     * the previously persisted filter file or rebuilt from the stored words.
+     */
+    void prepareLookupIndexes( final WordlistStatus wordlistStatus, final BooleanSupplier cancelFlag )
+            throws LocalDBException
+    {
+        if ( type != WordlistType.WORDLIST || !wordlistStatus.isCompleted() )
+        {
+            return;
+        }
+
+        if ( size() <= wordlistConfiguration.getMatcherMaxWords() )
+        {
+            buildMatcher( wordlistStatus, cancelFlag );
+            return;
+        }
+
+        this.matcher = null;
+        checkBloomFilter( wordlistStatus, cancelFlag );
+    }
+
+    void discardLookupIndexes()
+    {
+        this.matcher = null;
+        discardBloomFilter();
+    }
+
+    private void buildMatcher( final WordlistStatus wordlistStatus, final BooleanSupplier cancelFlag )
+            throws LocalDBException
+    {
+        final WordlistBloomFilter.Stamp stamp = WordlistBloomFilter.Stamp.forStatus( wordlistStatus );
+        final WordlistMatcher existingMatcher = this.matcher;
+        if ( existingMatcher != null && existingMatcher.getStamp().equals( stamp ) )
+        {
+            return;
+        }
+
+        final Instant startTime = Instant.now();
+        final AhoCorasickMatcher.Builder builder = AhoCorasickMatcher.builder();
+        if ( mappedStore != null )
+        {
+            final long wordCount = mappedStore.size();
+            for ( long i = 0; i < wordCount; i++ )
+            {
+                if ( cancelFlag.getAsBoolean() )
+                {
+                    return;
+                }
+                builder.add( mappedStore.wordAt( i ) );
+            }
+        }
+        else
+        {
+            try ( LocalDB.LocalDBIterator<String> iterator = pwmApplication.getLocalDB().iterator( db ) )
+            {
+                while ( iterator.hasNext() )
+                {
+                    if ( cancelFlag.getAsBoolean() )
+                    {
+                        return;
+                    }
+                    builder.add( iterator.next() );
+                }
+            }
+        }
+
+        final AhoCorasickMatcher ahoCorasickMatcher = builder.build();
+        this.matcher = new WordlistMatcher( ahoCorasickMatcher, stamp );
+        discardBloomFilter();
+
+        LOGGER.debug( () -> "compiled wordlist matcher for " + ahoCorasickMatcher.patternCount() + " words with "
+                + ahoCorasickMatcher.nodeCount() + " nodes (" + TimeDuration.compactFromCurrent( startTime ) + ")" );
+    }
+
+    private int minimumMatchLength( final String input )
+    {
+        final int size = this.wordlistConfiguration.getCheckSize();
+        return size == 0 || size > input.length() ? input.length() : size;
+    }
+
+    private void checkBloomFilter( final WordlistStatus wordlistStatus, final BooleanSupplier cancelFlag )
+            throws LocalDBException
+    {
+        if ( !isBloomFilterEnabled() )
+        {
+            return;
+        }
+
+        final WordlistBloomFilter.Stamp stamp = WordlistBloomFilter.Stamp.forStatus( wordlistStatus );
+        final WordlistBloomFilter existingFilter = this.bloomFilter;
+        if ( existingFilter != null && existingFilter.getStamp().equals( stamp ) )
+        {
+            return;
+        }
+
+        final File filterFile = bloomFilterFile();
+        try
+        {
+            final WordlistBloomFilter loadedFilter = WordlistBloomFilter.load( filterFile, stamp );
+            if ( loadedFilter != null )
+            {
+                this.bloomFilter = loadedFilter;
+                LOGGER.debug( () -> "loaded wordlist bloom filter from " + filterFile.getAbsolutePath()
+                        + " (" + StringUtil.formatDiskSizeforDebug( loadedFilter.sizeInBytes() ) + ")" );
+                return;
+            }
+        }
+        catch ( IOException e )
+        {
+            LOGGER.warn( "error reading wordlist bloom filter file, will rebuild: " + e.getMessage() );
+        }
+
+        buildBloomFilter( wordlistStatus, cancelFlag );
+    }
+
+    private void buildBloomFilter( final WordlistStatus wordlistStatus, final BooleanSupplier cancelFlag )
+            throws LocalDBException
+    {
+        if ( !isBloomFilterEnabled() )
+        {
+            return;
+        }
+
+        final Instant startTime = Instant.now();
+        final long wordCount = size();
+        final WordlistBloomFilter newFilter = WordlistBloomFilter.create(
+                wordCount,
+                wordlistConfiguration.getBloomFilterBitsPerWord(),
+                WordlistBloomFilter.Stamp.forStatus( wordlistStatus ) );
+
+        LOGGER.trace( () -> "beginning wordlist bloom filter build for " + wordCount + " words" );
+
+        try ( LocalDB.LocalDBIterator<String> iterator = pwmApplication.getLocalDB().iterator( db ) )
+        {
+            while ( iterator.hasNext() )
+            {
+                if ( cancelFlag.getAsBoolean() )
+                {
+                    LOGGER.debug( () -> "cancelling wordlist bloom filter build" );
+                    return;
+                }
+                newFilter.add( iterator.next() );
+            }
+        }
+
+        this.bloomFilter = newFilter;
+
+        final File filterFile = bloomFilterFile();
+        if ( filterFile != null )
+        {
+            try
+            {
+                newFilter.write( filterFile );
+            }
+            catch ( IOException e )
+            {
+                LOGGER.warn( "unable to persist wordlist bloom filter to " + filterFile.getAbsolutePath() + ", error: " + e.getMessage() );
+            }
+        }
+
+        LOGGER.debug( () -> "completed wordlist bloom filter build for " + wordCount + " words, size "
+                + StringUtil.formatDiskSizeforDebug( newFilter.sizeInBytes() )
+                + " (" + TimeDuration.compactFromCurrent( startTime ) + ")" );
+    }
+
+    private void discardBloomFilter()
+    {
+        if ( !isBloomFilterEnabled() )
+        {
+            return;
+        }
+
+        this.bloomFilter = null;
+
+        final File filterFile = bloomFilterFile();
+        if ( filterFile != null && filterFile.exists() && !filterFile.delete() )
+        {
+            LOGGER.debug( () -> "unable to delete wordlist bloom filter file " + filterFile.getAbsolutePath() );
+        }
+    }
+
+    private boolean isBloomFilterEnabled()
+    {
+        // the mapped engine is already an in-memory lookup, a filter in front of it would only add cost
+        return type == WordlistType.WORDLIST && mappedStore == null && wordlistConfiguration.getBloomFilterBitsPerWord() > 0;
+    }
+
+    private File bloomFilterFile()
+    {
+        final File localDBLocation = pwmApplication.getLocalDB().getFileLocation();
+        return localDBLocation == null
+                ? null
+                : new File( localDBLocation, db.toString().toLowerCase() + ".bloom" );
+    }
+
+    /**
+     * Equivalent to checking every entry of {@link #chunkWord(String, int)} against the store, but only substrings
+     * the bloom filter can't rule out are read from LocalDB, and no substrings are allocated for the rest.
+     */
+    private boolean filteredContainsWord( final WordlistBloomFilter filter, final String input )
+            throws LocalDBException
+    {
+        final int size = this.wordlistConfiguration.getCheckSize();
+        final LocalDB localDB = pwmApplication.getLocalDB();
+
+        int checkSize = size == 0 || size > input.length() ? input.length() : size;
+        while ( checkSize <= input.length() )
+        {
+            for ( int i = 0; i + checkSize <= input.length(); i++ )
+            {
+                if ( filter.mightContain( input, i, i + checkSize ) && localDB.contains( db, input.substring( i, i + checkSize ) ) )
+                {
+                    return true;
+                }
+            }
+            checkSize++;
+        }
+
+        return false;
+    }
+
     private Map<String, String> getWriteTxnForValue( final Collection<String> words, final MutableLongIncrementer valueIncrementer ) throws LocalDBException
     {
         switch ( type )
@@ -192,7 +535,39 @@ class WordlistBucket
         throw new IllegalStateException( "unreachable switch statement" );
     }
 
-    private String normalizeWord( final String input )
+    private boolean mappedContainsWord( final String input )
+    {
+        final int size = this.wordlistConfiguration.getCheckSize();
+
+        int checkSize = size == 0 || size > input.length() ? input.length() : size;
+        while ( checkSize <= input.length() )
+        {
+            for ( int i = 0; i + checkSize <= input.length(); i++ )
+            {
+                if ( mappedStore.contains( input, i, i + checkSize ) )
+                {
+                    return true;
+                }
+            }
+            checkSize++;
+        }
+
+        return false;
+    }
+
+    @Value
+    private static class WordlistMatcher
+    {
+        private final AhoCorasickMatcher ahoCorasickMatcher;
+        private final WordlistBloomFilter.Stamp stamp;
+    }
+
+    private static LocalDBException wrapIOException( final String message, final IOException e )
+    {
+        return new LocalDBException( new ErrorInformation( PwmError.ERROR_LOCALDB_UNAVAILABLE, message + ": " + e.getMessage() ) );
+    }
+
+    String normalizeWord( final String input )
     {
         if ( input == null )
         {
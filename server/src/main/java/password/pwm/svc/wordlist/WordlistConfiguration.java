@@ -53,6 +53,10 @@ public class WordlistConfiguration implements Serializable
     private final TimeDuration importDurationGoal;
     private final int importMinTransactions;
     private final int importMaxTransactions;
+    private final int importWorkerThreads;
+    private final int bloomFilterBitsPerWord;
+    private final long matcherMaxWords;
+    private final WordlistStorageEngine storageEngine;
 
     private final TimeDuration inspectorFrequency;
 
@@ -84,10 +88,12 @@ public class WordlistConfiguration implements Serializable
                                 TimeDuration.Unit.MILLISECONDS ) )
                         .importMinTransactions( Integer.parseInt( configuration.readAppProperty( AppProperty.WORDLIST_IMPORT_MIN_TRANSACTIONS ) ) )
                         .importMaxTransactions( Integer.parseInt( configuration.readAppProperty( AppProperty.WORDLIST_IMPORT_MAX_TRANSACTIONS ) ) )
+                        .importWorkerThreads( readImportWorkerThreads( configuration ) )
 
                         .inspectorFrequency( TimeDuration.of(
                                 Long.parseLong( configuration.readAppProperty( AppProperty.WORDLIST_INSPECTOR_FREQUENCY_SECONDS ) ),
                                 TimeDuration.Unit.SECONDS ) )
+                        .storageEngine( readStorageEngine( configuration ) )
 
                         .build();
             }
@@ -102,6 +108,8 @@ public class WordlistConfiguration implements Serializable
                         .builtInWordlistLocationProperty( AppProperty.WORDLIST_BUILTIN_PATH )
                         .db( LocalDB.DB.WORDLIST_WORDS )
                         .wordlistFilenameSetting( PwmSetting.WORDLIST_FILENAME )
+                        .bloomFilterBitsPerWord( Integer.parseInt( configuration.readAppProperty( AppProperty.WORDLIST_BLOOM_FILTER_BITS_PER_WORD ) ) )
+                        .matcherMaxWords( Long.parseLong( configuration.readAppProperty( AppProperty.WORDLIST_MATCHER_MAX_WORDS ) ) )
 
                         .minSize( Integer.parseInt( configuration.readAppProperty( AppProperty.WORDLIST_CHAR_LENGTH_MIN ) ) )
                         .maxSize( Integer.parseInt( configuration.readAppProperty( AppProperty.WORDLIST_CHAR_LENGTH_MAX ) ) )
@@ -113,10 +121,12 @@ public class WordlistConfiguration implements Serializable
                                 TimeDuration.Unit.MILLISECONDS ) )
                         .importMinTransactions( Integer.parseInt( configuration.readAppProperty( AppProperty.WORDLIST_IMPORT_MIN_TRANSACTIONS ) ) )
                         .importMaxTransactions( Integer.parseInt( configuration.readAppProperty( AppProperty.WORDLIST_IMPORT_MAX_TRANSACTIONS ) ) )
+                        .importWorkerThreads( readImportWorkerThreads( configuration ) )
 
                         .inspectorFrequency( TimeDuration.of(
                                 Long.parseLong( configuration.readAppProperty( AppProperty.WORDLIST_INSPECTOR_FREQUENCY_SECONDS ) ),
                                 TimeDuration.Unit.SECONDS ) )
+                        .storageEngine( readStorageEngine( configuration ) )
 
                         .build();
             }
@@ -129,6 +139,22 @@ public class WordlistConfiguration implements Serializable
     }
 
 
+    private static int readImportWorkerThreads( final Configuration configuration )
+    {
+        final int configuredThreads = Integer.parseInt( configuration.readAppProperty( AppProperty.WORDLIST_IMPORT_WORKER_THREADS ) );
+        return configuredThreads > 0
+                ? configuredThreads
+                : Math.max( 1, Runtime.getRuntime().availableProcessors() - 1 );
+    }
+
+    private static WordlistStorageEngine readStorageEngine( final Configuration configuration )
+    {
+        return JavaHelper.readEnumFromString(
+                WordlistStorageEngine.class,
+                WordlistStorageEngine.LocalDB,
+                configuration.readAppProperty( AppProperty.WORDLIST_STORAGE_ENGINE ) );
+    }
+
     private static String readAutoImportUrl(
             final Configuration configuration,
             final PwmSetting wordlistFileSetting
@@ -22,12 +22,15 @@
 
 package password.pwm.svc.wordlist;
 
+import lombok.Value;
 import org.apache.commons.io.IOUtils;
 import password.pwm.error.ErrorInformation;
 import password.pwm.error.PwmError;
 import password.pwm.error.PwmUnrecoverableException;
+import password.pwm.util.PwmScheduler;
 import password.pwm.util.TransactionSizeCalculator;
 import password.pwm.util.java.ConditionalTaskExecutor;
+import password.pwm.util.java.JavaHelper;
 import password.pwm.util.java.JsonUtil;
 import password.pwm.util.java.Percent;
 import password.pwm.util.java.PwmNumberFormat;
@@ -37,11 +40,22 @@ import password.pwm.util.localdb.LocalDBException;
 import password.pwm.util.logging.PwmLogger;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
-import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BooleanSupplier;
 
 /**
@@ -52,10 +66,13 @@ class WordlistImporter implements Runnable
     // words tarting with this prefix are ignored.
     private static final String COMMENT_PREFIX = "!#comment:";
 
+    private static final int LINES_PER_CHUNK = 1000;
+    private static final int CHUNKS_QUEUED_PER_WORKER = 4;
+
     private final WordlistZipReader zipFileReader;
     private final WordlistSourceType sourceType;
     private final TransactionSizeCalculator transactionCalculator;
-    private final Set<String> bufferedWords = new TreeSet<>();
+    private final Set<String> bufferedWords = new HashSet<>();
     private final WordlistBucket wordlistBucket;
     private final AbstractWordlist rootWordlist;
     private final WordlistSourceInfo wordlistSourceInfo;
@@ -64,6 +81,7 @@ class WordlistImporter implements Runnable
     private ErrorInformation exitError;
     private Instant startTime = Instant.now();
     private long bytesSkipped;
+    private volatile long committedBytes;
 
     private enum DebugKey
     {
@@ -150,9 +168,13 @@ class WordlistImporter implements Runnable
         {
             rootWordlist.writeWordlistStatus( WordlistStatus.builder()
                     .sourceType( sourceType )
+                    .storageEngine( wordlistBucket.getStorageEngine() )
                     .build() );
         }
 
+        // words are about to be added, so any existing matcher or filter would produce false negatives
+        wordlistBucket.discardLookupIndexes();
+
         final long previousBytesRead = rootWordlist.readWordlistStatus().getBytes();
 
         if ( previousBytesRead == 0 )
@@ -162,6 +184,7 @@ class WordlistImporter implements Runnable
         else if ( previousBytesRead > 0 )
         {
             skipForward( previousBytesRead );
+            committedBytes = previousBytesRead;
         }
     }
 
@@ -175,7 +198,7 @@ class WordlistImporter implements Runnable
                         .sourceType( sourceType )
                         .storeDate( Instant.now() )
                         .remoteInfo( wordlistSourceInfo )
-                        .bytes( zipFileReader.getByteCount() )
+                        .bytes( committedBytes )
                         .build() ),
                 new ConditionalTaskExecutor.TimeDurationPredicate( TimeDuration.SECONDS_10 )
         );
@@ -195,25 +218,7 @@ class WordlistImporter implements Runnable
 
             getLogger().debug( () -> "beginning import" );
 
-            String line;
-            do
-            {
-                line = zipFileReader.nextLine();
-                if ( line != null )
-                {
-                    addLine( line );
-
-                    debugOutputter.conditionallyExecuteTask();
-
-                    if ( bufferedWords.size() > transactionCalculator.getTransactionSize() )
-                    {
-                        flushBuffer();
-                        metaUpdater.conditionallyExecuteTask();
-                    }
-                }
-            }
-            while ( !cancelFlag.getAsBoolean() && line != null );
-
+            runPipeline( metaUpdater, debugOutputter );
 
             if ( cancelFlag.getAsBoolean() )
             {
@@ -230,15 +235,240 @@ class WordlistImporter implements Runnable
         }
     }
 
-    private void addLine( final String word )
+    /**
+     * Run the import as a three stage pipeline: a reader thread splits the zip stream into chunks of lines, a pool of
+     * workers normalizes and de-duplicates each chunk, and the calling thread re-orders the results and writes them
+     * in batches sized by the {@link TransactionSizeCalculator}.  Stages are connected by bounded queues, so a slow
+     * writer throttles the workers and the reader.
+     *
+     * <p>Chunks are committed in stream order, so the byte count recorded in the {@link WordlistStatus} never
+     * covers words that have not been written, and an interrupted import can resume from it.</p>
+     */
+    private void runPipeline(
+            final ConditionalTaskExecutor metaUpdater,
+            final ConditionalTaskExecutor debugOutputter
+    )
+            throws LocalDBException, PwmUnrecoverableException
     {
+        final int workerCount = rootWordlist.getConfiguration().getImportWorkerThreads();
+        final int queueSize = workerCount * CHUNKS_QUEUED_PER_WORKER;
+        final String threadName = PwmScheduler.makeThreadName( rootWordlist.getPwmApplication(), WordlistImporter.class );
+
+        final BlockingQueue<WordChunk> resultQueue = new ArrayBlockingQueue<>( queueSize );
+        final AtomicBoolean stopFlag = new AtomicBoolean( false );
+        final AtomicReference<Exception> pipelineError = new AtomicReference<>();
+
+        // caller-runs policy pushes back on the reader once the worker queue is full
+        final ThreadPoolExecutor normalizeExecutor = new ThreadPoolExecutor(
+                workerCount,
+                workerCount,
+                1, TimeUnit.MINUTES,
+                new ArrayBlockingQueue<>( queueSize ),
+                PwmScheduler.makePwmThreadFactory( threadName + "-normalizer-", true ),
+                new ThreadPoolExecutor.CallerRunsPolicy() );
 
-        if ( StringUtil.isEmpty( word ) || word.startsWith( COMMENT_PREFIX ) )
+        final ExecutorService readerExecutor = Executors.newSingleThreadExecutor(
+                PwmScheduler.makePwmThreadFactory( threadName + "-reader-", true ) );
+
+        getLogger().trace( () -> "starting import pipeline with " + workerCount + " normalizer threads" );
+
+        try
         {
-            return;
+            readerExecutor.execute( () -> readChunks( normalizeExecutor, resultQueue, stopFlag, pipelineError ) );
+            writeChunks( resultQueue, pipelineError, metaUpdater, debugOutputter );
+        }
+        finally
+        {
+            stopFlag.set( true );
+            normalizeExecutor.shutdownNow();
+            JavaHelper.closeAndWaitExecutor( readerExecutor, TimeDuration.SECONDS_10 );
+        }
+
+        final Exception error = pipelineError.get();
+        if ( error instanceof PwmUnrecoverableException )
+        {
+            throw ( PwmUnrecoverableException ) error;
+        }
+        if ( error != null )
+        {
+            throw PwmUnrecoverableException.newException( PwmError.ERROR_WORDLIST_IMPORT_ERROR, "error normalizing wordlist: " + error.getMessage() );
+        }
+    }
+
+    private void readChunks(
+            final ThreadPoolExecutor normalizeExecutor,
+            final BlockingQueue<WordChunk> resultQueue,
+            final AtomicBoolean stopFlag,
+            final AtomicReference<Exception> pipelineError
+    )
+    {
+        long sequence = 0;
+        try
+        {
+            List<String> lines = new ArrayList<>( LINES_PER_CHUNK );
+            String line = zipFileReader.nextLine();
+            while ( line != null && !stopFlag.get() && !cancelFlag.getAsBoolean() )
+            {
+                lines.add( line );
+                if ( lines.size() >= LINES_PER_CHUNK )
+                {
+                    submitChunk( normalizeExecutor, resultQueue, stopFlag, pipelineError, lines, sequence++ );
+                    lines = new ArrayList<>( LINES_PER_CHUNK );
+                }
+                line = zipFileReader.nextLine();
+            }
+
+            if ( !lines.isEmpty() && !stopFlag.get() && !cancelFlag.getAsBoolean() )
+            {
+                submitChunk( normalizeExecutor, resultQueue, stopFlag, pipelineError, lines, sequence++ );
+            }
+        }
+        catch ( PwmUnrecoverableException e )
+        {
+            pipelineError.compareAndSet( null, e );
+        }
+        finally
+        {
+            normalizeExecutor.shutdown();
+            try
+            {
+                while ( !stopFlag.get() && !normalizeExecutor.awaitTermination( 1, TimeUnit.SECONDS ) )
+                {
+                    getLogger().trace( () -> "waiting for wordlist normalizer threads to complete" );
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+            offerUntilStopped( resultQueue, new WordChunk( sequence, Collections.emptySet(), -1, true ), stopFlag );
+        }
+    }
+
+    private void submitChunk(
+            final ThreadPoolExecutor normalizeExecutor,
+            final BlockingQueue<WordChunk> resultQueue,
+            final AtomicBoolean stopFlag,
+            final AtomicReference<Exception> pipelineError,
+            final List<String> lines,
+            final long sequence
+    )
+    {
+        final long byteCount = zipFileReader.getByteCount();
+        normalizeExecutor.execute( () ->
+        {
+            try
+            {
+                final Set<String> words = new HashSet<>( lines.size() );
+                for ( final String line : lines )
+                {
+                    if ( !StringUtil.isEmpty( line ) && !line.startsWith( COMMENT_PREFIX ) )
+                    {
+                        final String normalizedWord = wordlistBucket.normalizeWord( line );
+                        if ( !StringUtil.isEmpty( normalizedWord ) )
+                        {
+                            words.add( normalizedWord );
+                        }
+                    }
+                }
+                offerUntilStopped( resultQueue, new WordChunk( sequence, words, byteCount, false ), stopFlag );
+            }
+            catch ( RuntimeException e )
+            {
+                pipelineError.compareAndSet( null, e );
+            }
+        } );
+    }
+
+    private void writeChunks(
+            final BlockingQueue<WordChunk> resultQueue,
+            final AtomicReference<Exception> pipelineError,
+            final ConditionalTaskExecutor metaUpdater,
+            final ConditionalTaskExecutor debugOutputter
+    )
+            throws LocalDBException
+    {
+        final Map<Long, WordChunk> pendingChunks = new HashMap<>();
+        long nextSequence = 0;
+        long endSequence = -1;
+        long bufferedBytes = committedBytes;
+
+        while ( !cancelFlag.getAsBoolean() && pipelineError.get() == null )
+        {
+            final WordChunk chunk;
+            try
+            {
+                chunk = resultQueue.poll( 1, TimeUnit.SECONDS );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            if ( chunk != null )
+            {
+                if ( chunk.isEnd() )
+                {
+                    endSequence = chunk.getSequence();
+                }
+                else
+                {
+                    pendingChunks.put( chunk.getSequence(), chunk );
+                }
+            }
+
+            WordChunk nextChunk = pendingChunks.remove( nextSequence );
+            while ( nextChunk != null )
+            {
+                bufferedWords.addAll( nextChunk.getWords() );
+                bufferedBytes = nextChunk.getByteCount();
+                nextSequence++;
+
+                if ( bufferedWords.size() > transactionCalculator.getTransactionSize() )
+                {
+                    flushBuffer();
+                    committedBytes = bufferedBytes;
+                    metaUpdater.conditionallyExecuteTask();
+                }
+
+                nextChunk = pendingChunks.remove( nextSequence );
+            }
+
+            debugOutputter.conditionallyExecuteTask();
+
+            if ( endSequence >= 0 && nextSequence >= endSequence )
+            {
+                return;
+            }
         }
+    }
 
-        bufferedWords.add( word );
+    private static void offerUntilStopped( final BlockingQueue<WordChunk> queue, final WordChunk chunk, final AtomicBoolean stopFlag )
+    {
+        try
+        {
+            while ( !stopFlag.get() )
+            {
+                if ( queue.offer( chunk, 1, TimeUnit.SECONDS ) )
+                {
+                    return;
+                }
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Value
+    private static class WordChunk
+    {
+        private final long sequence;
+        private final Set<String> words;
+        private final long byteCount;
+        private final boolean end;
     }
 
     private void flushBuffer( )
@@ -266,6 +496,13 @@ class WordlistImporter implements Runnable
             throws LocalDBException
     {
         flushBuffer();
+        wordlistBucket.completeImport( cancelFlag );
+        if ( cancelFlag.getAsBoolean() )
+        {
+            getLogger().warn( "pausing import before completion" );
+            return;
+        }
+
         getLogger().info( () -> makeStatString() );
         getLogger().trace( () -> "beginning wordlist size query" );
         final long wordlistSize = wordlistBucket.size();
@@ -278,11 +515,14 @@ class WordlistImporter implements Runnable
                 .storeDate( Instant.now() )
                 .sourceType( sourceType )
                 .completed( true )
+                .storageEngine( wordlistBucket.getStorageEngine() )
                 .bytes( zipFileReader.getByteCount() )
                 .build()
         );
 
         getLogger().debug( () -> "final post-population status: " + JsonUtil.serialize( rootWordlist.readWordlistStatus() ) );
+
+        wordlistBucket.prepareLookupIndexes( rootWordlist.readWordlistStatus(), cancelFlag );
     }
 
     private PwmLogger getLogger()
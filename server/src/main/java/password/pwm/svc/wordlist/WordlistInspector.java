@@ -84,6 +84,7 @@ class WordlistInspector implements Runnable
 
         if ( checkIfExistingOkay( existingStatus, autoImportUrlConfigured ) )
         {
+            rootWordlist.getWordlistBucket().prepareLookupIndexes( existingStatus, cancelFlag );
             return;
         }
 
@@ -175,6 +176,16 @@ class WordlistInspector implements Runnable
             return true;
         }
 
+        final WordlistStorageEngine storedEngine = wordlistStatus.getStorageEngine() == null
+                ? WordlistStorageEngine.LocalDB
+                : wordlistStatus.getStorageEngine();
+        final WordlistStorageEngine currentEngine = rootWordlist.getWordlistBucket().getStorageEngine();
+        if ( storedEngine != currentEngine )
+        {
+            getLogger().debug( () -> "stored storage engine '" + storedEngine + "' is not the current engine '" + currentEngine + "', will clear" );
+            return true;
+        }
+
         switch ( wordlistStatus.getSourceType() )
         {
             case AutoImport:
@@ -43,4 +43,5 @@ public class WordlistStatus implements Serializable
     private WordlistSourceInfo remoteInfo;
     private long bytes;
     private long valueCount;
+    private WordlistStorageEngine storageEngine;
 }
@@ -25,7 +25,8 @@ package password.pwm.util.cli.commands;
 import password.pwm.PwmConstants;
 import password.pwm.util.cli.CliParameters;
 import password.pwm.util.localdb.LocalDB;
-import password.pwm.util.localdb.LocalDBStoredQueue;
+import password.pwm.util.logging.LocalDBLogStore;
+import password.pwm.util.logging.LocalDBLoggerSettings;
 import password.pwm.util.logging.PwmLogEvent;
 
 import java.io.File;
@@ -43,29 +44,24 @@ public class ExportLogsCommand extends AbstractCliCommand
             throws Exception
     {
         final LocalDB localDB = this.cliEnvironment.getLocalDB();
-        final LocalDBStoredQueue logQueue = LocalDBStoredQueue.createLocalDBStoredQueue( null, localDB,
-                LocalDB.DB.EVENTLOG_EVENTS );
+        final LocalDBLogStore logStore = new LocalDBLogStore( localDB, LocalDBLoggerSettings.builder().build() );
 
-        if ( logQueue.isEmpty() )
+        if ( logStore.isEmpty() )
         {
             out( "no logs present" );
             return;
         }
 
         final File outputFile = ( File ) cliEnvironment.getOptions().get( CliParameters.REQUIRED_NEW_OUTPUT_FILE.getName() );
-        out( "outputting " + logQueue.size() + " log events to " + outputFile.getAbsolutePath() + "...." );
+        out( "outputting " + logStore.size() + " log events to " + outputFile.getAbsolutePath() + "...." );
 
         try ( Writer outputWriter = new OutputStreamWriter( new FileOutputStream( outputFile ), PwmConstants.DEFAULT_CHARSET ) )
         {
-            for ( final Iterator<String> iter = logQueue.descendingIterator(); iter.hasNext(); )
+            for ( final Iterator<PwmLogEvent> iter = logStore.iterator(); iter.hasNext(); )
             {
-                final String loopString = iter.next();
-                final PwmLogEvent logEvent = PwmLogEvent.fromEncodedString( loopString );
-                if ( logEvent != null )
-                {
-                    outputWriter.write( logEvent.toLogString() );
-                    outputWriter.write( "\n" );
-                }
+                final PwmLogEvent logEvent = iter.next();
+                outputWriter.write( logEvent.toLogString() );
+                outputWriter.write( "\n" );
             }
         }
 
@@ -0,0 +1,298 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package password.pwm.util.java;
+
+import java.util.Arrays;
+
+/**
+ * Immutable Aho-Corasick automaton that tests whether any of a set of patterns occurs in a text, using a single
+ * linear scan of the text and without allocating.  Instances are thread safe.
+ *
+ * <p>Transitions are stored in compact sorted arrays rather than per-node maps, so the memory cost is a few
+ * primitive array slots per trie node.</p>
+ */
+public class AhoCorasickMatcher
+{
+    private static final int ROOT = 0;
+
+    private final int[] edgeOffsets;
+    private final char[] edgeChars;
+    private final int[] edgeTargets;
+    private final int[] failLinks;
+    private final int[] longestMatch;
+    private final int patternCount;
+
+    private AhoCorasickMatcher(
+            final int[] edgeOffsets,
+            final char[] edgeChars,
+            final int[] edgeTargets,
+            final int[] failLinks,
+            final int[] longestMatch,
+            final int patternCount
+    )
+    {
+        this.edgeOffsets = edgeOffsets;
+        this.edgeChars = edgeChars;
+        this.edgeTargets = edgeTargets;
+        this.failLinks = failLinks;
+        this.longestMatch = longestMatch;
+        this.patternCount = patternCount;
+    }
+
+    public static AhoCorasickMatcher compile( final Iterable<? extends CharSequence> patterns )
+    {
+        final Builder builder = new Builder();
+        for ( final CharSequence pattern : patterns )
+        {
+            builder.add( pattern );
+        }
+        return builder.build();
+    }
+
+    public static Builder builder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * @return true if any pattern occurs in {@code text}.
+     */
+    public boolean matches( final CharSequence text )
+    {
+        return matches( text, 1 );
+    }
+
+    /**
+     * @return true if any pattern at least {@code minimumLength} chars long occurs in {@code text}.
+     */
+    public boolean matches( final CharSequence text, final int minimumLength )
+    {
+        if ( text == null || patternCount == 0 )
+        {
+            return false;
+        }
+
+        final int requiredLength = Math.max( 1, minimumLength );
+        int state = ROOT;
+        for ( int i = 0; i < text.length(); i++ )
+        {
+            final char c = text.charAt( i );
+            int next = transition( state, c );
+            while ( next < 0 && state != ROOT )
+            {
+                state = failLinks[state];
+                next = transition( state, c );
+            }
+            state = next < 0 ? ROOT : next;
+
+            if ( longestMatch[state] >= requiredLength )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int patternCount()
+    {
+        return patternCount;
+    }
+
+    public int nodeCount()
+    {
+        return failLinks.length;
+    }
+
+    private int transition( final int state, final char c )
+    {
+        int low = edgeOffsets[state];
+        int high = edgeOffsets[state + 1] - 1;
+        while ( low <= high )
+        {
+            final int mid = ( low + high ) >>> 1;
+            final char midChar = edgeChars[mid];
+            if ( midChar < c )
+            {
+                low = mid + 1;
+            }
+            else if ( midChar > c )
+            {
+                high = mid - 1;
+            }
+            else
+            {
+                return edgeTargets[mid];
+            }
+        }
+        return -1;
+    }
+
+    public static class Builder
+    {
+        // trie under construction; each node's edges form a linked list through edgeNext
+        private int[] firstEdge = new int[64];
+        private int[] terminalLength = new int[64];
+        private int nodeCount = 1;
+
+        private char[] edgeChar = new char[64];
+        private int[] edgeTarget = new int[64];
+        private int[] edgeNext = new int[64];
+        private int edgeCount;
+
+        private int patternCount;
+
+        Builder()
+        {
+            firstEdge[ROOT] = -1;
+        }
+
+        public Builder add( final CharSequence pattern )
+        {
+            if ( pattern == null || pattern.length() == 0 )
+            {
+                return this;
+            }
+
+            int state = ROOT;
+            for ( int i = 0; i < pattern.length(); i++ )
+            {
+                final char c = pattern.charAt( i );
+                final int existing = child( state, c );
+                state = existing >= 0 ? existing : addChild( state, c );
+            }
+
+            if ( terminalLength[state] == 0 )
+            {
+                patternCount++;
+            }
+            terminalLength[state] = pattern.length();
+            return this;
+        }
+
+        public AhoCorasickMatcher build()
+        {
+            final int[] failLinks = new int[nodeCount];
+            final int[] longestMatch = new int[nodeCount];
+            final int[] queue = new int[nodeCount];
+            int queueHead = 0;
+            int queueTail = 0;
+
+            for ( int edge = firstEdge[ROOT]; edge >= 0; edge = edgeNext[edge] )
+            {
+                final int node = edgeTarget[edge];
+                failLinks[node] = ROOT;
+                longestMatch[node] = terminalLength[node];
+                queue[queueTail++] = node;
+            }
+
+            while ( queueHead < queueTail )
+            {
+                final int parent = queue[queueHead++];
+                for ( int edge = firstEdge[parent]; edge >= 0; edge = edgeNext[edge] )
+                {
+                    final char c = edgeChar[edge];
+                    final int node = edgeTarget[edge];
+
+                    int fallback = failLinks[parent];
+                    int fallbackChild = child( fallback, c );
+                    while ( fallbackChild < 0 && fallback != ROOT )
+                    {
+                        fallback = failLinks[fallback];
+                        fallbackChild = child( fallback, c );
+                    }
+
+                    failLinks[node] = fallbackChild < 0 ? ROOT : fallbackChild;
+                    longestMatch[node] = Math.max( terminalLength[node], longestMatch[failLinks[node]] );
+                    queue[queueTail++] = node;
+                }
+            }
+
+            // flatten the linked edge lists into per-node ranges sorted by char for binary search
+            final int[] edgeOffsets = new int[nodeCount + 1];
+            final char[] sortedChars = new char[edgeCount];
+            final int[] sortedTargets = new int[edgeCount];
+            long[] scratch = new long[16];
+            int position = 0;
+            for ( int node = 0; node < nodeCount; node++ )
+            {
+                edgeOffsets[node] = position;
+                int degree = 0;
+                for ( int edge = firstEdge[node]; edge >= 0; edge = edgeNext[edge] )
+                {
+                    if ( degree == scratch.length )
+                    {
+                        scratch = Arrays.copyOf( scratch, scratch.length * 2 );
+                    }
+                    scratch[degree++] = ( (long) edgeChar[edge] << 32 ) | edgeTarget[edge];
+                }
+                Arrays.sort( scratch, 0, degree );
+                for ( int i = 0; i < degree; i++ )
+                {
+                    sortedChars[position] = (char) ( scratch[i] >>> 32 );
+                    sortedTargets[position] = (int) scratch[i];
+                    position++;
+                }
+            }
+            edgeOffsets[nodeCount] = position;
+
+            return new AhoCorasickMatcher( edgeOffsets, sortedChars, sortedTargets, failLinks, longestMatch, patternCount );
+        }
+
+        private int child( final int node, final char c )
+        {
+            for ( int edge = firstEdge[node]; edge >= 0; edge = edgeNext[edge] )
+            {
+                if ( edgeChar[edge] == c )
+                {
+                    return edgeTarget[edge];
+                }
+            }
+            return -1;
+        }
+
+        private int addChild( final int parent, final char c )
+        {
+            if ( nodeCount == firstEdge.length )
+            {
+                firstEdge = Arrays.copyOf( firstEdge, nodeCount * 2 );
+                terminalLength = Arrays.copyOf( terminalLength, nodeCount * 2 );
+            }
+            final int node = nodeCount++;
+            firstEdge[node] = -1;
+
+            if ( edgeCount == edgeChar.length )
+            {
+                edgeChar = Arrays.copyOf( edgeChar, edgeCount * 2 );
+                edgeTarget = Arrays.copyOf( edgeTarget, edgeCount * 2 );
+                edgeNext = Arrays.copyOf( edgeNext, edgeCount * 2 );
+            }
+            final int edge = edgeCount++;
+            edgeChar[edge] = c;
+            edgeTarget[edge] = node;
+            edgeNext[edge] = firstEdge[parent];
+            firstEdge[parent] = edge;
+
+            return node;
+        }
+    }
+}
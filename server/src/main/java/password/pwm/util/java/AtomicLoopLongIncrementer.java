@@ -57,4 +57,16 @@ public class AtomicLoopLongIncrementer
             return operand;
         } );
     }
+
+    /**
+     * Add a non-negative delta, wrapping to the floor value if the ceiling is reached.
+     */
+    public long addAndGet( final long delta )
+    {
+        return incrementer.updateAndGet( operand ->
+        {
+            final long next = operand + delta;
+            return next >= ceiling || next < floor ? floor : next;
+        } );
+    }
 }
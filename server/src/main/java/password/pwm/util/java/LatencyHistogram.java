@@ -0,0 +1,287 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package password.pwm.util.java;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed size, lock free histogram of non-negative values.  Values below 64 are counted exactly, larger values in
+ * log-linear buckets (64 sub-buckets per power of two), so percentiles are reported with at most 1/64 (about 1.6%)
+ * relative error, using a constant 18KB of memory regardless of the number of recorded values.
+ *
+ * <p>The histogram itself is unit-neutral: {@link #record(long)}, {@link #percentile(double)} and {@link #max()} use
+ * whatever unit the caller records in.  The latency helpers {@link #recordNanos(long)} and {@link #recordSince(long)}
+ * record microseconds, and {@link #debugMap(String)} labels its values as microseconds accordingly.</p>
+ *
+ * <p>Histograms with the same bucket layout can be merged and subtracted, and have a compact sparse string encoding
+ * for persistence that records the bucket layout it was written with.</p>
+ */
+public class LatencyHistogram
+{
+    static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_BUCKETS = SUB_BUCKETS;
+    private static final int MAX_MAGNITUDE = 40;
+
+    // last bucket collects every value of 2^MAX_MAGNITUDE (about 12 days in microseconds) or more
+    static final int BUCKET_COUNT = LINEAR_BUCKETS + ( MAX_MAGNITUDE - SUB_BUCKET_BITS ) * SUB_BUCKETS + 1;
+
+    private final AtomicLongArray buckets = new AtomicLongArray( BUCKET_COUNT );
+    private final AtomicLong maxValue = new AtomicLong();
+
+    public void recordNanos( final long nanos )
+    {
+        record( nanos / 1000 );
+    }
+
+    public void recordSince( final long startNanos )
+    {
+        recordNanos( System.nanoTime() - startNanos );
+    }
+
+    public void record( final long value )
+    {
+        final long boundedValue = Math.max( 0, value );
+        buckets.incrementAndGet( bucketFor( boundedValue ) );
+        maxValue.accumulateAndGet( boundedValue, Math::max );
+    }
+
+    public long count( )
+    {
+        long count = 0;
+        for ( int i = 0; i < BUCKET_COUNT; i++ )
+        {
+            count += buckets.get( i );
+        }
+        return count;
+    }
+
+    public long max( )
+    {
+        return maxValue.get();
+    }
+
+    /**
+     * Percentiles are reported as the upper bound of the bucket containing the requested rank, or zero if no values
+     * have been recorded.
+     *
+     * @param percentile value between 0 and 100
+     * @return value, in the unit it was recorded in
+     */
+    public long percentile( final double percentile )
+    {
+        final long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for ( int i = 0; i < BUCKET_COUNT; i++ )
+        {
+            counts[i] = buckets.get( i );
+            total += counts[i];
+        }
+
+        if ( total == 0 )
+        {
+            return 0;
+        }
+
+        final long rank = Math.max( 1, (long) Math.ceil( total * Math.min( 100, Math.max( 0, percentile ) ) / 100 ) );
+        long seen = 0;
+        for ( int i = 0; i < BUCKET_COUNT; i++ )
+        {
+            seen += counts[i];
+            if ( seen >= rank )
+            {
+                return Math.min( bucketUpperBound( i ), maxValue.get() );
+            }
+        }
+        return maxValue.get();
+    }
+
+    /**
+     * Values are labelled as microseconds, the unit recorded by {@link #recordNanos(long)}.
+     *
+     * @return count, p50, p90, p99, p999 and max.
+     */
+    public Map<String, String> debugMap( final String prefix )
+    {
+        final Map<String, String> output = new LinkedHashMap<>();
+        output.put( prefix + "count", Long.toString( count() ) );
+        output.put( prefix + "p50Micros", Long.toString( percentile( 50 ) ) );
+        output.put( prefix + "p90Micros", Long.toString( percentile( 90 ) ) );
+        output.put( prefix + "p99Micros", Long.toString( percentile( 99 ) ) );
+        output.put( prefix + "p999Micros", Long.toString( percentile( 99.9 ) ) );
+        output.put( prefix + "maxMicros", Long.toString( max() ) );
+        return output;
+    }
+
+    /**
+     * Add all values recorded in another histogram to this one.
+     */
+    public void merge( final LatencyHistogram other )
+    {
+        for ( int i = 0; i < BUCKET_COUNT; i++ )
+        {
+            final long count = other.buckets.get( i );
+            if ( count != 0 )
+            {
+                buckets.addAndGet( i, count );
+            }
+        }
+        maxValue.accumulateAndGet( other.maxValue.get(), Math::max );
+    }
+
+    public LatencyHistogram snapshot( )
+    {
+        final LatencyHistogram copy = new LatencyHistogram();
+        copy.merge( this );
+        return copy;
+    }
+
+    /**
+     * Values recorded in this histogram but not in an earlier snapshot of it.  The maximum of the difference is
+     * estimated as the upper bound of its highest non-empty bucket.
+     *
+     * @param earlier a snapshot previously taken from this histogram
+     * @return a new histogram holding the difference
+     */
+    public LatencyHistogram minus( final LatencyHistogram earlier )
+    {
+        final LatencyHistogram difference = new LatencyHistogram();
+        int highestBucket = -1;
+        for ( int i = 0; i < BUCKET_COUNT; i++ )
+        {
+            final long count = buckets.get( i ) - earlier.buckets.get( i );
+            if ( count > 0 )
+            {
+                difference.buckets.set( i, count );
+                highestBucket = i;
+            }
+        }
+        if ( highestBucket >= 0 )
+        {
+            difference.maxValue.set( Math.min( bucketUpperBound( highestBucket ), maxValue.get() ) );
+        }
+        return difference;
+    }
+
+    /**
+     * Encode as {@code max;subBucketBits;bucket:count,bucket:count...}, listing only non-empty buckets.
+     *
+     * @return encoded histogram, suitable for {@link #decode(String)}
+     */
+    public String encode( )
+    {
+        final StringBuilder output = new StringBuilder();
+        output.append( maxValue.get() );
+        output.append( ';' );
+        output.append( SUB_BUCKET_BITS );
+        output.append( ';' );
+        boolean first = true;
+        for ( int i = 0; i < BUCKET_COUNT; i++ )
+        {
+            final long count = buckets.get( i );
+            if ( count != 0 )
+            {
+                if ( !first )
+                {
+                    output.append( ',' );
+                }
+                output.append( i ).append( ':' ).append( count );
+                first = false;
+            }
+        }
+        return output.toString();
+    }
+
+    /**
+     * Read a value produced by {@link #encode()}.  Malformed or out of range entries are ignored, and values written
+     * with a different bucket layout decode as an empty histogram.
+     */
+    public static LatencyHistogram decode( final String encoded )
+    {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        if ( StringUtil.isEmpty( encoded ) )
+        {
+            return histogram;
+        }
+
+        final String[] parts = encoded.split( ";", 3 );
+        if ( parts.length != 3 || JavaHelper.silentParseLong( parts[1], -1 ) != SUB_BUCKET_BITS )
+        {
+            return histogram;
+        }
+
+        histogram.maxValue.set( Math.max( 0, JavaHelper.silentParseLong( parts[0], 0 ) ) );
+        for ( final String entry : parts[2].split( "," ) )
+        {
+            final int colon = entry.indexOf( ':' );
+            if ( colon > 0 )
+            {
+                final long bucket = JavaHelper.silentParseLong( entry.substring( 0, colon ), -1 );
+                final long count = JavaHelper.silentParseLong( entry.substring( colon + 1 ), 0 );
+                if ( bucket >= 0 && bucket < BUCKET_COUNT && count > 0 )
+                {
+                    histogram.buckets.addAndGet( (int) bucket, count );
+                }
+            }
+        }
+        return histogram;
+    }
+
+    static int bucketFor( final long value )
+    {
+        if ( value < LINEAR_BUCKETS )
+        {
+            return (int) value;
+        }
+
+        final int magnitude = 63 - Long.numberOfLeadingZeros( value );
+        if ( magnitude >= MAX_MAGNITUDE )
+        {
+            return BUCKET_COUNT - 1;
+        }
+
+        final int subBucket = (int) ( value >>> ( magnitude - SUB_BUCKET_BITS ) ) & ( SUB_BUCKETS - 1 );
+        return LINEAR_BUCKETS + ( magnitude - SUB_BUCKET_BITS ) * SUB_BUCKETS + subBucket;
+    }
+
+    static long bucketUpperBound( final int bucket )
+    {
+        if ( bucket < LINEAR_BUCKETS )
+        {
+            return bucket;
+        }
+
+        if ( bucket >= BUCKET_COUNT - 1 )
+        {
+            return Long.MAX_VALUE;
+        }
+
+        final int magnitude = SUB_BUCKET_BITS + ( bucket - LINEAR_BUCKETS ) / SUB_BUCKETS;
+        final int subBucket = ( bucket - LINEAR_BUCKETS ) % SUB_BUCKETS;
+        final long lowerBound = (long) ( SUB_BUCKETS + subBucket ) << ( magnitude - SUB_BUCKET_BITS );
+        return lowerBound + ( 1L << ( magnitude - SUB_BUCKET_BITS ) ) - 1;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package password.pwm.util.java;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>Bounded, lock-free queue for many producer threads and a single consumer thread.  Producers claim a slot with a
+ * single compare-and-set and never block; when the buffer is full {@link #offer(Object)} returns false immediately and
+ * the caller decides what to do with the element.</p>
+ *
+ * <p>{@link #poll()} and {@link #drainTo(Collection, int)} must only be called by one thread at a time.  Elements are
+ * consumed in the order their slots were claimed.</p>
+ *
+ * @param <E> element type
+ */
+public class RingBuffer<E>
+{
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    private final AtomicReferenceArray<E> slots;
+    private final int capacity;
+    private final int mask;
+    private final AtomicLong producerIndex = new AtomicLong( 0 );
+    private final AtomicLong consumerIndex = new AtomicLong( 0 );
+
+    /**
+     * @param minimumCapacity the minimum number of elements held, rounded up to the next power of two.
+     */
+    public RingBuffer( final int minimumCapacity )
+    {
+        if ( minimumCapacity < 1 || minimumCapacity > MAXIMUM_CAPACITY )
+        {
+            throw new IllegalArgumentException( "capacity must be between 1 and " + MAXIMUM_CAPACITY );
+        }
+
+        this.capacity = minimumCapacity == 1 ? 1 : 1 << ( Integer.SIZE - Integer.numberOfLeadingZeros( minimumCapacity - 1 ) );
+        this.mask = capacity - 1;
+        this.slots = new AtomicReferenceArray<>( capacity );
+    }
+
+    /**
+     * Add an element without blocking.
+     *
+     * @return false if the buffer is full and the element was not added.
+     */
+    public boolean offer( final E element )
+    {
+        Objects.requireNonNull( element );
+
+        while ( true )
+        {
+            final long producer = producerIndex.get();
+            if ( producer - consumerIndex.get() >= capacity )
+            {
+                return false;
+            }
+
+            if ( producerIndex.compareAndSet( producer, producer + 1 ) )
+            {
+                // the consumer treats the slot as empty until the element is published
+                slots.lazySet( ( int ) producer & mask, element );
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Remove the oldest element.  Must only be called by the consumer thread.
+     *
+     * @return the oldest element, or null if the buffer is empty or the oldest claimed slot is not yet published.
+     */
+    public E poll( )
+    {
+        final long consumer = consumerIndex.get();
+        final int slot = ( int ) consumer & mask;
+        final E element = slots.get( slot );
+        if ( element == null )
+        {
+            return null;
+        }
+
+        slots.lazySet( slot, null );
+        consumerIndex.lazySet( consumer + 1 );
+        return element;
+    }
+
+    /**
+     * Remove up to {@code maxElements} elements into the collection.  Must only be called by the consumer thread.
+     *
+     * @return the number of elements removed.
+     */
+    public int drainTo( final Collection<? super E> collection, final int maxElements )
+    {
+        int count = 0;
+        while ( count < maxElements )
+        {
+            final E element = poll();
+            if ( element == null )
+            {
+                break;
+            }
+            collection.add( element );
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Approximate number of elements in the buffer, including claimed slots not yet published.
+     */
+    public int size( )
+    {
+        final long size = producerIndex.get() - consumerIndex.get();
+        return ( int ) Math.max( 0, Math.min( capacity, size ) );
+    }
+
+    public boolean isEmpty( )
+    {
+        return size() == 0;
+    }
+
+    public int capacity( )
+    {
+        return capacity;
+    }
+}
@@ -63,6 +63,15 @@ public interface LocalDB
     String get( DB db, String key )
             throws LocalDBException;
 
+    /**
+     * Read a binary value.  A value stored as a string is returned as its UTF-8 bytes.
+     *
+     * @see LocalDBCodecs
+     */
+    @ReadOperation
+    byte[] getBytes( DB db, String key )
+            throws LocalDBException;
+
     LocalDBIterator<String> iterator( DB db )
             throws LocalDBException;
 
@@ -89,6 +98,16 @@ public interface LocalDB
     boolean put( DB db, String key, String value )
             throws LocalDBException;
 
+    /**
+     * Put a binary value.  The value length is limited to {@link #MAX_VALUE_LENGTH} bytes.
+     *
+     * @return true if the key previously existed
+     * @see LocalDBCodecs
+     */
+    @WriteOperation
+    boolean putBytes( DB db, String key, byte[] value )
+            throws LocalDBException;
+
     @WriteOperation
     boolean putIfAbsent( DB db, String key, String value )
             throws LocalDBException;
@@ -101,6 +120,14 @@ public interface LocalDB
     void removeAll( DB db, Collection<String> key )
             throws LocalDBException;
 
+    /**
+     * Put the key/values and remove the keys in a single write.  Transactional providers apply both changes
+     * atomically.  The removal keys must not also be put.
+     */
+    @WriteOperation
+    void putAllAndRemoveAll( DB db, Map<String, String> keyValueMap, Collection<String> removalKeys )
+            throws LocalDBException;
+
     @ReadOperation
     long size( DB db )
             throws LocalDBException;
@@ -139,6 +166,7 @@ public interface LocalDB
         TEMP( false ),
         SYSLOG_QUEUE( true ),
         CACHE( false ),
+        WORK_QUEUE_INFLIGHT( true ),
 
         REPORT_QUEUE( false ),;
 
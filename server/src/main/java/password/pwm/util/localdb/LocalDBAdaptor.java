@@ -82,6 +82,16 @@ public class LocalDBAdaptor implements LocalDB
         return value;
     }
 
+    public byte[] getBytes( final DB db, final String key ) throws LocalDBException
+    {
+        ParameterValidator.validateDBValue( db );
+        ParameterValidator.validateKeyValue( key );
+
+        final byte[] value = innerDB.getBytes( db, key );
+        markRead();
+        return value;
+    }
+
     @WriteOperation
     public void init( final File dbDirectory, final Map<String, String> initParameters, final Map<LocalDBProvider.Parameter, String> parameters ) throws LocalDBException
     {
@@ -140,6 +150,19 @@ public class LocalDBAdaptor implements LocalDB
         return preExisting;
     }
 
+    @WriteOperation
+    public boolean putBytes( final DB db, final String key, final byte[] value ) throws LocalDBException
+    {
+        ParameterValidator.validateDBValue( db );
+        ParameterValidator.validateKeyValue( key );
+        ParameterValidator.validateBytesValue( value );
+
+        final boolean preExisting = innerDB.putBytes( db, key, value );
+
+        markWrite( 1 );
+        return preExisting;
+    }
+
     @WriteOperation
     public boolean putIfAbsent( final DB db, final String key, final String value ) throws LocalDBException
     {
@@ -198,6 +221,36 @@ public class LocalDBAdaptor implements LocalDB
         markWrite( keys.size() );
     }
 
+    @WriteOperation
+    public void putAllAndRemoveAll( final DB db, final Map<String, String> keyValueMap, final Collection<String> removalKeys ) throws LocalDBException
+    {
+        ParameterValidator.validateDBValue( db );
+        for ( final Map.Entry<String, String> entry : keyValueMap.entrySet() )
+        {
+            try
+            {
+                ParameterValidator.validateKeyValue( entry.getKey() );
+                ParameterValidator.validateValueValue( entry.getValue() );
+            }
+            catch ( NullPointerException e )
+            {
+                throw new NullPointerException( e.getMessage() + " for transaction record: '" + entry.getKey() + "'" );
+            }
+            catch ( IllegalArgumentException e )
+            {
+                throw new IllegalArgumentException( e.getMessage() + " for transaction record: '" + entry.getKey() + "'" );
+            }
+        }
+        for ( final String loopKey : removalKeys )
+        {
+            ParameterValidator.validateKeyValue( loopKey );
+        }
+
+        innerDB.putAllAndRemoveAll( db, keyValueMap, removalKeys );
+
+        markWrite( keyValueMap.size() + removalKeys.size() );
+    }
+
     public long size( final DB db ) throws LocalDBException
     {
         ParameterValidator.validateDBValue( db );
@@ -257,6 +310,20 @@ public class LocalDBAdaptor implements LocalDB
                 throw new LocalDBException( new ErrorInformation( PwmError.ERROR_INTERNAL, errorMsg ) );
             }
         }
+
+        private static void validateBytesValue( final byte[] value ) throws LocalDBException
+        {
+            if ( value == null )
+            {
+                throw new NullPointerException( "value cannot be null" );
+            }
+
+            if ( value.length > LocalDB.MAX_VALUE_LENGTH )
+            {
+                final String errorMsg = "value length " + value.length + " bytes is greater than max " + LocalDB.MAX_VALUE_LENGTH;
+                throw new LocalDBException( new ErrorInformation( PwmError.ERROR_INTERNAL, errorMsg ) );
+            }
+        }
     }
 
     private void markRead()
@@ -0,0 +1,56 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package password.pwm.util.localdb;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary encoding of a LocalDB value type.  Values written through a codec are framed with the codec version, so a
+ * codec can keep decoding values written by its earlier versions after its encoding changes.  Values stored before
+ * the type had a codec are read as JSON using {@link #getValueClass()}.
+ *
+ * @param <T> the value type
+ * @see LocalDB#getBytes(LocalDB.DB, String)
+ * @see LocalDBCodecs
+ */
+public interface LocalDBCodec<T>
+{
+    /**
+     * @return the current encoding version, between 1 and 255.
+     */
+    int getVersion( );
+
+    Class<T> getValueClass( );
+
+    void encode( T value, DataOutput output )
+            throws IOException;
+
+    /**
+     * @param version the version of the codec that encoded the value.
+     */
+    T decode( DataInput input, int version )
+            throws IOException;
+}
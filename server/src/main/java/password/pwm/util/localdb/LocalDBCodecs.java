@@ -0,0 +1,223 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package password.pwm.util.localdb;
+
+import password.pwm.PwmConstants;
+import password.pwm.error.ErrorInformation;
+import password.pwm.error.PwmError;
+import password.pwm.util.java.JsonUtil;
+import password.pwm.util.java.StringUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+
+/**
+ * Reads and writes typed LocalDB values through a {@link LocalDBCodec}.
+ *
+ * <p>A binary value starts with a marker byte that never starts a UTF-8 string, followed by the codec version and
+ * the encoded value.  A stored value without the marker is a value written before the type had a codec, and is
+ * read as JSON, so existing rows stay readable and are replaced in the binary form as they are re-written.</p>
+ *
+ * <p>Providers without native binary values store binary values as strings in a text form: a prefix followed by
+ * the base64 encoding of the bytes.  The text form is also what {@link LocalDB#get(LocalDB.DB, String)} returns for
+ * binary values, so exports and imports of a LocalDB round trip binary values unchanged.</p>
+ */
+public final class LocalDBCodecs
+{
+    static final String TEXT_FORM_PREFIX = "~b64~";
+
+    private static final byte BINARY_MARKER = ( byte ) 0xFE;
+
+    private LocalDBCodecs( )
+    {
+    }
+
+    /**
+     * @return the value, or null if the key does not exist.
+     */
+    public static <T> T read( final LocalDB localDB, final LocalDB.DB db, final String key, final LocalDBCodec<T> codec )
+            throws LocalDBException
+    {
+        return decode( codec, localDB.getBytes( db, key ) );
+    }
+
+    public static <T> boolean write( final LocalDB localDB, final LocalDB.DB db, final String key, final T value, final LocalDBCodec<T> codec )
+            throws LocalDBException
+    {
+        return localDB.putBytes( db, key, encode( codec, value ) );
+    }
+
+    public static <T> byte[] encode( final LocalDBCodec<T> codec, final T value )
+            throws LocalDBException
+    {
+        try
+        {
+            final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            final DataOutputStream dataOutputStream = new DataOutputStream( byteArrayOutputStream );
+            dataOutputStream.writeByte( BINARY_MARKER );
+            dataOutputStream.writeByte( codec.getVersion() );
+            codec.encode( value, dataOutputStream );
+            dataOutputStream.close();
+            return byteArrayOutputStream.toByteArray();
+        }
+        catch ( IOException e )
+        {
+            throw codecException( codec, "encoding", e );
+        }
+    }
+
+    public static <T> T decode( final LocalDBCodec<T> codec, final byte[] storedValue )
+            throws LocalDBException
+    {
+        if ( storedValue == null || storedValue.length == 0 )
+        {
+            return null;
+        }
+
+        if ( storedValue[0] != BINARY_MARKER )
+        {
+            return JsonUtil.deserialize( new String( storedValue, PwmConstants.DEFAULT_CHARSET ), codec.getValueClass() );
+        }
+
+        try
+        {
+            final DataInputStream dataInputStream = new DataInputStream( new ByteArrayInputStream( storedValue, 1, storedValue.length - 1 ) );
+            final int version = dataInputStream.readUnsignedByte();
+            return codec.decode( dataInputStream, version );
+        }
+        catch ( IOException e )
+        {
+            throw codecException( codec, "decoding", e );
+        }
+    }
+
+    private static LocalDBException codecException( final LocalDBCodec<?> codec, final String operation, final IOException e )
+    {
+        final String errorMsg = "error " + operation + " " + codec.getValueClass().getSimpleName() + " value: " + e.getMessage();
+        return new LocalDBException( new ErrorInformation( PwmError.ERROR_LOCALDB_UNAVAILABLE, errorMsg ) );
+    }
+
+    /**
+     * Convert a binary value to its text form.
+     */
+    static String toTextForm( final byte[] value )
+    {
+        return TEXT_FORM_PREFIX + StringUtil.base64Encode( value );
+    }
+
+    /**
+     * Convert a stored string to a binary value.  Strings in the text form are decoded, any other string is
+     * returned as its UTF-8 bytes so that codecs can read it as a value written before the type had a codec.
+     *
+     * @return the binary value, or null if the stored string is null.
+     */
+    static byte[] fromTextForm( final String storedValue )
+            throws LocalDBException
+    {
+        if ( storedValue == null )
+        {
+            return null;
+        }
+
+        if ( !storedValue.startsWith( TEXT_FORM_PREFIX ) )
+        {
+            return storedValue.getBytes( PwmConstants.DEFAULT_CHARSET );
+        }
+
+        try
+        {
+            return StringUtil.base64Decode( storedValue.substring( TEXT_FORM_PREFIX.length() ) );
+        }
+        catch ( IOException e )
+        {
+            throw new LocalDBException( new ErrorInformation( PwmError.ERROR_LOCALDB_UNAVAILABLE, "malformed binary value: " + e.getMessage() ) );
+        }
+    }
+
+    public static void writeString( final DataOutput output, final String value )
+            throws IOException
+    {
+        output.writeBoolean( value != null );
+        if ( value != null )
+        {
+            output.writeUTF( value );
+        }
+    }
+
+    public static String readString( final DataInput input )
+            throws IOException
+    {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+
+    public static void writeInstant( final DataOutput output, final Instant value )
+            throws IOException
+    {
+        output.writeBoolean( value != null );
+        if ( value != null )
+        {
+            output.writeLong( value.toEpochMilli() );
+        }
+    }
+
+    public static Instant readInstant( final DataInput input )
+            throws IOException
+    {
+        return input.readBoolean() ? Instant.ofEpochMilli( input.readLong() ) : null;
+    }
+
+    public static void writeEnum( final DataOutput output, final Enum<?> value )
+            throws IOException
+    {
+        writeString( output, value == null ? null : value.name() );
+    }
+
+    /**
+     * @return the enum value, or null if no value was written or the name is no longer a value of the enum.
+     */
+    public static <E extends Enum<E>> E readEnum( final DataInput input, final Class<E> enumClass )
+            throws IOException
+    {
+        final String name = readString( input );
+        if ( name == null )
+        {
+            return null;
+        }
+
+        try
+        {
+            return Enum.valueOf( enumClass, name );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            return null;
+        }
+    }
+}
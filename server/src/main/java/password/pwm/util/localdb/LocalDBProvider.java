@@ -54,6 +54,16 @@ public interface LocalDBProvider
     String get( LocalDB.DB db, String key )
             throws LocalDBException;
 
+    /**
+     * Providers without native binary values inherit this implementation, which reads the value from its text form.
+     */
+    @LocalDB.ReadOperation
+    default byte[] getBytes( final LocalDB.DB db, final String key )
+            throws LocalDBException
+    {
+        return LocalDBCodecs.fromTextForm( get( db, key ) );
+    }
+
     @LocalDB.WriteOperation
     void init( File dbDirectory, Map<String, String> initParameters, Map<Parameter, String> parameters )
             throws LocalDBException;
@@ -69,6 +79,16 @@ public interface LocalDBProvider
     boolean put( LocalDB.DB db, String key, String value )
             throws LocalDBException;
 
+    /**
+     * Providers without native binary values inherit this implementation, which stores the value in its text form.
+     */
+    @LocalDB.WriteOperation
+    default boolean putBytes( final LocalDB.DB db, final String key, final byte[] value )
+            throws LocalDBException
+    {
+        return put( db, key, LocalDBCodecs.toTextForm( value ) );
+    }
+
     @LocalDB.WriteOperation
     boolean putIfAbsent( LocalDB.DB db, String key, String value )
             throws LocalDBException;
@@ -81,6 +101,24 @@ public interface LocalDBProvider
     void removeAll( LocalDB.DB db, Collection<String> key )
             throws LocalDBException;
 
+    /**
+     * Providers without transactional support inherit this implementation, which removes and then puts as
+     * separate writes.
+     */
+    @LocalDB.WriteOperation
+    default void putAllAndRemoveAll( final LocalDB.DB db, final Map<String, String> keyValueMap, final Collection<String> removalKeys )
+            throws LocalDBException
+    {
+        if ( !removalKeys.isEmpty() )
+        {
+            removeAll( db, removalKeys );
+        }
+        if ( !keyValueMap.isEmpty() )
+        {
+            putAll( db, keyValueMap );
+        }
+    }
+
     @LocalDB.ReadOperation
     long size( LocalDB.DB db )
             throws LocalDBException;
@@ -117,6 +117,22 @@ LocalDBStoredQueue implements Queue<String>, Deque<String>
         }
     }
 
+    /**
+     * Add values to the head and remove values from the tail of the queue with a single LocalDB write.  The removal
+     * never empties the queue; at least one previously stored value is retained.
+     */
+    public void addAllAndRemoveLast( final Collection<String> values, final int removalCount )
+    {
+        try
+        {
+            internalQueue.addFirstAndRemoveLast( values == null ? Collections.emptyList() : values, removalCount );
+        }
+        catch ( LocalDBException e )
+        {
+            throw new IllegalStateException( "unexpected LocalDB error while modifying queue: " + e.getMessage(), e );
+        }
+    }
+
     public void removeFirst( final int removalCount )
     {
         try
@@ -903,6 +919,69 @@ LocalDBStoredQueue implements Queue<String>, Deque<String>
             }
         }
 
+        void addFirstAndRemoveLast( final Collection<String> values, final int removalCount )
+                throws LocalDBException
+        {
+            try
+            {
+                lock.writeLock().lock();
+                debugOutput( "pre addFirstAndRemoveLast()" );
+
+                final int currentSize = internalSize();
+                final int removedPositions = Math.max( 0, Math.min( removalCount, currentSize - 1 ) );
+                if ( values.isEmpty() && removedPositions < 1 )
+                {
+                    return;
+                }
+
+                if ( currentSize + values.size() > MAX_SIZE )
+                {
+                    throw new IllegalStateException( "queue overflow" );
+                }
+
+                final Map<String, String> keyValueMap = new HashMap<>();
+                final List<String> removalKeys = new ArrayList<>( removedPositions );
+
+                Position nextTail = tailPosition;
+                for ( int i = 0; i < removedPositions; i++ )
+                {
+                    removalKeys.add( nextTail.toString() );
+                    nextTail = nextTail.next();
+                }
+                if ( removedPositions > 0 )
+                {
+                    keyValueMap.put( KEY_TAIL_POSITION, nextTail.toString() );
+                }
+
+                Position nextHead = headPosition;
+                if ( !values.isEmpty() )
+                {
+                    final Iterator<String> valueIterator = values.iterator();
+                    if ( currentSize == 0 )
+                    {
+                        keyValueMap.put( nextHead.toString(), valueIterator.next() );
+                    }
+
+                    while ( valueIterator.hasNext() )
+                    {
+                        nextHead = nextHead.next();
+                        keyValueMap.put( nextHead.toString(), valueIterator.next() );
+                    }
+                    keyValueMap.put( KEY_HEAD_POSITION, nextHead.toString() );
+                }
+
+                localDB.putAllAndRemoveAll( db, keyValueMap, removalKeys );
+                headPosition = nextHead;
+                tailPosition = nextTail;
+
+                debugOutput( "post addFirstAndRemoveLast()" );
+            }
+            finally
+            {
+                lock.writeLock().unlock();
+            }
+        }
+
         void addLast( final Collection<String> values ) throws LocalDBException
         {
             try
@@ -23,8 +23,10 @@
 package password.pwm.util.localdb;
 
 import com.google.gson.annotations.SerializedName;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import lombok.Builder;
 import lombok.Getter;
+import lombok.Value;
 import password.pwm.PwmApplication;
 import password.pwm.error.ErrorInformation;
 import password.pwm.error.PwmError;
@@ -41,11 +43,17 @@ import password.pwm.util.logging.PwmLogger;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
@@ -53,27 +61,50 @@ import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 /**
  * A work item queue manager.   Items submitted to the queue will eventually be worked on by the client side @code {@link ItemProcessor}.
+ *
+ * <p>Worker threads move items from the persistent queue into lanes chosen by {@link ItemProcessor#laneKey(Serializable)}.
+ * Each lane is processed and retried independently, so an item waiting to be retried only delays the items of its
+ * own lane.  Items that have left the queue but are not yet complete are kept in {@link LocalDB.DB#WORK_QUEUE_INFLIGHT}
+ * until they are finished, and are restored to their lanes when the processor is re-opened.</p>
  */
 public final class WorkQueueProcessor<W extends Serializable>
 {
 
     private static final TimeDuration SUBMIT_QUEUE_FULL_RETRY_CYCLE_INTERVAL = TimeDuration.of( 100, TimeDuration.Unit.MILLISECONDS );
-    private static final TimeDuration CLOSE_RETRY_CYCLE_INTERVAL = TimeDuration.of( 100, TimeDuration.Unit.MILLISECONDS );
+    private static final TimeDuration IDLE_WAKEUP_INTERVAL = TimeDuration.of( 10, TimeDuration.Unit.SECONDS );
+    private static final String DEFAULT_LANE_NAME = "default";
 
     private final Deque<String> queue;
     private final Settings settings;
     private final ItemProcessor<W> itemProcessor;
+    private final InFlightStore inFlightStore;
 
     private final PwmLogger logger;
 
-    private volatile WorkerThread workerThread;
+    private final ReentrantLock laneLock = new ReentrantLock();
+    private final Condition workPending = laneLock.newCondition();
+    private final Map<String, Lane> lanes = new LinkedHashMap<>();
+    private final AtomicInteger laneItemCount = new AtomicInteger( 0 );
+    private int laneCursor;
+
+    // serializes moving items from the queue to the lanes, which writes to the LocalDB outside of the lane lock
+    private final ReentrantLock dispatchLock = new ReentrantLock();
+    private final AtomicBoolean dispatchPending = new AtomicBoolean( true );
+    private final Set<String> recoveredIds = new HashSet<>();
+
+    private final List<WorkerThread> workerThreads = new ArrayList<>();
+    private volatile boolean closed;
+    private volatile Instant shutdownDeadline;
 
+    private final String idPrefix = Long.toString( System.currentTimeMillis(), 36 ) + "-";
     private final AtomicLoopIntIncrementer idGenerator = new AtomicLoopIntIncrementer();
-    private Instant eldestItem = null;
 
     private ThreadPoolExecutor executorService;
 
@@ -105,17 +136,25 @@ public final class WorkQueueProcessor<W extends Serializable>
         this.queue = queue;
         this.itemProcessor = itemProcessor;
         this.logger = PwmLogger.getLogger( sourceClass.getName() + "_" + this.getClass().getSimpleName() );
+        this.inFlightStore = new InFlightStore( pwmApplication == null ? null : pwmApplication.getLocalDB(), sourceClass.getSimpleName() + "|", logger );
 
         if ( !queue.isEmpty() )
         {
             logger.debug( () -> "opening with " + queue.size() + " items in work queue" );
         }
-        logger.trace( () -> "initializing worker thread with settings " + JsonUtil.serialize( settings ) );
+        logger.trace( () -> "initializing worker threads with settings " + JsonUtil.serialize( settings ) );
 
-        this.workerThread = new WorkerThread();
-        workerThread.setDaemon( true );
-        workerThread.setName( PwmScheduler.makeThreadName( pwmApplication, sourceClass ) + "-worker-" );
-        workerThread.start();
+        recoverInFlightItems();
+
+        final int threadCount = Math.max( 1, settings.getWorkerThreads() );
+        for ( int i = 0; i < threadCount; i++ )
+        {
+            final WorkerThread workerThread = new WorkerThread();
+            workerThread.setDaemon( true );
+            workerThread.setName( PwmScheduler.makeThreadName( pwmApplication, sourceClass ) + "-worker-" + i );
+            workerThreads.add( workerThread );
+        }
+        workerThreads.forEach( Thread::start );
 
         if ( settings.getPreThreads() > 0 )
         {
@@ -134,32 +173,43 @@ public final class WorkQueueProcessor<W extends Serializable>
 
     public void close( )
     {
-        if ( workerThread == null )
+        if ( closed )
         {
             return;
         }
+        final Instant startTime = Instant.now();
+        shutdownDeadline = startTime.plusMillis( settings.getMaxShutdownWaitTime().asMillis() );
+        closed = true;
 
         if ( executorService != null )
         {
             executorService.shutdown();
         }
 
-        final WorkerThread localWorkerThread = workerThread;
-        workerThread = null;
-
-        final Instant startTime = Instant.now();
         logger.debug( () -> "attempting to flush queue prior to shutdown, items in queue=" + queueSize() );
 
-        localWorkerThread.flushQueueAndClose();
+        signalWorkPending();
 
-        if ( localWorkerThread.isRunning() )
+        for ( final WorkerThread workerThread : workerThreads )
         {
-            settings.getMaxShutdownWaitTime().pause( CLOSE_RETRY_CYCLE_INTERVAL, () -> !localWorkerThread.isRunning() );
+            final long remainingMs = settings.getMaxShutdownWaitTime().asMillis() - TimeDuration.fromCurrent( startTime ).asMillis();
+            if ( remainingMs > 0 )
+            {
+                try
+                {
+                    workerThread.join( remainingMs );
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
         }
 
         final TimeDuration timeDuration = TimeDuration.fromCurrent( startTime );
-        final String msg = "shutting down with " + queue.size() + " items remaining in work queue (" + timeDuration.asCompactString() + ")";
-        if ( !queue.isEmpty() )
+        final int remainingItems = queueSize();
+        final String msg = "shutting down with " + remainingItems + " items remaining in work queue (" + timeDuration.asCompactString() + ")";
+        if ( remainingItems > 0 )
         {
             logger.warn( msg );
         }
@@ -171,14 +221,14 @@ public final class WorkQueueProcessor<W extends Serializable>
 
     public void submitImmediate( final W workItem )
     {
-        final ItemWrapper<W> itemWrapper = new ItemWrapper<>( Instant.now(), workItem, String.valueOf( idGenerator.next() ) );
+        final ItemWrapper<W> itemWrapper = new ItemWrapper<>( Instant.now(), workItem, nextItemId() );
         sendAndQueueIfNecessary( itemWrapper );
     }
 
     public void submit( final W workItem )
             throws PwmOperationalException
     {
-        final ItemWrapper<W> itemWrapper = new ItemWrapper<>( Instant.now(), workItem, String.valueOf( idGenerator.next() ) );
+        final ItemWrapper<W> itemWrapper = new ItemWrapper<>( Instant.now(), workItem, nextItemId() );
 
         if ( settings.getPreThreads() < 0 )
         {
@@ -205,6 +255,11 @@ public final class WorkQueueProcessor<W extends Serializable>
         }
     }
 
+    private String nextItemId( )
+    {
+        return idPrefix + idGenerator.next();
+    }
+
     private void sendAndQueueIfNecessary( final ItemWrapper<W> itemWrapper )
     {
         try
@@ -212,7 +267,7 @@ public final class WorkQueueProcessor<W extends Serializable>
             final ProcessResult processResult = itemProcessor.process( itemWrapper.getWorkItem() );
             if ( processResult == ProcessResult.SUCCESS )
             {
-                logAndStatUpdateForSuccess( itemWrapper );
+                logAndStatUpdateForSuccess( itemWrapper, TimeDuration.fromCurrent( itemWrapper.getDate() ) );
             }
             else if ( processResult == ProcessResult.RETRY || processResult == ProcessResult.NOOP )
             {
@@ -235,7 +290,7 @@ public final class WorkQueueProcessor<W extends Serializable>
 
     private synchronized void submitToQueue( final ItemWrapper<W> itemWrapper ) throws PwmOperationalException
     {
-        if ( workerThread == null )
+        if ( closed )
         {
             final String errorMsg = this.getClass().getName() + " has been closed, unable to submit new item";
             throw new PwmOperationalException( new ErrorInformation( PwmError.ERROR_INTERNAL, errorMsg ) );
@@ -257,21 +312,88 @@ public final class WorkQueueProcessor<W extends Serializable>
                 SUBMIT_QUEUE_FULL_RETRY_CYCLE_INTERVAL.pause();
             }
 
-            eldestItem = itemWrapper.getDate();
-            workerThread.notifyWorkPending();
+            dispatchPending.set( true );
+            signalWorkPending();
 
             logger.trace( () -> "item submitted: " + makeDebugText( itemWrapper ) );
         }
     }
 
+    /**
+     * @return the number of items waiting in the queue or in a lane, including items currently being processed.
+     */
     public int queueSize( )
     {
-        return queue.size();
+        return queue.size() + laneItemCount.get();
     }
 
     public Instant eldestItem( )
     {
-        return eldestItem;
+        Instant eldest = null;
+        laneLock.lock();
+        try
+        {
+            for ( final Lane lane : lanes.values() )
+            {
+                for ( final LaneItem laneItem : lane.getActiveItems() )
+                {
+                    eldest = eldestOf( eldest, laneItem.getItemWrapper().getDate() );
+                }
+                final LaneItem headItem = lane.getPending().peekFirst();
+                if ( headItem != null )
+                {
+                    eldest = eldestOf( eldest, headItem.getItemWrapper().getDate() );
+                }
+            }
+        }
+        finally
+        {
+            laneLock.unlock();
+        }
+
+        if ( eldest == null )
+        {
+            final String nextStrValue = queue.peekFirst();
+            if ( nextStrValue != null )
+            {
+                try
+                {
+                    eldest = JsonUtil.<ItemWrapper<W>>deserialize( nextStrValue, ItemWrapper.class ).getDate();
+                }
+                catch ( Exception e )
+                {
+                    logger.trace( () -> "unable to read date of queued item: " + e.getMessage() );
+                }
+            }
+        }
+
+        return eldest;
+    }
+
+    private static Instant eldestOf( final Instant current, final Instant candidate )
+    {
+        return current == null || candidate.isBefore( current ) ? candidate : current;
+    }
+
+    /**
+     * @return the current state and statistics of each lane, in the order the lanes were first used.
+     */
+    public List<LaneInfo> laneInfo( )
+    {
+        final List<LaneInfo> returnList = new ArrayList<>();
+        laneLock.lock();
+        try
+        {
+            for ( final Lane lane : lanes.values() )
+            {
+                returnList.add( lane.toLaneInfo() );
+            }
+        }
+        finally
+        {
+            laneLock.unlock();
+        }
+        return Collections.unmodifiableList( returnList );
     }
 
     private String makeDebugText( final ItemWrapper<W> itemWrapper )
@@ -296,190 +418,621 @@ public final class WorkQueueProcessor<W extends Serializable>
         return traceMsg;
     }
 
-    private class WorkerThread extends Thread
+    private void signalWorkPending( )
     {
+        laneLock.lock();
+        try
+        {
+            workPending.signalAll();
+        }
+        finally
+        {
+            laneLock.unlock();
+        }
+    }
 
-        private final AtomicBoolean running = new AtomicBoolean( false );
-        private final AtomicBoolean shutdownFlag = new AtomicBoolean( false );
-        private final AtomicBoolean notifyWorkFlag = new AtomicBoolean( true );
-
-        private Instant retryWakeupTime;
+    private void recoverInFlightItems( )
+    {
+        final Map<String, String> storedItems = inFlightStore.readAll();
+        if ( storedItems.isEmpty() )
+        {
+            return;
+        }
 
-        @Override
-        public void run( )
+        final List<ItemWrapper<W>> itemWrappers = new ArrayList<>();
+        for ( final Map.Entry<String, String> entry : storedItems.entrySet() )
         {
-            running.set( true );
             try
             {
-                while ( !shutdownFlag.get() )
-                {
-                    processNextItem();
-                    waitForWork();
-                }
+                itemWrappers.add( JsonUtil.<ItemWrapper<W>>deserialize( entry.getValue(), ItemWrapper.class ) );
             }
-            catch ( Throwable t )
+            catch ( Exception e )
             {
-                logger.error( "unexpected error processing work item queue: " + JavaHelper.readHostileExceptionMessage( t ), t );
+                logger.warn( "discarding stored in-flight record due to parsing error: " + e.getMessage() + ", record=" + entry.getValue() );
+                inFlightStore.remove( entry.getKey() );
+            }
+        }
+        itemWrappers.sort( Comparator.comparing( ItemWrapper::getDate ) );
+
+        laneLock.lock();
+        try
+        {
+            for ( final ItemWrapper<W> itemWrapper : itemWrappers )
+            {
+                try
+                {
+                    addToLane( itemWrapper, itemWrapper.getWorkItem() );
+                    recoveredIds.add( itemWrapper.getId() );
+                }
+                catch ( PwmOperationalException e )
+                {
+                    logger.warn( "discarding stored in-flight record: " + e.getMessage() );
+                    inFlightStore.remove( itemWrapper.getId() );
+                }
             }
+        }
+        finally
+        {
+            laneLock.unlock();
+        }
+
+        logger.debug( () -> "restored " + recoveredIds.size() + " in-flight items from previous run" );
+    }
 
-            logger.trace( () -> "worker thread beginning shutdown..." );
+    /**
+     * Move items from the head of the persistent queue into their lanes, until the configured number of lane
+     * items is reached.  Each item is recorded as in-flight before it is removed from the queue, so an interruption
+     * between the two writes can only leave a duplicate at the queue head, which is dropped here on the next start.
+     *
+     * <p>The LocalDB writes are made while holding only the dispatch lock, so workers completing items are not
+     * blocked by them.  If another worker is already dispatching, this method returns immediately.</p>
+     */
+    private void dispatchQueuedItems( )
+    {
+        if ( !dispatchLock.tryLock() )
+        {
+            return;
+        }
 
-            if ( !queue.isEmpty() )
+        try
+        {
+            dispatchPending.set( false );
+            while ( laneItemCount.get() < settings.getMaxLaneItems() )
             {
-                logger.trace( () -> "processing remaining " + queue.size() + " items" );
+                final String nextStrValue = queue.peekFirst();
+                if ( nextStrValue == null )
+                {
+                    return;
+                }
 
+                final ItemWrapper<W> itemWrapper;
+                final W workItem;
                 try
                 {
-                    final Instant shutdownStartTime = Instant.now();
-                    while ( retryWakeupTime == null && !queue.isEmpty() && TimeDuration.fromCurrent( shutdownStartTime ).isLongerThan( settings.getMaxShutdownWaitTime() ) )
+                    itemWrapper = JsonUtil.<ItemWrapper<W>>deserialize( nextStrValue, ItemWrapper.class );
+                    workItem = itemWrapper.getWorkItem();
+                }
+                catch ( Throwable e )
+                {
+                    queue.removeFirst();
+                    logger.warn( "discarding stored record due to parsing error: " + e.getMessage() + ", record=" + nextStrValue );
+                    continue;
+                }
+
+                if ( !recoveredIds.isEmpty() )
+                {
+                    if ( recoveredIds.contains( itemWrapper.getId() ) )
                     {
-                        processNextItem();
+                        queue.removeFirst();
+                        logger.trace( () -> "removed queued item already restored from in-flight records, id=" + itemWrapper.getId() );
+                        continue;
                     }
+                    recoveredIds.clear();
                 }
-                catch ( Throwable t )
+
+                inFlightStore.put( itemWrapper.getId(), nextStrValue );
+                queue.removeFirst();
+
+                laneLock.lock();
+                try
                 {
-                    logger.error( "unexpected error processing work item queue: " + JavaHelper.readHostileExceptionMessage( t ), t );
+                    addToLane( itemWrapper, workItem );
+                    workPending.signalAll();
+                }
+                finally
+                {
+                    laneLock.unlock();
                 }
             }
+        }
+        finally
+        {
+            dispatchLock.unlock();
+        }
+    }
 
-            logger.trace( () -> "thread exiting..." );
-            running.set( false );
+    private void addToLane( final ItemWrapper<W> itemWrapper, final W workItem )
+    {
+        String laneKey;
+        try
+        {
+            laneKey = itemProcessor.laneKey( workItem );
+        }
+        catch ( Exception e )
+        {
+            logger.debug( () -> "error reading lane key of item, using default lane: " + e.getMessage() );
+            laneKey = null;
         }
 
-        void flushQueueAndClose( )
+        final String laneName = laneKey == null ? DEFAULT_LANE_NAME : laneKey;
+        final String finalLaneKey = laneKey;
+        final Lane lane = lanes.computeIfAbsent( laneName, k -> new Lane( laneName, finalLaneKey ) );
+        lane.getPending().addLast( new LaneItem( itemWrapper, workItem, lane ) );
+        laneItemCount.incrementAndGet();
+    }
+
+    /**
+     * Wait for the next item that is ready to be processed.  After the processor is closed, items that are ready
+     * are still returned until the shutdown deadline, but paused lanes are not waited for.
+     *
+     * @return the next item, or null if the worker should exit.
+     */
+    @SuppressFBWarnings( "RV_RETURN_VALUE_IGNORED_BAD_PRACTICE" )
+    private LaneItem takeNextItem( )
+            throws InterruptedException
+    {
+        while ( true )
         {
-            shutdownFlag.set( true );
-            logger.trace( () -> "shutdown flag set" );
-            notifyWorkPending();
+            dispatchQueuedItems();
 
-            // rest until not running for up to 3 seconds....
-            if ( running.get() )
+            final List<LaneItem> discardedItems = new ArrayList<>();
+            laneLock.lock();
+            try
             {
-                TimeDuration.of( 3, TimeDuration.Unit.SECONDS ).pause( TimeDuration.of( 10, TimeDuration.Unit.MILLISECONDS ), () -> !running.get() );
+                if ( closed && Instant.now().isAfter( shutdownDeadline ) )
+                {
+                    return null;
+                }
+
+                final LaneItem laneItem = pollReadyItem( discardedItems );
+                if ( laneItem != null )
+                {
+                    return laneItem;
+                }
+
+                if ( closed )
+                {
+                    return null;
+                }
+
+                if ( discardedItems.isEmpty() && !dispatchPending.get() )
+                {
+                    long waitMs = IDLE_WAKEUP_INTERVAL.asMillis();
+                    final Instant nextWakeup = nextLaneWakeup();
+                    if ( nextWakeup != null )
+                    {
+                        waitMs = Math.max( 1, Math.min( waitMs, nextWakeup.toEpochMilli() - System.currentTimeMillis() ) );
+                    }
+                    workPending.await( waitMs, TimeUnit.MILLISECONDS );
+                }
+            }
+            finally
+            {
+                laneLock.unlock();
+                removeInFlightRecords( discardedItems );
             }
         }
+    }
 
-        void notifyWorkPending( )
+    /**
+     * Take the next ready item, visiting the lanes in turn.  Items found to be too old are released and added to
+     * the discarded list, whose in-flight records must be removed by the caller after releasing the lane lock.
+     */
+    private LaneItem pollReadyItem( final List<LaneItem> discardedItems )
+    {
+        if ( lanes.isEmpty() )
         {
-            notifyWorkFlag.set( true );
-            LockSupport.unpark( this );
+            return null;
         }
 
-        private void waitForWork( )
+        final Instant now = Instant.now();
+        final List<Lane> laneList = new ArrayList<>( lanes.values() );
+        for ( int i = 0; i < laneList.size(); i++ )
         {
-            if ( !shutdownFlag.get() )
+            final int laneIndex = ( laneCursor + i ) % laneList.size();
+            final Lane lane = laneList.get( laneIndex );
+            while ( lane.isReady( now, settings.getMaxLaneThreads() ) )
             {
-                if ( retryWakeupTime != null )
-                {
-                    while ( retryWakeupTime.isAfter( Instant.now() ) && !shutdownFlag.get() )
-                    {
-                        LockSupport.parkUntil( this, retryWakeupTime.toEpochMilli() );
-                    }
-                    retryWakeupTime = null;
-                }
-                else
+                final LaneItem laneItem = lane.getPending().pollFirst();
+                final ItemWrapper<W> itemWrapper = laneItem.getItemWrapper();
+                if ( TimeDuration.fromCurrent( itemWrapper.getDate() ).isLongerThan( settings.getRetryDiscardAge() ) )
                 {
-                    if ( queue.isEmpty() && !notifyWorkFlag.get() )
-                    {
-                        eldestItem = null;
-                        LockSupport.park( this );
-                    }
+                    logger.warn( "discarding queued item due to age, item=" + makeDebugText( itemWrapper ) );
+                    releaseItem();
+                    lane.getFailed().increment();
+                    discardedItems.add( laneItem );
+                    continue;
                 }
+
+                lane.getActiveItems().add( laneItem );
+                laneCursor = laneIndex + 1;
+                return laneItem;
+            }
+        }
+        return null;
+    }
+
+    private Instant nextLaneWakeup( )
+    {
+        Instant nextWakeup = null;
+        for ( final Lane lane : lanes.values() )
+        {
+            if ( !lane.getPending().isEmpty() && lane.getRetryAfter() != null )
+            {
+                nextWakeup = eldestOf( nextWakeup, lane.getRetryAfter() );
             }
+        }
+        return nextWakeup;
+    }
 
-            notifyWorkFlag.set( false );
+    private void processItem( final LaneItem laneItem )
+    {
+        final ItemWrapper<W> itemWrapper = laneItem.getItemWrapper();
+        final Lane lane = laneItem.getLane();
+
+        final ProcessResult processResult;
+        try
+        {
+            queueProcessItems.incrementAndGet();
+            processResult = itemProcessor.process( laneItem.getWorkItem(), lane.getLaneKey() );
+        }
+        catch ( Throwable e )
+        {
+            if ( closed )
+            {
+                completeItem( laneItem, false, false, null );
+            }
+            else
+            {
+                logger.error( "unexpected error while processing work queue: " + e.getMessage() );
+                completeItem( laneItem, true, false, failedLane -> failedLane.getFailed().increment() );
+            }
+            return;
         }
 
-        public boolean isRunning( )
+        if ( processResult == null )
         {
-            return running.get();
+            logger.warn( "itemProcessor.process() returned null, removing; item=" + makeDebugText( itemWrapper ) );
+            completeItem( laneItem, true, false, failedLane -> failedLane.getFailed().increment() );
+            return;
         }
 
-        void processNextItem( )
+        switch ( processResult )
         {
-            final String nextStrValue = queue.peekFirst();
-            if ( nextStrValue == null )
+            case FAILED:
             {
-                return;
+                logger.error( "discarding item after process failure, item=" + makeDebugText( itemWrapper ) );
+                completeItem( laneItem, true, false, failedLane -> failedLane.getFailed().increment() );
             }
+            break;
 
-            final ItemWrapper<W> itemWrapper;
-            try
+            case RETRY:
             {
-                itemWrapper = JsonUtil.<ItemWrapper<W>>deserialize( nextStrValue, ItemWrapper.class );
-                if ( TimeDuration.fromCurrent( itemWrapper.getDate() ).isLongerThan( settings.getRetryDiscardAge() ) )
+                logger.debug( () -> "will retry item after failure, lane=" + lane.getName() + ", item=" + makeDebugText( itemWrapper ) );
+                completeItem( laneItem, false, true, retriedLane -> retriedLane.getRetried().increment() );
+            }
+            break;
+
+            case SUCCESS:
+            {
+                final TimeDuration lagTime = TimeDuration.fromCurrent( itemWrapper.getDate() );
+                completeItem( laneItem, true, false, successLane -> successLane.recordSuccess( lagTime ) );
+                logAndStatUpdateForSuccess( itemWrapper, lagTime );
+            }
+            break;
+
+            case NOOP:
+            {
+                // as before lanes were introduced, the item stays at the head of its lane and is offered again without a pause
+                completeItem( laneItem, false, false, null );
+            }
+            break;
+
+            default:
+                throw new IllegalStateException( "unexpected processResult type " + processResult );
+        }
+    }
+
+    /**
+     * Finish processing of an item.  Removed items are dropped from their lane and in-flight records, otherwise the
+     * item is returned to the head of its lane, optionally pausing the lane for the retry interval.  The lane
+     * statistics are updated before waiting threads are signalled, so readers never see an item completed without
+     * its statistics.
+     */
+    private void completeItem( final LaneItem laneItem, final boolean remove, final boolean pauseLane, final Consumer<Lane> laneStatisticUpdate )
+    {
+        laneLock.lock();
+        try
+        {
+            final Lane lane = laneItem.getLane();
+            lane.getActiveItems().remove( laneItem );
+            if ( remove )
+            {
+                releaseItem();
+                lane.setRetryAfter( null );
+            }
+            else
+            {
+                lane.getPending().addFirst( laneItem );
+                if ( pauseLane )
                 {
-                    removeQueueTop();
-                    logger.warn( "discarding queued item due to age, item=" + makeDebugText( itemWrapper ) );
-                    return;
+                    lane.setRetryAfter( Instant.now().plusMillis( settings.getRetryInterval().asMillis() ) );
                 }
             }
-            catch ( Throwable e )
+            if ( laneStatisticUpdate != null )
             {
-                removeQueueTop();
-                logger.warn( "discarding stored record due to parsing error: " + e.getMessage() + ", record=" + nextStrValue );
-                return;
+                laneStatisticUpdate.accept( lane );
             }
+            workPending.signalAll();
+        }
+        finally
+        {
+            laneLock.unlock();
+        }
+
+        if ( remove )
+        {
+            removeInFlightRecords( Collections.singletonList( laneItem ) );
+        }
+    }
 
-            final ProcessResult processResult;
+    /**
+     * Account for an item leaving the lanes.  Must be called while holding the lane lock; the in-flight record is
+     * removed separately by {@link #removeInFlightRecords(List)} once the lock is released.
+     */
+    private void releaseItem( )
+    {
+        laneItemCount.decrementAndGet();
+        dispatchPending.set( true );
+    }
+
+    private void removeInFlightRecords( final List<LaneItem> laneItems )
+    {
+        for ( final LaneItem laneItem : laneItems )
+        {
+            inFlightStore.remove( laneItem.getItemWrapper().getId() );
+        }
+    }
+
+    private class WorkerThread extends Thread
+    {
+        @Override
+        public void run( )
+        {
             try
             {
-                queueProcessItems.incrementAndGet();
-                processResult = itemProcessor.process( itemWrapper.getWorkItem() );
-                if ( processResult == null )
+                LaneItem laneItem = takeNextItem();
+                while ( laneItem != null )
                 {
-                    removeQueueTop();
-                    logger.warn( "itemProcessor.process() returned null, removing; item=" + makeDebugText( itemWrapper ) );
+                    processItem( laneItem );
+                    laneItem = takeNextItem();
                 }
-                else
-                {
-                    switch ( processResult )
-                    {
-                        case FAILED:
-                        {
-                            removeQueueTop();
-                            logger.error( "discarding item after process failure, item=" + makeDebugText( itemWrapper ) );
-                        }
-                        break;
+            }
+            catch ( InterruptedException e )
+            {
+                logger.trace( () -> "worker thread interrupted" );
+            }
+            catch ( Throwable t )
+            {
+                logger.error( "unexpected error processing work item queue: " + JavaHelper.readHostileExceptionMessage( t ), t );
+            }
 
-                        case RETRY:
-                        {
-                            retryWakeupTime = Instant.ofEpochMilli( System.currentTimeMillis() + settings.getRetryInterval().asMillis() );
-                            logger.debug( () -> "will retry item after failure, item=" + makeDebugText( itemWrapper ) );
-                        }
-                        break;
+            logger.trace( () -> "thread exiting..." );
+        }
+    }
 
-                        case SUCCESS:
-                        {
-                            removeQueueTop();
-                            logAndStatUpdateForSuccess( itemWrapper );
-                        }
-                        break;
+    /**
+     * An item that has been moved from the persistent queue into a lane.
+     */
+    @Getter
+    private class LaneItem
+    {
+        private final ItemWrapper<W> itemWrapper;
+        private final W workItem;
+        private final Lane lane;
+
+        LaneItem( final ItemWrapper<W> itemWrapper, final W workItem, final Lane lane )
+        {
+            this.itemWrapper = itemWrapper;
+            this.workItem = workItem;
+            this.lane = lane;
+        }
+    }
+
+    /**
+     * Items sharing a lane key.  All fields are guarded by the lane lock, statistics are updated while holding it so
+     * they are consistent with the lane state.
+     */
+    @Getter
+    private class Lane
+    {
+        private final String name;
+        private final String laneKey;
+        private final Deque<LaneItem> pending = new ArrayDeque<>();
+        private final List<LaneItem> activeItems = new ArrayList<>();
+        private Instant retryAfter;
+
+        private final LongAdder processed = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder retried = new LongAdder();
+        private final EventRateMeter.MovingAverage avgLagTime = new EventRateMeter.MovingAverage( TimeDuration.HOUR );
+        private final EventRateMeter processRate = new EventRateMeter( TimeDuration.HOUR );
+
+        Lane( final String name, final String laneKey )
+        {
+            this.name = name;
+            this.laneKey = laneKey;
+        }
 
-                        case NOOP:
-                            break;
+        void setRetryAfter( final Instant retryAfter )
+        {
+            this.retryAfter = retryAfter;
+        }
 
+        void recordSuccess( final TimeDuration lagTime )
+        {
+            avgLagTime.update( lagTime.asMillis() );
+            processRate.markEvents( 1 );
+            processed.increment();
+        }
 
-                        default:
-                            throw new IllegalStateException( "unexpected processResult type " + processResult );
-                    }
-                }
+        boolean isReady( final Instant now, final int maxLaneThreads )
+        {
+            return !pending.isEmpty()
+                    && activeItems.size() < maxLaneThreads
+                    && ( retryAfter == null || !now.isBefore( retryAfter ) );
+        }
+
+        LaneInfo toLaneInfo( )
+        {
+            return LaneInfo.builder()
+                    .name( name )
+                    .depth( pending.size() + activeItems.size() )
+                    .activeItems( activeItems.size() )
+                    .retryAfter( retryAfter )
+                    .processed( processed.sum() )
+                    .failed( failed.sum() )
+                    .retried( retried.sum() )
+                    .averageLagTime( TimeDuration.of( ( long ) avgLagTime.getAverage(), TimeDuration.Unit.MILLISECONDS ) )
+                    .processRate( processRate.readEventRate() )
+                    .build();
+        }
+    }
+
+    @Value
+    @Builder
+    public static class LaneInfo implements Serializable
+    {
+        private String name;
+        private int depth;
+        private int activeItems;
+        private Instant retryAfter;
+        private long processed;
+        private long failed;
+        private long retried;
+        private TimeDuration averageLagTime;
+        private BigDecimal processRate;
+
+        String toDebugString( )
+        {
+            final Map<String, String> debugOutput = new LinkedHashMap<>();
+            debugOutput.put( "depth", String.valueOf( depth ) );
+            debugOutput.put( "active", String.valueOf( activeItems ) );
+            debugOutput.put( "processed", String.valueOf( processed ) );
+            debugOutput.put( "failed", String.valueOf( failed ) );
+            debugOutput.put( "retried", String.valueOf( retried ) );
+            debugOutput.put( "avgLagTime", averageLagTime.asCompactString() );
+            debugOutput.put( "rate", processRate.setScale( 2, BigDecimal.ROUND_DOWN ) + "/s" );
+            if ( retryAfter != null )
+            {
+                debugOutput.put( "retryAfter", retryAfter.toString() );
             }
-            catch ( Throwable e )
+            return StringUtil.mapToString( debugOutput, "=", "," );
+        }
+    }
+
+    /**
+     * Persistent record of items that have left the queue but are not yet complete.  Records are keyed by the
+     * owning processor's prefix and the item id.  Without an open {@link LocalDB} records are not kept.
+     */
+    private static class InFlightStore
+    {
+        private final LocalDB localDB;
+        private final String keyPrefix;
+        private final PwmLogger logger;
+
+        InFlightStore( final LocalDB localDB, final String keyPrefix, final PwmLogger logger )
+        {
+            this.localDB = localDB;
+            this.keyPrefix = keyPrefix;
+            this.logger = logger;
+        }
+
+        private boolean isAvailable( )
+        {
+            return localDB != null && localDB.status() == LocalDB.Status.OPEN;
+        }
+
+        void put( final String id, final String value )
+        {
+            if ( isAvailable() )
             {
-                if ( !shutdownFlag.get() )
+                try
                 {
-                    removeQueueTop();
-                    logger.error( "unexpected error while processing work queue: " + e.getMessage() );
+                    localDB.put( LocalDB.DB.WORK_QUEUE_INFLIGHT, keyPrefix + id, value );
+                }
+                catch ( LocalDBException e )
+                {
+                    logger.error( "error writing in-flight work queue record: " + e.getMessage() );
                 }
             }
+        }
 
+        void remove( final String id )
+        {
+            if ( isAvailable() )
+            {
+                try
+                {
+                    localDB.remove( LocalDB.DB.WORK_QUEUE_INFLIGHT, keyPrefix + id );
+                }
+                catch ( LocalDBException e )
+                {
+                    logger.error( "error removing in-flight work queue record: " + e.getMessage() );
+                }
+            }
         }
 
-        private void removeQueueTop( )
+        /**
+         * @return stored records keyed by item id.
+         */
+        Map<String, String> readAll( )
         {
-            queue.removeFirst();
-            retryWakeupTime = null;
+            final Map<String, String> returnMap = new LinkedHashMap<>();
+            if ( !isAvailable() )
+            {
+                return returnMap;
+            }
+
+            LocalDB.LocalDBIterator<String> iter = null;
+            try
+            {
+                iter = localDB.iterator( LocalDB.DB.WORK_QUEUE_INFLIGHT );
+                while ( iter.hasNext() )
+                {
+                    final String key = iter.next();
+                    if ( key != null && key.startsWith( keyPrefix ) )
+                    {
+                        final String value = localDB.get( LocalDB.DB.WORK_QUEUE_INFLIGHT, key );
+                        if ( value != null )
+                        {
+                            returnMap.put( key.substring( keyPrefix.length() ), value );
+                        }
+                    }
+                }
+            }
+            catch ( Exception e )
+            {
+                logger.error( "error reading in-flight work queue records: " + e.getMessage() );
+            }
+            finally
+            {
+                if ( iter != null )
+                {
+                    iter.close();
+                }
+            }
+            return returnMap;
         }
     }
 
@@ -547,6 +1100,24 @@ public final class WorkQueueProcessor<W extends Serializable>
         ProcessResult process( W workItem );
 
         String convertToDebugString( W workItem );
+
+        /**
+         * Items with different lane keys are processed and retried independently, typically one lane per destination.
+         *
+         * @return the lane key of the item, or null for the default lane.
+         */
+        default String laneKey( final W workItem )
+        {
+            return null;
+        }
+
+        /**
+         * Process an item taken from a lane.  The default implementation ignores the lane key.
+         */
+        default ProcessResult process( final W workItem, final String laneKey )
+        {
+            return process( workItem );
+        }
     }
 
     @Getter
@@ -559,6 +1130,15 @@ public final class WorkQueueProcessor<W extends Serializable>
         @Builder.Default
         private int preThreads = 0;
 
+        @Builder.Default
+        private int workerThreads = 1;
+
+        @Builder.Default
+        private int maxLaneThreads = 1;
+
+        @Builder.Default
+        private int maxLaneItems = 100;
+
         @Builder.Default
         private TimeDuration maxSubmitWaitTime = TimeDuration.of( 5, TimeDuration.Unit.SECONDS );
 
@@ -572,10 +1152,8 @@ public final class WorkQueueProcessor<W extends Serializable>
         private TimeDuration maxShutdownWaitTime = TimeDuration.of( 30, TimeDuration.Unit.SECONDS );
     }
 
-    private void logAndStatUpdateForSuccess( final ItemWrapper<W> itemWrapper )
-            throws PwmOperationalException
+    private void logAndStatUpdateForSuccess( final ItemWrapper<W> itemWrapper, final TimeDuration lagTime )
     {
-        final TimeDuration lagTime = TimeDuration.fromCurrent( itemWrapper.getDate() );
         avgLagTime.update( lagTime.asMillis() );
         sendRate.markEvents( 1 );
         logger.trace( () -> "successfully processed item=" + makeDebugText( itemWrapper ) + "; lagTime=" + lagTime.asCompactString()
@@ -591,10 +1169,16 @@ public final class WorkQueueProcessor<W extends Serializable>
         output.put( "preQueueBypass", String.valueOf( preQueueBypass.get() ) );
         output.put( "preQueueFallback", String.valueOf( preQueueFallback.get() ) );
         output.put( "queueProcessItems", String.valueOf( queueProcessItems.get() ) );
+        output.put( "workerThreads", String.valueOf( workerThreads.size() ) );
+        output.put( "laneItems", String.valueOf( laneItemCount.get() ) );
         if ( executorService != null )
         {
             output.put( "activeThreads", String.valueOf( executorService.getActiveCount() ) );
         }
+        for ( final LaneInfo laneInfo : laneInfo() )
+        {
+            output.put( "lane_" + laneInfo.getName(), laneInfo.toDebugString() );
+        }
         return Collections.unmodifiableMap( output );
     }
 }
@@ -232,6 +232,22 @@ public class XodusLocalDB implements LocalDBProvider
         } );
     }
 
+    @Override
+    public byte[] getBytes( final LocalDB.DB db, final String key ) throws LocalDBException
+    {
+        checkStatus( false );
+        return environment.computeInReadonlyTransaction( transaction ->
+        {
+            final Store store = getStore( db );
+            final ByteIterable returnValue = store.get( transaction, bindMachine.keyToEntry( key ) );
+            if ( returnValue != null )
+            {
+                return bindMachine.entryToBytes( returnValue );
+            }
+            return null;
+        } );
+    }
+
     @Override
     public LocalDB.LocalDBIterator<String> iterator( final LocalDB.DB db ) throws LocalDBException
     {
@@ -365,6 +381,19 @@ public class XodusLocalDB implements LocalDBProvider
         } );
     }
 
+    @Override
+    public boolean putBytes( final LocalDB.DB db, final String key, final byte[] value ) throws LocalDBException
+    {
+        checkStatus( true );
+        return environment.computeInTransaction( transaction ->
+        {
+            final ByteIterable k = bindMachine.keyToEntry( key );
+            final ByteIterable v = bindMachine.bytesToEntry( value );
+            final Store store = getStore( db );
+            return store.put( transaction, k, v );
+        } );
+    }
+
     @LocalDB.WriteOperation
     public boolean putIfAbsent( final LocalDB.DB db, final String key, final String value ) throws LocalDBException
     {
@@ -409,6 +438,28 @@ public class XodusLocalDB implements LocalDBProvider
     }
 
 
+    @Override
+    public void putAllAndRemoveAll( final LocalDB.DB db, final Map<String, String> keyValueMap, final Collection<String> removalKeys )
+            throws LocalDBException
+    {
+        checkStatus( true );
+        environment.executeInTransaction( transaction ->
+        {
+            final Store store = getStore( db );
+            for ( final String key : removalKeys )
+            {
+                store.delete( transaction, bindMachine.keyToEntry( key ) );
+            }
+            for ( final Map.Entry<String, String> entry : keyValueMap.entrySet() )
+            {
+                final ByteIterable k = bindMachine.keyToEntry( entry.getKey() );
+                final ByteIterable v = bindMachine.valueToEntry( entry.getValue() );
+                store.put( transaction, k, v );
+            }
+        } );
+        outputLogExecutor.conditionallyExecuteTask();
+    }
+
     @Override
     public void truncate( final LocalDB.DB db ) throws LocalDBException
     {
@@ -512,6 +563,8 @@ public class XodusLocalDB implements LocalDBProvider
 
     private static class BindMachine
     {
+        private static final byte BINARY_COMPRESSED_PREFIX = 96;
+        private static final byte BINARY_PREFIX = 97;
         private static final byte COMPRESSED_PREFIX = 98;
         private static final byte UNCOMPRESSED_PREFIX = 99;
 
@@ -559,12 +612,60 @@ public class XodusLocalDB implements LocalDBProvider
             }
         }
 
+        ByteIterable bytesToEntry( final byte[] value )
+        {
+            if ( enableCompression && value.length >= minCompressionLength )
+            {
+                final byte[] compressedArray = compressData( value );
+                if ( compressedArray.length < value.length )
+                {
+                    return new ArrayByteIterable( BINARY_COMPRESSED_PREFIX, new ArrayByteIterable( compressedArray ) );
+                }
+            }
+
+            return new ArrayByteIterable( BINARY_PREFIX, new ArrayByteIterable( value ) );
+        }
+
+        /**
+         * Read an entry as a binary value; string entries are converted from their text form.
+         */
+        byte[] entryToBytes( final ByteIterable value )
+        {
+            final byte[] rawValue = value.getBytesUnsafe();
+            if ( rawValue[ 0 ] == BINARY_PREFIX || rawValue[ 0 ] == BINARY_COMPRESSED_PREFIX )
+            {
+                final byte[] strippedArray = new byte[ rawValue.length - 1 ];
+                System.arraycopy( rawValue, 1, strippedArray, 0, rawValue.length - 1 );
+                return rawValue[ 0 ] == BINARY_PREFIX ? strippedArray : decompressData( strippedArray );
+            }
+
+            try
+            {
+                return LocalDBCodecs.fromTextForm( entryToValue( value ) );
+            }
+            catch ( LocalDBException e )
+            {
+                throw new IllegalStateException( e.getMessage(), e );
+            }
+        }
+
+        /**
+         * Read an entry as a string value; binary entries are returned in their text form.
+         */
         String entryToValue( final ByteIterable value )
         {
             final byte[] rawValue = value.getBytesUnsafe();
             final byte[] strippedArray = new byte[ rawValue.length - 1 ];
             System.arraycopy( rawValue, 1, strippedArray, 0, rawValue.length - 1 );
-            if ( rawValue[ 0 ] == UNCOMPRESSED_PREFIX )
+            if ( rawValue[ 0 ] == BINARY_PREFIX )
+            {
+                return LocalDBCodecs.toTextForm( strippedArray );
+            }
+            else if ( rawValue[ 0 ] == BINARY_COMPRESSED_PREFIX )
+            {
+                return LocalDBCodecs.toTextForm( decompressData( strippedArray ) );
+            }
+            else if ( rawValue[ 0 ] == UNCOMPRESSED_PREFIX )
             {
                 return StringBinding.entryToString( new ArrayByteIterable( strippedArray ) );
             }
@@ -0,0 +1,532 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package password.pwm.util.logging;
+
+import password.pwm.util.java.TimeDuration;
+import password.pwm.util.localdb.LocalDB;
+import password.pwm.util.localdb.LocalDBException;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Time bucketed storage of the LocalDB event log.  Events are grouped into segments of consecutive events; a segment
+ * is closed once it holds the configured number of events, spans the configured duration, or would exceed the
+ * LocalDB value size.  Each segment is stored as one or more data chunks holding its encoded events and a summary
+ * record ({@link LogSegment}).  Summaries of all segments are kept in memory, so searches can skip segments without
+ * reading them and trimming removes whole segments without reading any events.
+ *
+ * <p>Writes are made only by a single writer thread; reads may be made concurrently from any thread.  Each write
+ * appends the new events of the open segment as a new data chunk and re-writes only the segment summary, so events
+ * are persisted as soon as they are written without re-writing the events already stored.</p>
+ */
+public class LocalDBLogStore
+{
+    private static final PwmLogger LOGGER = PwmLogger.forClass( LocalDBLogStore.class );
+
+    private static final LocalDB.DB DB = LocalDB.DB.EVENTLOG_EVENTS;
+    private static final char SUMMARY_KEY_PREFIX = 'S';
+    private static final char DATA_KEY_PREFIX = 'D';
+    private static final int KEY_ID_LENGTH = 12;
+    private static final int CHUNK_ID_LENGTH = 4;
+    private static final int MAX_SEGMENT_CHUNKS = 36 * 36 * 36 * 36;
+    private static final int RADIX = 36;
+    private static final int FIELD_LENGTH_OVERHEAD = 8;
+    private static final int MAX_SEGMENT_CHARS = LocalDB.MAX_VALUE_LENGTH - 1024;
+
+    private final LocalDB localDB;
+    private final int maxSegmentEvents;
+    private final TimeDuration segmentDuration;
+    private final ConcurrentNavigableMap<Long, LogSegment> segments = new ConcurrentSkipListMap<>();
+
+    private volatile int storedEvents;
+
+    // only accessed by the writer thread
+    private long nextSegmentId;
+    private OpenSegment openSegment;
+
+    public LocalDBLogStore( final LocalDB localDB, final LocalDBLoggerSettings settings )
+            throws LocalDBException
+    {
+        this.localDB = localDB;
+        this.maxSegmentEvents = Math.max( 1, settings.getSegmentEvents() );
+        this.segmentDuration = settings.getSegmentDuration();
+        loadSegments();
+    }
+
+    private void loadSegments( )
+            throws LocalDBException
+    {
+        final Set<Long> dataIds = new HashSet<>();
+        final Set<Long> summaryIds = new HashSet<>();
+        final List<String> dataKeys = new ArrayList<>();
+        try ( LocalDB.LocalDBIterator<String> iterator = localDB.iterator( DB ) )
+        {
+            while ( iterator.hasNext() )
+            {
+                final String key = iterator.next();
+                final long id = parseKey( key );
+                if ( id >= 0 )
+                {
+                    if ( key.charAt( 0 ) == SUMMARY_KEY_PREFIX )
+                    {
+                        summaryIds.add( id );
+                    }
+                    else
+                    {
+                        dataIds.add( id );
+                        dataKeys.add( key );
+                    }
+                }
+            }
+        }
+
+        final List<String> orphanKeys = new ArrayList<>();
+        for ( final Long id : summaryIds )
+        {
+            final LogSegment segment = dataIds.contains( id ) ? readSummary( id ) : null;
+            if ( segment == null )
+            {
+                orphanKeys.add( summaryKey( id ) );
+            }
+            else
+            {
+                segments.put( id, segment );
+            }
+        }
+
+        for ( final String key : dataKeys )
+        {
+            final LogSegment segment = segments.get( parseKey( key ) );
+            if ( segment == null || parseChunk( key ) >= segment.getChunkCount() )
+            {
+                orphanKeys.add( key );
+            }
+        }
+
+        if ( !orphanKeys.isEmpty() )
+        {
+            LOGGER.debug( () -> "removing " + orphanKeys.size() + " incomplete event log segment records" );
+            localDB.removeAll( DB, orphanKeys );
+        }
+
+        int eventCount = 0;
+        for ( final LogSegment segment : segments.values() )
+        {
+            eventCount += segment.getEventCount();
+        }
+        storedEvents = eventCount;
+        nextSegmentId = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+    }
+
+    private LogSegment readSummary( final long id )
+            throws LocalDBException
+    {
+        try
+        {
+            return LogSegment.decode( id, localDB.get( DB, summaryKey( id ) ) );
+        }
+        catch ( IOException e )
+        {
+            LOGGER.debug( () -> "discarding unreadable event log segment " + id + ": " + e.getMessage() );
+            return null;
+        }
+    }
+
+    public int size( )
+    {
+        return storedEvents;
+    }
+
+    public boolean isEmpty( )
+    {
+        return storedEvents == 0;
+    }
+
+    /**
+     * @return the date of the oldest stored event, or null if the store is empty.
+     */
+    public Instant getTailDate( )
+    {
+        final Map.Entry<Long, LogSegment> firstEntry = segments.firstEntry();
+        return firstEntry == null ? null : firstEntry.getValue().getFirstDate();
+    }
+
+    int getSegmentCount( )
+    {
+        return segments.size();
+    }
+
+    /**
+     * @return a snapshot of the current segment summaries, newest segment first.
+     */
+    List<LogSegment> segmentsNewestFirst( )
+    {
+        return new ArrayList<>( segments.descendingMap().values() );
+    }
+
+    /**
+     * Read the events of a segment in the order they were written.  A segment removed since its summary was read is
+     * returned as empty, and unreadable events are skipped.
+     */
+    List<PwmLogEvent> readEvents( final LogSegment segment )
+            throws LocalDBException
+    {
+        final List<PwmLogEvent> events = new ArrayList<>( segment.getEventCount() );
+        for ( int chunk = 0; chunk < segment.getChunkCount(); chunk++ )
+        {
+            final String value = localDB.get( DB, dataKey( segment.getId(), chunk ) );
+            if ( value == null )
+            {
+                return events;
+            }
+            readChunk( segment, value, events );
+        }
+        return events;
+    }
+
+    private static void readChunk( final LogSegment segment, final String value, final List<PwmLogEvent> events )
+    {
+        try
+        {
+            final PwmLogEventCodec.FieldReader reader = new PwmLogEventCodec.FieldReader( value, 0 );
+            while ( reader.hasMore() )
+            {
+                final String encodedEvent = reader.readField();
+                try
+                {
+                    events.add( PwmLogEventCodec.decode( encodedEvent ) );
+                }
+                catch ( IOException e )
+                {
+                    LOGGER.trace( () -> "skipping unreadable event in log segment " + segment.getId() + ": " + e.getMessage() );
+                }
+            }
+        }
+        catch ( RuntimeException e )
+        {
+            LOGGER.debug( () -> "log segment " + segment.getId() + " is truncated: " + e.getMessage() );
+        }
+    }
+
+    /**
+     * Iterate all stored events, oldest first.
+     */
+    public Iterator<PwmLogEvent> iterator( )
+    {
+        final List<LogSegment> segmentList = segmentsNewestFirst();
+        Collections.reverse( segmentList );
+        return new OldestFirstIterator( segmentList.iterator() );
+    }
+
+    /**
+     * Append events and trim the oldest segments in a single LocalDB write.  Segments are trimmed while the stored
+     * event count exceeds {@code maxEvents} or the newest event of the oldest segment is older than {@code maxAge},
+     * removing at least one and at most {@code maxTrimEvents} events worth of segments per write.  The open segment
+     * is never trimmed.
+     *
+     * @return the number of events discarded because their encoding exceeds the maximum segment size.
+     */
+    int write( final List<PwmLogEvent> events, final int maxEvents, final TimeDuration maxAge, final int maxTrimEvents )
+            throws LocalDBException
+    {
+        final Map<Long, OpenSegment> writtenSegments = new HashMap<>();
+        int oversizedEvents = 0;
+
+        for ( final PwmLogEvent event : events )
+        {
+            final String encodedEvent = PwmLogEventCodec.encode( event );
+            final int encodedLength = encodedEvent.length() + FIELD_LENGTH_OVERHEAD;
+            if ( encodedLength > MAX_SEGMENT_CHARS )
+            {
+                oversizedEvents++;
+                continue;
+            }
+
+            if ( openSegment == null || !openSegment.accepts( event, encodedLength ) )
+            {
+                openSegment = new OpenSegment( nextSegmentId++, event.getDate() );
+            }
+
+            openSegment.add( event, encodedEvent );
+            writtenSegments.put( openSegment.collector.getId(), openSegment );
+        }
+
+        final Map<String, String> putValues = new HashMap<>();
+        final Map<Long, LogSegment> writtenSummaries = new HashMap<>();
+        int addedEvents = 0;
+        for ( final Map.Entry<Long, OpenSegment> entry : writtenSegments.entrySet() )
+        {
+            final long id = entry.getKey();
+            final OpenSegment writtenSegment = entry.getValue();
+            final LogSegment segment = writtenSegment.collector.toSegment( writtenSegment.storedChunks + 1 );
+            final LogSegment existingSegment = segments.get( id );
+            addedEvents += segment.getEventCount() - ( existingSegment == null ? 0 : existingSegment.getEventCount() );
+            putValues.put( dataKey( id, writtenSegment.storedChunks ), writtenSegment.pendingData.toString() );
+            putValues.put( summaryKey( id ), segment.encode() );
+            writtenSummaries.put( id, segment );
+        }
+
+        final List<LogSegment> trimmedSegments = selectTrimmedSegments( storedEvents + addedEvents, maxEvents, maxAge, maxTrimEvents );
+        if ( putValues.isEmpty() && trimmedSegments.isEmpty() )
+        {
+            return oversizedEvents;
+        }
+
+        final List<String> removalKeys = new ArrayList<>();
+        int removedEvents = 0;
+        for ( final LogSegment segment : trimmedSegments )
+        {
+            for ( int chunk = 0; chunk < segment.getChunkCount(); chunk++ )
+            {
+                removalKeys.add( dataKey( segment.getId(), chunk ) );
+            }
+            removalKeys.add( summaryKey( segment.getId() ) );
+            removedEvents += segment.getEventCount();
+        }
+
+        localDB.putAllAndRemoveAll( DB, putValues, removalKeys );
+
+        // pending events stay pending if the write fails, so they are included in the chunk written by the next write
+        for ( final OpenSegment writtenSegment : writtenSegments.values() )
+        {
+            writtenSegment.chunkStored();
+        }
+
+        segments.putAll( writtenSummaries );
+        for ( final LogSegment segment : trimmedSegments )
+        {
+            segments.remove( segment.getId() );
+        }
+        storedEvents = storedEvents + addedEvents - removedEvents;
+        return oversizedEvents;
+    }
+
+    private List<LogSegment> selectTrimmedSegments(
+            final int projectedEvents,
+            final int maxEvents,
+            final TimeDuration maxAge,
+            final int maxTrimEvents
+    )
+    {
+        final List<LogSegment> trimmedSegments = new ArrayList<>();
+        final Instant oldestRetainedDate = Instant.now().minus( maxAge.asDuration() );
+        int remainingEvents = projectedEvents;
+        int trimmedEvents = 0;
+
+        for ( final LogSegment segment : segments.values() )
+        {
+            final boolean openSegmentReached = openSegment != null && segment.getId() >= openSegment.collector.getId();
+            final boolean trimLimitReached = !trimmedSegments.isEmpty() && trimmedEvents >= maxTrimEvents;
+            if ( openSegmentReached || trimLimitReached )
+            {
+                break;
+            }
+
+            final boolean excessEvents = remainingEvents > maxEvents;
+            final boolean agedSegment = segment.getLastDate().isBefore( oldestRetainedDate );
+            if ( !excessEvents && !agedSegment )
+            {
+                break;
+            }
+
+            trimmedSegments.add( segment );
+            trimmedEvents += segment.getEventCount();
+            remainingEvents -= segment.getEventCount();
+        }
+
+        return trimmedSegments;
+    }
+
+    void clear( )
+            throws LocalDBException
+    {
+        localDB.truncate( DB );
+        segments.clear();
+        storedEvents = 0;
+        openSegment = null;
+        nextSegmentId = 0;
+    }
+
+    private static String summaryKey( final long id )
+    {
+        return SUMMARY_KEY_PREFIX + formatId( id, KEY_ID_LENGTH );
+    }
+
+    /**
+     * The first chunk of a segment is keyed by the segment id alone, later chunks also by the chunk number.
+     */
+    private static String dataKey( final long id, final int chunk )
+    {
+        return chunk == 0
+                ? DATA_KEY_PREFIX + formatId( id, KEY_ID_LENGTH )
+                : DATA_KEY_PREFIX + formatId( id, KEY_ID_LENGTH ) + formatId( chunk, CHUNK_ID_LENGTH );
+    }
+
+    private static String formatId( final long id, final int length )
+    {
+        final String value = Long.toString( id, RADIX );
+        final StringBuilder sb = new StringBuilder( length );
+        for ( int i = value.length(); i < length; i++ )
+        {
+            sb.append( '0' );
+        }
+        sb.append( value );
+        return sb.toString();
+    }
+
+    /**
+     * @return the segment id of a summary or data key, or -1 for any other key.
+     */
+    private static long parseKey( final String key )
+    {
+        if ( key == null || key.isEmpty() )
+        {
+            return -1;
+        }
+
+        final char prefix = key.charAt( 0 );
+        final boolean summaryKey = prefix == SUMMARY_KEY_PREFIX && key.length() == KEY_ID_LENGTH + 1;
+        final boolean dataKey = prefix == DATA_KEY_PREFIX
+                && ( key.length() == KEY_ID_LENGTH + 1 || key.length() == KEY_ID_LENGTH + CHUNK_ID_LENGTH + 1 );
+        if ( !summaryKey && !dataKey )
+        {
+            return -1;
+        }
+
+        try
+        {
+            return Long.parseLong( key.substring( 1, KEY_ID_LENGTH + 1 ), RADIX );
+        }
+        catch ( NumberFormatException e )
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * @return the chunk number of a data key already accepted by {@link #parseKey(String)}.
+     */
+    private static int parseChunk( final String key )
+    {
+        if ( key.length() == KEY_ID_LENGTH + 1 )
+        {
+            return 0;
+        }
+
+        try
+        {
+            return Integer.parseInt( key.substring( KEY_ID_LENGTH + 1 ), RADIX );
+        }
+        catch ( NumberFormatException e )
+        {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    private class OpenSegment
+    {
+        private final LogSegment.Collector collector;
+        private final Instant bucketEnd;
+        private final StringBuilder pendingData = new StringBuilder();
+        private int storedChars;
+        private int storedChunks;
+
+        OpenSegment( final long id, final Instant bucketStart )
+        {
+            this.collector = new LogSegment.Collector( id );
+            this.bucketEnd = bucketStart.plus( segmentDuration.asDuration() );
+        }
+
+        boolean accepts( final PwmLogEvent event, final int encodedLength )
+        {
+            return collector.getEventCount() < maxSegmentEvents
+                    && storedChunks < MAX_SEGMENT_CHUNKS
+                    && storedChars + pendingData.length() + encodedLength <= MAX_SEGMENT_CHARS
+                    && event.getDate().isBefore( bucketEnd );
+        }
+
+        void add( final PwmLogEvent event, final String encodedEvent )
+        {
+            collector.add( event );
+            PwmLogEventCodec.writeField( pendingData, encodedEvent );
+        }
+
+        void chunkStored( )
+        {
+            storedChars += pendingData.length();
+            storedChunks++;
+            pendingData.setLength( 0 );
+        }
+    }
+
+    private class OldestFirstIterator implements Iterator<PwmLogEvent>
+    {
+        private final Iterator<LogSegment> segmentIterator;
+        private Iterator<PwmLogEvent> eventIterator = Collections.emptyIterator();
+
+        OldestFirstIterator( final Iterator<LogSegment> segmentIterator )
+        {
+            this.segmentIterator = segmentIterator;
+        }
+
+        @Override
+        public boolean hasNext( )
+        {
+            while ( !eventIterator.hasNext() && segmentIterator.hasNext() )
+            {
+                try
+                {
+                    eventIterator = readEvents( segmentIterator.next() ).iterator();
+                }
+                catch ( LocalDBException e )
+                {
+                    throw new IllegalStateException( "error reading event log segment: " + e.getMessage(), e );
+                }
+            }
+            return eventIterator.hasNext();
+        }
+
+        @Override
+        public PwmLogEvent next( )
+        {
+            if ( !hasNext() )
+            {
+                throw new NoSuchElementException();
+            }
+            return eventIterator.next();
+        }
+    }
+}
@@ -32,32 +32,32 @@ import password.pwm.util.PwmScheduler;
 import password.pwm.util.java.FileSystemUtility;
 import password.pwm.util.java.JavaHelper;
 import password.pwm.util.java.PwmNumberFormat;
+import password.pwm.util.java.RingBuffer;
 import password.pwm.util.java.StringUtil;
 import password.pwm.util.java.TimeDuration;
 import password.pwm.util.localdb.LocalDB;
 import password.pwm.util.localdb.LocalDBException;
-import password.pwm.util.localdb.LocalDBStoredQueue;
 
-import java.io.IOException;
 import java.text.NumberFormat;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
-import java.util.Queue;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Saves a recent copy of PWM events in the pwmDB.
  *
+ * <p>Logging threads hand events to a lock-free {@link RingBuffer} and return immediately.  A single writer thread
+ * drains the buffer and group-commits each batch to the {@link LocalDBLogStore}, trimming the oldest segments of the
+ * store in the same LocalDB write.</p>
+ *
  * @author Jason D. Rivard
  */
 public class LocalDBLogger implements PwmService
@@ -66,16 +66,22 @@ public class LocalDBLogger implements PwmService
 
     private final LocalDB localDB;
     private final LocalDBLoggerSettings settings;
-    private final LocalDBStoredQueue localDBListQueue;
-    private final Queue<PwmLogEvent> eventQueue;
-    private final ScheduledExecutorService cleanerService;
+    private final LocalDBLogStore logStore;
+    private final RingBuffer<PwmLogEvent> eventBuffer;
     private final ScheduledExecutorService writerService;
-    private final AtomicBoolean cleanOnWriteFlag = new AtomicBoolean( false );
+    private final AtomicBoolean flushRequested = new AtomicBoolean( false );
+    private final LongAdder discardedEvents = new LongAdder();
+    private final int flushThreshold;
+    private final int sheddingThreshold;
 
     private volatile STATUS status = STATUS.NEW;
-    private boolean hasShownReadError = false;
 
-    private static final String STORAGE_FORMAT_VERSION = "3";
+    // only accessed by the writer thread
+    private Instant nextDiscardReport = Instant.now();
+    private long reportedDiscards = 0;
+
+    private static final String STORAGE_FORMAT_VERSION = "5";
+    private static final TimeDuration DISCARD_REPORT_INTERVAL = TimeDuration.MINUTE;
 
     public LocalDBLogger(
             final PwmApplication pwmApplication,
@@ -94,20 +100,18 @@ public class LocalDBLogger implements PwmService
                 : settings.applyValueChecks();
 
         this.localDB = localDB;
-        this.localDBListQueue = LocalDBStoredQueue.createLocalDBStoredQueue(
-                pwmApplication,
-                localDB,
-                LocalDB.DB.EVENTLOG_EVENTS
-        );
+        this.logStore = new LocalDBLogStore( localDB, this.settings );
 
         if ( this.settings.getMaxEvents() == 0 )
         {
             LOGGER.info( () -> "maxEvents set to zero, clearing LocalDBLogger history and LocalDBLogger will remain closed" );
-            localDBListQueue.clear();
+            logStore.clear();
             throw new IllegalArgumentException( "maxEvents=0, will remain closed" );
         }
 
-        eventQueue = new ArrayBlockingQueue<>( this.settings.getMaxBufferSize(), true );
+        eventBuffer = new RingBuffer<>( this.settings.getMaxBufferSize() );
+        flushThreshold = eventBuffer.capacity() / 2;
+        sheddingThreshold = eventBuffer.capacity() - eventBuffer.capacity() / 4;
 
         if ( pwmApplication != null )
         {
@@ -117,30 +121,21 @@ public class LocalDBLogger implements PwmService
                 LOGGER.warn( "localdb logger is using outdated format, clearing existing records (existing='"
                         + currentFormat + "', current='" + STORAGE_FORMAT_VERSION + "')" );
 
-                localDBListQueue.clear();
+                logStore.clear();
                 pwmApplication.writeAppAttribute( PwmApplication.AppAttribute.LOCALDB_LOGGER_STORAGE_FORMAT, STORAGE_FORMAT_VERSION );
             }
         }
 
         status = STATUS.OPEN;
 
-        cleanerService = Executors.newSingleThreadScheduledExecutor(
-                PwmScheduler.makePwmThreadFactory(
-                        PwmScheduler.makeThreadName( pwmApplication, this.getClass() ) + "-cleaner-",
-                        true
-                ) );
-
         writerService = Executors.newSingleThreadScheduledExecutor(
                 PwmScheduler.makePwmThreadFactory(
                         PwmScheduler.makeThreadName( pwmApplication, this.getClass() ) + "-writer-",
                         true
                 ) );
 
-        cleanerService.scheduleAtFixedRate( new CleanupTask(), 0, 1, TimeUnit.MINUTES );
         writerService.scheduleWithFixedDelay( new FlushTask(), 0, 103, TimeUnit.MILLISECONDS );
 
-        cleanOnWriteFlag.set( eventQueue.size() >= this.settings.getMaxEvents() );
-
         final TimeDuration timeDuration = TimeDuration.fromCurrent( startTime );
         LOGGER.info( () -> "open in " + timeDuration.asCompactString() + ", " + debugStats() );
     }
@@ -148,40 +143,20 @@ public class LocalDBLogger implements PwmService
 
     public Instant getTailDate( )
     {
-        final PwmLogEvent loopEvent;
-        if ( localDBListQueue.isEmpty() )
-        {
-            return null;
-        }
-        try
-        {
-            loopEvent = readEvent( localDBListQueue.getLast() );
-            if ( loopEvent != null )
-            {
-                final Instant tailDate = loopEvent.getDate();
-                if ( tailDate != null )
-                {
-                    return tailDate;
-                }
-            }
-        }
-        catch ( Exception e )
-        {
-            LOGGER.error( "unexpected error attempting to determine tail event timestamp: " + e.getMessage() );
-        }
-
-        return null;
+        return logStore.getTailDate();
     }
 
 
     private String debugStats( )
     {
         final StringBuilder sb = new StringBuilder();
-        sb.append( "events=" ).append( localDBListQueue.size() );
+        sb.append( "events=" ).append( logStore.size() );
+        sb.append( ", segments=" ).append( logStore.getSegmentCount() );
         final Instant tailAge = getTailDate();
         sb.append( ", tailAge=" ).append( tailAge == null ? "n/a" : TimeDuration.fromCurrent( tailAge ).asCompactString() );
         sb.append( ", maxEvents=" ).append( settings.getMaxEvents() );
         sb.append( ", maxAge=" ).append( settings.getMaxAge().asCompactString() );
+        sb.append( ", discarded=" ).append( discardedEvents.sum() );
         sb.append( ", localDBSize=" ).append( StringUtil.formatDiskSize( FileSystemUtility.getFileDirectorySize( localDB.getFileLocation() ) ) );
         return sb.toString();
     }
@@ -191,10 +166,6 @@ public class LocalDBLogger implements PwmService
         if ( status != STATUS.CLOSED )
         {
             LOGGER.debug( () -> "LocalDBLogger closing... (" + debugStats() + ")" );
-            if ( cleanerService != null )
-            {
-                cleanerService.shutdown();
-            }
             writerService.execute( new FlushTask() );
             JavaHelper.closeAndWaitExecutor( writerService, TimeDuration.SECONDS_10 );
         }
@@ -205,52 +176,9 @@ public class LocalDBLogger implements PwmService
 
     public int getStoredEventCount( )
     {
-        return localDBListQueue.size();
+        return logStore.size();
     }
 
-    private int determineTailRemovalCount( )
-    {
-        final int maxTrailSize = settings.getMaxTrimSize();
-
-        final int currentItemCount = localDBListQueue.size();
-
-        // must keep at least one position populated
-        if ( currentItemCount <= LocalDBLoggerSettings.MINIMUM_MAXIMUM_EVENTS )
-        {
-            return 0;
-        }
-
-        // purge excess events by count
-        if ( currentItemCount > settings.getMaxEvents() )
-        {
-            return Math.min( maxTrailSize, currentItemCount - settings.getMaxEvents() );
-        }
-
-        // purge the tail if it is missing or has invalid timestamp
-        final Instant tailTimestamp = getTailDate();
-        if ( tailTimestamp == null )
-        {
-            return 1;
-        }
-
-        // purge excess events by age;
-        final TimeDuration tailAge = TimeDuration.fromCurrent( tailTimestamp );
-        if ( tailAge.isLongerThan( settings.getMaxAge() ) )
-        {
-            final long maxRemovalPercentageOfSize = getStoredEventCount() / maxTrailSize;
-            if ( maxRemovalPercentageOfSize > 100 )
-            {
-                return maxTrailSize;
-            }
-            else
-            {
-                return 1;
-            }
-        }
-        return 0;
-    }
-
-
     public enum EventType
     {
         User, System, Both
@@ -260,164 +188,63 @@ public class LocalDBLogger implements PwmService
             final LocalDBSearchQuery searchParameters
     )
     {
-        return new LocalDBSearchResults( this, localDBListQueue.iterator(), searchParameters );
-    }
-
-    PwmLogEvent readEvent( final String value )
-    {
-        try
-        {
-            return PwmLogEvent.fromEncodedString( value );
-        }
-        catch ( Throwable e )
-        {
-            if ( !hasShownReadError )
-            {
-                hasShownReadError = true;
-                LOGGER.error( "error reading localDBLogger event: " + e.getMessage() );
-            }
-        }
-        return null;
+        return new LocalDBSearchResults( logStore, searchParameters );
     }
 
-    boolean checkEventForParams(
-            final PwmLogEvent event,
-            final LocalDBSearchQuery searchParameters
-    )
+    /**
+     * Queue an event for the writer thread without blocking the caller.  Once the buffer is three quarters full,
+     * events below {@link PwmLogLevel#INFO} are discarded to keep room for more important events, and once it is
+     * full all events are discarded.  Discarded events are counted and periodically reported by the writer.
+     */
+    public void writeEvent( final PwmLogEvent event )
     {
-        if ( event == null )
-        {
-            return false;
-        }
-
-        boolean eventMatchesParams = true;
-
-        if ( searchParameters.getMinimumLevel() != null )
-        {
-            if ( event.getLevel().compareTo( searchParameters.getMinimumLevel() ) <= -1 )
-            {
-                eventMatchesParams = false;
-            }
-        }
-
-        Pattern pattern = null;
-        try
-        {
-            if ( searchParameters.getUsername() != null && searchParameters.getUsername().length() > 0 )
-            {
-                pattern = Pattern.compile( searchParameters.getUsername() );
-            }
-        }
-        catch ( PatternSyntaxException e )
+        if ( status != STATUS.OPEN || settings.getMaxEvents() <= 0 )
         {
-            LOGGER.trace( () -> "invalid regex syntax for " + searchParameters.getUsername() + ", reverting to plaintext search" );
-        }
-        if ( pattern != null )
-        {
-            final Matcher matcher = pattern.matcher( event.getActor() == null ? "" : event.getActor() );
-            if ( !matcher.find() )
-            {
-                eventMatchesParams = false;
-            }
-        }
-        else if ( eventMatchesParams && ( searchParameters.getUsername() != null && searchParameters.getUsername().length() > 1 ) )
-        {
-            final String eventUsername = event.getActor();
-            if ( eventUsername == null || !eventUsername.equalsIgnoreCase( searchParameters.getUsername() ) )
-            {
-                eventMatchesParams = false;
-            }
+            return;
         }
 
-        if ( eventMatchesParams && ( searchParameters.getText() != null && searchParameters.getText().length() > 0 ) )
+        final int bufferedEvents = eventBuffer.size();
+        final boolean shedEvent = bufferedEvents >= sheddingThreshold && event.getLevel().compareTo( PwmLogLevel.INFO ) < 0;
+        if ( shedEvent || !eventBuffer.offer( event ) )
         {
-            final String eventMessage = event.getMessage();
-            final String textLowercase = searchParameters.getText().toLowerCase();
-            boolean isAMatch = false;
-            if ( eventMessage != null && eventMessage.length() > 0 )
-            {
-                if ( eventMessage.toLowerCase().contains( textLowercase ) )
-                {
-                    isAMatch = true;
-                }
-                else if ( event.getTopic() != null && event.getTopic().length() > 0 )
-                {
-                    if ( event.getTopic().toLowerCase().contains( textLowercase ) )
-                    {
-                        isAMatch = true;
-                    }
-                }
-                if ( !isAMatch )
-                {
-                    eventMatchesParams = false;
-                }
-            }
+            discardedEvents.increment();
+            requestFlush();
+            return;
         }
 
-        if ( searchParameters.getEventType() != null )
+        if ( bufferedEvents >= flushThreshold )
         {
-            if ( searchParameters.getEventType() == EventType.System )
-            {
-                if ( event.getActor() != null && event.getActor().length() > 0 )
-                {
-                    eventMatchesParams = false;
-                }
-            }
-            else if ( searchParameters.getEventType() == EventType.User )
-            {
-                if ( event.getActor() == null || event.getActor().length() < 1 )
-                {
-                    eventMatchesParams = false;
-                }
-            }
+            requestFlush();
         }
-
-        return eventMatchesParams;
     }
 
-    public void writeEvent( final PwmLogEvent event )
+    private void requestFlush( )
     {
-        if ( status == STATUS.OPEN )
+        if ( status == STATUS.OPEN && flushRequested.compareAndSet( false, true ) )
         {
-            if ( settings.getMaxEvents() > 0 )
+            try
             {
-                final Instant startTime = Instant.now();
-                while ( !eventQueue.offer( event ) )
-                {
-                    if ( TimeDuration.fromCurrent( startTime ).isLongerThan( settings.getMaxBufferWaitTime() ) )
-                    {
-                        LOGGER.warn( "discarded event after waiting max buffer wait time of " + settings.getMaxBufferWaitTime().asCompactString() );
-                        return;
-                    }
-                    TimeDuration.of( 100, TimeDuration.Unit.MILLISECONDS ).pause();
-                }
+                writerService.execute( new FlushTask() );
+            }
+            catch ( RejectedExecutionException e )
+            {
+                flushRequested.set( false );
             }
         }
     }
 
     private void flushEvents( )
     {
-        final List<String> localBuffer = new ArrayList<>();
-        while ( localBuffer.size() < ( settings.getMaxBufferSize() ) - 1 && !eventQueue.isEmpty() )
-        {
-            final PwmLogEvent pwmLogEvent = eventQueue.poll();
-            try
-            {
-                localBuffer.add( pwmLogEvent.toEncodedString() );
-            }
-            catch ( IOException e )
-            {
-                LOGGER.warn( "error flushing events to localDB: " + e.getMessage(), e );
-            }
-        }
+        final List<PwmLogEvent> events = new ArrayList<>();
+        eventBuffer.drainTo( events, settings.getMaxBufferSize() );
 
         try
         {
-            if ( cleanOnWriteFlag.get() )
+            final int oversizedEvents = logStore.write( events, settings.getMaxEvents(), settings.getMaxAge(), settings.getMaxTrimSize() );
+            if ( oversizedEvents > 0 )
             {
-                localDBListQueue.removeLast( localBuffer.size() );
+                discardedEvents.add( oversizedEvents );
             }
-            localDBListQueue.addAll( localBuffer );
         }
         catch ( Exception e )
         {
@@ -425,51 +252,43 @@ public class LocalDBLogger implements PwmService
         }
     }
 
-    private class FlushTask implements Runnable
+    private void reportDiscardedEvents( )
     {
-        @Override
-        public void run( )
+        final long totalDiscards = discardedEvents.sum();
+        if ( totalDiscards > reportedDiscards && Instant.now().isAfter( nextDiscardReport ) )
         {
-            try
-            {
-                while ( !eventQueue.isEmpty() && status == STATUS.OPEN )
-                {
-                    flushEvents();
-                }
-            }
-            catch ( Throwable t )
-            {
-                LOGGER.fatal( "localDBLogger flush thread has failed: " + t.getMessage(), t );
-            }
+            final long newDiscards = totalDiscards - reportedDiscards;
+            reportedDiscards = totalDiscards;
+            nextDiscardReport = Instant.now().plus( DISCARD_REPORT_INTERVAL.asDuration() );
+            LOGGER.warn( "discarded " + newDiscards + " events because the write buffer was full or the event was too large to store" );
         }
     }
 
-    private class CleanupTask implements Runnable
+    private class FlushTask implements Runnable
     {
+        @Override
         public void run( )
         {
+            flushRequested.set( false );
             try
             {
-                int cleanupCount = 1;
-                while ( cleanupCount > 0 && ( status == STATUS.OPEN && localDBListQueue.getLocalDB().status() == LocalDB.Status.OPEN ) )
+                if ( localDB.status() != LocalDB.Status.OPEN )
+                {
+                    return;
+                }
+
+                do
                 {
-                    cleanupCount = determineTailRemovalCount();
-                    if ( cleanupCount > 0 )
-                    {
-                        cleanOnWriteFlag.set( true );
-                        final Instant startTime = Instant.now();
-                        localDBListQueue.removeLast( cleanupCount );
-                        final TimeDuration purgeTime = TimeDuration.fromCurrent( startTime );
-                        final TimeDuration pauseTime = TimeDuration.of( JavaHelper.rangeCheck( 20, 2000, ( int ) purgeTime.asMillis() ), TimeDuration.Unit.MILLISECONDS );
-                        pauseTime.pause();
-                    }
+                    flushEvents();
                 }
+                while ( !eventBuffer.isEmpty() && status == STATUS.OPEN );
+
+                reportDiscardedEvents();
             }
-            catch ( Exception e )
+            catch ( Throwable t )
             {
-                LOGGER.fatal( "unexpected error during LocalDBLogger log event cleanup: " + e.getMessage(), e );
+                LOGGER.fatal( "localDBLogger flush thread has failed: " + t.getMessage(), t );
             }
-            cleanOnWriteFlag.set( localDBListQueue.size() >= settings.getMaxEvents() );
         }
     }
 
@@ -54,13 +54,16 @@ public class LocalDBLoggerSettings implements Serializable
     private Set<Flag> flags = Collections.emptySet();
 
     @Builder.Default
-    private int maxBufferSize = 1000;
+    private int maxBufferSize = 2048;
 
     @Builder.Default
-    private TimeDuration maxBufferWaitTime = TimeDuration.of( 1, TimeDuration.Unit.MINUTES );
+    private int maxTrimSize = 501;
 
     @Builder.Default
-    private int maxTrimSize = 501;
+    private int segmentEvents = 500;
+
+    @Builder.Default
+    private TimeDuration segmentDuration = TimeDuration.MINUTE;
 
 
     public enum Flag
@@ -73,6 +76,8 @@ public class LocalDBLoggerSettings implements Serializable
         return toBuilder()
                 .maxEvents( maxEvents < 1 ? 0 : Math.max( MINIMUM_MAXIMUM_EVENTS, maxEvents ) )
                 .maxAge( maxAge == null || maxAge.isShorterThan( MINIMUM_MAX_AGE ) ? MINIMUM_MAX_AGE : maxAge )
+                .segmentEvents( Math.max( 1, segmentEvents ) )
+                .segmentDuration( segmentDuration == null || segmentDuration.isShorterThan( TimeDuration.SECOND ) ? TimeDuration.SECOND : segmentDuration )
                 .build();
     }
 
@@ -87,19 +92,18 @@ public class LocalDBLoggerSettings implements Serializable
         final long maxAgeMS = 1000 * configuration.readSettingAsLong( PwmSetting.EVENTS_PWMDB_MAX_AGE );
         final TimeDuration maxAge = TimeDuration.of( maxAgeMS, TimeDuration.Unit.MILLISECONDS );
         final int maxBufferSize = Integer.parseInt( configuration.readAppProperty( AppProperty.LOCALDB_LOGWRITER_BUFFER_SIZE ) );
-        final TimeDuration maxBufferWaitTime = TimeDuration.of(
-                Long.parseLong( configuration.readAppProperty( AppProperty.LOCALDB_LOGWRITER_MAX_BUFFER_WAIT_MS ) ),
-                TimeDuration.Unit.MILLISECONDS
-        );
         final int maxTrimSize = Integer.parseInt( configuration.readAppProperty( AppProperty.LOCALDB_LOGWRITER_MAX_TRIM_SIZE ) );
+        final int segmentEvents = Integer.parseInt( configuration.readAppProperty( AppProperty.LOCALDB_LOGWRITER_SEGMENT_EVENTS ) );
+        final long segmentSeconds = Long.parseLong( configuration.readAppProperty( AppProperty.LOCALDB_LOGWRITER_SEGMENT_SECONDS ) );
 
         return LocalDBLoggerSettings.builder()
                 .maxEvents( maxEvents )
                 .maxAge( maxAge )
                 .flags( flags )
                 .maxBufferSize( maxBufferSize )
-                .maxBufferWaitTime( maxBufferWaitTime )
                 .maxTrimSize( maxTrimSize )
+                .segmentEvents( segmentEvents )
+                .segmentDuration( TimeDuration.of( segmentSeconds, TimeDuration.Unit.SECONDS ) )
                 .build().applyValueChecks();
     }
 }
@@ -26,6 +26,8 @@ import lombok.Builder;
 import lombok.Value;
 import password.pwm.util.java.TimeDuration;
 
+import java.time.Instant;
+
 @Value
 @Builder
 public class LocalDBSearchQuery
@@ -36,4 +38,7 @@ public class LocalDBSearchQuery
     private String text;
     private TimeDuration maxQueryTime;
     private LocalDBLogger.EventType eventType;
+    private String topic;
+    private Instant startTime;
+    private Instant endTime;
 }
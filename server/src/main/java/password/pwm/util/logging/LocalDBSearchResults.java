@@ -23,32 +23,46 @@
 package password.pwm.util.logging;
 
 import password.pwm.util.java.TimeDuration;
+import password.pwm.util.localdb.LocalDBException;
 
 import java.time.Instant;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
 import java.util.NoSuchElementException;
 
+/**
+ * Streams the events matching a search, newest first.  Segments whose summary rules out a match are skipped
+ * without being read, and the search ends at the first segment older than the searched time range.
+ */
 public class LocalDBSearchResults implements Iterator<PwmLogEvent>
 {
-    private transient LocalDBLogger localDBLogger;
-    private final Iterator<String> localDBIterator;
+    private static final PwmLogger LOGGER = PwmLogger.forClass( LocalDBSearchResults.class );
+
+    private final LocalDBLogStore logStore;
+    private final Iterator<LogSegment> segmentIterator;
     private final LocalDBSearchQuery searchParameters;
+    private final LogEventMatcher eventMatcher;
 
     private final Instant startTime;
 
+    private ListIterator<PwmLogEvent> segmentEvents = Collections.<PwmLogEvent>emptyList().listIterator();
     private PwmLogEvent nextEvent;
     private int eventCount = 0;
+    private int skippedSegments = 0;
     private Instant finishTime;
 
-    LocalDBSearchResults( final LocalDBLogger localDBLogger,
-                          final Iterator<String> localDBIterator,
-                          final LocalDBSearchQuery searchParameters
+    LocalDBSearchResults(
+            final LocalDBLogStore logStore,
+            final LocalDBSearchQuery searchParameters
     )
     {
-        this.localDBLogger = localDBLogger;
+        this.logStore = logStore;
         startTime = Instant.now();
-        this.localDBIterator = localDBIterator;
+        this.segmentIterator = logStore.segmentsNewestFirst().iterator();
         this.searchParameters = searchParameters;
+        this.eventMatcher = new LogEventMatcher( searchParameters );
         nextEvent = readNextEvent();
     }
 
@@ -96,17 +110,10 @@ public class LocalDBSearchResults implements Iterator<PwmLogEvent>
             return null;
         }
 
-        while ( !isTimedOut() && localDBIterator.hasNext() )
+        while ( !isTimedOut() && nextSegmentHasEvents() )
         {
-            final String nextDbValue = localDBIterator.next();
-            if ( nextDbValue == null )
-            {
-                finishTime = Instant.now();
-                return null;
-            }
-
-            final PwmLogEvent logEvent = localDBLogger.readEvent( nextDbValue );
-            if ( logEvent != null && localDBLogger.checkEventForParams( logEvent, searchParameters ) )
+            final PwmLogEvent logEvent = segmentEvents.previous();
+            if ( eventMatcher.matches( logEvent ) )
             {
                 eventCount++;
                 return logEvent;
@@ -117,11 +124,52 @@ public class LocalDBSearchResults implements Iterator<PwmLogEvent>
         return null;
     }
 
+    /**
+     * Advance to the next segment that may hold a match if the current segment is exhausted.  Segment events are
+     * stored oldest first, so they are read from the end of the list.
+     */
+    private boolean nextSegmentHasEvents( )
+    {
+        while ( !segmentEvents.hasPrevious() && segmentIterator.hasNext() )
+        {
+            final LogSegment segment = segmentIterator.next();
+            if ( eventMatcher.isBeforeTimeRange( segment ) )
+            {
+                return false;
+            }
+
+            if ( !eventMatcher.mayMatch( segment ) )
+            {
+                skippedSegments++;
+                continue;
+            }
+
+            try
+            {
+                final List<PwmLogEvent> events = logStore.readEvents( segment );
+                segmentEvents = events.listIterator( events.size() );
+            }
+            catch ( LocalDBException e )
+            {
+                LOGGER.error( "error reading localDBLogger segment: " + e.getMessage() );
+                return false;
+            }
+        }
+        return segmentEvents.hasPrevious();
+    }
+
     public int getReturnedEvents( )
     {
         return eventCount;
     }
 
+    /**
+     * @return the number of segments skipped so far because their summary ruled out a match.
+     */
+    public int getSkippedSegments( )
+    {
+        return skippedSegments;
+    }
 
     public TimeDuration getSearchTime( )
     {
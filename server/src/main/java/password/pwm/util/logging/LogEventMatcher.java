@@ -0,0 +1,228 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package password.pwm.util.logging;
+
+import password.pwm.util.java.StringUtil;
+
+import java.time.Instant;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Prepared form of a {@link LocalDBSearchQuery}.  The username pattern and lower-cased search text are computed
+ * once per search, and the same criteria are applied both to whole {@link LogSegment}s and to individual events.
+ */
+class LogEventMatcher
+{
+    private static final PwmLogger LOGGER = PwmLogger.forClass( LogEventMatcher.class );
+
+    private final PwmLogLevel minimumLevel;
+    private final String username;
+    private final Pattern usernamePattern;
+    private final String textLowercase;
+    private final String topicLowercase;
+    private final LocalDBLogger.EventType eventType;
+    private final Instant startTime;
+    private final Instant endTime;
+
+    LogEventMatcher( final LocalDBSearchQuery searchParameters )
+    {
+        this.minimumLevel = searchParameters.getMinimumLevel();
+        this.username = StringUtil.isEmpty( searchParameters.getUsername() ) ? null : searchParameters.getUsername();
+        this.usernamePattern = compileUsernamePattern( username );
+        this.textLowercase = StringUtil.isEmpty( searchParameters.getText() ) ? null : searchParameters.getText().toLowerCase();
+        this.topicLowercase = StringUtil.isEmpty( searchParameters.getTopic() ) ? null : searchParameters.getTopic().toLowerCase();
+        this.eventType = searchParameters.getEventType();
+        this.startTime = searchParameters.getStartTime();
+        this.endTime = searchParameters.getEndTime();
+    }
+
+    private static Pattern compileUsernamePattern( final String username )
+    {
+        if ( username == null )
+        {
+            return null;
+        }
+
+        try
+        {
+            return Pattern.compile( username );
+        }
+        catch ( PatternSyntaxException e )
+        {
+            LOGGER.trace( () -> "invalid regex syntax for " + username + ", reverting to plaintext search" );
+        }
+        return null;
+    }
+
+    /**
+     * @return true if the segment and all older segments end before the start of the searched time range.
+     */
+    boolean isBeforeTimeRange( final LogSegment segment )
+    {
+        return startTime != null && segment.getLastDate().isBefore( startTime );
+    }
+
+    /**
+     * @return false if no event of the segment can match, true if the segment must be read.
+     */
+    boolean mayMatch( final LogSegment segment )
+    {
+        if ( isBeforeTimeRange( segment ) || ( endTime != null && segment.getFirstDate().isAfter( endTime ) ) )
+        {
+            return false;
+        }
+
+        if ( minimumLevel != null && !segment.hasLevelAtLeast( minimumLevel ) )
+        {
+            return false;
+        }
+
+        if ( eventType == LocalDBLogger.EventType.System && !segment.isSystemEvents() )
+        {
+            return false;
+        }
+
+        final Set<String> actors = segment.getActors();
+        if ( eventType == LocalDBLogger.EventType.User && actors != null && actors.isEmpty() )
+        {
+            return false;
+        }
+
+        if ( username != null && actors != null && !mayMatchActors( segment ) )
+        {
+            return false;
+        }
+
+        final Set<String> topics = segment.getTopics();
+        if ( topicLowercase != null && topics != null )
+        {
+            for ( final String topic : topics )
+            {
+                if ( topic.toLowerCase().contains( topicLowercase ) )
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        return true;
+    }
+
+    private boolean mayMatchActors( final LogSegment segment )
+    {
+        if ( segment.isSystemEvents() && matchesUsername( "" ) )
+        {
+            return true;
+        }
+
+        for ( final String actor : segment.getActors() )
+        {
+            if ( matchesUsername( actor ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean matchesUsername( final String actor )
+    {
+        if ( usernamePattern != null )
+        {
+            return usernamePattern.matcher( actor == null ? "" : actor ).find();
+        }
+
+        if ( username.length() > 1 )
+        {
+            return actor != null && actor.equalsIgnoreCase( username );
+        }
+
+        return true;
+    }
+
+    boolean matches( final PwmLogEvent event )
+    {
+        if ( event == null )
+        {
+            return false;
+        }
+
+        if ( startTime != null && event.getDate().isBefore( startTime ) )
+        {
+            return false;
+        }
+
+        if ( endTime != null && event.getDate().isAfter( endTime ) )
+        {
+            return false;
+        }
+
+        if ( minimumLevel != null && event.getLevel().compareTo( minimumLevel ) < 0 )
+        {
+            return false;
+        }
+
+        if ( username != null && !matchesUsername( event.getActor() ) )
+        {
+            return false;
+        }
+
+        if ( textLowercase != null && !matchesText( event ) )
+        {
+            return false;
+        }
+
+        if ( topicLowercase != null && ( event.getTopic() == null || !event.getTopic().toLowerCase().contains( topicLowercase ) ) )
+        {
+            return false;
+        }
+
+        final boolean systemEvent = event.getActor() == null || event.getActor().isEmpty();
+        if ( eventType == LocalDBLogger.EventType.System && !systemEvent )
+        {
+            return false;
+        }
+
+        return eventType != LocalDBLogger.EventType.User || !systemEvent;
+    }
+
+    private boolean matchesText( final PwmLogEvent event )
+    {
+        final String eventMessage = event.getMessage();
+        if ( eventMessage == null || eventMessage.isEmpty() )
+        {
+            return true;
+        }
+
+        if ( eventMessage.toLowerCase().contains( textLowercase ) )
+        {
+            return true;
+        }
+
+        return event.getTopic() != null && event.getTopic().toLowerCase().contains( textLowercase );
+    }
+}
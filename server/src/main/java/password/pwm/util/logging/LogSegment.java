@@ -0,0 +1,240 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package password.pwm.util.logging;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Summary of one segment of the LocalDB event log: the time span of its events, the levels present, and the
+ * distinct actors and topics.  Searches use the summary to skip segments that can not hold a matching event without
+ * reading the segment itself.
+ *
+ * <p>At most {@link #MAX_TRACKED_VALUES} distinct actors or topics are tracked; beyond that the set is dropped and
+ * the segment is treated as possibly containing any actor or topic.</p>
+ */
+@Value
+@Builder
+class LogSegment
+{
+    static final int MAX_TRACKED_VALUES = 64;
+
+    private static final char FORMAT_MARKER = 'S';
+    private static final int UNTRACKED = -1;
+
+    private long id;
+    private Instant firstDate;
+    private Instant lastDate;
+    private int eventCount;
+    private int levelMask;
+    private boolean systemEvents;
+
+    /**
+     * Number of data chunks the segment's events are stored in; each write to the segment appends one chunk.
+     */
+    private int chunkCount;
+
+    /**
+     * Distinct non-empty actors of the segment's events, or null if too many to track.
+     */
+    private Set<String> actors;
+
+    /**
+     * Distinct topics of the segment's events, or null if too many to track.
+     */
+    private Set<String> topics;
+
+    boolean hasLevelAtLeast( final PwmLogLevel minimumLevel )
+    {
+        return ( levelMask >>> minimumLevel.ordinal() ) != 0;
+    }
+
+    String encode( )
+    {
+        final StringBuilder sb = new StringBuilder();
+        sb.append( FORMAT_MARKER );
+        PwmLogEventCodec.writeLong( sb, firstDate.toEpochMilli() );
+        PwmLogEventCodec.writeLong( sb, lastDate.toEpochMilli() );
+        PwmLogEventCodec.writeNumber( sb, eventCount );
+        PwmLogEventCodec.writeNumber( sb, levelMask );
+        PwmLogEventCodec.writeNumber( sb, systemEvents ? 1 : 0 );
+        writeValues( sb, actors );
+        writeValues( sb, topics );
+        PwmLogEventCodec.writeNumber( sb, chunkCount );
+        return sb.toString();
+    }
+
+    static LogSegment decode( final long id, final String encodedValue )
+            throws IOException
+    {
+        if ( encodedValue == null || encodedValue.isEmpty() || encodedValue.charAt( 0 ) != FORMAT_MARKER )
+        {
+            throw new IOException( "unrecognized log segment encoding" );
+        }
+
+        try
+        {
+            final PwmLogEventCodec.FieldReader reader = new PwmLogEventCodec.FieldReader( encodedValue, 1 );
+            final LogSegment.LogSegmentBuilder builder = LogSegment.builder()
+                    .id( id )
+                    .firstDate( Instant.ofEpochMilli( reader.readLong() ) )
+                    .lastDate( Instant.ofEpochMilli( reader.readLong() ) )
+                    .eventCount( reader.readNumber() )
+                    .levelMask( reader.readNumber() )
+                    .systemEvents( reader.readNumber() != 0 )
+                    .actors( readValues( reader ) )
+                    .topics( readValues( reader ) );
+            return builder
+                    .chunkCount( reader.hasMore() ? reader.readNumber() : 1 )
+                    .build();
+        }
+        catch ( RuntimeException e )
+        {
+            throw new IOException( "malformed log segment encoding: " + e.getMessage() );
+        }
+    }
+
+    private static void writeValues( final StringBuilder sb, final Set<String> values )
+    {
+        PwmLogEventCodec.writeNumber( sb, values == null ? UNTRACKED : values.size() );
+        if ( values == null )
+        {
+            return;
+        }
+
+        for ( final String value : values )
+        {
+            PwmLogEventCodec.writeField( sb, value );
+        }
+    }
+
+    private static Set<String> readValues( final PwmLogEventCodec.FieldReader reader )
+    {
+        final int count = reader.readNumber();
+        if ( count == UNTRACKED )
+        {
+            return null;
+        }
+
+        final Set<String> values = new LinkedHashSet<>();
+        for ( int i = 0; i < count; i++ )
+        {
+            values.add( reader.readField() );
+        }
+        return Collections.unmodifiableSet( values );
+    }
+
+    /**
+     * Accumulates the summary of a segment as events are appended to it.
+     */
+    static class Collector
+    {
+        private final long id;
+        private Instant firstDate;
+        private Instant lastDate;
+        private int eventCount;
+        private int levelMask;
+        private boolean systemEvents;
+        private Set<String> actors = new LinkedHashSet<>();
+        private Set<String> topics = new LinkedHashSet<>();
+
+        Collector( final long id )
+        {
+            this.id = id;
+        }
+
+        void add( final PwmLogEvent event )
+        {
+            final Instant date = event.getDate();
+            if ( firstDate == null || date.isBefore( firstDate ) )
+            {
+                firstDate = date;
+            }
+            if ( lastDate == null || date.isAfter( lastDate ) )
+            {
+                lastDate = date;
+            }
+
+            eventCount++;
+            levelMask |= 1 << event.getLevel().ordinal();
+
+            final String actor = event.getActor();
+            if ( actor == null || actor.isEmpty() )
+            {
+                systemEvents = true;
+            }
+            else
+            {
+                actors = track( actors, actor );
+            }
+
+            topics = track( topics, event.getTopic() == null ? "" : event.getTopic() );
+        }
+
+        long getId( )
+        {
+            return id;
+        }
+
+        int getEventCount( )
+        {
+            return eventCount;
+        }
+
+        LogSegment toSegment( final int chunkCount )
+        {
+            return LogSegment.builder()
+                    .id( id )
+                    .firstDate( firstDate )
+                    .lastDate( lastDate )
+                    .eventCount( eventCount )
+                    .levelMask( levelMask )
+                    .systemEvents( systemEvents )
+                    .chunkCount( chunkCount )
+                    .actors( actors == null ? null : Collections.unmodifiableSet( new LinkedHashSet<>( actors ) ) )
+                    .topics( topics == null ? null : Collections.unmodifiableSet( new LinkedHashSet<>( topics ) ) )
+                    .build();
+        }
+
+        private static Set<String> track( final Set<String> values, final String value )
+        {
+            if ( values == null || values.contains( value ) )
+            {
+                return values;
+            }
+            if ( values.size() >= MAX_TRACKED_VALUES )
+            {
+                return null;
+            }
+            values.add( value );
+            return values;
+        }
+    }
+}
@@ -76,7 +76,7 @@ public class PwmLogEvent implements Serializable, Comparable
     public static PwmLogEvent fromEncodedString( final String encodedString )
             throws ClassNotFoundException, IOException
     {
-        return JsonUtil.deserialize( encodedString, PwmLogEvent.class );
+        return PwmLogEventCodec.decode( encodedString );
     }
 
 
@@ -247,9 +247,8 @@ public class PwmLogEvent implements Serializable, Comparable
     }
 
     String toEncodedString( )
-            throws IOException
     {
-        return JsonUtil.serialize( this );
+        return PwmLogEventCodec.encode( this );
     }
 
     private String getDebugLabel( )
@@ -0,0 +1,286 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package password.pwm.util.logging;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact encoding of {@link PwmLogEvent}s for the LocalDB event log.  Each field is written as its length followed by
+ * its characters, so encoding and decoding are a single pass without escaping or reflection.
+ *
+ * <p>Layout: a format marker, the level initial, then the date (epoch milliseconds), topic, message, source,
+ * actor and label fields, then the throwable chain as a count followed by, for each throwable, its class name,
+ * message and stack frames.  Numbers are written in base 36 and a missing value is written as {@code -}.</p>
+ */
+final class PwmLogEventCodec
+{
+    private static final char FORMAT_MARKER = 'B';
+    private static final char NULL_FIELD = '-';
+    private static final char LENGTH_SEPARATOR = ':';
+    private static final int RADIX = 36;
+    private static final int MAX_THROWABLE_DEPTH = 10;
+
+    private PwmLogEventCodec( )
+    {
+    }
+
+    static String encode( final PwmLogEvent event )
+    {
+        final StringBuilder sb = new StringBuilder( 64 + length( event.getMessage() ) + length( event.getTopic() ) );
+        sb.append( FORMAT_MARKER );
+        sb.append( event.getLevel().name().charAt( 0 ) );
+        writeLong( sb, event.getDate().toEpochMilli() );
+        writeField( sb, event.getTopic() );
+        writeField( sb, event.getMessage() );
+        writeField( sb, event.getSource() );
+        writeField( sb, event.getActor() );
+        writeField( sb, event.getLabel() );
+        writeThrowable( sb, event.getThrowable() );
+        return sb.toString();
+    }
+
+    static PwmLogEvent decode( final String encodedValue )
+            throws IOException
+    {
+        if ( encodedValue == null || encodedValue.length() < 2 || encodedValue.charAt( 0 ) != FORMAT_MARKER )
+        {
+            throw new IOException( "unrecognized log event encoding" );
+        }
+
+        try
+        {
+            final FieldReader reader = new FieldReader( encodedValue, 1 );
+            final PwmLogLevel level = levelForInitial( reader.readChar() );
+            final Instant date = Instant.ofEpochMilli( reader.readLong() );
+            final String topic = reader.readField();
+            final String message = reader.readField();
+            final String source = reader.readField();
+            final String actor = reader.readField();
+            final String label = reader.readField();
+            final Throwable throwable = readThrowable( reader );
+            return PwmLogEvent.createPwmLogEvent( date, topic, message, source, actor, label, throwable, level );
+        }
+        catch ( RuntimeException e )
+        {
+            throw new IOException( "malformed log event encoding: " + e.getMessage() );
+        }
+    }
+
+    private static void writeThrowable( final StringBuilder sb, final Throwable throwable )
+    {
+        final List<Throwable> chain = new ArrayList<>();
+        Throwable loopThrowable = throwable;
+        while ( loopThrowable != null && chain.size() < MAX_THROWABLE_DEPTH && !chain.contains( loopThrowable ) )
+        {
+            chain.add( loopThrowable );
+            loopThrowable = loopThrowable.getCause();
+        }
+
+        writeNumber( sb, chain.size() );
+        for ( final Throwable chainThrowable : chain )
+        {
+            writeField( sb, chainThrowable instanceof StoredThrowable
+                    ? ( ( StoredThrowable ) chainThrowable ).className
+                    : chainThrowable.getClass().getName() );
+            writeField( sb, chainThrowable.getMessage() );
+
+            final StackTraceElement[] frames = chainThrowable.getStackTrace();
+            writeNumber( sb, frames.length );
+            for ( final StackTraceElement frame : frames )
+            {
+                writeField( sb, frame.getClassName() );
+                writeField( sb, frame.getMethodName() );
+                writeField( sb, frame.getFileName() );
+                writeNumber( sb, frame.getLineNumber() );
+            }
+        }
+    }
+
+    private static Throwable readThrowable( final FieldReader reader )
+    {
+        final int depth = reader.readNumber();
+        final List<String> classNames = new ArrayList<>( depth );
+        final List<String> messages = new ArrayList<>( depth );
+        final List<StackTraceElement[]> stackTraces = new ArrayList<>( depth );
+
+        for ( int i = 0; i < depth; i++ )
+        {
+            classNames.add( reader.readField() );
+            messages.add( reader.readField() );
+
+            final StackTraceElement[] frames = new StackTraceElement[ reader.readNumber() ];
+            for ( int f = 0; f < frames.length; f++ )
+            {
+                final String className = reader.readField();
+                final String methodName = reader.readField();
+                final String fileName = reader.readField();
+                final int lineNumber = reader.readNumber();
+                frames[ f ] = new StackTraceElement( className, methodName, fileName, lineNumber );
+            }
+            stackTraces.add( frames );
+        }
+
+        Throwable cause = null;
+        for ( int i = depth - 1; i >= 0; i-- )
+        {
+            final StoredThrowable storedThrowable = new StoredThrowable( classNames.get( i ), messages.get( i ), cause );
+            storedThrowable.setStackTrace( stackTraces.get( i ) );
+            cause = storedThrowable;
+        }
+        return cause;
+    }
+
+    static void writeField( final StringBuilder sb, final String value )
+    {
+        if ( value == null )
+        {
+            sb.append( NULL_FIELD );
+            return;
+        }
+
+        sb.append( Integer.toString( value.length(), RADIX ) );
+        sb.append( LENGTH_SEPARATOR );
+        sb.append( value );
+    }
+
+    static void writeNumber( final StringBuilder sb, final int value )
+    {
+        writeField( sb, Integer.toString( value, RADIX ) );
+    }
+
+    static void writeLong( final StringBuilder sb, final long value )
+    {
+        writeField( sb, Long.toString( value, RADIX ) );
+    }
+
+    private static int length( final String value )
+    {
+        return value == null ? 0 : value.length();
+    }
+
+    private static PwmLogLevel levelForInitial( final char initial )
+    {
+        for ( final PwmLogLevel level : PwmLogLevel.values() )
+        {
+            if ( level.name().charAt( 0 ) == initial )
+            {
+                return level;
+            }
+        }
+        throw new IllegalArgumentException( "unknown level '" + initial + "'" );
+    }
+
+    static class FieldReader
+    {
+        private final String input;
+        private int position;
+
+        FieldReader( final String input, final int position )
+        {
+            this.input = input;
+            this.position = position;
+        }
+
+        boolean hasMore( )
+        {
+            return position < input.length();
+        }
+
+        char readChar( )
+        {
+            return input.charAt( position++ );
+        }
+
+        String readField( )
+        {
+            if ( input.charAt( position ) == NULL_FIELD )
+            {
+                position++;
+                return null;
+            }
+
+            final int separator = input.indexOf( LENGTH_SEPARATOR, position );
+            if ( separator < 0 )
+            {
+                throw new IllegalArgumentException( "missing field length at position " + position );
+            }
+
+            final int length = Integer.parseInt( input.substring( position, separator ), RADIX );
+            final int end = separator + 1 + length;
+            if ( length < 0 || end > input.length() )
+            {
+                throw new IllegalArgumentException( "field length exceeds value at position " + position );
+            }
+
+            position = end;
+            return input.substring( separator + 1, end );
+        }
+
+        int readNumber( )
+        {
+            final String value = readField();
+            if ( value == null )
+            {
+                throw new IllegalArgumentException( "missing numeric field at position " + position );
+            }
+            return Integer.parseInt( value, RADIX );
+        }
+
+        long readLong( )
+        {
+            final String value = readField();
+            if ( value == null )
+            {
+                throw new IllegalArgumentException( "missing numeric field at position " + position );
+            }
+            return Long.parseLong( value, RADIX );
+        }
+    }
+
+    /**
+     * Throwable rebuilt from a stored event, reporting the class name of the original throwable.
+     */
+    static class StoredThrowable extends Throwable
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final String className;
+
+        StoredThrowable( final String className, final String message, final Throwable cause )
+        {
+            super( message, cause );
+            this.className = className;
+        }
+
+        @Override
+        public String toString( )
+        {
+            final String message = getLocalizedMessage();
+            return message == null ? className : className + ": " + message;
+        }
+    }
+}
@@ -22,6 +22,8 @@
 
 package password.pwm.util.macro;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import password.pwm.PwmApplication;
 import password.pwm.PwmApplicationMode;
 import password.pwm.PwmConstants;
@@ -36,6 +38,7 @@ import password.pwm.ldap.UserInfoFactory;
 import password.pwm.util.java.JavaHelper;
 import password.pwm.util.logging.PwmLogger;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -58,6 +61,14 @@ public class MacroMachine
 
     private static final Map<MacroImplementation.Scope, Map<Pattern, MacroImplementation>> BUILTIN_MACROS = makeImplementations();
 
+    private static final int MAX_CACHED_MACRO_SETS = 100;
+    private static final int MAX_CACHED_TEMPLATES = 1000;
+    private static final int MAX_CACHED_TEMPLATE_LENGTH = 64 * 1024;
+
+    private static final Cache<List<Object>, MacroSet> MACRO_SETS = Caffeine.newBuilder()
+            .maximumSize( MAX_CACHED_MACRO_SETS )
+            .build();
+
     public MacroMachine(
             final PwmApplication pwmApplication,
             final SessionLabel sessionLabel,
@@ -103,13 +114,9 @@ public class MacroMachine
         return map;
     }
 
-    private Map<Pattern, MacroImplementation> makeExternalImplementations( final PwmApplication pwmApplication )
+    private static Map<Pattern, MacroImplementation> makeExternalImplementations( final List<String> externalMethods )
     {
         final LinkedHashMap<Pattern, MacroImplementation> map = new LinkedHashMap<>();
-        final List<String> externalMethods = ( pwmApplication == null )
-                ? Collections.emptyList()
-                : pwmApplication.getConfig().readSettingAsStringArray( PwmSetting.EXTERNAL_MACROS_REST_URLS );
-
         int iteration = 0;
         for ( final String url : externalMethods )
         {
@@ -157,57 +164,81 @@ public class MacroMachine
             }
         };
 
-        final Set<MacroImplementation.Scope> scopes = effectiveScopes( macroRequestInfo );
-        final Map<Pattern, MacroImplementation> macroImplementations = new LinkedHashMap<>();
-        //First the User macros
-        if ( scopes.contains( MacroImplementation.Scope.User ) )
-        {
-            macroImplementations.putAll( makeExternalImplementations( pwmApplication ) );
-        }
-        //last the buitin macros for Encrypt/Encode to work properly
-        for ( final MacroImplementation.Scope scope : scopes )
+        final MacroSet macroSet = macroSetFor( effectiveScopes( macroRequestInfo ) );
+        final MacroTemplate macroTemplate = input.length() > MAX_CACHED_TEMPLATE_LENGTH
+                ? MacroTemplate.compile( input, macroSet.getOrderedMacros() )
+                : macroSet.getTemplates().get( input, template -> MacroTemplate.compile( template, macroSet.getOrderedMacros() ) );
+
+        return macroTemplate.expand( new MacroTemplate.Expander()
         {
-            macroImplementations.putAll( BUILTIN_MACROS.get( scope ) );
-        }
+            @Override
+            public String resolve( final MacroImplementation macroImplementation, final String matchedText )
+            {
+                return resolveMacro( macroImplementation, matchedText, macroRequestInfo );
+            }
 
+            @Override
+            public String expandSequentially( final String workingString, final int startIndex )
+            {
+                return MacroMachine.this.expandSequentially( input, workingString, macroSet.getOrderedMacros(), startIndex, macroRequestInfo );
+            }
+        } );
+    }
 
-        String workingString = input;
-        final String previousString = workingString;
+    /**
+     * Expand macros by repeatedly matching each macro pattern against the whole working string, in macro order.
+     * Compiled templates produce the same results with a single evaluation of each macro call.
+     */
+    private String expandSequentially(
+            final String input,
+            final String startString,
+            final List<MacroImplementation> orderedMacros,
+            final int startIndex,
+            final MacroImplementation.MacroRequestInfo macroRequestInfo
+    )
+    {
+        String workingString = startString;
+        final String previousString = input;
 
-        for ( final MacroImplementation.Sequence sequence : MacroImplementation.Sequence.values() )
+        for ( int macroIndex = startIndex; macroIndex < orderedMacros.size(); macroIndex++ )
         {
-            for ( final Map.Entry<Pattern, MacroImplementation> entry : macroImplementations.entrySet() )
+            final MacroImplementation pwmMacro = orderedMacros.get( macroIndex );
+            final Pattern pattern = pwmMacro.getRegExPattern();
+            boolean matched = true;
+            while ( matched )
             {
-                final Pattern pattern = entry.getKey();
-                final MacroImplementation pwmMacro = entry.getValue();
-                if ( pwmMacro.getSequence() == sequence )
+                final Matcher matcher = pattern.matcher( workingString );
+                if ( matcher.find() )
                 {
-                    boolean matched = true;
-                    while ( matched )
+                    workingString = doReplace( workingString, pwmMacro, matcher, macroRequestInfo );
+                    if ( workingString.equals( previousString ) )
                     {
-                        final Matcher matcher = pattern.matcher( workingString );
-                        if ( matcher.find() )
-                        {
-                            workingString = doReplace( workingString, pwmMacro, matcher, macroRequestInfo );
-                            if ( workingString.equals( previousString ) )
-                            {
-                                LOGGER.warn( sessionLabel, "macro replace was called but input string was not modified.  "
-                                        + " macro=" + pwmMacro.getClass().getName() + ", pattern=" + pwmMacro.getRegExPattern().toString() );
-                                break;
-                            }
-                        }
-                        else
-                        {
-                            matched = false;
-                        }
+                        LOGGER.warn( sessionLabel, "macro replace was called but input string was not modified.  "
+                                + " macro=" + pwmMacro.getClass().getName() + ", pattern=" + pwmMacro.getRegExPattern().toString() );
+                        break;
                     }
                 }
+                else
+                {
+                    matched = false;
+                }
             }
         }
 
         return workingString;
     }
 
+    private MacroSet macroSetFor( final Set<MacroImplementation.Scope> scopes )
+    {
+        final List<String> externalMethods = ( pwmApplication == null || !scopes.contains( MacroImplementation.Scope.User ) )
+                ? Collections.emptyList()
+                : pwmApplication.getConfig().readSettingAsStringArray( PwmSetting.EXTERNAL_MACROS_REST_URLS );
+
+        final List<Object> key = new ArrayList<>( scopes );
+        key.addAll( externalMethods );
+        return MACRO_SETS.get( key, k -> new MacroSet( scopes, externalMethods ) );
+    }
+
     private static Set<MacroImplementation.Scope> effectiveScopes( final MacroImplementation.MacroRequestInfo macroRequestInfo )
     {
         final Set<MacroImplementation.Scope> scopes = new HashSet<>();
@@ -236,9 +267,23 @@ public class MacroMachine
             final MacroImplementation.MacroRequestInfo macroRequestInfo
     )
     {
-        final String matchedStr = matcher.group();
-        final int startPos = matcher.start();
-        final int endPos = matcher.end();
+        final String replaceStr = resolveMacro( macroImplementation, matcher.group(), macroRequestInfo );
+        if ( replaceStr == null )
+        {
+            return input;
+        }
+        return new StringBuilder( input ).replace( matcher.start(), matcher.end(), replaceStr ).toString();
+    }
+
+    /**
+     * @return the replacement value of a matched macro, or null if the matched text should not be replaced.
+     */
+    private String resolveMacro(
+            final MacroImplementation macroImplementation,
+            final String matchedStr,
+            final MacroImplementation.MacroRequestInfo macroRequestInfo
+    )
+    {
         String replaceStr = "";
         try
         {
@@ -263,7 +308,7 @@ public class MacroMachine
 
         if ( replaceStr == null )
         {
-            return input;
+            return null;
         }
 
         if ( stringReplacer != null )
@@ -289,7 +334,57 @@ public class MacroMachine
                         + ( sensitive ? PwmConstants.LOG_REMOVED_VALUE_REPLACEMENT : finalReplaceStr ) );
             }
         }
-        return new StringBuilder( input ).replace( startPos, endPos, replaceStr ).toString();
+        return replaceStr;
+    }
+
+    /**
+     * The ordered macros of one combination of scopes and external macro configuration, and the templates compiled
+     * against them.
+     */
+    private static class MacroSet
+    {
+        private final List<MacroImplementation> orderedMacros;
+        private final Cache<String, MacroTemplate> templates = Caffeine.newBuilder()
+                .maximumSize( MAX_CACHED_TEMPLATES )
+                .build();
+
+        MacroSet( final Set<MacroImplementation.Scope> scopes, final List<String> externalMethods )
+        {
+            final Map<Pattern, MacroImplementation> macroImplementations = new LinkedHashMap<>();
+            //First the User macros
+            if ( scopes.contains( MacroImplementation.Scope.User ) )
+            {
+                macroImplementations.putAll( makeExternalImplementations( externalMethods ) );
+            }
+            //last the buitin macros for Encrypt/Encode to work properly
+            for ( final MacroImplementation.Scope scope : scopes )
+            {
+                macroImplementations.putAll( BUILTIN_MACROS.get( scope ) );
+            }
+
+            final List<MacroImplementation> macroList = new ArrayList<>();
+            for ( final MacroImplementation.Sequence sequence : MacroImplementation.Sequence.values() )
+            {
+                for ( final MacroImplementation macroImplementation : macroImplementations.values() )
+                {
+                    if ( macroImplementation.getSequence() == sequence )
+                    {
+                        macroList.add( macroImplementation );
+                    }
+                }
+            }
+            this.orderedMacros = Collections.unmodifiableList( macroList );
+        }
+
+        List<MacroImplementation> getOrderedMacros( )
+        {
+            return orderedMacros;
+        }
+
+        Cache<String, MacroTemplate> getTemplates( )
+        {
+            return templates;
+        }
     }
 
     public static MacroMachine forStatic( )
@@ -0,0 +1,385 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package password.pwm.util.macro;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+
+/**
+ * A macro template compiled into literal text and macro call segments.  A template is compiled once for an ordered list
+ * of macros by running the same sequence of pattern matches as the uncompiled expansion, with each match replaced by an
+ * inert placeholder.  Expansion then evaluates the recorded calls in their original order and joins the segments in a
+ * single pass.
+ *
+ * <p>A value can only change which macros match if it forms a new match together with the text around it.  Values
+ * are therefore spliced in directly only when they contain none of {@code @ : [ ]} or a line break, and the call is
+ * not placed between two {@code @} characters that the uncompiled expansion has not yet replaced at that point, other
+ * than the delimiters of the calls enclosing it.  For example the value of {@code @LDAP:x@} in
+ * {@code @User:@LDAP:x@@} could complete a {@code @User:...@} call.  When a value or call breaks these rules, or a
+ * nested call no longer matches its pattern once its inner values are known, expansion continues with the uncompiled
+ * expansion from that point on, so results are always the same as the uncompiled expansion.</p>
+ */
+final class MacroTemplate
+{
+    private static final char PLACEHOLDER_START = ( char ) 0xE000;
+    private static final char PLACEHOLDER_END = ( char ) 0xE001;
+
+    private final String template;
+    private final boolean compiled;
+    private final List<Object> segments;
+    private final List<MacroCall> calls;
+    private final boolean[] splicedCalls;
+
+    private MacroTemplate( final String template, final boolean compiled, final List<Object> segments, final List<MacroCall> calls )
+    {
+        this.template = template;
+        this.compiled = compiled;
+        this.segments = segments;
+        this.calls = calls;
+        this.splicedCalls = findSplicedCalls( template, segments, calls );
+    }
+
+    /**
+     * Evaluation of macro values and fallback to the uncompiled expansion for a single expansion.
+     */
+    interface Expander
+    {
+        /**
+         * @return the value to insert for the matched text, or null if the matched text should be left in place.
+         */
+        String resolve( MacroImplementation macroImplementation, String matchedText );
+
+        /**
+         * Continue the uncompiled expansion of the working string, starting with the macro at the start index.
+         */
+        String expandSequentially( String workingString, int startIndex );
+    }
+
+    static MacroTemplate compile( final String template, final List<MacroImplementation> orderedMacros )
+    {
+        if ( template.indexOf( '@' ) < 0 )
+        {
+            return new MacroTemplate( template, true, Collections.singletonList( template ), Collections.emptyList() );
+        }
+
+        if ( template.indexOf( PLACEHOLDER_START ) >= 0 || template.indexOf( PLACEHOLDER_END ) >= 0 )
+        {
+            return uncompiled( template );
+        }
+
+        final List<MacroCall> calls = new ArrayList<>();
+        String workingString = template;
+        for ( int macroIndex = 0; macroIndex < orderedMacros.size(); macroIndex++ )
+        {
+            final MacroImplementation macroImplementation = orderedMacros.get( macroIndex );
+            Matcher matcher = macroImplementation.getRegExPattern().matcher( workingString );
+            while ( matcher.find() )
+            {
+                final String matchedText = matcher.group();
+                if ( matchedText.indexOf( '@' ) < 0 )
+                {
+                    // every replacement must remove an '@' for the compile loop to terminate.
+                    return uncompiled( template );
+                }
+
+                calls.add( new MacroCall( macroIndex, macroImplementation, toSegments( matchedText ) ) );
+                workingString = workingString.substring( 0, matcher.start() )
+                        + placeholder( calls.size() - 1 )
+                        + workingString.substring( matcher.end() );
+                matcher = macroImplementation.getRegExPattern().matcher( workingString );
+            }
+        }
+
+        return new MacroTemplate( template, true, toSegments( workingString ), Collections.unmodifiableList( calls ) );
+    }
+
+    private static MacroTemplate uncompiled( final String template )
+    {
+        return new MacroTemplate( template, false, Collections.emptyList(), Collections.emptyList() );
+    }
+
+    boolean isCompiled( )
+    {
+        return compiled;
+    }
+
+    int getCallCount( )
+    {
+        return calls.size();
+    }
+
+    String expand( final Expander expander )
+    {
+        if ( !compiled )
+        {
+            return expander.expandSequentially( template, 0 );
+        }
+
+        if ( calls.isEmpty() )
+        {
+            return template;
+        }
+
+        final String[] values = new String[calls.size()];
+        for ( int callIndex = 0; callIndex < calls.size(); callIndex++ )
+        {
+            final MacroCall macroCall = calls.get( callIndex );
+            final String matchedText = render( macroCall.getSegments(), values );
+
+            if ( macroCall.isNested() && !macroCall.getMacroImplementation().getRegExPattern().matcher( matchedText ).matches() )
+            {
+                return expander.expandSequentially( render( segments, values ), macroCall.getMacroIndex() );
+            }
+
+            final String value = expander.resolve( macroCall.getMacroImplementation(), matchedText );
+            if ( value == null )
+            {
+                return expander.expandSequentially( render( segments, values ), macroCall.getMacroIndex() + 1 );
+            }
+
+            values[callIndex] = value;
+            if ( splicedCalls[callIndex] || !isInert( value ) )
+            {
+                return expander.expandSequentially( render( segments, values ), macroCall.getMacroIndex() );
+            }
+        }
+
+        return render( segments, values );
+    }
+
+    /**
+     * Join segments, using the original matched text for calls without a value.
+     */
+    private String render( final List<Object> renderSegments, final String[] values )
+    {
+        final StringBuilder sb = new StringBuilder();
+        for ( final Object segment : renderSegments )
+        {
+            if ( segment instanceof Integer )
+            {
+                final int callIndex = ( Integer ) segment;
+                sb.append( values[callIndex] != null
+                        ? values[callIndex]
+                        : render( calls.get( callIndex ).getSegments(), values ) );
+            }
+            else
+            {
+                sb.append( ( String ) segment );
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean isInert( final String value )
+    {
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            final char c = value.charAt( i );
+            if ( c == '@' || c == ':' || c == '[' || c == ']' || c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029' )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Find the calls placed between two {@code @} characters that are still present in the working string when the
+     * uncompiled expansion replaces the call: literal text, and the text of calls replaced after it.  The first and last
+     * character of each enclosing call are ignored, since enclosing calls are re-matched as a whole once their inner
+     * values are known.
+     */
+    private static boolean[] findSplicedCalls( final String template, final List<Object> topSegments, final List<MacroCall> calls )
+    {
+        final boolean[] splicedCalls = new boolean[calls.size()];
+        if ( calls.isEmpty() )
+        {
+            return splicedCalls;
+        }
+
+        final StringBuilder text = new StringBuilder( template.length() );
+        final int[] owners = new int[template.length()];
+        final int[] starts = new int[calls.size()];
+        final int[] ends = new int[calls.size()];
+        flatten( topSegments, -1, new Flattened( text, owners, starts, ends ), calls );
+
+        for ( int callIndex = 0; callIndex < calls.size(); callIndex++ )
+        {
+            final boolean[] present = new boolean[text.length()];
+            for ( int i = 0; i < text.length(); i++ )
+            {
+                present[i] = text.charAt( i ) == '@' && isPresentDuring( owners[i], callIndex, calls, starts );
+            }
+            for ( int other = 0; other < calls.size(); other++ )
+            {
+                final boolean encloses = other != callIndex && starts[other] <= starts[callIndex] && ends[other] >= ends[callIndex];
+                if ( encloses && ends[other] > starts[other] )
+                {
+                    present[starts[other]] = false;
+                    present[ends[other] - 1] = false;
+                }
+            }
+            splicedCalls[callIndex] = anyPresent( present, 0, starts[callIndex] ) && anyPresent( present, ends[callIndex], text.length() );
+        }
+        return splicedCalls;
+    }
+
+    /**
+     * Whether text owned by a call (or literal text, for owner -1) is still unreplaced when the uncompiled expansion
+     * replaces the given call.  Macros are applied in order, and each macro's matches from left to right.
+     */
+    private static boolean isPresentDuring( final int owner, final int callIndex, final List<MacroCall> calls, final int[] starts )
+    {
+        if ( owner < 0 )
+        {
+            return true;
+        }
+        if ( owner == callIndex )
+        {
+            return false;
+        }
+
+        final int ownerMacroIndex = calls.get( owner ).getMacroIndex();
+        final int callMacroIndex = calls.get( callIndex ).getMacroIndex();
+        return ownerMacroIndex > callMacroIndex || ( ownerMacroIndex == callMacroIndex && starts[owner] > starts[callIndex] );
+    }
+
+    private static void flatten( final List<Object> flattenSegments, final int owner, final Flattened flattened, final List<MacroCall> calls )
+    {
+        for ( final Object segment : flattenSegments )
+        {
+            if ( segment instanceof Integer )
+            {
+                final int callIndex = ( Integer ) segment;
+                flattened.starts[callIndex] = flattened.text.length();
+                flatten( calls.get( callIndex ).getSegments(), callIndex, flattened, calls );
+                flattened.ends[callIndex] = flattened.text.length();
+            }
+            else
+            {
+                final String literal = ( String ) segment;
+                Arrays.fill( flattened.owners, flattened.text.length(), flattened.text.length() + literal.length(), owner );
+                flattened.text.append( literal );
+            }
+        }
+    }
+
+    private static boolean anyPresent( final boolean[] present, final int start, final int end )
+    {
+        for ( int i = start; i < end; i++ )
+        {
+            if ( present[i] )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String placeholder( final int callIndex )
+    {
+        return PLACEHOLDER_START + Integer.toString( callIndex ) + PLACEHOLDER_END;
+    }
+
+    private static List<Object> toSegments( final String text )
+    {
+        final List<Object> returnList = new ArrayList<>();
+        int position = 0;
+        int start = text.indexOf( PLACEHOLDER_START );
+        while ( start >= 0 )
+        {
+            final int end = text.indexOf( PLACEHOLDER_END, start );
+            if ( start > position )
+            {
+                returnList.add( text.substring( position, start ) );
+            }
+            returnList.add( Integer.parseInt( text.substring( start + 1, end ) ) );
+            position = end + 1;
+            start = text.indexOf( PLACEHOLDER_START, position );
+        }
+        if ( position < text.length() )
+        {
+            returnList.add( text.substring( position ) );
+        }
+        return Collections.unmodifiableList( returnList );
+    }
+
+    /**
+     * The template text rebuilt from its segments, with the innermost call owning each character and the span of
+     * each call.
+     */
+    private static final class Flattened
+    {
+        private final StringBuilder text;
+        private final int[] owners;
+        private final int[] starts;
+        private final int[] ends;
+
+        Flattened( final StringBuilder text, final int[] owners, final int[] starts, final int[] ends )
+        {
+            this.text = text;
+            this.owners = owners;
+            this.starts = starts;
+            this.ends = ends;
+        }
+    }
+
+    private static final class MacroCall
+    {
+        private final int macroIndex;
+        private final MacroImplementation macroImplementation;
+        private final List<Object> segments;
+        private final boolean nested;
+
+        MacroCall( final int macroIndex, final MacroImplementation macroImplementation, final List<Object> segments )
+        {
+            this.macroIndex = macroIndex;
+            this.macroImplementation = macroImplementation;
+            this.segments = segments;
+            this.nested = segments.stream().anyMatch( segment -> segment instanceof Integer );
+        }
+
+        int getMacroIndex( )
+        {
+            return macroIndex;
+        }
+
+        MacroImplementation getMacroImplementation( )
+        {
+            return macroImplementation;
+        }
+
+        List<Object> getSegments( )
+        {
+            return segments;
+        }
+
+        boolean isNested( )
+        {
+            return nested;
+        }
+    }
+}
@@ -536,11 +536,18 @@ public class PasswordRuleChecks
             if ( !ruleHelper.getDisallowedValues().isEmpty() )
             {
                 final String lcasePwd = password.toLowerCase();
+
+                // values without macros are pre-compiled, so they are all checked in a single pass of the password
+                if ( ruleCheckData.getPolicy().getDisallowedValueMatcher().matches( lcasePwd ) )
+                {
+                    errorList.add( new ErrorInformation( PwmError.PASSWORD_USING_DISALLOWED ) );
+                }
+
                 final Set<String> paramValues = new HashSet<>( ruleHelper.getDisallowedValues() );
 
                 for ( final String loopValue : paramValues )
                 {
-                    if ( loopValue != null && loopValue.length() > 0 )
+                    if ( loopValue != null && loopValue.length() > 0 && loopValue.contains( "@" ) )
                     {
                         final MacroMachine macroMachine = ruleCheckData.getMacroMachine();
                         final String expandedValue = macroMachine.expandMacros( loopValue );
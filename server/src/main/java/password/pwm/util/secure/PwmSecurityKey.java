@@ -31,8 +31,8 @@ import javax.crypto.spec.SecretKeySpec;
 import java.io.ByteArrayInputStream;
 import java.io.UnsupportedEncodingException;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class PwmSecurityKey
 {
@@ -46,7 +46,7 @@ public class PwmSecurityKey
     }
 
     private final byte[] keyData;
-    private final Map<Type, SecretKey> keyCache = new HashMap<>();
+    private final Map<Type, SecretKey> keyCache = new ConcurrentHashMap<>();
 
     public PwmSecurityKey( final byte[] keyData )
     {
@@ -81,11 +81,13 @@ public class PwmSecurityKey
     SecretKey getKey( final Type keyType )
             throws PwmUnrecoverableException
     {
-        if ( !keyCache.containsKey( keyType ) )
+        SecretKey secretKey = keyCache.get( keyType );
+        if ( secretKey == null )
         {
-            keyCache.put( keyType, getKeyImpl( keyType ) );
+            secretKey = getKeyImpl( keyType );
+            keyCache.put( keyType, secretKey );
         }
-        return keyCache.get( keyType );
+        return secretKey;
     }
 
     private SecretKey getKeyImpl( final Type keyType )
@@ -50,8 +50,18 @@ import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Random;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
@@ -117,45 +127,46 @@ public class SecureEngine
                 return null;
             }
 
+            final byte[] input = value.getBytes( PwmConstants.DEFAULT_CHARSET );
+            final byte[] prefix = blockAlgorithm.getPrefix();
+            final HmacAlgorithm hmacAlgorithm = blockAlgorithm.getHmacAlgorithm();
             final SecretKey aesKey = key.getKey( blockAlgorithm.getBlockKey() );
-            final byte[] nonce;
-            final Cipher cipher;
+            final Cipher cipher = ThreadCryptoCache.cipher( blockAlgorithm );
+
+            // output is assembled in a single buffer: prefix, then the checksum or nonce, then the cipher text
+            final int payloadOffset;
+            final byte[] output;
             if ( blockAlgorithm == PwmBlockAlgorithm.AES128_GCM )
             {
-                nonce = AES_GCM_NONCE_GENERATOR.nextValue();
-                final GCMParameterSpec spec = new GCMParameterSpec( GCM_TAG_LENGTH * 8, nonce );
-                cipher = Cipher.getInstance( blockAlgorithm.getAlgName() );
+                final int nonceOffset = prefix.length + 1;
+                payloadOffset = nonceOffset + AES_GCM_NONCE_GENERATOR.length();
+
+                // cipher is not yet initialized so the gcm output size is computed directly
+                output = new byte[ payloadOffset + input.length + GCM_TAG_LENGTH ];
+                output[ prefix.length ] = ( byte ) AES_GCM_NONCE_GENERATOR.length();
+                AES_GCM_NONCE_GENERATOR.nextValue( output, nonceOffset );
+                final GCMParameterSpec spec = new GCMParameterSpec( GCM_TAG_LENGTH * 8, output, nonceOffset, AES_GCM_NONCE_GENERATOR.length() );
                 cipher.init( Cipher.ENCRYPT_MODE, aesKey, spec );
             }
             else
             {
-                cipher = Cipher.getInstance( blockAlgorithm.getAlgName() );
                 cipher.init( Cipher.ENCRYPT_MODE, aesKey, cipher.getParameters() );
-                nonce = null;
+                payloadOffset = prefix.length + ( hmacAlgorithm == null ? 0 : hmacAlgorithm.getLength() );
+                output = new byte[ payloadOffset + cipher.getOutputSize( input.length ) ];
             }
-            final byte[] encryptedBytes = cipher.doFinal( value.getBytes( PwmConstants.DEFAULT_CHARSET ) );
+            System.arraycopy( prefix, 0, output, 0, prefix.length );
 
-            final byte[] output;
-            if ( blockAlgorithm.getHmacAlgorithm() != null )
-            {
-                final byte[] hashChecksum = computeHmacToBytes( blockAlgorithm.getHmacAlgorithm(), key, encryptedBytes );
-                output = appendByteArrays( blockAlgorithm.getPrefix(), hashChecksum, encryptedBytes );
-            }
-            else
+            final int encryptedLength = cipher.doFinal( input, 0, input.length, output, payloadOffset );
+
+            if ( hmacAlgorithm != null )
             {
-                if ( nonce == null )
-                {
-                    output = appendByteArrays( blockAlgorithm.getPrefix(), encryptedBytes );
-                }
-                else
-                {
-                    final byte[] nonceLength = new byte[ 1 ];
-                    nonceLength[ 0 ] = ( byte ) nonce.length;
-                    output = appendByteArrays( blockAlgorithm.getPrefix(), nonceLength, nonce, encryptedBytes );
-                }
+                final Mac mac = initMac( hmacAlgorithm, key );
+                mac.update( output, payloadOffset, encryptedLength );
+                mac.doFinal( output, prefix.length );
             }
-            return output;
 
+            final int outputLength = payloadOffset + encryptedLength;
+            return outputLength == output.length ? output : Arrays.copyOf( output, outputLength );
         }
         catch ( Exception e )
         {
@@ -209,49 +220,48 @@ public class SecureEngine
                 return null;
             }
 
-            byte[] workingValue = verifyAndStripPrefix( blockAlgorithm, value );
+            // the input is read in place using offsets, no intermediate copies are made
+            int offset = verifyPrefix( blockAlgorithm, value );
 
             final SecretKey aesKey = key.getKey( blockAlgorithm.getBlockKey() );
             if ( blockAlgorithm.getHmacAlgorithm() != null )
             {
                 final HmacAlgorithm hmacAlgorithm = blockAlgorithm.getHmacAlgorithm();
                 final int checksumSize = hmacAlgorithm.getLength();
-                if ( workingValue.length <= checksumSize )
+                if ( value.length - offset <= checksumSize )
                 {
                     throw new PwmUnrecoverableException( new ErrorInformation( PwmError.ERROR_CRYPT_ERROR,
                             "incoming " + blockAlgorithm.toString() + " data is missing checksum" ) );
                 }
-                final byte[] inputChecksum = Arrays.copyOfRange( workingValue, 0, checksumSize );
-                final byte[] inputPayload = Arrays.copyOfRange( workingValue, checksumSize, workingValue.length );
-                final byte[] computedChecksum = computeHmacToBytes( hmacAlgorithm, key, inputPayload );
-                if ( !Arrays.equals( inputChecksum, computedChecksum ) )
+                final Mac mac = initMac( hmacAlgorithm, key );
+                mac.update( value, offset + checksumSize, value.length - offset - checksumSize );
+                final byte[] computedChecksum = mac.doFinal();
+                if ( !regionEquals( computedChecksum, value, offset ) )
                 {
                     throw new PwmUnrecoverableException( new ErrorInformation( PwmError.ERROR_CRYPT_ERROR,
                             "incoming " + blockAlgorithm.toString() + " data has incorrect checksum" ) );
                 }
-                workingValue = inputPayload;
+                offset += checksumSize;
             }
-            final Cipher cipher;
+
+            final Cipher cipher = ThreadCryptoCache.cipher( blockAlgorithm );
             if ( blockAlgorithm == PwmBlockAlgorithm.AES128_GCM )
             {
-                final int nonceLength = workingValue[ 0 ];
-                workingValue = Arrays.copyOfRange( workingValue, 1, workingValue.length );
-                if ( workingValue.length <= nonceLength )
+                final int nonceLength = value[ offset ];
+                offset++;
+                if ( nonceLength < 1 || value.length - offset <= nonceLength )
                 {
                     throw new PwmUnrecoverableException( new ErrorInformation( PwmError.ERROR_CRYPT_ERROR, "incoming " + blockAlgorithm.toString() + " data is missing nonce" ) );
                 }
-                final byte[] nonce = Arrays.copyOfRange( workingValue, 0, nonceLength );
-                workingValue = Arrays.copyOfRange( workingValue, nonceLength, workingValue.length );
-                final GCMParameterSpec spec = new GCMParameterSpec( GCM_TAG_LENGTH * 8, nonce );
-                cipher = Cipher.getInstance( blockAlgorithm.getAlgName() );
+                final GCMParameterSpec spec = new GCMParameterSpec( GCM_TAG_LENGTH * 8, value, offset, nonceLength );
+                offset += nonceLength;
                 cipher.init( Cipher.DECRYPT_MODE, aesKey, spec );
             }
             else
             {
-                cipher = Cipher.getInstance( blockAlgorithm.getAlgName() );
                 cipher.init( Cipher.DECRYPT_MODE, aesKey );
             }
-            final byte[] decrypted = cipher.doFinal( workingValue );
+            final byte[] decrypted = cipher.doFinal( value, offset, value.length - offset );
             return new String( decrypted, PwmConstants.DEFAULT_CHARSET );
         }
         catch ( GeneralSecurityException e )
@@ -337,20 +347,18 @@ public class SecureEngine
         return JavaHelper.byteArrayToHexString( computeHashToBytes( is, algorithm ) );
     }
 
-    private static byte[] computeHmacToBytes(
+    private static Mac initMac(
             final HmacAlgorithm hmacAlgorithm,
-            final PwmSecurityKey pwmSecurityKey,
-            final byte[] input
+            final PwmSecurityKey pwmSecurityKey
     )
             throws PwmUnrecoverableException
     {
         try
         {
-
-            final Mac mac = Mac.getInstance( hmacAlgorithm.getAlgorithmName() );
+            final Mac mac = ThreadCryptoCache.mac( hmacAlgorithm );
             final SecretKey secretKey = pwmSecurityKey.getKey( hmacAlgorithm.getKeyType() );
             mac.init( secretKey );
-            return mac.doFinal( input );
+            return mac;
         }
         catch ( GeneralSecurityException e )
         {
@@ -407,115 +415,231 @@ public class SecureEngine
         }
     }
 
-    private static byte[] appendByteArrays( final byte[]... input )
+    /**
+     * Constant time comparison of an expected value against a region of the input.
+     */
+    private static boolean regionEquals( final byte[] expected, final byte[] input, final int offset )
     {
-        if ( input == null || input.length == 0 )
+        if ( input.length - offset < expected.length )
         {
-            return new byte[ 0 ];
+            return false;
         }
 
-        if ( input.length == 1 )
+        int result = 0;
+        for ( int i = 0; i < expected.length; i++ )
         {
-            return input[ 0 ];
+            result |= expected[ i ] ^ input[ offset + i ];
         }
-
-        int totalLength = 0;
-        for ( final byte[] loopBa : input )
-        {
-            totalLength += loopBa.length;
-        }
-
-        final byte[] output = new byte[ totalLength ];
-
-        int position = 0;
-        for ( final byte[] loopBa : input )
-        {
-            System.arraycopy( loopBa, 0, output, position, loopBa.length );
-            position += loopBa.length;
-        }
-        return output;
+        return result == 0;
     }
 
-    static byte[] verifyAndStripPrefix( final PwmBlockAlgorithm blockAlgorithm, final byte[] input ) throws PwmUnrecoverableException
+    /**
+     * Verify the input begins with the prefix of the block algorithm.
+     *
+     * @return the length of the prefix, which is the offset of the remaining input.
+     */
+    static int verifyPrefix( final PwmBlockAlgorithm blockAlgorithm, final byte[] input ) throws PwmUnrecoverableException
     {
         final byte[] definedPrefix = blockAlgorithm.getPrefix();
         if ( definedPrefix.length == 0 )
         {
-            return input;
+            return 0;
         }
-        final byte[] inputPrefix = Arrays.copyOf( input, definedPrefix.length );
-        if ( !Arrays.equals( definedPrefix, inputPrefix ) )
+
+        if ( input.length < definedPrefix.length || !regionEquals( definedPrefix, input, 0 ) )
         {
             final String errorMsg = "value is missing valid prefix for decryption type";
             final ErrorInformation errorInformation = new ErrorInformation( PwmError.ERROR_CRYPT_ERROR, errorMsg );
             throw new PwmUnrecoverableException( errorInformation );
         }
 
-        return Arrays.copyOfRange( input, definedPrefix.length, input.length );
+        return definedPrefix.length;
+    }
+
+    /**
+     * Cipher and Mac instances are expensive to look up from the providers and are not thread safe, so each thread keeps
+     * its own instances and re-initializes them with the key for each operation.
+     */
+    private static class ThreadCryptoCache
+    {
+        private static final ThreadLocal<ThreadCryptoCache> THREAD_CACHE = ThreadLocal.withInitial( ThreadCryptoCache::new );
+
+        private final Map<PwmBlockAlgorithm, Cipher> ciphers = new EnumMap<>( PwmBlockAlgorithm.class );
+        private final Map<HmacAlgorithm, Mac> macs = new EnumMap<>( HmacAlgorithm.class );
+
+        static Cipher cipher( final PwmBlockAlgorithm blockAlgorithm )
+                throws GeneralSecurityException
+        {
+            final ThreadCryptoCache cache = THREAD_CACHE.get();
+            Cipher cipher = cache.ciphers.get( blockAlgorithm );
+            if ( cipher == null )
+            {
+                cipher = Cipher.getInstance( blockAlgorithm.getAlgName() );
+                cache.ciphers.put( blockAlgorithm, cipher );
+            }
+            return cipher;
+        }
+
+        static Mac mac( final HmacAlgorithm hmacAlgorithm )
+                throws GeneralSecurityException
+        {
+            final ThreadCryptoCache cache = THREAD_CACHE.get();
+            Mac mac = cache.macs.get( hmacAlgorithm );
+            if ( mac == null )
+            {
+                mac = Mac.getInstance( hmacAlgorithm.getAlgorithmName() );
+                cache.macs.put( hmacAlgorithm, mac );
+            }
+            return mac;
+        }
     }
 
+    /**
+     * Generates nonces made of a fixed random component followed by a counter.  The counter space is partitioned into
+     * blocks that are reserved by each thread from a shared atomic counter, so threads never contend for a lock and never
+     * produce the same value.
+     */
     static class NonceGenerator
     {
-        private final byte[] value;
+        static final int COUNTER_BLOCK_SIZE = 1024;
 
-        private final int fixedComponentLength;
+        private final byte[] fixedComponent;
+        private final int counterComponentLength;
+        private final AtomicLong nextCounterBlock = new AtomicLong();
+        private final ThreadLocal<long[]> threadCounter = ThreadLocal.withInitial( () -> new long[ 2 ] );
 
         NonceGenerator( final int fixedComponentLength, final int counterComponentLength )
         {
-            this.fixedComponentLength = fixedComponentLength;
-            value = new byte[ fixedComponentLength + counterComponentLength ];
-            PwmRandom.getInstance().nextBytes( value );
+            if ( counterComponentLength < 1 || counterComponentLength > Long.BYTES )
+            {
+                throw new IllegalArgumentException( "counter component length must be between 1 and " + Long.BYTES );
+            }
+            this.fixedComponent = PwmRandom.getInstance().newBytes( fixedComponentLength );
+            this.counterComponentLength = counterComponentLength;
+        }
+
+        int length( )
+        {
+            return fixedComponent.length + counterComponentLength;
         }
 
-        public synchronized byte[] nextValue( )
+        byte[] nextValue( )
         {
-            increment( value.length - 1 );
-            return Arrays.copyOf( value, value.length );
+            final byte[] value = new byte[ length() ];
+            nextValue( value, 0 );
+            return value;
         }
 
-        private void increment( final int index )
+        void nextValue( final byte[] output, final int offset )
         {
-            if ( value[ index ] == Byte.MAX_VALUE )
+            // element 0 is the next counter value of this thread, element 1 is the end of the reserved block
+            final long[] counter = threadCounter.get();
+            if ( counter[ 0 ] == counter[ 1 ] )
             {
-                value[ index ] = 0;
-                if ( index > fixedComponentLength )
-                {
-                    increment( index - 1 );
-                }
+                counter[ 0 ] = nextCounterBlock.getAndIncrement() * COUNTER_BLOCK_SIZE;
+                counter[ 1 ] = counter[ 0 ] + COUNTER_BLOCK_SIZE;
             }
-            else
+            final long counterValue = counter[ 0 ]++;
+
+            System.arraycopy( fixedComponent, 0, output, offset, fixedComponent.length );
+            final int counterOffset = offset + fixedComponent.length;
+            for ( int i = 0; i < counterComponentLength; i++ )
             {
-                value[ index ]++;
+                output[ counterOffset + i ] = ( byte ) ( counterValue >>> ( 8 * ( counterComponentLength - 1 - i ) ) );
             }
         }
     }
 
+    /**
+     * Measure encryption and decryption throughput of each block algorithm, first on a single thread and then on one thread
+     * per available processor, so contention between threads shows as a drop in per-thread throughput.
+     */
     public static void benchmark( final Writer outputData ) throws PwmUnrecoverableException, IOException
     {
         final int testIterations = 10 * 1000;
-        final Random random = new Random();
-        final byte[] noise = new byte[ 1024 * 10 ];
+        final int threadCount = Runtime.getRuntime().availableProcessors();
         final PwmSecurityKey key = new PwmSecurityKey( PwmRandom.getInstance().newBytes( 1024 ) );
-        for ( int i = 0; i < 10; i++ )
+        final String payload = JavaHelper.binaryArrayToHex( PwmRandom.getInstance().newBytes( 1024 ) );
+
+        outputData.write( "processing " + testIterations + " iterations per thread of " + payload.length() + " character values\n" );
+        for ( final PwmBlockAlgorithm alg : PwmBlockAlgorithm.values() )
         {
-            for ( final PwmBlockAlgorithm alg : PwmBlockAlgorithm.values() )
+            final byte[] encrypted = encryptToBytes( payload, key, alg );
+            final BenchmarkOperation encryptOperation = () -> encryptToBytes( payload, key, alg );
+            final BenchmarkOperation decryptOperation = () -> decryptBytes( encrypted, key, alg );
+
+            // warm up
+            runBenchmark( threadCount, testIterations, encryptOperation );
+            runBenchmark( threadCount, testIterations, decryptOperation );
+
+            final List<Integer> threadCounts = threadCount > 1 ? Arrays.asList( 1, threadCount ) : Collections.singletonList( 1 );
+            for ( final int threads : threadCounts )
             {
-                final Instant startTime = Instant.now();
-                for ( int j = 0; j < testIterations; j++ )
+                writeBenchmarkResult( outputData, alg, "encrypt", threads, testIterations, runBenchmark( threads, testIterations, encryptOperation ) );
+                writeBenchmarkResult( outputData, alg, "decrypt", threads, testIterations, runBenchmark( threads, testIterations, decryptOperation ) );
+            }
+        }
+    }
+
+    private interface BenchmarkOperation
+    {
+        void run( ) throws PwmUnrecoverableException;
+    }
+
+    private static TimeDuration runBenchmark( final int threads, final int iterations, final BenchmarkOperation operation )
+            throws PwmUnrecoverableException
+    {
+        final ExecutorService executorService = Executors.newFixedThreadPool( threads );
+        try
+        {
+            final List<Callable<Object>> tasks = new ArrayList<>();
+            for ( int i = 0; i < threads; i++ )
+            {
+                tasks.add( () ->
                 {
-                    random.nextBytes( noise );
-                    SecureEngine.encryptToString(
-                            JavaHelper.binaryArrayToHex( noise ),
-                            key,
-                            alg
-                    );
-                }
-                final TimeDuration executionDuration = TimeDuration.fromCurrent( startTime );
-                outputData.write( "processed " + testIterations + " iterations using "
-                        + alg.toString() + " (" + alg.getLabel() + ") in "
-                        + executionDuration.asMillis() + "ms" );
-                outputData.write( "\n" );
+                    for ( int j = 0; j < iterations; j++ )
+                    {
+                        operation.run();
+                    }
+                    return null;
+                } );
+            }
+
+            final Instant startTime = Instant.now();
+            for ( final Future<Object> future : executorService.invokeAll( tasks ) )
+            {
+                future.get();
             }
+            return TimeDuration.fromCurrent( startTime );
         }
+        catch ( InterruptedException | ExecutionException e )
+        {
+            final String errorMsg = "error during crypto benchmark: " + e.getMessage();
+            throw new PwmUnrecoverableException( new ErrorInformation( PwmError.ERROR_CRYPT_ERROR, errorMsg ) );
+        }
+        finally
+        {
+            executorService.shutdownNow();
+        }
+    }
+
+    private static void writeBenchmarkResult(
+            final Writer outputData,
+            final PwmBlockAlgorithm alg,
+            final String operation,
+            final int threads,
+            final int iterations,
+            final TimeDuration executionDuration
+    )
+            throws IOException
+    {
+        final long totalOperations = ( long ) threads * iterations;
+        final long millis = Math.max( 1, executionDuration.asMillis() );
+        final long operationsPerSecond = totalOperations * 1000 / millis;
+        final long microsPerOperation = millis * 1000 * threads / totalOperations;
+        outputData.write( alg.toString() + " (" + alg.getLabel() + ") " + operation + " with " + threads + " thread(s): "
+                + totalOperations + " operations in " + executionDuration.asMillis() + "ms, "
+                + operationsPerSecond + " ops/sec, " + microsPerOperation + "us/op per thread" );
+        outputData.write( "\n" );
     }
 }
@@ -37,6 +37,7 @@ import password.pwm.http.PwmHttpRequestWrapper;
 import password.pwm.svc.stats.AvgStatistic;
 import password.pwm.svc.stats.DailyKey;
 import password.pwm.svc.stats.EpsStatistic;
+import password.pwm.svc.stats.HistogramPercentile;
 import password.pwm.svc.stats.Statistic;
 import password.pwm.svc.stats.StatisticType;
 import password.pwm.svc.stats.StatisticsBundle;
@@ -184,10 +185,23 @@ public class RestStatisticsServer extends RestServlet
                 final StatValue statValue = new StatValue( statistic.name(), value );
                 output.put( statistic.name(), statValue );
             }
+            addHistogramStatValues( output, statisticsManager.getStatBundleForKey( key ) );
 
             return Collections.unmodifiableList( new ArrayList<>( output.values() ) );
         }
 
+        private static void addHistogramStatValues( final Map<String, StatValue> output, final StatisticsBundle bundle )
+        {
+            for ( final AvgStatistic statistic : AvgStatistic.values() )
+            {
+                for ( final HistogramPercentile percentile : HistogramPercentile.values() )
+                {
+                    final String name = percentile.statName( statistic );
+                    output.put( name, new StatValue( name, bundle.getHistogramPercentile( statistic, percentile ) ) );
+                }
+            }
+        }
+
         private static List<HistoryData> makeHistoryStatInfos(
                 final StatisticsManager statisticsManager,
                 final int days
@@ -207,6 +221,7 @@ public class RestStatisticsServer extends RestServlet
                     final StatValue statValue = new StatValue( statistic.name(), value );
                     output.put( statistic.name(), statValue );
                 }
+                addHistogramStatValues( output, statisticsManager.getStatBundleForKey( dailyKey.toString() ) );
                 final List<StatValue> statValues = Collections.unmodifiableList( new ArrayList<>( output.values() ) );
                 final HistoryData historyData = HistoryData.builder()
                         .name( dailyKey.toString() )
@@ -263,6 +278,17 @@ public class RestStatisticsServer extends RestServlet
                         StatisticType.AVERAGE.name(),
                         statistic.getDescription( locale ) );
                 output.put( statistic.name(), statLabelData );
+
+                for ( final HistogramPercentile percentile : HistogramPercentile.values() )
+                {
+                    final String name = percentile.statName( statistic );
+                    final StatLabelData histogramLabelData = new StatLabelData(
+                            name,
+                            statistic.getLabel( locale ) + " " + percentile.name(),
+                            StatisticType.HISTOGRAM.name(),
+                            statistic.getDescription( locale ) );
+                    output.put( name, histogramLabelData );
+                }
             }
             for ( final EpsStatistic loopEps : EpsStatistic.values() )
             {
@@ -0,0 +1,130 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package password.pwm.ldap;
+
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.SearchScope;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class PrefetchedLdapEntryTest
+{
+    private static final String DN = "cn=alice,ou=users,o=org";
+
+    private static PrefetchedLdapEntry testEntry( )
+    {
+        final Map<String, List<String>> stringValues = new HashMap<>();
+        stringValues.put( "cn", Collections.singletonList( "alice" ) );
+        stringValues.put( "mail", Arrays.asList( "alice@example.com", "asmith@example.com" ) );
+        final Map<String, byte[][]> binaryValues = new HashMap<>();
+        binaryValues.put( "guid", new byte[][] {new byte[] {1, 2, 3}} );
+        return PrefetchedLdapEntry.forValues( DN, Arrays.asList( "cn", "mail", "title" ), Collections.singleton( "guid" ), stringValues, binaryValues );
+    }
+
+    private static Object answer( final String methodName, final Object... args )
+            throws Exception
+    {
+        for ( final Method method : ChaiProvider.class.getMethods() )
+        {
+            if ( method.getName().equals( methodName ) && method.getParameterCount() == args.length
+                    && ( args.length < 2 || method.getParameterTypes()[1].isInstance( args[1] ) ) )
+            {
+                return PrefetchedLdapEntry.answer( method, args );
+            }
+        }
+        throw new IllegalArgumentException( methodName );
+    }
+
+    @After
+    public void deactivate( )
+    {
+        PrefetchedLdapEntry.deactivate();
+    }
+
+    @Test
+    public void testInactiveEntry( )
+            throws Exception
+    {
+        Assert.assertSame( PrefetchedLdapEntry.NOT_PREFETCHED, answer( "readStringAttribute", DN, "cn" ) );
+    }
+
+    @Test
+    public void testSingleAttributeReads( )
+            throws Exception
+    {
+        testEntry().activate();
+        Assert.assertEquals( "alice", answer( "readStringAttribute", "CN=Alice,OU=Users,O=Org", "CN" ) );
+        Assert.assertNull( answer( "readStringAttribute", DN, "title" ) );
+        Assert.assertEquals( new HashSet<>( Arrays.asList( "alice@example.com", "asmith@example.com" ) ), answer( "readMultiStringAttribute", DN, "mail" ) );
+        Assert.assertEquals( Collections.emptySet(), answer( "readMultiStringAttribute", DN, "title" ) );
+        Assert.assertArrayEquals( new byte[][] {new byte[] {1, 2, 3}}, ( byte[][] ) answer( "readMultiByteAttribute", DN, "guid" ) );
+        Assert.assertSame( PrefetchedLdapEntry.NOT_PREFETCHED, answer( "readStringAttribute", DN, "sn" ) );
+        Assert.assertSame( PrefetchedLdapEntry.NOT_PREFETCHED, answer( "readStringAttribute", "cn=bob,ou=users,o=org", "cn" ) );
+    }
+
+    @Test
+    public void testBaseSearches( )
+            throws Exception
+    {
+        testEntry().activate();
+        final Set<String> attributes = new HashSet<>( Arrays.asList( "cn", "mail", "title" ) );
+
+        final Map<String, Map<String, String>> searchResult = ( Map<String, Map<String, String>> ) answer( "search", DN, "(objectclass=*)", attributes, SearchScope.BASE );
+        Assert.assertEquals( "alice", searchResult.get( DN ).get( "cn" ) );
+        Assert.assertFalse( searchResult.get( DN ).containsKey( "title" ) );
+
+        final Map<String, Map<String, List<String>>> multiResult = ( Map<String, Map<String, List<String>>> ) answer(
+                "searchMultiValues", DN, "(objectClass=*)", attributes, SearchScope.BASE );
+        Assert.assertEquals( 2, multiResult.get( DN ).get( "mail" ).size() );
+
+        Assert.assertSame( PrefetchedLdapEntry.NOT_PREFETCHED, answer( "search", DN, "(objectclass=*)", attributes, SearchScope.SUBTREE ) );
+        Assert.assertSame( PrefetchedLdapEntry.NOT_PREFETCHED, answer( "search", DN, "(cn=alice)", attributes, SearchScope.BASE ) );
+        Assert.assertSame( PrefetchedLdapEntry.NOT_PREFETCHED, answer( "readStringAttributes", DN, Collections.emptySet() ) );
+    }
+
+    @Test
+    public void testRecording( )
+            throws Exception
+    {
+        final PrefetchedLdapEntry.Recorder recorder = new PrefetchedLdapEntry.Recorder();
+        PrefetchedLdapEntry.forRecording( DN, recorder ).activate();
+        Assert.assertSame( PrefetchedLdapEntry.NOT_PREFETCHED, answer( "readStringAttribute", DN, "cn" ) );
+        Assert.assertSame( PrefetchedLdapEntry.NOT_PREFETCHED, answer( "readStringAttributes", DN, new HashSet<>( Arrays.asList( "mail", "sn" ) ) ) );
+        Assert.assertSame( PrefetchedLdapEntry.NOT_PREFETCHED, answer( "readMultiByteAttribute", DN, "guid" ) );
+        Assert.assertSame( PrefetchedLdapEntry.NOT_PREFETCHED, answer( "readStringAttribute", "cn=other", "title" ) );
+        Assert.assertEquals( 3, recorder.getStringAttributes().size() );
+        Assert.assertTrue( recorder.getStringAttributes().contains( "CN" ) );
+        Assert.assertEquals( Collections.singleton( "guid" ), new HashSet<>( recorder.getBinaryAttributes() ) );
+    }
+}
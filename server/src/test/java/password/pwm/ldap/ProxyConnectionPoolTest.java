@@ -0,0 +1,281 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package password.pwm.ldap;
+
+import com.novell.ldapchai.provider.ChaiProvider;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import password.pwm.PwmApplication;
+import password.pwm.config.profile.LdapProfile;
+import password.pwm.util.java.TimeDuration;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ProxyConnectionPoolTest
+{
+    private static final String DN = "cn=alice,ou=users,o=org";
+
+    private final List<StubProvider> stubs = new CopyOnWriteArrayList<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown( )
+    {
+        for ( final StubProvider stub : stubs )
+        {
+            stub.release();
+        }
+        executor.shutdownNow();
+    }
+
+    private ProxyConnectionPool makePool( final int minConnections, final int maxConnections, final TimeDuration idleEvictionTime )
+    {
+        return new ProxyConnectionPool(
+                Mockito.mock( PwmApplication.class ),
+                Mockito.mock( LdapProfile.class ),
+                minConnections,
+                maxConnections,
+                idleEvictionTime,
+                ( ) ->
+                {
+                    final StubProvider stub = new StubProvider( String.valueOf( ( char ) ( 'A' + stubs.size() ) ) );
+                    stubs.add( stub );
+                    return stub.getProvider();
+                }
+        );
+    }
+
+    /**
+     * Start a read on the provider in the background and wait until it is blocked inside the stub.
+     */
+    private Future<String> startBlockedRead( final ChaiProvider provider, final StubProvider stub )
+            throws InterruptedException
+    {
+        stub.block();
+        final Future<String> future = executor.submit( ( ) -> provider.readStringAttribute( DN, "cn" ) );
+        Assert.assertTrue( stub.entered.tryAcquire( 10, TimeUnit.SECONDS ) );
+        return future;
+    }
+
+    @Test
+    public void testSelectPrefersIdleConnectionAndGrowsToMax( )
+            throws Exception
+    {
+        final ProxyConnectionPool pool = makePool( 0, 2, TimeDuration.MINUTE );
+
+        final ChaiProvider first = pool.select();
+        Assert.assertSame( first, pool.select() );
+        Assert.assertEquals( 1, stubs.size() );
+
+        // the only connection is busy, so the pool grows
+        final Future<String> firstRead = startBlockedRead( first, stubs.get( 0 ) );
+        final ChaiProvider second = pool.select();
+        Assert.assertNotSame( first, second );
+        Assert.assertEquals( 2, stubs.size() );
+        Assert.assertEquals( 2, pool.connectionCount() );
+
+        // the idle connection has fewer outstanding operations
+        Assert.assertSame( second, pool.select() );
+
+        // every connection is busy but the pool is at its maximum, so an existing connection is shared
+        final Future<String> secondRead = startBlockedRead( second, stubs.get( 1 ) );
+        final ChaiProvider third = pool.select();
+        Assert.assertTrue( third == first || third == second );
+        Assert.assertEquals( 2, stubs.size() );
+        Assert.assertEquals( 2, pool.connectionCount() );
+
+        stubs.get( 0 ).release();
+        stubs.get( 1 ).release();
+        Assert.assertEquals( "A", firstRead.get( 10, TimeUnit.SECONDS ) );
+        Assert.assertEquals( "B", secondRead.get( 10, TimeUnit.SECONDS ) );
+    }
+
+    @Test
+    public void testEvictionKeepsMinimumConnections( )
+            throws Exception
+    {
+        final ProxyConnectionPool pool = makePool( 1, 3, TimeDuration.MILLISECOND );
+
+        final ChaiProvider first = pool.select();
+        final Future<String> firstRead = startBlockedRead( first, stubs.get( 0 ) );
+        final ChaiProvider second = pool.select();
+        final Future<String> secondRead = startBlockedRead( second, stubs.get( 1 ) );
+        pool.select();
+        Assert.assertEquals( 3, pool.connectionCount() );
+
+        stubs.get( 0 ).release();
+        stubs.get( 1 ).release();
+        firstRead.get( 10, TimeUnit.SECONDS );
+        secondRead.get( 10, TimeUnit.SECONDS );
+        Thread.sleep( 20 );
+
+        pool.evictIdleConnections();
+        Assert.assertEquals( 1, pool.connectionCount() );
+        Assert.assertEquals( 2, stubs.stream().filter( StubProvider::isClosed ).count() );
+
+        pool.evictIdleConnections();
+        Assert.assertEquals( 1, pool.connectionCount() );
+        Assert.assertEquals( 2, stubs.stream().filter( StubProvider::isClosed ).count() );
+    }
+
+    @Test
+    public void testRetiredConnectionReroutesAndClosesWhenIdle( )
+            throws Exception
+    {
+        final ProxyConnectionPool pool = makePool( 0, 2, TimeDuration.MINUTE );
+
+        final ChaiProvider first = pool.select();
+        final StubProvider firstStub = stubs.get( 0 );
+        final Future<String> inFlight = startBlockedRead( first, firstStub );
+        pool.select();
+        final StubProvider secondStub = stubs.get( 1 );
+
+        // retiring a connection with an operation in progress leaves it open until the operation finishes
+        first.close();
+        Assert.assertEquals( 1, pool.connectionCount() );
+        Assert.assertFalse( firstStub.isClosed() );
+
+        // new calls on the retired provider are sent to the live connection
+        Assert.assertEquals( "B", first.readStringAttribute( DN, "cn" ) );
+        Assert.assertEquals( 1, firstStub.reads.get() );
+        Assert.assertEquals( 1, secondStub.reads.get() );
+        Assert.assertFalse( firstStub.isClosed() );
+
+        firstStub.release();
+        Assert.assertEquals( "A", inFlight.get( 10, TimeUnit.SECONDS ) );
+        Assert.assertTrue( firstStub.isClosed() );
+        Assert.assertFalse( secondStub.isClosed() );
+    }
+
+    @Test
+    public void testCallerCloseDoesNotBreakOtherHolders( )
+            throws Exception
+    {
+        final ProxyConnectionPool pool = makePool( 0, 2, TimeDuration.MINUTE );
+
+        final ChaiProvider holder1 = pool.select();
+        final ChaiProvider holder2 = pool.select();
+        Assert.assertSame( holder1, holder2 );
+
+        // an idle connection is closed as soon as a caller closes it
+        holder1.close();
+        Assert.assertTrue( stubs.get( 0 ).isClosed() );
+        Assert.assertEquals( 0, pool.connectionCount() );
+
+        // the other holder is routed to a new connection
+        Assert.assertEquals( "B", holder2.readStringAttribute( DN, "cn" ) );
+        Assert.assertTrue( holder2.isConnected() );
+        Assert.assertEquals( 2, stubs.size() );
+        Assert.assertEquals( 1, pool.connectionCount() );
+        Assert.assertFalse( stubs.get( 1 ).isClosed() );
+
+        holder1.close();
+        Assert.assertEquals( 0, stubs.get( 0 ).reads.get() );
+    }
+
+    private static class StubProvider implements InvocationHandler
+    {
+        private final String name;
+        private final ChaiProvider provider;
+        private final AtomicInteger reads = new AtomicInteger();
+        private final Semaphore entered = new Semaphore( 0 );
+        private volatile CountDownLatch gate = new CountDownLatch( 0 );
+        private volatile boolean closed;
+
+        StubProvider( final String name )
+        {
+            this.name = name;
+            this.provider = ( ChaiProvider ) Proxy.newProxyInstance( ChaiProvider.class.getClassLoader(), new Class<?>[]
+                    {
+                            ChaiProvider.class,
+                    },
+                    this );
+        }
+
+        ChaiProvider getProvider( )
+        {
+            return provider;
+        }
+
+        boolean isClosed( )
+        {
+            return closed;
+        }
+
+        void block( )
+        {
+            gate = new CountDownLatch( 1 );
+        }
+
+        void release( )
+        {
+            gate.countDown();
+        }
+
+        @Override
+        public Object invoke( final Object proxy, final Method method, final Object[] args )
+                throws Throwable
+        {
+            switch ( method.getName() )
+            {
+                case "readStringAttribute":
+                    reads.incrementAndGet();
+                    entered.release();
+                    gate.await();
+                    return name;
+
+                case "close":
+                    closed = true;
+                    return null;
+
+                case "isConnected":
+                    return !closed;
+
+                case "hashCode":
+                    return System.identityHashCode( proxy );
+
+                case "equals":
+                    return proxy == args[0];
+
+                case "toString":
+                    return name;
+
+                default:
+                    return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package password.pwm.ldap.filter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class LdapFilterTest
+{
+    private static Map<String, List<String>> testEntry( )
+    {
+        final Map<String, List<String>> values = new HashMap<>();
+        values.put( "objectclass", Arrays.asList( "top", "person", "inetOrgPerson" ) );
+        values.put( "cn", Collections.singletonList( "Alice Smith" ) );
+        values.put( "groupmembership", Arrays.asList( "cn=Admins,ou=Groups,o=Org", "cn=Users, ou=Groups, o=Org" ) );
+        values.put( "logoncount", Collections.singletonList( "42" ) );
+        values.put( "title", Collections.emptyList() );
+        values.put( "carlicense", Collections.singletonList( "ABC-123" ) );
+        values.put( "telephonenumber", Collections.singletonList( "+1 555 0100" ) );
+        values.put( "employeeid", Collections.singletonList( "42" ) );
+        return values;
+    }
+
+    private static LdapFilter.Result evaluate( final String filter )
+    {
+        return LdapFilter.parse( filter ).evaluate( testEntry() );
+    }
+
+    @Test
+    public void testSimpleAssertions()
+    {
+        Assert.assertEquals( LdapFilter.Result.MATCH, evaluate( "(objectClass=*)" ) );
+        Assert.assertEquals( LdapFilter.Result.MATCH, evaluate( "objectClass=person" ) );
+        Assert.assertEquals( LdapFilter.Result.MATCH, evaluate( "(CN=alice  smith)" ) );
+        Assert.assertEquals( LdapFilter.Result.NO_MATCH, evaluate( "(cn=bob)" ) );
+        Assert.assertEquals( LdapFilter.Result.NO_MATCH, evaluate( "(title=*)" ) );
+        Assert.assertEquals( LdapFilter.Result.MATCH, evaluate( "(groupMembership=cn=users,ou=groups,o=org)" ) );
+        Assert.assertEquals( LdapFilter.Result.MATCH, evaluate( "(groupMembership=cn=admins, ou=groups, o=org)" ) );
+        Assert.assertEquals( LdapFilter.Result.MATCH, evaluate( "(logonCount>=40)" ) );
+        Assert.assertEquals( LdapFilter.Result.NO_MATCH, evaluate( "(logonCount<=9)" ) );
+    }
+
+    @Test
+    public void testSubstrings()
+    {
+        Assert.assertEquals( LdapFilter.Result.MATCH, evaluate( "(cn=ali*)" ) );
+        Assert.assertEquals( LdapFilter.Result.MATCH, evaluate( "(cn=*smith)" ) );
+        Assert.assertEquals( LdapFilter.Result.MATCH, evaluate( "(cn=a*ce*th)" ) );
+        Assert.assertEquals( LdapFilter.Result.NO_MATCH, evaluate( "(cn=alice s*ice smith)" ) );
+        Assert.assertEquals( LdapFilter.Result.NO_MATCH, evaluate( "(cn=*bob*)" ) );
+    }
+
+    @Test
+    public void testComposites()
+    {
+        Assert.assertEquals( LdapFilter.Result.MATCH, evaluate( "(&(objectClass=person)(|(cn=bob)(cn=alice smith)))" ) );
+        Assert.assertEquals( LdapFilter.Result.NO_MATCH, evaluate( "(&(objectClass=person)(!(cn=alice smith)))" ) );
+        Assert.assertEquals( LdapFilter.Result.MATCH, evaluate( "(!(cn=bob))" ) );
+    }
+
+    @Test
+    public void testUndetermined()
+    {
+        Assert.assertEquals( LdapFilter.Result.UNDETERMINED, evaluate( "(department=sales)" ) );
+        Assert.assertEquals( LdapFilter.Result.UNDETERMINED, evaluate( "(cn~=alice)" ) );
+        Assert.assertEquals( LdapFilter.Result.UNDETERMINED, evaluate( "(memberOf:1.2.840.113556.1.4.1941:=cn=admins,o=org)" ) );
+        Assert.assertEquals( LdapFilter.Result.UNDETERMINED, evaluate( "(cn;lang-en=alice)" ) );
+        Assert.assertEquals( LdapFilter.Result.UNDETERMINED, evaluate( "(cn>=alice)" ) );
+
+        // a decided branch still decides the composite
+        Assert.assertEquals( LdapFilter.Result.MATCH, evaluate( "(|(department=sales)(cn=alice smith))" ) );
+        Assert.assertEquals( LdapFilter.Result.NO_MATCH, evaluate( "(&(department=sales)(cn=bob))" ) );
+        Assert.assertEquals( LdapFilter.Result.UNDETERMINED, evaluate( "(&(department=sales)(cn=alice smith))" ) );
+    }
+
+    @Test
+    public void testUnknownMatchingRules()
+    {
+        // carLicense is caseExact in some schemas and caseIgnore in others, so only the directory can decide
+        Assert.assertEquals( LdapFilter.Result.UNDETERMINED, evaluate( "(carLicense=abc-123)" ) );
+        Assert.assertEquals( LdapFilter.Result.UNDETERMINED, evaluate( "(carLicense=ABC-123)" ) );
+        Assert.assertEquals( LdapFilter.Result.UNDETERMINED, evaluate( "(carLicense=abc*)" ) );
+        Assert.assertEquals( LdapFilter.Result.UNDETERMINED, evaluate( "(telephoneNumber=+15550100)" ) );
+        Assert.assertEquals( LdapFilter.Result.UNDETERMINED, evaluate( "(employeeId>=40)" ) );
+        Assert.assertEquals( LdapFilter.Result.MATCH, evaluate( "(carLicense=*)" ) );
+
+        // integer and dn rules do not define substring matching
+        Assert.assertEquals( LdapFilter.Result.UNDETERMINED, evaluate( "(logonCount=4*)" ) );
+        Assert.assertEquals( LdapFilter.Result.UNDETERMINED, evaluate( "(groupMembership=cn=admins*)" ) );
+        Assert.assertEquals( LdapFilter.Result.MATCH, evaluate( "(logonCount=042)" ) );
+
+        // object classes named by oid, and values outside of ascii, are left to the directory
+        Assert.assertEquals( LdapFilter.Result.UNDETERMINED, evaluate( "(objectClass=2.5.6.6)" ) );
+        Assert.assertEquals( LdapFilter.Result.UNDETERMINED, evaluate( "(cn=\\c3\\a9)" ) );
+
+        // rules supplied by the caller take precedence over the built in rules
+        final Map<String, LdapFilter.MatchingRule> rules = Collections.singletonMap( "carlicense", LdapFilter.MatchingRule.CASE_IGNORE );
+        Assert.assertEquals( LdapFilter.Result.MATCH, LdapFilter.parse( "(carLicense=abc-123)", rules ).evaluate( testEntry() ) );
+    }
+
+    @Test
+    public void testNegatedUnknownMatchingRule()
+    {
+        // a local NO_MATCH under a negation would grant the permission, so it must stay undetermined
+        Assert.assertEquals( LdapFilter.Result.UNDETERMINED, evaluate( "(!(carLicense=abc-123))" ) );
+        Assert.assertEquals( LdapFilter.Result.UNDETERMINED, evaluate( "(&(objectClass=person)(!(carLicense=abc-123)))" ) );
+        Assert.assertEquals( LdapFilter.Result.NO_MATCH, evaluate( "(&(!(cn=alice smith))(!(carLicense=abc-123)))" ) );
+        Assert.assertTrue( LdapFilter.parse( "(!(carLicense=abc-123))" ).attributeNames().isEmpty() );
+    }
+
+    @Test
+    public void testDistinguishedNameSpellings()
+    {
+        final Map<String, List<String>> values = new HashMap<>();
+        values.put( "manager", Collections.singletonList( "cn=Doe\\, John,ou=People,o=Org" ) );
+        values.put( "seealso", Collections.singletonList( "cn=a+uid=b,o=Org" ) );
+        values.put( "secretary", Collections.singletonList( "cn=\"Doe, John\",o=Org" ) );
+        values.put( "owner", Collections.singletonList( "cn=Smith,o=Org" ) );
+
+        // escaped, quoted and multi-valued rdns have other spellings of the same dn, so only the directory can decide
+        Assert.assertEquals( LdapFilter.Result.UNDETERMINED, LdapFilter.parse( "(manager=cn=Doe\\5c2C John,ou=People,o=Org)" ).evaluate( values ) );
+        Assert.assertEquals( LdapFilter.Result.UNDETERMINED, LdapFilter.parse( "(manager=cn=Jane,o=Org)" ).evaluate( values ) );
+        Assert.assertEquals( LdapFilter.Result.UNDETERMINED, LdapFilter.parse( "(seeAlso=uid=b+cn=a,o=Org)" ).evaluate( values ) );
+        Assert.assertEquals( LdapFilter.Result.UNDETERMINED, LdapFilter.parse( "(secretary=cn=Doe\\5c, John,o=Org)" ).evaluate( values ) );
+        Assert.assertEquals( LdapFilter.Result.UNDETERMINED, LdapFilter.parse( "(owner=cn=a+uid=b,o=Org)" ).evaluate( values ) );
+        Assert.assertEquals( LdapFilter.Result.UNDETERMINED, LdapFilter.parse( "(owner=cn=\\22Smith\\22,o=Org)" ).evaluate( values ) );
+
+        // under a negation these would otherwise grant the permission
+        Assert.assertEquals( LdapFilter.Result.UNDETERMINED, LdapFilter.parse( "(!(manager=cn=Doe\\5c2C John,ou=People,o=Org))" ).evaluate( values ) );
+        Assert.assertEquals( LdapFilter.Result.UNDETERMINED, LdapFilter.parse( "(!(seeAlso=uid=b+cn=a,o=Org))" ).evaluate( values ) );
+
+        // plain dns are still decided locally
+        Assert.assertEquals( LdapFilter.Result.MATCH, LdapFilter.parse( "(owner=CN=smith, o=org)" ).evaluate( values ) );
+        Assert.assertEquals( LdapFilter.Result.NO_MATCH, LdapFilter.parse( "(owner=cn=jones,o=org)" ).evaluate( values ) );
+    }
+
+    @Test
+    public void testObjectClassSuperclasses()
+    {
+        final Map<String, List<String>> values = new HashMap<>();
+        values.put( "objectclass", Collections.singletonList( "inetOrgPerson" ) );
+
+        // the directory may match person as a superclass of inetOrgPerson, so a local mismatch is not trusted
+        Assert.assertEquals( LdapFilter.Result.MATCH, LdapFilter.parse( "(objectClass=inetorgperson)" ).evaluate( values ) );
+        Assert.assertEquals( LdapFilter.Result.UNDETERMINED, LdapFilter.parse( "(objectClass=person)" ).evaluate( values ) );
+        Assert.assertEquals( LdapFilter.Result.UNDETERMINED, LdapFilter.parse( "(!(objectClass=person))" ).evaluate( values ) );
+        Assert.assertEquals( LdapFilter.Result.NO_MATCH, LdapFilter.parse( "(!(objectClass=inetOrgPerson))" ).evaluate( values ) );
+    }
+
+    @Test
+    public void testEscapesAndAttributeNames()
+    {
+        final Map<String, List<String>> values = new HashMap<>();
+        values.put( "description", Collections.singletonList( "a*b(c)" ) );
+        final LdapFilter filter = LdapFilter.parse( "(&(description=a\\2ab\\28c\\29)(!(cn=x)))" );
+        Assert.assertEquals( LdapFilter.Result.UNDETERMINED, filter.evaluate( values ) );
+        Assert.assertEquals( Arrays.asList( "cn", "description" ), Arrays.asList( filter.attributeNames().toArray() ) );
+
+        values.put( "cn", Collections.emptyList() );
+        Assert.assertEquals( LdapFilter.Result.MATCH, filter.evaluate( values ) );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void testMalformedFilter()
+    {
+        LdapFilter.parse( "(&(cn=a)(sn=b)" );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void testTrailingContent()
+    {
+        LdapFilter.parse( "(cn=a))" );
+    }
+}
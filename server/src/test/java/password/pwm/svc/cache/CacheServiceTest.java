@@ -0,0 +1,246 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package password.pwm.svc.cache;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import password.pwm.AppProperty;
+import password.pwm.PwmApplication;
+import password.pwm.PwmApplicationMode;
+import password.pwm.config.Configuration;
+import password.pwm.error.PwmError;
+import password.pwm.error.PwmUnrecoverableException;
+import password.pwm.util.java.TimeDuration;
+import password.pwm.util.localdb.LocalDB;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CacheServiceTest
+{
+    private static final int THREAD_COUNT = 8;
+    private static final CacheKey CACHE_KEY = CacheKey.newKey( CacheServiceTest.class, null, "test-value" );
+
+    private final ExecutorService executor = Executors.newFixedThreadPool( THREAD_COUNT );
+    private CacheService cacheService;
+
+    @After
+    public void tearDown( )
+    {
+        executor.shutdownNow();
+        if ( cacheService != null )
+        {
+            cacheService.close();
+        }
+    }
+
+    private static CacheService openService( final boolean refreshAhead )
+            throws Exception
+    {
+        final Configuration configuration = Mockito.mock( Configuration.class );
+        Mockito.when( configuration.readAppProperty( Mockito.any( AppProperty.class ) ) )
+                .thenAnswer( invocation -> ( ( AppProperty ) invocation.getArgument( 0 ) ).getDefaultValue() );
+        Mockito.when( configuration.readAppProperty( AppProperty.CACHE_LOCALDB_ENABLE ) ).thenReturn( "false" );
+        Mockito.when( configuration.readAppProperty( AppProperty.CACHE_REFRESH_AHEAD_ENABLE ) ).thenReturn( String.valueOf( refreshAhead ) );
+        Mockito.when( configuration.readAppProperty( AppProperty.CACHE_REFRESH_AHEAD_PERCENT ) ).thenReturn( "100" );
+
+        final PwmApplication pwmApplication = Mockito.mock( PwmApplication.class );
+        Mockito.when( pwmApplication.getConfig() ).thenReturn( configuration );
+        Mockito.when( pwmApplication.getLocalDB() ).thenReturn( Mockito.mock( LocalDB.class ) );
+        Mockito.when( pwmApplication.getApplicationMode() ).thenReturn( PwmApplicationMode.RUNNING );
+
+        final CacheService cacheService = new CacheService();
+        cacheService.init( pwmApplication );
+        return cacheService;
+    }
+
+    private static CachePolicy policy( )
+    {
+        return CachePolicy.makePolicyWithExpiration( TimeDuration.MINUTE );
+    }
+
+    private CacheLoadStatistics loadStatistics( )
+    {
+        return ( CacheLoadStatistics ) cacheService.debugInfo().get( "load-statistics" );
+    }
+
+    /**
+     * Block until every other thread is waiting on the load in progress.
+     */
+    private void awaitWaiters( )
+            throws InterruptedException
+    {
+        final long deadline = System.currentTimeMillis() + 10_000;
+        while ( loadStatistics().getCoalescedCount() < THREAD_COUNT - 1 && System.currentTimeMillis() < deadline )
+        {
+            Thread.sleep( 5 );
+        }
+    }
+
+    private List<Future<String>> startReaders( final CacheLoader<String> cacheLoader )
+    {
+        final CountDownLatch startLatch = new CountDownLatch( 1 );
+        final Callable<String> reader = ( ) ->
+        {
+            startLatch.await();
+            return cacheService.get( CACHE_KEY, policy(), String.class, cacheLoader );
+        };
+
+        final List<Future<String>> futures = new ArrayList<>();
+        for ( int i = 0; i < THREAD_COUNT; i++ )
+        {
+            futures.add( executor.submit( reader ) );
+        }
+        startLatch.countDown();
+        return futures;
+    }
+
+    @Test
+    public void testConcurrentMissesShareOneLoad( )
+            throws Exception
+    {
+        cacheService = openService( false );
+        final AtomicInteger loaderCalls = new AtomicInteger();
+        final List<Future<String>> futures = startReaders( ( ) ->
+        {
+            loaderCalls.incrementAndGet();
+            try
+            {
+                awaitWaiters();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+            return "loaded-value";
+        } );
+
+        for ( final Future<String> future : futures )
+        {
+            Assert.assertEquals( "loaded-value", future.get( 10, TimeUnit.SECONDS ) );
+        }
+        Assert.assertEquals( 1, loaderCalls.get() );
+        Assert.assertEquals( 1, loadStatistics().getLoadCount() );
+        Assert.assertEquals( THREAD_COUNT - 1, loadStatistics().getCoalescedCount() );
+        Assert.assertEquals( "loaded-value", cacheService.get( CACHE_KEY, String.class ) );
+    }
+
+    @Test
+    public void testLoaderFailureReachesEveryWaiter( )
+            throws Exception
+    {
+        cacheService = openService( false );
+        final AtomicInteger loaderCalls = new AtomicInteger();
+        final List<Future<String>> futures = startReaders( ( ) ->
+        {
+            loaderCalls.incrementAndGet();
+            try
+            {
+                awaitWaiters();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+            throw new PwmUnrecoverableException( PwmError.ERROR_DIRECTORY_UNAVAILABLE, "test failure" );
+        } );
+
+        for ( final Future<String> future : futures )
+        {
+            try
+            {
+                future.get( 10, TimeUnit.SECONDS );
+                Assert.fail( "expected the loader failure" );
+            }
+            catch ( ExecutionException e )
+            {
+                Assert.assertTrue( e.getCause() instanceof PwmUnrecoverableException );
+                Assert.assertEquals( PwmError.ERROR_DIRECTORY_UNAVAILABLE, ( ( PwmUnrecoverableException ) e.getCause() ).getError() );
+            }
+        }
+        Assert.assertEquals( 1, loaderCalls.get() );
+        Assert.assertEquals( 1, loadStatistics().getFailedCount() );
+        Assert.assertEquals( THREAD_COUNT - 1, loadStatistics().getCoalescedCount() );
+        Assert.assertNull( cacheService.get( CACHE_KEY, String.class ) );
+    }
+
+    @Test
+    public void testLoaderReadingOwnKeyDoesNotDeadlock( )
+            throws Exception
+    {
+        cacheService = openService( false );
+        final AtomicInteger innerCalls = new AtomicInteger();
+        final Future<String> future = executor.submit( ( ) -> cacheService.get( CACHE_KEY, policy(), String.class, ( ) ->
+        {
+            final String inner = cacheService.get( CACHE_KEY, policy(), String.class, ( ) ->
+            {
+                innerCalls.incrementAndGet();
+                return "inner-value";
+            } );
+            return "outer-" + inner;
+        } ) );
+
+        Assert.assertEquals( "outer-inner-value", future.get( 10, TimeUnit.SECONDS ) );
+        Assert.assertEquals( 1, innerCalls.get() );
+        Assert.assertEquals( 0, loadStatistics().getCoalescedCount() );
+        Assert.assertEquals( "outer-inner-value", cacheService.get( CACHE_KEY, String.class ) );
+    }
+
+    @Test
+    public void testRefreshAheadReplacesValueInBackground( )
+            throws Exception
+    {
+        cacheService = openService( true );
+        cacheService.put( CACHE_KEY, policy(), "original-value" );
+
+        final CountDownLatch refreshed = new CountDownLatch( 1 );
+        final CacheLoader<String> cacheLoader = ( ) ->
+        {
+            refreshed.countDown();
+            return "refreshed-value";
+        };
+
+        // the stored value is returned while the reload runs in the background
+        Assert.assertEquals( "original-value", cacheService.get( CACHE_KEY, policy(), String.class, cacheLoader ) );
+        Assert.assertTrue( refreshed.await( 10, TimeUnit.SECONDS ) );
+
+        final long deadline = System.currentTimeMillis() + 10_000;
+        while ( !"refreshed-value".equals( cacheService.get( CACHE_KEY, String.class ) ) && System.currentTimeMillis() < deadline )
+        {
+            Thread.sleep( 5 );
+        }
+        Assert.assertEquals( "refreshed-value", cacheService.get( CACHE_KEY, String.class ) );
+        Assert.assertEquals( 1, loadStatistics().getRefreshAheadCount() );
+        Assert.assertEquals( 1, loadStatistics().getLoadCount() );
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package password.pwm.svc.cache;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import password.pwm.util.localdb.LocalDB;
+import password.pwm.util.localdb.LocalDBFactory;
+import password.pwm.util.secure.PwmSecurityKey;
+
+import java.io.File;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+public class LocalDBCacheStoreTest
+{
+    @ClassRule
+    public static TemporaryFolder temporaryFolder = new TemporaryFolder( );
+
+    private static final String VALUE = "cached-value-1234";
+    private static final CacheKey CACHE_KEY = CacheKey.newKey( LocalDBCacheStoreTest.class, null, "test-value" );
+    private static final Executor DIRECT_EXECUTOR = Runnable::run;
+
+    private static LocalDB localDB;
+    private static PwmSecurityKey securityKey;
+
+    @BeforeClass
+    public static void setUp( ) throws Exception
+    {
+        final File fileLocation = temporaryFolder.newFolder( "localdb-cachestore-test" );
+        localDB = LocalDBFactory.getInstance( fileLocation, false, null, null );
+        securityKey = new PwmSecurityKey( "0123456789abcdefghijklmnopqrstuvwxyz0123456789" );
+    }
+
+    @After
+    public void truncate( ) throws Exception
+    {
+        localDB.truncate( LocalDB.DB.CACHE );
+    }
+
+    @AfterClass
+    public static void tearDown( ) throws Exception
+    {
+        localDB.close();
+    }
+
+    private static LocalDBCacheStore openStore( final String keyEpoch, final Executor executor ) throws Exception
+    {
+        final LocalDBCacheStore store = new LocalDBCacheStore( localDB, 100, 0, keyEpoch, securityKey, executor );
+        store.open();
+        return store;
+    }
+
+    private static Instant expiration( )
+    {
+        return Instant.now().plus( Duration.ofHours( 1 ) );
+    }
+
+    @Test
+    public void testStaleEpochInvalidated( ) throws Exception
+    {
+        final LocalDBCacheStore firstStore = openStore( "config-1", DIRECT_EXECUTOR );
+        firstStore.store( CACHE_KEY, expiration(), VALUE );
+        Assert.assertEquals( VALUE, firstStore.read( CACHE_KEY, String.class ) );
+
+        final LocalDBCacheStore reopenedStore = openStore( "config-1", DIRECT_EXECUTOR );
+        Assert.assertEquals( 1, reopenedStore.itemCount() );
+        Assert.assertEquals( VALUE, reopenedStore.read( CACHE_KEY, String.class ) );
+
+        final LocalDBCacheStore changedStore = openStore( "config-2", DIRECT_EXECUTOR );
+        Assert.assertEquals( 0, changedStore.itemCount() );
+        Assert.assertEquals( 0, localDB.size( LocalDB.DB.CACHE ) );
+        Assert.assertNull( changedStore.read( CACHE_KEY, String.class ) );
+    }
+
+    @Test
+    public void testValuesEncrypted( ) throws Exception
+    {
+        final LocalDBCacheStore store = openStore( "config-1", DIRECT_EXECUTOR );
+        store.store( CACHE_KEY, expiration(), VALUE );
+
+        Assert.assertEquals( 1, localDB.size( LocalDB.DB.CACHE ) );
+        try ( LocalDB.LocalDBIterator<String> iterator = localDB.iterator( LocalDB.DB.CACHE ) )
+        {
+            final String storedValue = localDB.get( LocalDB.DB.CACHE, iterator.next() );
+            Assert.assertFalse( storedValue.contains( VALUE ) );
+        }
+    }
+
+    @Test
+    public void testWritesUseExecutor( ) throws Exception
+    {
+        final List<Runnable> pendingTasks = new ArrayList<>();
+        final LocalDBCacheStore store = openStore( "config-1", pendingTasks::add );
+        store.store( CACHE_KEY, expiration(), VALUE );
+
+        Assert.assertEquals( 1, pendingTasks.size() );
+        Assert.assertEquals( 0, localDB.size( LocalDB.DB.CACHE ) );
+        Assert.assertNull( store.read( CACHE_KEY, String.class ) );
+
+        pendingTasks.forEach( Runnable::run );
+        Assert.assertEquals( 1, localDB.size( LocalDB.DB.CACHE ) );
+        Assert.assertEquals( VALUE, store.read( CACHE_KEY, String.class ) );
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package password.pwm.svc.email;
+
+import org.junit.Assert;
+import org.junit.Test;
+import password.pwm.error.ErrorInformation;
+import password.pwm.error.PwmError;
+import password.pwm.error.PwmUnrecoverableException;
+import password.pwm.util.java.TimeDuration;
+
+import javax.mail.Address;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class EmailConnectionPoolTest
+{
+    private static final EmailServer SERVER_A = EmailServer.builder().id( "a" ).host( "smtp-a.example.com" ).build();
+    private static final EmailServer SERVER_B = EmailServer.builder().id( "b" ).host( "smtp-b.example.com" ).build();
+
+    private final List<StubTransport> transports = new CopyOnWriteArrayList<>();
+    private final Set<EmailServer> unreachableServers = ConcurrentHashMap.newKeySet();
+
+    private EmailConnectionPool makePool( final List<EmailServer> servers, final int maxConnections, final int maxMessages )
+    {
+        return new EmailConnectionPool( servers, maxConnections, maxMessages, TimeDuration.MINUTE, TimeDuration.of( 50, TimeDuration.Unit.MILLISECONDS ), server ->
+        {
+            if ( unreachableServers.contains( server ) )
+            {
+                throw new MessagingException( "connection refused" );
+            }
+            final StubTransport transport = new StubTransport();
+            transports.add( transport );
+            return transport;
+        } );
+    }
+
+    @Test
+    public void testPermitLimit( )
+            throws Exception
+    {
+        final EmailConnectionPool pool = makePool( Collections.singletonList( SERVER_A ), 2, 0 );
+
+        final EmailConnection first = pool.borrow( null );
+        final EmailConnection second = pool.borrow( null );
+        Assert.assertNotSame( first.getTransport(), second.getTransport() );
+
+        try
+        {
+            pool.borrow( null );
+            Assert.fail( "expected borrow to time out with every connection in use" );
+        }
+        catch ( PwmUnrecoverableException e )
+        {
+            Assert.assertEquals( PwmError.ERROR_SERVICE_UNREACHABLE, e.getError() );
+        }
+        Assert.assertEquals( "1", pool.debugInfo().get( "SmtpPool_BorrowTimeouts" ) );
+        Assert.assertEquals( "2", pool.debugInfo().get( "SmtpPool_ActiveConnections" ) );
+
+        // a released connection is reused rather than a new one opened
+        pool.release( first, true );
+        final EmailConnection third = pool.borrow( null );
+        Assert.assertSame( first.getTransport(), third.getTransport() );
+        Assert.assertEquals( 2, transports.size() );
+    }
+
+    @Test
+    public void testRecycleAfterMaxMessages( )
+            throws Exception
+    {
+        final EmailConnectionPool pool = makePool( Collections.singletonList( SERVER_A ), 1, 2 );
+
+        final EmailConnection first = pool.borrow( null );
+        pool.markMessageSent( first );
+        pool.release( first, true );
+
+        final EmailConnection second = pool.borrow( null );
+        Assert.assertSame( first.getTransport(), second.getTransport() );
+        pool.markMessageSent( second );
+        pool.release( second, true );
+        Assert.assertTrue( transports.get( 0 ).isClosed() );
+        Assert.assertEquals( "1", pool.debugInfo().get( "SmtpPool_Recycled" ) );
+
+        final EmailConnection third = pool.borrow( null );
+        Assert.assertNotSame( first.getTransport(), third.getTransport() );
+        Assert.assertEquals( 0, third.getMessagesSent() );
+        Assert.assertEquals( 2, transports.size() );
+    }
+
+    @Test
+    public void testReleaseBrokenConnection( )
+            throws Exception
+    {
+        final EmailConnectionPool pool = makePool( Collections.singletonList( SERVER_A ), 1, 0 );
+
+        final EmailConnection first = pool.borrow( null );
+        pool.release( first, false );
+        Assert.assertTrue( transports.get( 0 ).isClosed() );
+        Assert.assertEquals( "1", pool.debugInfo().get( "SmtpPool_Discarded" ) );
+        Assert.assertEquals( "0", pool.debugInfo().get( "SmtpPool_IdleConnections" ) );
+
+        // the permit is returned with the broken connection, so the single slot can be borrowed again
+        final EmailConnection second = pool.borrow( null );
+        Assert.assertNotSame( first.getTransport(), second.getTransport() );
+        Assert.assertFalse( transports.get( 1 ).isClosed() );
+    }
+
+    @Test
+    public void testFailingServerIsTriedLast( )
+            throws Exception
+    {
+        final EmailConnectionPool pool = makePool( Arrays.asList( SERVER_A, SERVER_B ), 1, 0 );
+        unreachableServers.add( SERVER_A );
+
+        // a connect failure on one server falls through to the next
+        for ( int i = 0; i < 2; i++ )
+        {
+            final EmailConnection connection = pool.borrow( SERVER_A );
+            Assert.assertEquals( SERVER_B, connection.getEmailServer() );
+            pool.release( connection, true );
+        }
+
+        Assert.assertEquals( Arrays.asList( SERVER_B, SERVER_A ), pool.serversByHealth() );
+        Assert.assertEquals( Arrays.asList( SERVER_B, SERVER_A ), pool.serversByHealth() );
+        Assert.assertTrue( pool.serverErrors().get( SERVER_A ).isPresent() );
+        Assert.assertFalse( pool.serverErrors().get( SERVER_B ).isPresent() );
+
+        // once healthy again, servers are used in rotation
+        pool.markSuccess( SERVER_A );
+        Assert.assertNotEquals( pool.serversByHealth(), pool.serversByHealth() );
+
+        pool.markFailure( SERVER_B, new ErrorInformation( PwmError.ERROR_SERVICE_UNREACHABLE, "test failure" ) );
+        Assert.assertEquals( Arrays.asList( SERVER_A, SERVER_B ), pool.serversByHealth() );
+    }
+
+    private static class StubTransport extends Transport
+    {
+        private volatile boolean closed;
+
+        StubTransport( )
+        {
+            super( Session.getInstance( new Properties() ), null );
+        }
+
+        boolean isClosed( )
+        {
+            return closed;
+        }
+
+        @Override
+        public void sendMessage( final Message message, final Address[] addresses )
+        {
+        }
+
+        @Override
+        public boolean isConnected( )
+        {
+            return !closed;
+        }
+
+        @Override
+        public synchronized void close( )
+        {
+            closed = true;
+        }
+    }
+}
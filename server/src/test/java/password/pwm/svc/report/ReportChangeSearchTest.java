@@ -0,0 +1,58 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package password.pwm.svc.report;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Instant;
+
+public class ReportChangeSearchTest
+{
+    @Test
+    public void testGeneralizedTimeRoundTrip( )
+    {
+        final Instant instant = Instant.parse( "2018-03-04T05:06:07Z" );
+        Assert.assertEquals( "20180304050607Z", ReportChangeSearch.formatGeneralizedTime( instant ) );
+        Assert.assertEquals( instant, ReportChangeSearch.parseGeneralizedTime( "20180304050607Z" ) );
+    }
+
+    @Test
+    public void testGeneralizedTimeFraction( )
+    {
+        final Instant instant = Instant.parse( "2018-03-04T05:06:07Z" );
+        Assert.assertEquals( instant, ReportChangeSearch.parseGeneralizedTime( "20180304050607.0Z" ) );
+        Assert.assertEquals( instant, ReportChangeSearch.parseGeneralizedTime( "20180304050607.123z" ) );
+    }
+
+    @Test
+    public void testGeneralizedTimeUnsupported( )
+    {
+        Assert.assertNull( ReportChangeSearch.parseGeneralizedTime( null ) );
+        Assert.assertNull( ReportChangeSearch.parseGeneralizedTime( "" ) );
+        Assert.assertNull( ReportChangeSearch.parseGeneralizedTime( "20180304050607+0200" ) );
+        Assert.assertNull( ReportChangeSearch.parseGeneralizedTime( "131634912000000000" ) );
+        Assert.assertNull( ReportChangeSearch.parseGeneralizedTime( "2018030405060Z" ) );
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package password.pwm.svc.report;
+
+import org.junit.Assert;
+import org.junit.Test;
+import password.pwm.config.option.DataStorageMethod;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+public class ReportSummaryDataTest
+{
+    private static UserCacheRecord record( final boolean hasResponses, final DataStorageMethod storageMethod, final Instant loginTime )
+    {
+        return UserCacheRecord.builder()
+                .ldapProfile( "default" )
+                .hasResponses( hasResponses )
+                .responseStorageMethod( storageMethod )
+                .lastLoginTime( loginTime )
+                .build();
+    }
+
+    @Test
+    public void testRemoveReversesUpdate( )
+    {
+        final ReportSummaryData summaryData = ReportSummaryData.newSummaryData( Arrays.asList( -30, 30 ) );
+        final UserCacheRecord before = record( false, null, null );
+        final UserCacheRecord after = record( true, DataStorageMethod.LDAP, Instant.now() );
+
+        summaryData.update( before );
+        summaryData.update( record( true, DataStorageMethod.LOCALDB, null ) );
+        Assert.assertEquals( 2, summaryData.getTotalUsers().get() );
+        Assert.assertEquals( 1, summaryData.getHasResponses().get() );
+
+        summaryData.remove( before );
+        summaryData.update( after );
+        Assert.assertEquals( 2, summaryData.getTotalUsers().get() );
+        Assert.assertEquals( 2, summaryData.getHasResponses().get() );
+        Assert.assertEquals( 1, summaryData.getHasLoginTime().get() );
+        Assert.assertEquals( Integer.valueOf( 1 ), summaryData.getResponseStorage().get( DataStorageMethod.LDAP ) );
+        Assert.assertEquals( 2, summaryData.getLdapProfile().get( "default" ).get() );
+
+        summaryData.remove( after );
+        Assert.assertEquals( 1, summaryData.getTotalUsers().get() );
+        Assert.assertEquals( 0, summaryData.getHasLoginTime().get() );
+        Assert.assertEquals( Integer.valueOf( 0 ), summaryData.getResponseStorage().get( DataStorageMethod.LDAP ) );
+    }
+
+    @Test
+    public void testTimeWindowsUseOwnDateField( )
+    {
+        final ReportSummaryData summaryData = ReportSummaryData.newSummaryData( Arrays.asList( -30, 30 ) );
+        summaryData.update( UserCacheRecord.builder()
+                .ldapProfile( "default" )
+                .passwordExpirationTime( Instant.now().plus( Duration.ofDays( 2 ) ) )
+                .build() );
+        summaryData.update( UserCacheRecord.builder()
+                .ldapProfile( "default" )
+                .otpSecretSetTime( Instant.now().plus( Duration.ofDays( 40 ) ) )
+                .build() );
+
+        Assert.assertEquals( 1, summaryData.getPwExpireDays().get( 30 ).get() );
+        Assert.assertEquals( 0, summaryData.getOtpSetDays().get( 30 ).get() );
+        Assert.assertEquals( 0, summaryData.getAccountExpireDays().get( 30 ).get() );
+        Assert.assertEquals( 1, summaryData.getHasOtpSecretSetTime().get() );
+    }
+
+    @Test
+    public void testRecordAndIndexPathsAgree( )
+    {
+        final Instant now = Instant.parse( "2018-06-15T12:00:00Z" );
+        final List<Integer> trackedDays = Arrays.asList( -30, -1, 0, 1, 7, 30 );
+        final Duration[] offsets = new Duration[]
+                {
+                        Duration.ofDays( -31 ),
+                        Duration.ofDays( -30 ),
+                        Duration.ofDays( -29 ).minusHours( 13 ),
+                        Duration.ofDays( -1 ),
+                        Duration.ofHours( -13 ),
+                        Duration.ofHours( -1 ),
+                        Duration.ZERO,
+                        Duration.ofHours( 11 ).plusMinutes( 59 ),
+                        Duration.ofHours( 12 ),
+                        Duration.ofDays( 1 ),
+                        Duration.ofDays( 7 ).plusHours( 11 ),
+                        Duration.ofDays( 7 ).plusHours( 12 ),
+                        Duration.ofDays( 30 ),
+                        Duration.ofDays( 31 ),
+                };
+
+        final ReportSummaryData recordSummary = ReportSummaryData.newSummaryData( trackedDays, now );
+        final UserCacheIndex index = new UserCacheIndex();
+        for ( int i = 0; i < offsets.length; i++ )
+        {
+            final Instant date = now.plus( offsets[i] );
+            final UserCacheRecord userCacheRecord = UserCacheRecord.builder()
+                    .ldapProfile( "default" )
+                    .passwordExpirationTime( date )
+                    .lastLoginTime( date )
+                    .otpSecretSetTime( date )
+                    .build();
+            recordSummary.update( userCacheRecord );
+            index.put( "user" + i, userCacheRecord );
+        }
+        final ReportSummaryData indexSummary = ReportSummaryData.fromIndex( index, trackedDays, now );
+
+        Assert.assertEquals( indexSummary.getTotalUsers().get(), recordSummary.getTotalUsers().get() );
+        for ( final int day : trackedDays )
+        {
+            Assert.assertEquals( indexSummary.getPwExpireDays().get( day ).get(), recordSummary.getPwExpireDays().get( day ).get() );
+            Assert.assertEquals( indexSummary.getLoginDays().get( day ).get(), recordSummary.getLoginDays().get( day ).get() );
+            Assert.assertEquals( indexSummary.getOtpSetDays().get( day ).get(), recordSummary.getOtpSetDays().get( day ).get() );
+        }
+        Assert.assertEquals( 5, recordSummary.getLoginDays().get( -1 ).get() );
+        Assert.assertEquals( 3, recordSummary.getPwExpireDays().get( 0 ).get() );
+        Assert.assertEquals( 7, recordSummary.getLoginDays().get( -30 ).get() );
+        Assert.assertEquals( 8, recordSummary.getPwExpireDays().get( 30 ).get() );
+    }
+
+    @Test
+    public void testRemoveAfterClockMoved( )
+    {
+        final Instant countedAt = Instant.now().minus( Duration.ofDays( 2 ) );
+        final ReportSummaryData summaryData = ReportSummaryData.newSummaryData( Arrays.asList( -1, 1 ), countedAt );
+        final UserCacheRecord loginBeforeCount = record( false, null, countedAt.minus( Duration.ofDays( 1 ) ) );
+        final UserCacheRecord loginAfterCount = record( false, null, Instant.now() );
+        final UserCacheRecord expiringAfterCount = UserCacheRecord.builder()
+                .ldapProfile( "default" )
+                .passwordExpirationTime( countedAt.plus( Duration.ofDays( 1 ) ) )
+                .build();
+
+        summaryData.update( loginBeforeCount );
+        summaryData.update( loginAfterCount );
+        summaryData.update( expiringAfterCount );
+        Assert.assertEquals( 1, summaryData.getLoginDays().get( -1 ).get() );
+        Assert.assertEquals( 1, summaryData.getPwExpireDays().get( 1 ).get() );
+
+        summaryData.remove( loginBeforeCount );
+        summaryData.remove( loginAfterCount );
+        summaryData.remove( expiringAfterCount );
+        Assert.assertEquals( 0, summaryData.getTotalUsers().get() );
+        Assert.assertEquals( 0, summaryData.getLoginDays().get( -1 ).get() );
+        Assert.assertEquals( 0, summaryData.getLoginDays().get( 1 ).get() );
+        Assert.assertEquals( 0, summaryData.getPwExpireDays().get( 1 ).get() );
+    }
+}
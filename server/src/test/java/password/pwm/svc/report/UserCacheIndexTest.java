@@ -0,0 +1,120 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package password.pwm.svc.report;
+
+import org.junit.Assert;
+import org.junit.Test;
+import password.pwm.bean.PasswordStatus;
+import password.pwm.config.option.DataStorageMethod;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+public class UserCacheIndexTest
+{
+    private static final Instant NOW = Instant.parse( "2018-06-15T12:00:00Z" );
+
+    private static UserCacheRecord record( final String profile, final Instant passwordExpiration, final boolean expired, final boolean hasResponses )
+    {
+        return UserCacheRecord.builder()
+                .ldapProfile( profile )
+                .passwordExpirationTime( passwordExpiration )
+                .passwordStatus( PasswordStatus.builder().expired( expired ).build() )
+                .hasResponses( hasResponses )
+                .responseStorageMethod( hasResponses ? DataStorageMethod.LDAP : null )
+                .build();
+    }
+
+    private static UserCacheIndex testIndex( )
+    {
+        final UserCacheIndex index = new UserCacheIndex();
+        index.put( "a", record( "p1", NOW.plus( Duration.ofDays( 3 ) ), false, true ) );
+        index.put( "b", record( "p1", NOW.plus( Duration.ofDays( 30 ) ), false, false ) );
+        index.put( "c", record( "p2", NOW.plus( Duration.ofDays( 5 ) ), false, true ) );
+        index.put( "d", record( "p1", NOW.minus( Duration.ofDays( 2 ) ), true, false ) );
+        index.put( "e", record( "p1", null, false, false ) );
+        return index;
+    }
+
+    @Test
+    public void testFilters( )
+    {
+        final UserCacheIndex index = testIndex();
+        Assert.assertEquals( 5, index.count( null, NOW ) );
+
+        final ReportFilter expiringSoonInP1 = ReportFilter.builder()
+                .ldapProfile( "p1" )
+                .dateField( ReportFilter.DateField.passwordExpirationTime )
+                .fromDays( 0 )
+                .toDays( 7 )
+                .build();
+        Assert.assertEquals( Collections.singletonList( "a" ), index.selectKeys( expiringSoonInP1, NOW, 100 ) );
+
+        final ReportFilter hasExpiration = ReportFilter.builder().dateField( ReportFilter.DateField.passwordExpirationTime ).build();
+        Assert.assertEquals( 4, index.count( hasExpiration, NOW ) );
+
+        final Map<ReportFilter.Flag, Boolean> flags = new EnumMap<>( ReportFilter.Flag.class );
+        flags.put( ReportFilter.Flag.passwordExpired, true );
+        flags.put( ReportFilter.Flag.hasResponses, false );
+        final ReportFilter expiredWithoutResponses = ReportFilter.builder().flags( flags ).build();
+        Assert.assertEquals( Collections.singletonList( "d" ), index.selectKeys( expiredWithoutResponses, NOW, 100 ) );
+
+        Assert.assertEquals( 0, index.count( ReportFilter.builder().ldapProfile( "unknown" ).build(), NOW ) );
+        Assert.assertEquals( 2, index.selectKeys( null, NOW, 2 ).size() );
+    }
+
+    @Test
+    public void testReplaceAndRemove( )
+    {
+        final UserCacheIndex index = testIndex();
+        index.put( "a", record( "p2", null, false, false ) );
+        index.remove( "b" );
+        index.put( "f", record( "p2", NOW, false, true ) );
+
+        Assert.assertEquals( 5, index.size() );
+        Assert.assertEquals( 3, index.countByLdapProfile().get( "p2" ).intValue() );
+        Assert.assertEquals( 2, index.countByLdapProfile().get( "p1" ).intValue() );
+        Assert.assertEquals( 2, index.countByResponseStorageMethod().get( DataStorageMethod.LDAP ).intValue() );
+
+        index.clear();
+        Assert.assertEquals( 0, index.count( null, NOW ) );
+    }
+
+    @Test
+    public void testSummaryFromIndex( )
+    {
+        final ReportSummaryData summaryData = ReportSummaryData.fromIndex( testIndex(), Arrays.asList( -7, 7 ), NOW );
+        Assert.assertEquals( 5, summaryData.getTotalUsers().get() );
+        Assert.assertEquals( 2, summaryData.getHasResponses().get() );
+        Assert.assertEquals( 1, summaryData.getPwExpired().get() );
+        Assert.assertEquals( 4, summaryData.getHasPasswordExpirationTime().get() );
+        Assert.assertEquals( 2, summaryData.getPwExpireDays().get( 7 ).get() );
+        Assert.assertEquals( 1, summaryData.getPwExpireDays().get( -7 ).get() );
+        Assert.assertEquals( 4, summaryData.getLdapProfile().get( "p1" ).get() );
+    }
+}
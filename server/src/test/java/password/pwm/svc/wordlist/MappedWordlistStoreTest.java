@@ -0,0 +1,93 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package password.pwm.svc.wordlist;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+public class MappedWordlistStoreTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testImportAndLookup() throws IOException
+    {
+        final File directory = new File( temporaryFolder.newFolder(), "wordlist_words" );
+        final MappedWordlistStore store = new MappedWordlistStore( directory );
+        store.open();
+
+        final TreeSet<String> allWords = new TreeSet<>();
+        for ( int run = 0; run < 5; run++ )
+        {
+            final List<String> batch = new ArrayList<>();
+            for ( int i = 0; i < 1000; i++ )
+            {
+                // overlapping batches, duplicates must be collapsed by the merge
+                final String word = "password" + ( run * 700 + i );
+                batch.add( word );
+                allWords.add( word );
+            }
+            store.addWords( batch );
+        }
+        store.addWords( Arrays.asList( "café", "😀smile" ) );
+        allWords.add( "café" );
+        allWords.add( "😀smile" );
+
+        Assert.assertEquals( 0, store.size() );
+        store.completeImport( () -> false );
+        Assert.assertEquals( allWords.size(), store.size() );
+
+        for ( final String word : allWords )
+        {
+            Assert.assertTrue( word, store.contains( word, 0, word.length() ) );
+        }
+        Assert.assertFalse( store.contains( "password", 0, "password".length() ) );
+        Assert.assertFalse( store.contains( "zzz", 0, 3 ) );
+        Assert.assertFalse( store.contains( "aaa", 0, 3 ) );
+        Assert.assertTrue( store.contains( "xxpassword42yy", 2, 12 ) );
+        Assert.assertTrue( store.contains( "café", 0, 4 ) );
+
+        final MappedWordlistStore reopened = new MappedWordlistStore( directory );
+        reopened.open();
+        Assert.assertEquals( allWords.size(), reopened.size() );
+        for ( long i = 0; i < reopened.size(); i++ )
+        {
+            final String word = reopened.wordAt( i );
+            Assert.assertTrue( word, allWords.contains( word ) );
+        }
+
+        reopened.clear();
+        Assert.assertEquals( 0, reopened.size() );
+        Assert.assertFalse( directory.exists() );
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package password.pwm.svc.wordlist;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SharedHistorySegmentTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testConcurrentAddAndReload() throws Exception
+    {
+        final File file = new File( temporaryFolder.newFolder(), "1000-2000.shs" );
+        final SharedHistorySegment segment = SharedHistorySegment.create( 1000, 2000, file );
+
+        final int threadCount = 4;
+        final int wordsPerThread = 5000;
+        final AtomicInteger addedCount = new AtomicInteger();
+        final ExecutorService executorService = Executors.newFixedThreadPool( threadCount );
+        final List<Future<?>> futures = new ArrayList<>();
+        for ( int thread = 0; thread < threadCount; thread++ )
+        {
+            futures.add( executorService.submit( () ->
+            {
+                // every thread adds the same fingerprints, each must only be stored once
+                for ( long fingerprint = 0; fingerprint < wordsPerThread; fingerprint++ )
+                {
+                    if ( segment.add( fingerprint * 0x9E3779B97F4A7C15L ) )
+                    {
+                        addedCount.incrementAndGet();
+                    }
+                }
+                return null;
+            } ) );
+        }
+        for ( final Future<?> future : futures )
+        {
+            future.get();
+        }
+        executorService.shutdown();
+
+        Assert.assertEquals( wordsPerThread, addedCount.get() );
+        Assert.assertEquals( wordsPerThread, segment.size() );
+        Assert.assertTrue( segment.contains( 0 ) );
+        Assert.assertTrue( segment.contains( 4999 * 0x9E3779B97F4A7C15L ) );
+        Assert.assertFalse( segment.contains( 12345 ) );
+        segment.close();
+
+        Assert.assertEquals( wordsPerThread * 8, file.length() );
+        final SharedHistorySegment reloaded = SharedHistorySegment.load( 1000, 2000, file );
+        Assert.assertEquals( wordsPerThread, reloaded.size() );
+        Assert.assertTrue( reloaded.contains( 17 * 0x9E3779B97F4A7C15L ) );
+        Assert.assertFalse( reloaded.add( 17 * 0x9E3779B97F4A7C15L ) );
+        Assert.assertTrue( reloaded.add( 12345 ) );
+        Assert.assertEquals( 1000, reloaded.getStartTime() );
+        Assert.assertEquals( 2000, reloaded.getEndTime() );
+        reloaded.close();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package password.pwm.svc.wordlist;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+public class WordlistBloomFilterTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testMembership()
+    {
+        final int wordCount = 10_000;
+        final WordlistBloomFilter filter = WordlistBloomFilter.create( wordCount, 10, new WordlistBloomFilter.Stamp( 1, wordCount ) );
+        for ( int i = 0; i < wordCount; i++ )
+        {
+            filter.add( "word" + i );
+        }
+
+        for ( int i = 0; i < wordCount; i++ )
+        {
+            final String value = "word" + i;
+            Assert.assertTrue( filter.mightContain( value, 0, value.length() ) );
+        }
+
+        // substring ranges are hashed the same as the equivalent standalone value
+        final String padded = "xxword42yy";
+        Assert.assertTrue( filter.mightContain( padded, 2, 8 ) );
+
+        int falsePositives = 0;
+        for ( int i = 0; i < wordCount; i++ )
+        {
+            final String value = "other" + i;
+            if ( filter.mightContain( value, 0, value.length() ) )
+            {
+                falsePositives++;
+            }
+        }
+        Assert.assertTrue( "false positive count " + falsePositives, falsePositives < wordCount / 50 );
+    }
+
+    @Test
+    public void testPersistence() throws IOException
+    {
+        final WordlistBloomFilter.Stamp stamp = new WordlistBloomFilter.Stamp( 12345, 3 );
+        final WordlistBloomFilter filter = WordlistBloomFilter.create( 3, 10, stamp );
+        filter.add( "alpha" );
+        filter.add( "beta" );
+        filter.add( "gamma" );
+
+        final File file = new File( temporaryFolder.newFolder(), "test.bloom" );
+        filter.write( file );
+
+        final WordlistBloomFilter loaded = WordlistBloomFilter.load( file, stamp );
+        Assert.assertNotNull( loaded );
+        Assert.assertTrue( loaded.mightContain( "alpha", 0, 5 ) );
+        Assert.assertTrue( loaded.mightContain( "beta", 0, 4 ) );
+        Assert.assertTrue( loaded.mightContain( "gamma", 0, 5 ) );
+
+        Assert.assertNull( WordlistBloomFilter.load( file, new WordlistBloomFilter.Stamp( 12346, 3 ) ) );
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package password.pwm.util.java;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class AhoCorasickMatcherTest
+{
+    @Test
+    public void testMatches()
+    {
+        final AhoCorasickMatcher matcher = AhoCorasickMatcher.compile( Arrays.asList( "he", "she", "his", "hers", "", "usher" ) );
+        Assert.assertEquals( 5, matcher.patternCount() );
+
+        Assert.assertTrue( matcher.matches( "ushers" ) );
+        Assert.assertTrue( matcher.matches( "xxhisxx" ) );
+        Assert.assertTrue( matcher.matches( "he" ) );
+        Assert.assertFalse( matcher.matches( "hxe" ) );
+        Assert.assertFalse( matcher.matches( "" ) );
+        Assert.assertFalse( matcher.matches( null ) );
+
+        // only "he" (length 2) is inside "ahea"
+        Assert.assertTrue( matcher.matches( "ahea", 2 ) );
+        Assert.assertFalse( matcher.matches( "ahea", 3 ) );
+
+        // "usher" is only reachable through fail links of shorter partial matches
+        Assert.assertTrue( matcher.matches( "uushers", 5 ) );
+        Assert.assertFalse( matcher.matches( "ushe", 5 ) );
+
+        Assert.assertFalse( AhoCorasickMatcher.compile( Collections.emptyList() ).matches( "anything" ) );
+    }
+
+    @Test
+    public void testAgainstBruteForce()
+    {
+        final Random random = new Random( 42 );
+        final List<String> patterns = new ArrayList<>();
+        for ( int i = 0; i < 300; i++ )
+        {
+            patterns.add( randomString( random, 1 + random.nextInt( 6 ) ) );
+        }
+        final AhoCorasickMatcher matcher = AhoCorasickMatcher.compile( patterns );
+
+        for ( int i = 0; i < 2000; i++ )
+        {
+            final String text = randomString( random, random.nextInt( 20 ) );
+            final int minimumLength = 1 + random.nextInt( 5 );
+
+            boolean expected = false;
+            for ( final String pattern : patterns )
+            {
+                if ( pattern.length() >= minimumLength && text.contains( pattern ) )
+                {
+                    expected = true;
+                }
+            }
+            Assert.assertEquals( text + "/" + minimumLength, expected, matcher.matches( text, minimumLength ) );
+        }
+    }
+
+    private static String randomString( final Random random, final int length )
+    {
+        final StringBuilder sb = new StringBuilder();
+        for ( int i = 0; i < length; i++ )
+        {
+            sb.append( (char) ( 'a' + random.nextInt( 5 ) ) );
+        }
+        return sb.toString();
+    }
+}
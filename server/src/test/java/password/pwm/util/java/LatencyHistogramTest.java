@@ -0,0 +1,130 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package password.pwm.util.java;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest
+{
+    @Test
+    public void testBuckets()
+    {
+        long previousUpperBound = -1;
+        for ( long micros = 0; micros < 1_000_000; micros += 1 + micros / 50 )
+        {
+            final int bucket = LatencyHistogram.bucketFor( micros );
+            final long upperBound = LatencyHistogram.bucketUpperBound( bucket );
+            Assert.assertTrue( upperBound >= micros );
+            Assert.assertTrue( bucket == 0 || LatencyHistogram.bucketUpperBound( bucket - 1 ) < micros );
+            Assert.assertTrue( upperBound >= previousUpperBound );
+            previousUpperBound = upperBound;
+        }
+        Assert.assertEquals( LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketFor( Long.MAX_VALUE ) );
+    }
+
+    @Test
+    public void testRelativeError()
+    {
+        for ( long micros = 0; micros < 64; micros++ )
+        {
+            Assert.assertEquals( micros, LatencyHistogram.bucketUpperBound( LatencyHistogram.bucketFor( micros ) ) );
+        }
+
+        for ( long micros = 64; micros < 1L << 36; micros += 1 + micros / 997 )
+        {
+            final long upperBound = LatencyHistogram.bucketUpperBound( LatencyHistogram.bucketFor( micros ) );
+            Assert.assertTrue( "error too large at " + micros, ( upperBound - micros ) * 64 < micros );
+        }
+    }
+
+    @Test
+    public void testPercentiles()
+    {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals( 0, histogram.percentile( 50 ) );
+
+        for ( int i = 1; i <= 1000; i++ )
+        {
+            histogram.record( i );
+        }
+
+        Assert.assertEquals( 1000, histogram.count() );
+        Assert.assertEquals( 1000, histogram.max() );
+        assertWithin( 500, histogram.percentile( 50 ) );
+        assertWithin( 990, histogram.percentile( 99 ) );
+        Assert.assertEquals( 1000, histogram.percentile( 100 ) );
+    }
+
+    @Test
+    public void testMergeAndMinus()
+    {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for ( int i = 1; i <= 100; i++ )
+        {
+            histogram.record( i );
+        }
+        final LatencyHistogram earlier = histogram.snapshot();
+        for ( int i = 1; i <= 50; i++ )
+        {
+            histogram.record( 10_000 );
+        }
+
+        final LatencyHistogram difference = histogram.minus( earlier );
+        Assert.assertEquals( 50, difference.count() );
+        assertWithin( 10_000, difference.percentile( 50 ) );
+
+        final LatencyHistogram merged = new LatencyHistogram();
+        merged.merge( earlier );
+        merged.merge( difference );
+        Assert.assertEquals( histogram.count(), merged.count() );
+        Assert.assertEquals( histogram.percentile( 90 ), merged.percentile( 90 ) );
+    }
+
+    @Test
+    public void testEncodeDecode()
+    {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals( 0, LatencyHistogram.decode( histogram.encode() ).count() );
+
+        for ( int i = 0; i < 5000; i += 7 )
+        {
+            histogram.record( i );
+        }
+
+        final LatencyHistogram decoded = LatencyHistogram.decode( histogram.encode() );
+        Assert.assertEquals( histogram.encode(), decoded.encode() );
+        Assert.assertEquals( histogram.max(), decoded.max() );
+        Assert.assertEquals( histogram.percentile( 99.9 ), decoded.percentile( 99.9 ) );
+
+        Assert.assertEquals( 0, LatencyHistogram.decode( "garbage" ).count() );
+        Assert.assertEquals( 1, LatencyHistogram.decode( "5;" + LatencyHistogram.SUB_BUCKET_BITS + ";3:1,x:y,99999:4" ).count() );
+        Assert.assertEquals( 0, LatencyHistogram.decode( "5;2;3:1" ).count() );
+        Assert.assertEquals( 0, LatencyHistogram.decode( "5;3:1" ).count() );
+    }
+
+    private static void assertWithin( final long expected, final long actual )
+    {
+        Assert.assertTrue( "expected about " + expected + " but was " + actual, actual >= expected && actual <= expected * 1.02 );
+    }
+}
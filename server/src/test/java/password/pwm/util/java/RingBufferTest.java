@@ -0,0 +1,121 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package password.pwm.util.java;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RingBufferTest
+{
+    @Test
+    public void testCapacityRounding()
+    {
+        Assert.assertEquals( 1, new RingBuffer<String>( 1 ).capacity() );
+        Assert.assertEquals( 8, new RingBuffer<String>( 5 ).capacity() );
+        Assert.assertEquals( 512, new RingBuffer<String>( 500 ).capacity() );
+        Assert.assertEquals( 1024, new RingBuffer<String>( 1024 ).capacity() );
+    }
+
+    @Test
+    public void testOfferAndPollOrder()
+    {
+        final RingBuffer<Integer> ringBuffer = new RingBuffer<>( 4 );
+        for ( int i = 0; i < 4; i++ )
+        {
+            Assert.assertTrue( ringBuffer.offer( i ) );
+        }
+        Assert.assertFalse( ringBuffer.offer( 4 ) );
+        Assert.assertEquals( 4, ringBuffer.size() );
+
+        Assert.assertEquals( Integer.valueOf( 0 ), ringBuffer.poll() );
+        Assert.assertTrue( ringBuffer.offer( 4 ) );
+
+        final List<Integer> drained = new ArrayList<>();
+        Assert.assertEquals( 4, ringBuffer.drainTo( drained, 10 ) );
+        Assert.assertEquals( 1, drained.get( 0 ).intValue() );
+        Assert.assertEquals( 4, drained.get( 3 ).intValue() );
+        Assert.assertTrue( ringBuffer.isEmpty() );
+        Assert.assertNull( ringBuffer.poll() );
+    }
+
+    @Test
+    public void testConcurrentProducers() throws InterruptedException
+    {
+        final int producerCount = 4;
+        final int elementsPerProducer = 20_000;
+        final RingBuffer<Integer> ringBuffer = new RingBuffer<>( 64 );
+        final CountDownLatch producersDone = new CountDownLatch( producerCount );
+        final AtomicInteger rejected = new AtomicInteger();
+
+        for ( int p = 0; p < producerCount; p++ )
+        {
+            final int producer = p;
+            final Thread thread = new Thread( () ->
+            {
+                for ( int i = 0; i < elementsPerProducer; i++ )
+                {
+                    while ( !ringBuffer.offer( producer * elementsPerProducer + i ) )
+                    {
+                        rejected.incrementAndGet();
+                        Thread.yield();
+                    }
+                }
+                producersDone.countDown();
+            } );
+            thread.start();
+        }
+
+        final int[] lastSeen = new int[producerCount];
+        Arrays.fill( lastSeen, -1 );
+        int consumed = 0;
+        while ( consumed < producerCount * elementsPerProducer )
+        {
+            final Integer value = ringBuffer.poll();
+            if ( value == null )
+            {
+                Thread.yield();
+                continue;
+            }
+
+            final int producer = value / elementsPerProducer;
+            final int sequence = value % elementsPerProducer;
+            Assert.assertTrue( "elements of a producer must be consumed in order", sequence > lastSeen[producer] );
+            lastSeen[producer] = sequence;
+            consumed++;
+        }
+
+        producersDone.await();
+        Assert.assertTrue( ringBuffer.isEmpty() );
+        for ( final int last : lastSeen )
+        {
+            Assert.assertEquals( elementsPerProducer - 1, last );
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package password.pwm.util.localdb;
+
+import org.junit.Assert;
+import org.junit.Test;
+import password.pwm.PwmConstants;
+import password.pwm.util.java.JsonUtil;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+public class LocalDBCodecsTest
+{
+    @Test
+    public void testBinaryRoundTrip() throws Exception
+    {
+        final TestValue value = new TestValue( "value", null, Instant.ofEpochMilli( 1_500_000_000_123L ), TimeUnit.HOURS );
+        final byte[] encoded = LocalDBCodecs.encode( new TestCodec(), value );
+        Assert.assertEquals( value, LocalDBCodecs.decode( new TestCodec(), encoded ) );
+        Assert.assertTrue( encoded.length < JsonUtil.serialize( value ).length() );
+    }
+
+    @Test
+    public void testJsonFallback() throws Exception
+    {
+        final TestValue value = new TestValue( "legacy", "row", null, null );
+        final byte[] storedValue = LocalDBCodecs.fromTextForm( JsonUtil.serialize( value ) );
+        Assert.assertEquals( value, LocalDBCodecs.decode( new TestCodec(), storedValue ) );
+    }
+
+    @Test
+    public void testTextForm() throws Exception
+    {
+        final byte[] encoded = LocalDBCodecs.encode( new TestCodec(), new TestValue( "a", "b", null, TimeUnit.DAYS ) );
+        final String textForm = LocalDBCodecs.toTextForm( encoded );
+        Assert.assertTrue( textForm.startsWith( LocalDBCodecs.TEXT_FORM_PREFIX ) );
+        Assert.assertArrayEquals( encoded, LocalDBCodecs.fromTextForm( textForm ) );
+        Assert.assertArrayEquals( "{}".getBytes( PwmConstants.DEFAULT_CHARSET ), LocalDBCodecs.fromTextForm( "{}" ) );
+        Assert.assertNull( LocalDBCodecs.fromTextForm( null ) );
+    }
+
+    @Test
+    public void testVersionPassedToCodec() throws Exception
+    {
+        final TestCodec codec = new TestCodec();
+        final byte[] encoded = LocalDBCodecs.encode( codec, new TestValue( "a", "b", null, null ) );
+        codec.version = 2;
+        try
+        {
+            LocalDBCodecs.decode( codec, encoded );
+            Assert.fail( "expected version 1 value to be rejected" );
+        }
+        catch ( LocalDBException e )
+        {
+            Assert.assertTrue( e.getMessage().contains( "version 1" ) );
+        }
+    }
+
+    private static class TestCodec implements LocalDBCodec<TestValue>
+    {
+        private int version = 1;
+
+        @Override
+        public int getVersion( )
+        {
+            return version;
+        }
+
+        @Override
+        public Class<TestValue> getValueClass( )
+        {
+            return TestValue.class;
+        }
+
+        @Override
+        public void encode( final TestValue value, final DataOutput output ) throws IOException
+        {
+            LocalDBCodecs.writeString( output, value.first );
+            LocalDBCodecs.writeString( output, value.second );
+            LocalDBCodecs.writeInstant( output, value.date );
+            LocalDBCodecs.writeEnum( output, value.unit );
+        }
+
+        @Override
+        public TestValue decode( final DataInput input, final int version ) throws IOException
+        {
+            if ( version != this.version )
+            {
+                throw new IOException( "unexpected version " + version );
+            }
+            return new TestValue(
+                    LocalDBCodecs.readString( input ),
+                    LocalDBCodecs.readString( input ),
+                    LocalDBCodecs.readInstant( input ),
+                    LocalDBCodecs.readEnum( input, TimeUnit.class ) );
+        }
+    }
+
+    @lombok.Value
+    private static class TestValue implements Serializable
+    {
+        private String first;
+        private String second;
+        private Instant date;
+        private TimeUnit unit;
+    }
+}
@@ -31,6 +31,8 @@ import org.junit.rules.TemporaryFolder;
 import password.pwm.util.java.TimeDuration;
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -110,6 +112,20 @@ public class LocalDBStoredQueueExtendedTest
         Assert.assertEquals( 0, storedQueue.size() );
     }
 
+    @Test
+    public void testAddAllAndRemoveLast()
+    {
+        populatedQueue( SIZE, storedQueue );
+        storedQueue.addAllAndRemoveLast( Arrays.asList( "5", "6" ), 3 );
+        Assert.assertEquals( SIZE - 1, storedQueue.size() );
+        Assert.assertEquals( "3", storedQueue.getLast() );
+        Assert.assertEquals( "6", storedQueue.getFirst() );
+
+        storedQueue.addAllAndRemoveLast( Collections.emptyList(), 100 );
+        Assert.assertEquals( 1, storedQueue.size() );
+        Assert.assertEquals( "6", storedQueue.getFirst() );
+    }
+
     @Test
     public void testDequeue()
     {
@@ -0,0 +1,213 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package password.pwm.util.localdb;
+
+import org.junit.Assert;
+import org.junit.Test;
+import password.pwm.util.java.TimeDuration;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class WorkQueueProcessorTest
+{
+    @Test
+    public void testRetryingLaneDoesNotBlockOtherLanes() throws Exception
+    {
+        final List<String> processed = new CopyOnWriteArrayList<>();
+        final Map<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+
+        final WorkQueueProcessor.ItemProcessor<String> itemProcessor = new WorkQueueProcessor.ItemProcessor<String>()
+        {
+            @Override
+            public WorkQueueProcessor.ProcessResult process( final String workItem )
+            {
+                attempts.computeIfAbsent( workItem, k -> new AtomicInteger() ).incrementAndGet();
+                if ( workItem.startsWith( "down" ) )
+                {
+                    return WorkQueueProcessor.ProcessResult.RETRY;
+                }
+                processed.add( workItem );
+                return WorkQueueProcessor.ProcessResult.SUCCESS;
+            }
+
+            @Override
+            public String convertToDebugString( final String workItem )
+            {
+                return workItem;
+            }
+
+            @Override
+            public String laneKey( final String workItem )
+            {
+                return workItem.substring( 0, workItem.indexOf( '-' ) );
+            }
+        };
+
+        final WorkQueueProcessor.Settings settings = WorkQueueProcessor.Settings.builder()
+                .workerThreads( 2 )
+                .retryInterval( TimeDuration.of( 1, TimeDuration.Unit.HOURS ) )
+                .maxShutdownWaitTime( TimeDuration.of( 5, TimeDuration.Unit.SECONDS ) )
+                .build();
+
+        final WorkQueueProcessor<String> workQueueProcessor = new WorkQueueProcessor<>(
+                null,
+                new LinkedBlockingDeque<>(),
+                settings,
+                itemProcessor,
+                WorkQueueProcessorTest.class
+        );
+
+        try
+        {
+            workQueueProcessor.submit( "down-1" );
+            workQueueProcessor.submit( "down-2" );
+            for ( int i = 0; i < 10; i++ )
+            {
+                workQueueProcessor.submit( "up-" + i );
+            }
+
+            // the retry counter and the lane pause are updated together, so waiting for the pause is enough
+            final long timeout = System.currentTimeMillis() + 10_000;
+            while ( ( processed.size() < 10 || workQueueProcessor.queueSize() != 2 || readLane( workQueueProcessor, "down" ).getRetryAfter() == null )
+                    && System.currentTimeMillis() < timeout )
+            {
+                Thread.sleep( 10 );
+            }
+
+            Assert.assertEquals( 10, processed.size() );
+            Assert.assertEquals( "up-0", processed.get( 0 ) );
+            Assert.assertEquals( 1, attempts.get( "down-1" ).get() );
+            Assert.assertNull( attempts.get( "down-2" ) );
+            Assert.assertEquals( 2, workQueueProcessor.queueSize() );
+
+            final List<WorkQueueProcessor.LaneInfo> laneInfos = workQueueProcessor.laneInfo();
+            Assert.assertEquals( 2, laneInfos.size() );
+            final WorkQueueProcessor.LaneInfo downLane = readLane( workQueueProcessor, "down" );
+            Assert.assertEquals( 2, downLane.getDepth() );
+            Assert.assertEquals( 1, downLane.getRetried() );
+            Assert.assertNotNull( downLane.getRetryAfter() );
+        }
+        finally
+        {
+            workQueueProcessor.close();
+        }
+    }
+
+    @Test
+    public void testNoopOfferedAgainWithoutPause() throws Exception
+    {
+        final AtomicInteger attempts = new AtomicInteger();
+        final WorkQueueProcessor.ItemProcessor<String> itemProcessor = new TestItemProcessor()
+        {
+            @Override
+            public WorkQueueProcessor.ProcessResult process( final String workItem )
+            {
+                return attempts.incrementAndGet() < 3 ? WorkQueueProcessor.ProcessResult.NOOP : WorkQueueProcessor.ProcessResult.SUCCESS;
+            }
+        };
+
+        final WorkQueueProcessor<String> workQueueProcessor = new WorkQueueProcessor<>(
+                null,
+                new LinkedBlockingDeque<>(),
+                WorkQueueProcessor.Settings.builder().retryInterval( TimeDuration.of( 1, TimeDuration.Unit.HOURS ) ).build(),
+                itemProcessor,
+                WorkQueueProcessorTest.class
+        );
+
+        try
+        {
+            workQueueProcessor.submit( "item" );
+
+            final long timeout = System.currentTimeMillis() + 10_000;
+            while ( readLane( workQueueProcessor, "default" ).getProcessed() < 1 && System.currentTimeMillis() < timeout )
+            {
+                Thread.sleep( 10 );
+            }
+
+            final WorkQueueProcessor.LaneInfo lane = readLane( workQueueProcessor, "default" );
+            Assert.assertEquals( 3, attempts.get() );
+            Assert.assertEquals( 1, lane.getProcessed() );
+            Assert.assertEquals( 0, lane.getRetried() );
+            Assert.assertEquals( 0, workQueueProcessor.queueSize() );
+        }
+        finally
+        {
+            workQueueProcessor.close();
+        }
+    }
+
+    @Test
+    public void testCloseDrainsQueue() throws Exception
+    {
+        final List<String> processed = new CopyOnWriteArrayList<>();
+        final WorkQueueProcessor.ItemProcessor<String> itemProcessor = new TestItemProcessor()
+        {
+            @Override
+            public WorkQueueProcessor.ProcessResult process( final String workItem )
+            {
+                processed.add( workItem );
+                return WorkQueueProcessor.ProcessResult.SUCCESS;
+            }
+        };
+
+        final WorkQueueProcessor<String> workQueueProcessor = new WorkQueueProcessor<>(
+                null,
+                new LinkedBlockingDeque<>(),
+                WorkQueueProcessor.Settings.builder().maxLaneItems( 2 ).build(),
+                itemProcessor,
+                WorkQueueProcessorTest.class
+        );
+
+        for ( int i = 0; i < 20; i++ )
+        {
+            workQueueProcessor.submit( "item-" + i );
+        }
+        workQueueProcessor.close();
+
+        Assert.assertEquals( 20, processed.size() );
+        Assert.assertEquals( 0, workQueueProcessor.queueSize() );
+    }
+
+    private static WorkQueueProcessor.LaneInfo readLane( final WorkQueueProcessor<String> workQueueProcessor, final String name )
+    {
+        return workQueueProcessor.laneInfo().stream()
+                .filter( laneInfo -> name.equals( laneInfo.getName() ) )
+                .findFirst()
+                .orElse( WorkQueueProcessor.LaneInfo.builder().name( name ).build() );
+    }
+
+    private abstract static class TestItemProcessor implements WorkQueueProcessor.ItemProcessor<String>
+    {
+        @Override
+        public String convertToDebugString( final String workItem )
+        {
+            return workItem;
+        }
+    }
+}
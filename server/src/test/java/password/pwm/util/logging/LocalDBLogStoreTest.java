@@ -0,0 +1,127 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package password.pwm.util.logging;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import password.pwm.util.java.TimeDuration;
+import password.pwm.util.localdb.LocalDB;
+import password.pwm.util.localdb.LocalDBFactory;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+public class LocalDBLogStoreTest
+{
+    @ClassRule
+    public static TemporaryFolder temporaryFolder = new TemporaryFolder( );
+
+    private static final Instant BASE_DATE = Instant.ofEpochMilli( 1_500_000_000_000L );
+    private static final TimeDuration MAX_AGE = TimeDuration.of( 36500, TimeDuration.Unit.DAYS );
+    private static final String FIRST_CHUNK_KEY = "D000000000000";
+
+    private static LocalDB localDB;
+
+    @BeforeClass
+    public static void setUp( ) throws Exception
+    {
+        final File fileLocation = temporaryFolder.newFolder( "localdb-logstore-test" );
+        localDB = LocalDBFactory.getInstance( fileLocation, false, null, null );
+    }
+
+    @After
+    public void truncate( ) throws Exception
+    {
+        localDB.truncate( LocalDB.DB.EVENTLOG_EVENTS );
+    }
+
+    @AfterClass
+    public static void tearDown( ) throws Exception
+    {
+        localDB.close();
+    }
+
+    private static LocalDBLogStore openStore( ) throws Exception
+    {
+        final LocalDBLoggerSettings settings = LocalDBLoggerSettings.builder()
+                .segmentEvents( 10 )
+                .segmentDuration( TimeDuration.MINUTE )
+                .build();
+        return new LocalDBLogStore( localDB, settings );
+    }
+
+    private static PwmLogEvent event( final int seconds, final String message )
+    {
+        return PwmLogEvent.createPwmLogEvent( BASE_DATE.plusSeconds( seconds ), "topic", message, "", "", null, null, PwmLogLevel.INFO );
+    }
+
+    private static List<String> messages( final Iterator<PwmLogEvent> iterator )
+    {
+        final List<String> messages = new ArrayList<>();
+        iterator.forEachRemaining( event -> messages.add( event.getMessage() ) );
+        return messages;
+    }
+
+    @Test
+    public void testWritesAppendChunks( ) throws Exception
+    {
+        final LocalDBLogStore store = openStore();
+        store.write( Arrays.asList( event( 0, "m1" ), event( 1, "m2" ), event( 2, "m3" ) ), 1000, MAX_AGE, 100 );
+        final String firstChunk = localDB.get( LocalDB.DB.EVENTLOG_EVENTS, FIRST_CHUNK_KEY );
+        Assert.assertNotNull( firstChunk );
+
+        store.write( Arrays.asList( event( 3, "m4" ), event( 4, "m5" ) ), 1000, MAX_AGE, 100 );
+        Assert.assertEquals( firstChunk, localDB.get( LocalDB.DB.EVENTLOG_EVENTS, FIRST_CHUNK_KEY ) );
+        Assert.assertEquals( 1, store.getSegmentCount() );
+        Assert.assertEquals( 2, store.segmentsNewestFirst().get( 0 ).getChunkCount() );
+        Assert.assertEquals( 5, store.size() );
+        Assert.assertEquals( Arrays.asList( "m1", "m2", "m3", "m4", "m5" ), messages( store.iterator() ) );
+
+        final LocalDBLogStore reopenedStore = openStore();
+        Assert.assertEquals( 5, reopenedStore.size() );
+        Assert.assertEquals( Arrays.asList( "m1", "m2", "m3", "m4", "m5" ), messages( reopenedStore.iterator() ) );
+    }
+
+    @Test
+    public void testTrimRemovesAllChunks( ) throws Exception
+    {
+        final LocalDBLogStore store = openStore();
+        store.write( Arrays.asList( event( 0, "m1" ), event( 1, "m2" ) ), 1000, MAX_AGE, 100 );
+        store.write( Arrays.asList( event( 2, "m3" ) ), 1000, MAX_AGE, 100 );
+        store.write( Arrays.asList( event( 120, "m4" ) ), 1, MAX_AGE, 100 );
+
+        Assert.assertEquals( 1, store.getSegmentCount() );
+        Assert.assertEquals( 1, store.size() );
+        Assert.assertEquals( 2, localDB.size( LocalDB.DB.EVENTLOG_EVENTS ) );
+        Assert.assertEquals( Arrays.asList( "m4" ), messages( store.iterator() ) );
+    }
+}
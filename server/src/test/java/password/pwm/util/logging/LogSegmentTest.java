@@ -0,0 +1,118 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package password.pwm.util.logging;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Instant;
+
+public class LogSegmentTest
+{
+    private static final Instant BASE_DATE = Instant.ofEpochMilli( 1_500_000_000_000L );
+
+    private static LogSegment makeSegment()
+    {
+        final LogSegment.Collector collector = new LogSegment.Collector( 7 );
+        collector.add( PwmLogEvent.createPwmLogEvent( BASE_DATE, "password.pwm.ldap.LdapOperationsHelper", "m1", "", "", null, null, PwmLogLevel.TRACE ) );
+        collector.add( PwmLogEvent.createPwmLogEvent( BASE_DATE.plusSeconds( 30 ), "password.pwm.http.PwmRequest", "m2", "", "jdoe", null, null, PwmLogLevel.INFO ) );
+        collector.add( PwmLogEvent.createPwmLogEvent( BASE_DATE.plusSeconds( 10 ), "password.pwm.http.PwmRequest", "m3", "", "asmith", null, null, PwmLogLevel.DEBUG ) );
+        return collector.toSegment( 2 );
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception
+    {
+        final LogSegment segment = makeSegment();
+        final LogSegment decoded = LogSegment.decode( segment.getId(), segment.encode() );
+
+        Assert.assertEquals( 7, decoded.getId() );
+        Assert.assertEquals( 3, decoded.getEventCount() );
+        Assert.assertEquals( 2, decoded.getChunkCount() );
+        Assert.assertEquals( BASE_DATE, decoded.getFirstDate() );
+        Assert.assertEquals( BASE_DATE.plusSeconds( 30 ), decoded.getLastDate() );
+        Assert.assertTrue( decoded.isSystemEvents() );
+        Assert.assertEquals( segment.getActors(), decoded.getActors() );
+        Assert.assertEquals( segment.getTopics(), decoded.getTopics() );
+        Assert.assertTrue( decoded.hasLevelAtLeast( PwmLogLevel.INFO ) );
+        Assert.assertFalse( decoded.hasLevelAtLeast( PwmLogLevel.WARN ) );
+    }
+
+    @Test
+    public void testUntrackedValues() throws Exception
+    {
+        final LogSegment.Collector collector = new LogSegment.Collector( 1 );
+        for ( int i = 0; i <= LogSegment.MAX_TRACKED_VALUES; i++ )
+        {
+            collector.add( PwmLogEvent.createPwmLogEvent( BASE_DATE, "topic", "m", "", "user" + i, null, null, PwmLogLevel.INFO ) );
+        }
+
+        final LogSegment decoded = LogSegment.decode( 1, collector.toSegment( 1 ).encode() );
+        Assert.assertNull( decoded.getActors() );
+        Assert.assertEquals( 1, decoded.getTopics().size() );
+        Assert.assertTrue( new LogEventMatcher( LocalDBSearchQuery.builder().username( "someone" ).build() ).mayMatch( decoded ) );
+    }
+
+    @Test
+    public void testSegmentMatching()
+    {
+        final LogSegment segment = makeSegment();
+
+        Assert.assertTrue( matcher( LocalDBSearchQuery.builder().build() ).mayMatch( segment ) );
+        Assert.assertTrue( matcher( LocalDBSearchQuery.builder().username( "jdoe" ).build() ).mayMatch( segment ) );
+        Assert.assertTrue( matcher( LocalDBSearchQuery.builder().username( "^a.*h$" ).build() ).mayMatch( segment ) );
+        Assert.assertFalse( matcher( LocalDBSearchQuery.builder().username( "bwilson" ).build() ).mayMatch( segment ) );
+        Assert.assertFalse( matcher( LocalDBSearchQuery.builder().minimumLevel( PwmLogLevel.ERROR ).build() ).mayMatch( segment ) );
+        Assert.assertTrue( matcher( LocalDBSearchQuery.builder().topic( "ldap" ).build() ).mayMatch( segment ) );
+        Assert.assertFalse( matcher( LocalDBSearchQuery.builder().topic( "email" ).build() ).mayMatch( segment ) );
+
+        Assert.assertFalse( matcher( LocalDBSearchQuery.builder().startTime( BASE_DATE.plusSeconds( 31 ) ).build() ).mayMatch( segment ) );
+        Assert.assertTrue( matcher( LocalDBSearchQuery.builder().startTime( BASE_DATE.plusSeconds( 31 ) ).build() ).isBeforeTimeRange( segment ) );
+        Assert.assertFalse( matcher( LocalDBSearchQuery.builder().endTime( BASE_DATE.minusSeconds( 1 ) ).build() ).mayMatch( segment ) );
+        Assert.assertTrue( matcher( LocalDBSearchQuery.builder()
+                .startTime( BASE_DATE.plusSeconds( 5 ) )
+                .endTime( BASE_DATE.plusSeconds( 15 ) )
+                .build() ).mayMatch( segment ) );
+    }
+
+    @Test
+    public void testEventMatching()
+    {
+        final PwmLogEvent event = PwmLogEvent.createPwmLogEvent(
+                BASE_DATE, "password.pwm.http.PwmRequest", "Password Changed", "", "jdoe", null, null, PwmLogLevel.INFO );
+
+        Assert.assertTrue( matcher( LocalDBSearchQuery.builder().text( "password changed" ).build() ).matches( event ) );
+        Assert.assertTrue( matcher( LocalDBSearchQuery.builder().text( "pwmrequest" ).build() ).matches( event ) );
+        Assert.assertFalse( matcher( LocalDBSearchQuery.builder().text( "locked" ).build() ).matches( event ) );
+        Assert.assertTrue( matcher( LocalDBSearchQuery.builder().username( "jdo" ).build() ).matches( event ) );
+        Assert.assertFalse( matcher( LocalDBSearchQuery.builder().eventType( LocalDBLogger.EventType.System ).build() ).matches( event ) );
+        Assert.assertTrue( matcher( LocalDBSearchQuery.builder().eventType( LocalDBLogger.EventType.User ).build() ).matches( event ) );
+        Assert.assertFalse( matcher( LocalDBSearchQuery.builder().startTime( BASE_DATE.plusMillis( 1 ) ).build() ).matches( event ) );
+    }
+
+    private static LogEventMatcher matcher( final LocalDBSearchQuery query )
+    {
+        return new LogEventMatcher( query );
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package password.pwm.util.logging;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Instant;
+
+public class PwmLogEventCodecTest
+{
+    @Test
+    public void testRoundTrip() throws Exception
+    {
+        final Instant date = Instant.ofEpochMilli( 1_500_000_000_123L );
+        final PwmLogEvent event = PwmLogEvent.createPwmLogEvent(
+                date, "password.pwm.Topic", "message with : separators, - dashes\nand é中 unicode",
+                "10.0.0.1/host", "", null, null, PwmLogLevel.WARN );
+
+        final PwmLogEvent decoded = PwmLogEventCodec.decode( PwmLogEventCodec.encode( event ) );
+        Assert.assertEquals( date, decoded.getDate() );
+        Assert.assertEquals( PwmLogLevel.WARN, decoded.getLevel() );
+        Assert.assertEquals( event.getTopic(), decoded.getTopic() );
+        Assert.assertEquals( event.getMessage(), decoded.getMessage() );
+        Assert.assertEquals( event.getSource(), decoded.getSource() );
+        Assert.assertEquals( "", decoded.getActor() );
+        Assert.assertNull( decoded.getLabel() );
+        Assert.assertNull( decoded.getThrowable() );
+    }
+
+    @Test
+    public void testAllLevels() throws Exception
+    {
+        for ( final PwmLogLevel level : PwmLogLevel.values() )
+        {
+            final PwmLogEvent event = PwmLogEvent.createPwmLogEvent( Instant.now(), null, null, null, null, null, null, level );
+            Assert.assertEquals( level, PwmLogEventCodec.decode( PwmLogEventCodec.encode( event ) ).getLevel() );
+        }
+    }
+
+    @Test
+    public void testThrowableChain() throws Exception
+    {
+        final Exception cause = new IllegalStateException( "root cause" );
+        final Exception exception = new IOException( "outer", cause );
+        final PwmLogEvent event = PwmLogEvent.createPwmLogEvent( Instant.now(), "t", "m", "", "", "b", exception, PwmLogLevel.ERROR );
+
+        final Throwable decoded = PwmLogEventCodec.decode( PwmLogEventCodec.encode( event ) ).getThrowable();
+        Assert.assertEquals( "java.io.IOException: outer", decoded.toString() );
+        Assert.assertEquals( "outer", decoded.getMessage() );
+        Assert.assertArrayEquals( exception.getStackTrace(), decoded.getStackTrace() );
+        Assert.assertEquals( "java.lang.IllegalStateException: root cause", decoded.getCause().toString() );
+        Assert.assertNull( decoded.getCause().getCause() );
+
+        final PwmLogEvent reencoded = PwmLogEventCodec.decode( PwmLogEventCodec.encode( PwmLogEventCodec.decode( PwmLogEventCodec.encode( event ) ) ) );
+        Assert.assertEquals( "java.io.IOException: outer", reencoded.getThrowable().toString() );
+    }
+
+    @Test( expected = IOException.class )
+    public void testTruncatedValue() throws Exception
+    {
+        final PwmLogEvent event = PwmLogEvent.createPwmLogEvent( Instant.now(), "topic", "message", "", "", "", null, PwmLogLevel.INFO );
+        final String encoded = PwmLogEventCodec.encode( event );
+        PwmLogEventCodec.decode( encoded.substring( 0, encoded.length() - 5 ) );
+    }
+
+    @Test( expected = IOException.class )
+    public void testLegacyJsonValue() throws Exception
+    {
+        PwmLogEventCodec.decode( "{\"l\":\"INFO\",\"m\":\"message\"}" );
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package password.pwm.util.macro;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class MacroTemplateTest
+{
+    @Test
+    public void testLiteralTemplate()
+    {
+        final MacroTemplate macroTemplate = MacroTemplate.compile( "no macros here", macros( Collections.emptyMap() ) );
+        Assert.assertTrue( macroTemplate.isCompiled() );
+        Assert.assertEquals( 0, macroTemplate.getCallCount() );
+        Assert.assertEquals( "no macros here", macroTemplate.expand( new TestExpander( macros( Collections.emptyMap() ) ) ) );
+    }
+
+    @Test
+    public void testSinglePassExpansion()
+    {
+        // ordered so no value is placed between '@' characters of calls that are still unexpanded when it is inserted
+        final Map<String, String> values = new LinkedHashMap<>();
+        values.put( "First", "Jane" );
+        values.put( "Last", "Doe" );
+        final List<MacroImplementation> macros = macros( values );
+
+        final String template = "Hello @First@ @Last@, bye @First@.";
+        final MacroTemplate macroTemplate = MacroTemplate.compile( template, macros );
+        Assert.assertEquals( 3, macroTemplate.getCallCount() );
+
+        final TestExpander expander = new TestExpander( macros );
+        Assert.assertEquals( "Hello Jane Doe, bye Jane.", macroTemplate.expand( expander ) );
+        Assert.assertEquals( 3, expander.resolveCount.get() );
+        Assert.assertEquals( 0, expander.sequentialCount.get() );
+        Assert.assertEquals( sequential( template, macros ), macroTemplate.expand( new TestExpander( macros ) ) );
+    }
+
+    @Test
+    public void testNestedPostMacro()
+    {
+        final List<MacroImplementation> macros = macros( Collections.singletonMap( "Name", "jane" ) );
+        final String template = "x @Upper:[[name is @Name@]]@ y";
+        final MacroTemplate macroTemplate = MacroTemplate.compile( template, macros );
+
+        final TestExpander expander = new TestExpander( macros );
+        Assert.assertEquals( "x NAME IS JANE y", macroTemplate.expand( expander ) );
+        Assert.assertEquals( 0, expander.sequentialCount.get() );
+        Assert.assertEquals( sequential( template, macros ), macroTemplate.expand( new TestExpander( macros ) ) );
+    }
+
+    @Test
+    public void testValuesThatChangeMatchingUseSequentialExpansion()
+    {
+        final Map<String, String> values = new HashMap<>();
+        values.put( "Email", "jane@example.com" );
+        values.put( "Ref", "@Name@" );
+        values.put( "Name", "jane" );
+        values.put( "Multi", "a\nb" );
+        final List<MacroImplementation> macros = macros( values );
+
+        for ( final String template : Arrays.asList(
+                "mail @Email@ to @Name@",
+                "@Ref@ and @Name@",
+                "@Upper:[[@Multi@]]@ @Name@",
+                "literal user@example.com and @Name@ @Unknown@" ) )
+        {
+            final MacroTemplate macroTemplate = MacroTemplate.compile( template, macros );
+            Assert.assertEquals( template, sequential( template, macros ), macroTemplate.expand( new TestExpander( macros ) ) );
+        }
+    }
+
+    @Test
+    public void testSplicedValuesUseSequentialExpansion()
+    {
+        final Map<String, String> ldapValues = new HashMap<>();
+        ldapValues.put( "x", "ID" );
+        ldapValues.put( "y", "]]" );
+        ldapValues.put( "z", "a:b" );
+        final List<MacroImplementation> macros = Arrays.asList(
+                new TestMacro( Pattern.compile( "@LDAP:[^@]*@" ), MacroImplementation.Sequence.normal,
+                        matched -> ldapValues.get( matched.substring( "@LDAP:".length(), matched.length() - 1 ) ) ),
+                new TestMacro( Pattern.compile( "@User:ID@" ), MacroImplementation.Sequence.normal, matched -> "uid-1" ),
+                new TestMacro( Pattern.compile( "@Upper:\\[\\[.*\\]\\]@" ), MacroImplementation.Sequence.post,
+                        matched -> matched.substring( "@Upper:[[".length(), matched.length() - "]]@".length() ).toUpperCase() ) );
+
+        for ( final String template : Arrays.asList(
+                "@User:@LDAP:x@@",
+                "@Upper:[[a]]@ and @LDAP:y@@",
+                "@Upper:[[@LDAP:y@]]@ tail",
+                "@LDAP:z@ and @Upper:[[b]]@" ) )
+        {
+            final MacroTemplate macroTemplate = MacroTemplate.compile( template, macros );
+            Assert.assertTrue( template, macroTemplate.isCompiled() );
+
+            final TestExpander expander = new TestExpander( macros );
+            Assert.assertEquals( template, sequential( template, macros ), macroTemplate.expand( expander ) );
+            Assert.assertEquals( template, 1, expander.sequentialCount.get() );
+        }
+
+        final String template = "@LDAP:x@ and @User:ID@";
+        final TestExpander expander = new TestExpander( macros );
+        Assert.assertEquals( "ID and uid-1", MacroTemplate.compile( template, macros ).expand( expander ) );
+        Assert.assertEquals( 0, expander.sequentialCount.get() );
+    }
+
+    private static String sequential( final String input, final List<MacroImplementation> macros )
+    {
+        return new TestExpander( macros ).expandSequentially( input, 0 );
+    }
+
+    /**
+     * Normal sequence value macros for each map entry, in map order, followed by a post sequence upper case macro.
+     */
+    private static List<MacroImplementation> macros( final Map<String, String> values )
+    {
+        final List<MacroImplementation> returnList = new ArrayList<>();
+        for ( final Map.Entry<String, String> entry : values.entrySet() )
+        {
+            returnList.add( new TestMacro( Pattern.compile( "@" + entry.getKey() + "@" ), MacroImplementation.Sequence.normal, matched -> entry.getValue() ) );
+        }
+        returnList.add( new TestMacro( Pattern.compile( "@Upper:\\[\\[.*\\]\\]@" ), MacroImplementation.Sequence.post,
+                matched -> matched.substring( "@Upper:[[".length(), matched.length() - "]]@".length() ).toUpperCase() ) );
+        return returnList;
+    }
+
+    private interface ValueFunction
+    {
+        String value( String matched );
+    }
+
+    private static class TestMacro implements MacroImplementation
+    {
+        private final Pattern pattern;
+        private final Sequence sequence;
+        private final ValueFunction valueFunction;
+
+        TestMacro( final Pattern pattern, final Sequence sequence, final ValueFunction valueFunction )
+        {
+            this.pattern = pattern;
+            this.sequence = sequence;
+            this.valueFunction = valueFunction;
+        }
+
+        @Override
+        public Pattern getRegExPattern( )
+        {
+            return pattern;
+        }
+
+        @Override
+        public String replaceValue( final String matchValue, final MacroRequestInfo macroRequestInfo )
+        {
+            return valueFunction.value( matchValue );
+        }
+
+        @Override
+        public MacroDefinitionFlag[] flags( )
+        {
+            return null;
+        }
+
+        @Override
+        public Sequence getSequence( )
+        {
+            return sequence;
+        }
+    }
+
+    private static class TestExpander implements MacroTemplate.Expander
+    {
+        private final List<MacroImplementation> macros;
+        private final AtomicInteger resolveCount = new AtomicInteger();
+        private final AtomicInteger sequentialCount = new AtomicInteger();
+
+        TestExpander( final List<MacroImplementation> macros )
+        {
+            this.macros = macros;
+        }
+
+        @Override
+        public String resolve( final MacroImplementation macroImplementation, final String matchedText )
+        {
+            resolveCount.incrementAndGet();
+            try
+            {
+                return macroImplementation.replaceValue( matchedText, null );
+            }
+            catch ( MacroParseException e )
+            {
+                throw new IllegalStateException( e );
+            }
+        }
+
+        @Override
+        public String expandSequentially( final String workingString, final int startIndex )
+        {
+            sequentialCount.incrementAndGet();
+            String result = workingString;
+            for ( int i = startIndex; i < macros.size(); i++ )
+            {
+                final MacroImplementation macroImplementation = macros.get( i );
+                Matcher matcher = macroImplementation.getRegExPattern().matcher( result );
+                while ( matcher.find() )
+                {
+                    result = new StringBuilder( result ).replace( matcher.start(), matcher.end(), resolve( macroImplementation, matcher.group() ) ).toString();
+                    matcher = macroImplementation.getRegExPattern().matcher( result );
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package password.pwm.util.secure;
+
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+import password.pwm.util.java.JavaHelper;
+
+import java.util.concurrent.TimeUnit;
+
+@State( Scope.Benchmark )
+public class SecureEngineBenchmarkExtendedTest
+{
+    private PwmSecurityKey key;
+    private String payload;
+    private byte[] encryptedGcm;
+    private byte[] encryptedHmac;
+
+    @Test
+    public void
+    launchBenchmark()
+            throws Exception
+    {
+        final Options opt = new OptionsBuilder()
+                .include( this.getClass().getName() + ".*" )
+                .mode ( Mode.Throughput )
+                .timeUnit( TimeUnit.SECONDS )
+                .warmupTime( TimeValue.seconds( 10 ) )
+                .measurementIterations( 10 )
+                .threads( Runtime.getRuntime().availableProcessors() )
+                .forks( 1 )
+                .shouldFailOnError( true )
+                .shouldDoGC( true )
+                .build();
+
+        new Runner( opt ).run();
+    }
+
+    @Setup
+    public void setup()
+            throws Exception
+    {
+        key = new PwmSecurityKey( PwmRandom.getInstance().newBytes( 1024 ) );
+        payload = JavaHelper.binaryArrayToHex( PwmRandom.getInstance().newBytes( 1024 ) );
+        encryptedGcm = SecureEngine.encryptToBytes( payload, key, PwmBlockAlgorithm.AES128_GCM );
+        encryptedHmac = SecureEngine.encryptToBytes( payload, key, PwmBlockAlgorithm.AES128_HMAC256 );
+    }
+
+    @Benchmark
+    public byte[] encryptGcm()
+            throws Exception
+    {
+        return SecureEngine.encryptToBytes( payload, key, PwmBlockAlgorithm.AES128_GCM );
+    }
+
+    @Benchmark
+    public String decryptGcm()
+            throws Exception
+    {
+        return SecureEngine.decryptBytes( encryptedGcm, key, PwmBlockAlgorithm.AES128_GCM );
+    }
+
+    @Benchmark
+    public byte[] encryptHmac()
+            throws Exception
+    {
+        return SecureEngine.encryptToBytes( payload, key, PwmBlockAlgorithm.AES128_HMAC256 );
+    }
+
+    @Benchmark
+    public String decryptHmac()
+            throws Exception
+    {
+        return SecureEngine.decryptBytes( encryptedHmac, key, PwmBlockAlgorithm.AES128_HMAC256 );
+    }
+}
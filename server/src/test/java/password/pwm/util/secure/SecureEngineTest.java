@@ -0,0 +1,143 @@
+/*
+ * Password Management Servlets (PWM)
+ * http://www.pwm-project.org
+ *
+ * Copyright (c) 2006-2009 Novell, Inc.
+ * Copyright (c) 2009-2018 The PWM Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package password.pwm.util.secure;
+
+import org.junit.Assert;
+import org.junit.Test;
+import password.pwm.error.PwmUnrecoverableException;
+import password.pwm.util.java.JavaHelper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class SecureEngineTest
+{
+    private static final String FIXTURE_VALUE = "fixture value: 12345";
+
+    private static PwmSecurityKey fixtureKey( )
+    {
+        final byte[] keyBytes = new byte[ 64 ];
+        for ( int i = 0; i < keyBytes.length; i++ )
+        {
+            keyBytes[ i ] = ( byte ) i;
+        }
+        return new PwmSecurityKey( keyBytes );
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception
+    {
+        final PwmSecurityKey key = new PwmSecurityKey( PwmRandom.getInstance().newBytes( 256 ) );
+        for ( final PwmBlockAlgorithm alg : PwmBlockAlgorithm.values() )
+        {
+            for ( final String value : Arrays.asList( "a", FIXTURE_VALUE, PwmRandom.getInstance().alphaNumericString( 5000 ) ) )
+            {
+                final String encrypted = SecureEngine.encryptToString( value, key, alg );
+                Assert.assertEquals( alg.toString(), value, SecureEngine.decryptStringValue( encrypted, key, alg ) );
+
+                final String urlSafe = SecureEngine.encryptToString( value, key, alg, SecureEngine.Flag.URL_SAFE );
+                Assert.assertEquals( alg.toString(), value, SecureEngine.decryptStringValue( urlSafe, key, alg, SecureEngine.Flag.URL_SAFE ) );
+            }
+        }
+    }
+
+    @Test
+    public void testDecryptExistingValues() throws Exception
+    {
+        final PwmSecurityKey key = fixtureKey();
+        final Map<PwmBlockAlgorithm, String> fixtures = new EnumMap<>( PwmBlockAlgorithm.class );
+        fixtures.put( PwmBlockAlgorithm.AES, "gMM/rbRDi6jppcHoqZVGZscbIYYo5/2gMzZJbpQsLX4=" );
+        fixtures.put( PwmBlockAlgorithm.AES128_HMAC256,
+                "UFdNLkFFUzEyOF9ITUFDMjU2bU3iKy8cgY44S562Hr5lDt/GfsA+VBPyulA5dWNMxa6Awz+ttEOLqOmlweiplUZmxxshhijn/aAzNklulCwtfg==" );
+        fixtures.put( PwmBlockAlgorithm.AES256_HMAC512,
+                "UFdNLkFFUzI1Nl9ITUFDNTEy+CWfSeR18A7bzzD1DYeP78J0FR0RGU3jnpDJKCSmiyJymKVrRiJhF/5NBO+fFlfcwTqIXA/YYxh8EGMHPaN2Fhi0i0nVbyoN4M2yWRlS+3pWOVTS3q9mcqhtYo1RoL8x" );
+        fixtures.put( PwmBlockAlgorithm.CONFIG, "gMM/rbRDi6jppcHoqZVGZscbIYYo5/2gMzZJbpQsLX4=" );
+        fixtures.put( PwmBlockAlgorithm.AES128_GCM, "UFdNLkdDTTEQtV1PDNhIPfippBcRTTWUBl24yj7H2eqPqOO+/gUBoNUW9H9Jk1tGuZduzKwYHFiYXbMqIg==" );
+
+        for ( final Map.Entry<PwmBlockAlgorithm, String> fixture : fixtures.entrySet() )
+        {
+            final PwmBlockAlgorithm alg = fixture.getKey();
+            Assert.assertEquals( alg.toString(), FIXTURE_VALUE, SecureEngine.decryptStringValue( fixture.getValue(), key, alg ) );
+        }
+
+        // deterministic legacy output must be unchanged
+        Assert.assertEquals( fixtures.get( PwmBlockAlgorithm.AES ), SecureEngine.encryptToString( FIXTURE_VALUE, key, PwmBlockAlgorithm.AES ) );
+        Assert.assertEquals( fixtures.get( PwmBlockAlgorithm.AES128_HMAC256 ), SecureEngine.encryptToString( FIXTURE_VALUE, key, PwmBlockAlgorithm.AES128_HMAC256 ) );
+    }
+
+    @Test( expected = PwmUnrecoverableException.class )
+    public void testTamperedChecksum() throws Exception
+    {
+        final PwmSecurityKey key = fixtureKey();
+        final byte[] encrypted = SecureEngine.encryptToBytes( FIXTURE_VALUE, key, PwmBlockAlgorithm.AES128_HMAC256 );
+        encrypted[ encrypted.length - 1 ] ^= 1;
+        SecureEngine.decryptBytes( encrypted, key, PwmBlockAlgorithm.AES128_HMAC256 );
+    }
+
+    @Test
+    public void testNonceUniqueAcrossThreads() throws Exception
+    {
+        final SecureEngine.NonceGenerator nonceGenerator = new SecureEngine.NonceGenerator( 8, 8 );
+        final int threads = 4;
+        final int iterations = SecureEngine.NonceGenerator.COUNTER_BLOCK_SIZE * 3;
+
+        final ExecutorService executorService = Executors.newFixedThreadPool( threads );
+        try
+        {
+            final List<Future<List<String>>> futures = new ArrayList<>();
+            for ( int i = 0; i < threads; i++ )
+            {
+                futures.add( executorService.submit( () ->
+                {
+                    final List<String> values = new ArrayList<>();
+                    for ( int j = 0; j < iterations; j++ )
+                    {
+                        final byte[] nonce = nonceGenerator.nextValue();
+                        Assert.assertEquals( 16, nonce.length );
+                        values.add( JavaHelper.byteArrayToHexString( nonce ) );
+                    }
+                    return values;
+                } ) );
+            }
+
+            final Set<String> allValues = new HashSet<>();
+            for ( final Future<List<String>> future : futures )
+            {
+                allValues.addAll( future.get() );
+            }
+            Assert.assertEquals( threads * iterations, allValues.size() );
+        }
+        finally
+        {
+            executorService.shutdownNow();
+        }
+    }
+}